@@ -59,6 +59,7 @@ import java.util.regex.Pattern;
 
 import javax.sql.DataSource;
 
+import org.opennms.core.db.EventPartitionManager;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -797,6 +798,9 @@ public class InstallerDb {
 
         m_out.println("- creating tables...");
 
+        final EventPartitionManager partitionManager = new EventPartitionManager(m_dataSource, EventPartitionManager.Interval.DAILY);
+        final boolean eventsPartitioned = !m_force && partitionManager.isPartitioned();
+
         for (String tableName : getTableNames()) {
             if (m_force) {
                 tableName = tableName.toLowerCase();
@@ -833,7 +837,14 @@ public class InstallerDb {
                 final Table newTable = getTableFromSQL(tableName);
                 final Table oldTable = getTableFromDB(tableName);
 
-                if (newTable.equals(oldTable)) {
+                if (eventsPartitioned) {
+                    // the foreign keys to events have been replaced by triggers, see EventPartitionManager
+                    removeForeignKeysTo(newTable, EventPartitionManager.TABLE_NAME);
+                }
+
+                if (eventsPartitioned && EventPartitionManager.TABLE_NAME.equals(tableName) && !newTable.equals(oldTable)) {
+                    m_out.println("  - checking table \"" + tableName + "\"... SKIPPED (partitioned)");
+                } else if (newTable.equals(oldTable)) {
                     addIndexesForTable(tableName);
                     addTriggersForTable(tableName);
                     m_out.println("  - checking table \"" + tableName  + "\"... UPTODATE");
@@ -859,8 +870,23 @@ public class InstallerDb {
             }
         }
 
+        if (eventsPartitioned) {
+            // restores the reference triggers on tables that were created or changed above
+            partitionManager.migrate(0);
+        }
+
         m_out.println("- creating tables... DONE");
     }
+
+    private static void removeForeignKeysTo(final Table table, final String foreignTable) {
+        final List<Constraint> constraints = new LinkedList<Constraint>();
+        for (final Constraint constraint : table.getConstraints()) {
+            if (!constraint.isForeignKeyConstraint() || !foreignTable.equalsIgnoreCase(constraint.getForeignTable())) {
+                constraints.add(constraint);
+            }
+        }
+        table.setConstraints(constraints);
+    }
     
 
     /**
@@ -2287,4 +2313,24 @@ public class InstallerDb {
             m_out.println("OK");
         }
     }
+
+    /**
+     * <p>Converts the events table to the time-partitioned layout (if it has
+     * not been converted already) and creates the upcoming partitions.</p>
+     *
+     * @param interval the partition interval, "daily" or "weekly"
+     * @param ahead the number of future partitions to create
+     * @throws java.sql.SQLException if any.
+     */
+    public void partitionEventsTable(final String interval, final int ahead) throws SQLException {
+        final EventPartitionManager manager = new EventPartitionManager(m_dataSource, EventPartitionManager.Interval.fromString(interval));
+        if (manager.isPartitioned()) {
+            m_out.print("- creating upcoming " + manager.getInterval().name().toLowerCase() + " event partitions... ");
+            m_out.println("CREATED " + manager.createPartitions(ahead));
+        } else {
+            m_out.print("- partitioning the events table (" + manager.getInterval().name().toLowerCase() + ")... ");
+            manager.migrate(ahead);
+            m_out.println("OK");
+        }
+    }
 }
@@ -0,0 +1,757 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Manages an optional time-partitioned layout for the <code>events</code>
+ * table using PostgreSQL table inheritance.</p>
+ *
+ * <p>Each partition is a child table named
+ * <code>events_p&lt;start&gt;_&lt;end&gt;</code> with a CHECK constraint on
+ * <code>eventtime</code>, so that the planner (with the default
+ * <code>constraint_exclusion = partition</code>) only scans the partitions
+ * that can match a time range.  A trigger on the parent routes new rows into
+ * the matching partition; rows without a partition stay in the parent.</p>
+ *
+ * <p>Retention is implemented by dropping whole partitions instead of
+ * deleting rows.  Events that are still referenced by other tables (outages,
+ * notifications, alarms) are moved into the parent table before their
+ * partition is dropped.</p>
+ *
+ * <p>PostgreSQL cannot enforce foreign keys that point at an inheritance
+ * tree, so {@link #migrate(int)} replaces each foreign key that references
+ * <code>events</code> with a pair of triggers: one on the referencing table
+ * that rejects inserts and updates pointing at an event that does not
+ * exist, and a delete trigger on the events tables that performs the
+ * foreign key's ON DELETE action.  The replaced foreign keys are recorded
+ * in the <code>events_partition_references</code> table, which the
+ * installer uses to leave them out when it compares table definitions.</p>
+ *
+ * <p>Catalog lookups and data statements use bound parameters.  Partition
+ * bounds in CHECK constraints and in the generated trigger functions are
+ * DDL and have to be literals; they are formatted from dates, and table and
+ * column names only ever come from the system catalog.</p>
+ */
+public class EventPartitionManager {
+    private static final Logger LOG = LoggerFactory.getLogger(EventPartitionManager.class);
+
+    public static final String TABLE_NAME = "events";
+    public static final String PARTITION_PREFIX = TABLE_NAME + "_p";
+    public static final String REFERENCES_TABLE = "events_partition_references";
+
+    private static final String INSERT_FUNCTION = "events_partition_insert";
+    private static final String INSERT_TRIGGER = "events_partition_insert_trigger";
+    private static final String DELETE_FUNCTION = "events_partition_delete";
+    private static final String DELETE_TRIGGER = "events_partition_delete_trigger";
+    private static final String REFERENCE_PREFIX = "events_ref_";
+
+    private static final Pattern PARTITION_PATTERN = Pattern.compile("^" + PARTITION_PREFIX + "(\\d{8})_(\\d{8})$");
+
+    public enum Interval {
+        DAILY(Calendar.DAY_OF_MONTH, 1),
+        WEEKLY(Calendar.DAY_OF_MONTH, 7);
+
+        private final int m_field;
+        private final int m_amount;
+
+        private Interval(final int field, final int amount) {
+            m_field = field;
+            m_amount = amount;
+        }
+
+        /**
+         * Returns the start of the interval containing the given date,
+         * midnight UTC for daily partitions and Monday midnight UTC for
+         * weekly partitions.
+         */
+        public Date getStart(final Date date) {
+            final Calendar cal = getCalendar(date);
+            cal.set(Calendar.HOUR_OF_DAY, 0);
+            cal.set(Calendar.MINUTE, 0);
+            cal.set(Calendar.SECOND, 0);
+            cal.set(Calendar.MILLISECOND, 0);
+            if (this == WEEKLY) {
+                while (cal.get(Calendar.DAY_OF_WEEK) != Calendar.MONDAY) {
+                    cal.add(Calendar.DAY_OF_MONTH, -1);
+                }
+            }
+            return cal.getTime();
+        }
+
+        public Date getNext(final Date start) {
+            final Calendar cal = getCalendar(start);
+            cal.add(m_field, m_amount);
+            return cal.getTime();
+        }
+
+        public static Interval fromString(final String interval) {
+            return interval == null ? DAILY : Interval.valueOf(interval.toUpperCase(Locale.ROOT));
+        }
+
+        /**
+         * Returns the interval that an existing partition was created
+         * with, or null if its bounds do not match any interval.
+         */
+        public static Interval fromPartition(final Partition partition) {
+            for (final Interval interval : values()) {
+                if (interval.getStart(partition.getStart()).equals(partition.getStart()) && interval.getNext(partition.getStart()).equals(partition.getEnd())) {
+                    return interval;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A single partition, covering <code>[start, end)</code>.
+     */
+    public static final class Partition {
+        private final String m_name;
+        private final Date m_start;
+        private final Date m_end;
+
+        Partition(final String name, final Date start, final Date end) {
+            m_name = name;
+            m_start = start;
+            m_end = end;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        public Date getStart() {
+            return m_start;
+        }
+
+        public Date getEnd() {
+            return m_end;
+        }
+
+        @Override
+        public String toString() {
+            return m_name;
+        }
+    }
+
+    /**
+     * A column of another table that referenced <code>events</code> with a
+     * foreign key before the migration.
+     */
+    public static final class Reference {
+        private final String m_table;
+        private final String m_column;
+        private final String m_deleteAction;
+
+        Reference(final String table, final String column, final String deleteAction) {
+            m_table = table;
+            m_column = column;
+            m_deleteAction = deleteAction;
+        }
+
+        public String getTable() {
+            return m_table;
+        }
+
+        public String getColumn() {
+            return m_column;
+        }
+
+        /**
+         * The foreign key's <code>pg_constraint.confdeltype</code>:
+         * <code>c</code>ascade, set <code>n</code>ull, set <code>d</code>efault,
+         * <code>r</code>estrict or no <code>a</code>ction.
+         */
+        public String getDeleteAction() {
+            return m_deleteAction;
+        }
+
+        @Override
+        public String toString() {
+            return m_table + "." + m_column;
+        }
+    }
+
+    private final DataSource m_dataSource;
+    private final Interval m_interval;
+
+    public EventPartitionManager(final DataSource dataSource, final Interval interval) {
+        m_dataSource = dataSource;
+        m_interval = interval;
+    }
+
+    public Interval getInterval() {
+        return m_interval;
+    }
+
+    /**
+     * Whether the events table has been migrated to the partitioned layout.
+     */
+    public boolean isPartitioned() throws SQLException {
+        final Connection conn = m_dataSource.getConnection();
+        try {
+            return isPartitioned(conn);
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Converts an existing events table into the parent of a partitioned
+     * layout.  Existing rows stay in the parent table and age out through
+     * the normal vacuumd statements; new rows are routed into partitions.
+     * This is safe to call on a table that has already been migrated, and
+     * restores any reference triggers that are missing, for example after
+     * the installer has rebuilt a referencing table.
+     *
+     * @param ahead the number of future partitions to create
+     */
+    public void migrate(final int ahead) throws SQLException {
+        final Connection conn = m_dataSource.getConnection();
+        try {
+            conn.setAutoCommit(false);
+            final Statement st = conn.createStatement();
+            try {
+                if (!tableExists(conn, REFERENCES_TABLE)) {
+                    st.execute("CREATE TABLE " + REFERENCES_TABLE + " (tablename varchar(64) NOT NULL, columnname varchar(64) NOT NULL, "
+                            + "deltype char(1) NOT NULL, CONSTRAINT pk_" + REFERENCES_TABLE + " PRIMARY KEY (tablename, columnname))");
+                }
+
+                final PreparedStatement record = conn.prepareStatement("INSERT INTO " + REFERENCES_TABLE + " (tablename, columnname, deltype) VALUES (?, ?, ?)");
+                try {
+                    for (final ForeignKey foreignKey : getReferencingForeignKeys(conn)) {
+                        LOG.info("Replacing foreign key {} on {} with reference triggers", foreignKey.name, foreignKey.reference);
+                        record.setString(1, foreignKey.reference.getTable());
+                        record.setString(2, foreignKey.reference.getColumn());
+                        record.setString(3, foreignKey.reference.getDeleteAction());
+                        record.executeUpdate();
+                        st.execute("ALTER TABLE " + foreignKey.reference.getTable() + " DROP CONSTRAINT " + foreignKey.name);
+                    }
+                } finally {
+                    record.close();
+                }
+
+                final List<Reference> references = getReferences(conn);
+                st.execute(getDeleteFunctionSql(references));
+                if (!triggerExists(conn, TABLE_NAME, DELETE_TRIGGER)) {
+                    st.execute(getDeleteTriggerSql(TABLE_NAME));
+                }
+                for (final Reference reference : references) {
+                    st.execute(getReferenceFunctionSql(reference));
+                    if (!triggerExists(conn, reference.getTable(), getReferenceTriggerName(reference))) {
+                        st.execute("CREATE TRIGGER " + getReferenceTriggerName(reference) + " BEFORE INSERT OR UPDATE ON " + reference.getTable()
+                                + " FOR EACH ROW EXECUTE PROCEDURE " + getReferenceFunctionName(reference) + "()");
+                    }
+                }
+            } finally {
+                st.close();
+            }
+            conn.commit();
+        } catch (final SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.close();
+        }
+
+        createPartitions(ahead);
+    }
+
+    /**
+     * Makes sure partitions exist from the current interval through
+     * <code>ahead</code> intervals into the future, and that the insert
+     * trigger knows about all of them.
+     *
+     * @param ahead the number of future partitions to create
+     * @return the number of partitions that were created
+     */
+    public int createPartitions(final int ahead) throws SQLException {
+        return createPartitions(new Date(), ahead);
+    }
+
+    /**
+     * Makes sure partitions exist from the interval containing
+     * <code>from</code> through <code>ahead</code> intervals after it, and
+     * that the insert trigger knows about all of them.
+     *
+     * <p>If the newest existing partition was created with a different
+     * interval, nothing is created and an error is logged, since the new
+     * partitions would overlap the existing ones.  A partition that would
+     * overlap an existing one is never created.</p>
+     *
+     * @param from a date in the first interval to create
+     * @param ahead the number of following partitions to create
+     * @return the number of partitions that were created
+     */
+    public int createPartitions(final Date from, final int ahead) throws SQLException {
+        final Connection conn = m_dataSource.getConnection();
+        try {
+            conn.setAutoCommit(false);
+            final List<Partition> existing = getPartitions(conn);
+            if (!existing.isEmpty()) {
+                final Partition newest = existing.get(existing.size() - 1);
+                final Interval interval = Interval.fromPartition(newest);
+                if (interval != m_interval) {
+                    LOG.error("Not creating {} event partitions: the newest partition {} does not have that interval. Configure the same interval as the existing partitions.",
+                              m_interval.name().toLowerCase(Locale.ROOT), newest);
+                    return 0;
+                }
+            }
+            final List<String> foreignKeys = getOwnForeignKeys(conn);
+
+            int created = 0;
+            final Statement st = conn.createStatement();
+            try {
+                Date start = m_interval.getStart(from);
+                for (int i = 0; i <= ahead; i++) {
+                    final Date end = m_interval.getNext(start);
+                    final String name = getPartitionName(start, end);
+                    final Partition overlapping = getOverlapping(existing, start, end);
+                    if (overlapping != null) {
+                        if (!overlapping.getName().equals(name)) {
+                            LOG.warn("Not creating event partition {}, it would overlap the existing partition {}", name, overlapping);
+                        }
+                    } else {
+                        LOG.info("Creating event partition {}", name);
+                        st.execute("CREATE TABLE " + name + " (LIKE " + TABLE_NAME + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS INCLUDING INDEXES, "
+                                + "CHECK (eventtime >= " + toTimestamp(start) + " AND eventtime < " + toTimestamp(end) + ")) INHERITS (" + TABLE_NAME + ")");
+                        for (final String foreignKey : foreignKeys) {
+                            st.execute("ALTER TABLE " + name + " ADD " + foreignKey);
+                        }
+                        st.execute(getDeleteTriggerSql(name));
+                        created++;
+                    }
+                    start = end;
+                }
+                if (created > 0 || !triggerExists(conn, TABLE_NAME, INSERT_TRIGGER)) {
+                    updateInsertTrigger(conn, st, Collections.<String>emptyList());
+                }
+            } finally {
+                st.close();
+            }
+            conn.commit();
+            return created;
+        } catch (final SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Drops every partition whose time range ends at or before the cutoff.
+     * Events that are still referenced by other tables are first moved into
+     * the parent table so that no outage, notification or alarm loses its
+     * event.
+     *
+     * @param cutoff events older than this may be removed
+     * @return the number of partitions that were dropped
+     */
+    public int dropPartitionsBefore(final Date cutoff) throws SQLException {
+        final Connection conn = m_dataSource.getConnection();
+        try {
+            conn.setAutoCommit(false);
+            final List<String> expired = new ArrayList<String>();
+            for (final Partition partition : getPartitions(conn)) {
+                if (!partition.getEnd().after(cutoff)) {
+                    expired.add(partition.getName());
+                }
+            }
+            if (expired.isEmpty()) {
+                return 0;
+            }
+
+            final List<Reference> references = getReferences(conn);
+            final Statement st = conn.createStatement();
+            try {
+                // stop routing into the expired partitions so that moved rows stay in the parent
+                updateInsertTrigger(conn, st, expired);
+                for (final String name : expired) {
+                    if (!references.isEmpty()) {
+                        final int moved = st.executeUpdate("INSERT INTO " + TABLE_NAME + " SELECT * FROM " + name + " WHERE " + getReferencedCondition(references, name));
+                        LOG.debug("Moved {} referenced events out of partition {}", moved, name);
+                    }
+                    LOG.info("Dropping event partition {}", name);
+                    st.execute("DROP TABLE " + name);
+                }
+            } finally {
+                st.close();
+            }
+            conn.commit();
+            return expired.size();
+        } catch (final SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Returns the existing partitions, oldest first.
+     */
+    public List<Partition> getPartitions() throws SQLException {
+        final Connection conn = m_dataSource.getConnection();
+        try {
+            return getPartitions(conn);
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Returns the foreign keys to <code>events</code> that the migration
+     * replaced with triggers, or an empty list if the table has not been
+     * migrated.
+     */
+    public List<Reference> getReferences() throws SQLException {
+        final Connection conn = m_dataSource.getConnection();
+        try {
+            return getReferences(conn);
+        } finally {
+            conn.close();
+        }
+    }
+
+    static String getPartitionName(final Date start, final Date end) {
+        final SimpleDateFormat format = getFormat("yyyyMMdd");
+        return PARTITION_PREFIX + format.format(start) + "_" + format.format(end);
+    }
+
+    private static Partition getOverlapping(final List<Partition> partitions, final Date start, final Date end) {
+        for (final Partition partition : partitions) {
+            if (partition.getStart().before(end) && start.before(partition.getEnd())) {
+                return partition;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPartitioned(final Connection conn) throws SQLException {
+        return triggerExists(conn, TABLE_NAME, INSERT_TRIGGER);
+    }
+
+    private static List<Partition> getPartitions(final Connection conn) throws SQLException {
+        final List<Partition> partitions = new ArrayList<Partition>();
+        final PreparedStatement ps = conn.prepareStatement("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ?");
+        try {
+            ps.setString(1, TABLE_NAME);
+            final ResultSet rs = ps.executeQuery();
+            final SimpleDateFormat format = getFormat("yyyyMMdd");
+            while (rs.next()) {
+                final String name = rs.getString(1);
+                final Matcher m = PARTITION_PATTERN.matcher(name);
+                if (!m.matches()) {
+                    continue;
+                }
+                try {
+                    partitions.add(new Partition(name, format.parse(m.group(1)), format.parse(m.group(2))));
+                } catch (final ParseException e) {
+                    LOG.warn("Ignoring table {} with an unparseable partition name", name, e);
+                }
+            }
+            rs.close();
+        } finally {
+            ps.close();
+        }
+        Collections.sort(partitions, new Comparator<Partition>() {
+            @Override
+            public int compare(final Partition a, final Partition b) {
+                return a.getStart().compareTo(b.getStart());
+            }
+        });
+        return partitions;
+    }
+
+    /**
+     * Regenerates the insert routing function as a chain of range checks,
+     * newest partition first since that is where nearly all inserts go.
+     */
+    private static void updateInsertTrigger(final Connection conn, final Statement st, final List<String> excluded) throws SQLException {
+        final List<Partition> partitions = getPartitions(conn);
+        Collections.reverse(partitions);
+
+        final StringBuilder sql = new StringBuilder();
+        sql.append("CREATE OR REPLACE FUNCTION ").append(INSERT_FUNCTION).append("() RETURNS trigger AS $$\n");
+        sql.append("BEGIN\n");
+        boolean first = true;
+        for (final Partition partition : partitions) {
+            if (excluded.contains(partition.getName())) {
+                continue;
+            }
+            sql.append(first ? "  IF " : "  ELSIF ");
+            sql.append("NEW.eventtime >= ").append(toTimestamp(partition.getStart()));
+            sql.append(" AND NEW.eventtime < ").append(toTimestamp(partition.getEnd())).append(" THEN\n");
+            sql.append("    INSERT INTO ").append(partition.getName()).append(" VALUES (NEW.*);\n");
+            first = false;
+        }
+        if (first) {
+            sql.append("  RETURN NEW;\n");
+        } else {
+            sql.append("  ELSE\n");
+            sql.append("    RETURN NEW;\n");
+            sql.append("  END IF;\n");
+            sql.append("  RETURN NULL;\n");
+        }
+        sql.append("END;\n");
+        sql.append("$$ LANGUAGE plpgsql");
+        st.execute(sql.toString());
+
+        if (!triggerExists(conn, TABLE_NAME, INSERT_TRIGGER)) {
+            st.execute("CREATE TRIGGER " + INSERT_TRIGGER + " BEFORE INSERT ON " + TABLE_NAME + " FOR EACH ROW EXECUTE PROCEDURE " + INSERT_FUNCTION + "()");
+        }
+    }
+
+    /**
+     * Builds the delete function that performs the ON DELETE action of
+     * every replaced foreign key.
+     */
+    private static String getDeleteFunctionSql(final List<Reference> references) {
+        final StringBuilder sql = new StringBuilder();
+        sql.append("CREATE OR REPLACE FUNCTION ").append(DELETE_FUNCTION).append("() RETURNS trigger AS $$\n");
+        sql.append("BEGIN\n");
+        for (final Reference reference : references) {
+            final String table = reference.getTable();
+            final String column = reference.getColumn();
+            if ("c".equals(reference.getDeleteAction())) {
+                sql.append("  DELETE FROM ").append(table).append(" WHERE ").append(column).append(" = OLD.eventid;\n");
+            } else if ("n".equals(reference.getDeleteAction())) {
+                sql.append("  UPDATE ").append(table).append(" SET ").append(column).append(" = NULL WHERE ").append(column).append(" = OLD.eventid;\n");
+            } else if ("d".equals(reference.getDeleteAction())) {
+                sql.append("  UPDATE ").append(table).append(" SET ").append(column).append(" = DEFAULT WHERE ").append(column).append(" = OLD.eventid;\n");
+            } else {
+                sql.append("  IF EXISTS (SELECT 1 FROM ").append(table).append(" WHERE ").append(column).append(" = OLD.eventid) THEN\n");
+                sql.append("    RAISE EXCEPTION 'event % is still referenced from table \"").append(table).append("\"', OLD.eventid USING ERRCODE = 'foreign_key_violation';\n");
+                sql.append("  END IF;\n");
+            }
+        }
+        sql.append("  RETURN OLD;\n");
+        sql.append("END;\n");
+        sql.append("$$ LANGUAGE plpgsql");
+        return sql.toString();
+    }
+
+    private static String getDeleteTriggerSql(final String table) {
+        return "CREATE TRIGGER " + DELETE_TRIGGER + " AFTER DELETE ON " + table + " FOR EACH ROW EXECUTE PROCEDURE " + DELETE_FUNCTION + "()";
+    }
+
+    /**
+     * Builds the function that checks, like the replaced foreign key did,
+     * that a referencing column only ever points at an existing event.  The
+     * event row is locked in share mode for the rest of the transaction so
+     * that it cannot be deleted concurrently.
+     */
+    private static String getReferenceFunctionSql(final Reference reference) {
+        final String column = reference.getColumn();
+        final StringBuilder sql = new StringBuilder();
+        sql.append("CREATE OR REPLACE FUNCTION ").append(getReferenceFunctionName(reference)).append("() RETURNS trigger AS $$\n");
+        sql.append("BEGIN\n");
+        sql.append("  IF NEW.").append(column).append(" IS NULL THEN\n");
+        sql.append("    RETURN NEW;\n");
+        sql.append("  END IF;\n");
+        sql.append("  IF TG_OP = 'UPDATE' THEN\n");
+        sql.append("    IF NEW.").append(column).append(" = OLD.").append(column).append(" THEN\n");
+        sql.append("      RETURN NEW;\n");
+        sql.append("    END IF;\n");
+        sql.append("  END IF;\n");
+        sql.append("  PERFORM 1 FROM ").append(TABLE_NAME).append(" WHERE eventid = NEW.").append(column).append(" FOR SHARE;\n");
+        sql.append("  IF NOT FOUND THEN\n");
+        sql.append("    RAISE EXCEPTION 'insert or update on table \"").append(reference.getTable()).append("\" violates the reference from ")
+            .append(column).append(" to events: event % does not exist', NEW.").append(column).append(" USING ERRCODE = 'foreign_key_violation';\n");
+        sql.append("  END IF;\n");
+        sql.append("  RETURN NEW;\n");
+        sql.append("END;\n");
+        sql.append("$$ LANGUAGE plpgsql");
+        return sql.toString();
+    }
+
+    private static String getReferenceFunctionName(final Reference reference) {
+        return REFERENCE_PREFIX + reference.getTable() + "_" + reference.getColumn();
+    }
+
+    private static String getReferenceTriggerName(final Reference reference) {
+        return REFERENCE_PREFIX + reference.getColumn() + "_trigger";
+    }
+
+    /**
+     * Returns a condition that matches the events in a partition that are
+     * still referenced by other tables.
+     */
+    private static String getReferencedCondition(final List<Reference> references, final String partition) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Reference reference : references) {
+            if (sb.length() > 0) sb.append(" OR ");
+            sb.append("EXISTS (SELECT 1 FROM ").append(reference.getTable()).append(" WHERE ").append(reference.getTable()).append(".")
+                .append(reference.getColumn()).append(" = ").append(partition).append(".eventid)");
+        }
+        return sb.toString();
+    }
+
+    private static List<Reference> getReferences(final Connection conn) throws SQLException {
+        final List<Reference> references = new ArrayList<Reference>();
+        if (!tableExists(conn, REFERENCES_TABLE)) {
+            return references;
+        }
+        final Statement st = conn.createStatement();
+        try {
+            final ResultSet rs = st.executeQuery("SELECT tablename, columnname, deltype FROM " + REFERENCES_TABLE + " ORDER BY tablename, columnname");
+            while (rs.next()) {
+                references.add(new Reference(rs.getString(1), rs.getString(2), rs.getString(3)));
+            }
+            rs.close();
+        } finally {
+            st.close();
+        }
+        return references;
+    }
+
+    private static final class ForeignKey {
+        private final String name;
+        private final Reference reference;
+
+        private ForeignKey(final String name, final Reference reference) {
+            this.name = name;
+            this.reference = reference;
+        }
+    }
+
+    /**
+     * Returns the foreign keys on other tables that still reference the
+     * events table.
+     */
+    private static List<ForeignKey> getReferencingForeignKeys(final Connection conn) throws SQLException {
+        final List<ForeignKey> foreignKeys = new ArrayList<ForeignKey>();
+        final PreparedStatement ps = conn.prepareStatement("SELECT c.conname, r.relname AS reftable, a.attname AS refcolumn, c.confdeltype AS deltype "
+                + "FROM pg_constraint c JOIN pg_class r ON r.oid = c.conrelid JOIN pg_class e ON e.oid = c.confrelid "
+                + "JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1] "
+                + "WHERE c.contype = 'f' AND e.relname = ? AND r.relname NOT LIKE ?");
+        try {
+            ps.setString(1, TABLE_NAME);
+            ps.setString(2, PARTITION_PREFIX + "%");
+            final ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                foreignKeys.add(new ForeignKey(rs.getString("conname"), new Reference(rs.getString("reftable"), rs.getString("refcolumn"), rs.getString("deltype"))));
+            }
+            rs.close();
+        } finally {
+            ps.close();
+        }
+        return foreignKeys;
+    }
+
+    /**
+     * Returns the definitions of the foreign keys declared on the events
+     * table itself (to node and service), which have to be repeated on
+     * every partition since they are not inherited.
+     */
+    private static List<String> getOwnForeignKeys(final Connection conn) throws SQLException {
+        final List<String> foreignKeys = new ArrayList<String>();
+        final PreparedStatement ps = conn.prepareStatement("SELECT pg_get_constraintdef(c.oid) FROM pg_constraint c JOIN pg_class t ON t.oid = c.conrelid "
+                + "WHERE c.contype = 'f' AND t.relname = ?");
+        try {
+            ps.setString(1, TABLE_NAME);
+            final ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                foreignKeys.add(rs.getString(1));
+            }
+            rs.close();
+        } finally {
+            ps.close();
+        }
+        return foreignKeys;
+    }
+
+    private static boolean triggerExists(final Connection conn, final String table, final String trigger) throws SQLException {
+        final PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM pg_trigger t JOIN pg_class c ON c.oid = t.tgrelid WHERE t.tgname = ? AND c.relname = ?");
+        try {
+            ps.setString(1, trigger);
+            ps.setString(2, table);
+            final ResultSet rs = ps.executeQuery();
+            final boolean exists = rs.next();
+            rs.close();
+            return exists;
+        } finally {
+            ps.close();
+        }
+    }
+
+    private static boolean tableExists(final Connection conn, final String table) throws SQLException {
+        final PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM pg_class WHERE relname = ? AND relkind = 'r'");
+        try {
+            ps.setString(1, table);
+            final ResultSet rs = ps.executeQuery();
+            final boolean exists = rs.next();
+            rs.close();
+            return exists;
+        } finally {
+            ps.close();
+        }
+    }
+
+    private static String toTimestamp(final Date date) {
+        return "'" + getFormat("yyyy-MM-dd HH:mm:ss").format(date) + "+00'::timestamptz";
+    }
+
+    private static SimpleDateFormat getFormat(final String pattern) {
+        final SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+
+    private static Calendar getCalendar(final Date date) {
+        final Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+        cal.setTime(date);
+        return cal;
+    }
+}
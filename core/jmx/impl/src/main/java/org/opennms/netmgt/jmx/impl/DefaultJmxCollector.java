@@ -58,8 +58,9 @@ import org.opennms.netmgt.jmx.JmxCollectorConfig;
 import org.opennms.netmgt.jmx.JmxSampleProcessor;
 import org.opennms.netmgt.jmx.connection.JmxConnectionManager;
 import org.opennms.netmgt.jmx.connection.JmxServerConnectionException;
-import org.opennms.netmgt.jmx.connection.JmxServerConnectionWrapper;
 import org.opennms.netmgt.jmx.impl.connection.connectors.DefaultConnectionManager;
+import org.opennms.netmgt.jmx.impl.connection.connectors.JmxConnectionPool;
+import org.opennms.netmgt.jmx.impl.connection.connectors.PooledConnectionWrapper;
 import org.opennms.netmgt.jmx.samples.JmxAttributeSample;
 import org.opennms.netmgt.jmx.samples.JmxCompositeSample;
 import org.slf4j.Logger;
@@ -68,6 +69,9 @@ import org.slf4j.LoggerFactory;
 /**
  * A implementation of the JmxCollector.
  * It iterates over all configured MBeans, collects either attributes or composite members and creates a sample accordingly.
+ * <p/>
+ * Connections are taken from a {@link JmxConnectionPool} and wildcard MBean names are resolved through an
+ * {@link ObjectNameCache}, so an instance should be kept for subsequent collections.
  *
  * @see org.opennms.netmgt.jmx.JmxCollector
  */
@@ -75,36 +79,73 @@ public class DefaultJmxCollector implements JmxCollector {
 
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
+    private final JmxConnectionPool connectionPool;
+
+    private final ObjectNameCache objectNameCache;
+
+    public DefaultJmxCollector() {
+        this(JmxConnectionPool.getInstance(), new ObjectNameCache(ObjectNameCache.DEFAULT_REFRESH_INTERVAL));
+    }
+
+    /**
+     * @param connectionPool  The pool to obtain connections from.
+     * @param objectNameCache The cache for resolved wildcard MBean names.
+     */
+    public DefaultJmxCollector(JmxConnectionPool connectionPool, ObjectNameCache objectNameCache) {
+        this.connectionPool = Objects.requireNonNull(connectionPool);
+        this.objectNameCache = Objects.requireNonNull(objectNameCache);
+    }
+
     @Override
     public void collect(JmxCollectorConfig config, JmxSampleProcessor sampleProcessor) throws JmxServerConnectionException {
         JmxConnectionManager connectionManager = new DefaultConnectionManager(config.getRetries());
-        try (JmxServerConnectionWrapper connectionWrapper = connectionManager.connect(config.getConnectionName(), config.getAgentAddress(), config.getServiceProperties(), null)) {
+        String agentKey = JmxConnectionPool.getKey(config.getConnectionName(), config.getAgentAddress(), config.getServiceProperties());
+        try (PooledConnectionWrapper connectionWrapper = connectionPool.getConnection(connectionManager, config.getConnectionName(), config.getAgentAddress(), config.getServiceProperties())) {
             Objects.requireNonNull(connectionWrapper, "connectionWrapper should never be null");
             Objects.requireNonNull(connectionWrapper.getMBeanServerConnection(), "connectionWrapper.getMBeanServerConnection() should never be null");
 
             final MBeanServerConnection concreteConnection = connectionWrapper.getMBeanServerConnection();
-            collect(concreteConnection, config.getJmxCollection(), sampleProcessor);
+            if (!collect(concreteConnection, agentKey, config.getJmxCollection(), sampleProcessor)) {
+                // do not reuse a broken connection or names resolved through it
+                connectionWrapper.invalidate();
+                objectNameCache.invalidate(agentKey);
+            }
         }
     }
 
-    private void collect(MBeanServerConnection concreteConnection, JmxCollection jmxCollection, JmxSampleProcessor sampleProcessor) {
+    /**
+     * Collects all MBeans of the given collection.
+     *
+     * @return false if the communication with the MBeanServer failed, otherwise true.
+     */
+    private boolean collect(MBeanServerConnection concreteConnection, String agentKey, JmxCollection jmxCollection, JmxSampleProcessor sampleProcessor) {
         if (jmxCollection == null || jmxCollection.getMbeanCount() < 1) {
             logger.info("No MBeans to collect.");
-            return;
+            return true;
         }
 
         try {
             for (Mbean eachMbean : jmxCollection.getMbeans()) {
-                logger.debug("Collecting MBean (objectname={}, wildcard={})", eachMbean.getObjectname(), isWildcard(eachMbean.getObjectname()));
+                final boolean wildcard = isWildcard(eachMbean.getObjectname());
+                logger.debug("Collecting MBean (objectname={}, wildcard={})", eachMbean.getObjectname(), wildcard);
 
-                final Collection<ObjectName> objectNames = getObjectNames(concreteConnection, eachMbean.getObjectname());
+                final Collection<ObjectName> objectNames = getObjectNames(concreteConnection, agentKey, eachMbean.getObjectname());
                 for (ObjectName eachObjectName : objectNames) {
                     logger.debug("Collecting ObjectName {}", eachObjectName);
 
-                    boolean collect = canBeCollected(concreteConnection, eachObjectName, eachMbean.getKeyfield(), eachMbean.getExclude());
+                    // names resolved from a wildcard were registered when they were queried
+                    boolean collect = wildcard ? !isExcluded(eachObjectName, eachMbean.getKeyfield(), eachMbean.getExclude())
+                            : canBeCollected(concreteConnection, eachObjectName, eachMbean.getKeyfield(), eachMbean.getExclude());
                     if (collect) {
                         List<String> attributeNames = extractAttributeNames(eachMbean);
-                        List<Attribute> attributes = getAttributes(concreteConnection, eachObjectName, attributeNames);
+                        List<Attribute> attributes;
+                        try {
+                            attributes = getAttributes(concreteConnection, eachObjectName, attributeNames);
+                        } catch (InstanceNotFoundException e) {
+                            logger.debug("ObjectName {} is no longer registered.", eachObjectName);
+                            objectNameCache.invalidate(agentKey, eachMbean.getObjectname());
+                            continue;
+                        }
 
                         for (Attribute eachAttribute : attributes) {
                             if (eachAttribute.getValue() instanceof CompositeData) {
@@ -129,7 +170,9 @@ public class DefaultJmxCollector implements JmxCollector {
             logger.error("Could not collect data", e);
         } catch (IOException e) {
             logger.error("Could not communicate with MBeanServer", e);
+            return false;
         }
+        return true;
     }
 
     /**
@@ -251,6 +294,7 @@ public class DefaultJmxCollector implements JmxCollector {
 
     /**
      * Returns an unmodifiable set of <code>ObjectName</code>s according to the given <code>objectName</code>.
+     * Wildcards are resolved through the {@link ObjectNameCache} and only queried if not cached.
      *
      * @param objectName The objectName to query the server with. May contain wildcards.
      *                   See {@link javax.management.MBeanServer#queryMBeans(javax.management.ObjectName, javax.management.QueryExp)} for details.
@@ -258,18 +302,20 @@ public class DefaultJmxCollector implements JmxCollector {
      * @throws MalformedObjectNameException
      * @throws IOException
      */
-    private Set<ObjectName> getObjectNames(MBeanServerConnection mbeanServer, String objectName) throws MalformedObjectNameException, IOException {
-        Set<ObjectName> objectNames = new HashSet<>();
-
+    private Set<ObjectName> getObjectNames(MBeanServerConnection mbeanServer, String agentKey, String objectName) throws MalformedObjectNameException, IOException {
         // if we have a wildcard in the object Name, we have to query the server for
         // all object names matching that expression
         if (isWildcard(objectName)) {
-            Set<ObjectName> retrievedObjectNames = mbeanServer.queryNames(new ObjectName(objectName), null);
-            objectNames.addAll(retrievedObjectNames);
+            Set<ObjectName> cachedObjectNames = objectNameCache.get(agentKey, objectName);
+            if (cachedObjectNames != null) {
+                return cachedObjectNames;
+            }
+            Set<ObjectName> retrievedObjectNames = new HashSet<>(mbeanServer.queryNames(new ObjectName(objectName), null));
+            objectNameCache.put(agentKey, objectName, retrievedObjectNames);
+            return Collections.unmodifiableSet(retrievedObjectNames);
         } else {
             // we do not have a wildcard
-            objectNames.add(new ObjectName(objectName));
+            return Collections.singleton(new ObjectName(objectName));
         }
-        return Collections.unmodifiableSet(objectNames);
     }
 }
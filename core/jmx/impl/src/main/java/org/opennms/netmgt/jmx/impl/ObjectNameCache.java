@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.jmx.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.ObjectName;
+
+/**
+ * Caches the <code>ObjectName</code>s a wildcard MBean name resolved to, per agent.
+ * <p/>
+ * Resolving a wildcard requires a <code>queryNames()</code> call against the MBean server, which
+ * is comparatively expensive and whose result rarely changes. Entries are therefore kept for
+ * a refresh interval which is usually longer than the collection interval.
+ */
+public class ObjectNameCache {
+
+    public static final long DEFAULT_REFRESH_INTERVAL = Long.getLong("org.opennms.netmgt.jmx.objectNameRefreshInterval", 30 * 60 * 1000L);
+
+    private static class Resolved {
+        private final Set<ObjectName> objectNames;
+        private final long timestamp;
+
+        private Resolved(Set<ObjectName> objectNames, long timestamp) {
+            this.objectNames = objectNames;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Map<String, Resolved>> cache = new ConcurrentHashMap<>();
+
+    private final long refreshInterval;
+
+    /**
+     * @param refreshInterval Time in milliseconds after which a wildcard is resolved again. If <= 0, nothing is cached.
+     */
+    public ObjectNameCache(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Returns the resolved <code>ObjectName</code>s for the given agent and wildcard, or null if
+     * they are not cached or have to be refreshed.
+     */
+    public Set<ObjectName> get(String agentKey, String objectName) {
+        final Map<String, Resolved> agentCache = cache.get(agentKey);
+        if (agentCache == null) {
+            return null;
+        }
+        final Resolved resolved = agentCache.get(objectName);
+        if (resolved == null || System.currentTimeMillis() - resolved.timestamp >= refreshInterval) {
+            return null;
+        }
+        return resolved.objectNames;
+    }
+
+    /**
+     * Remembers the <code>ObjectName</code>s the given wildcard resolved to for the given agent.
+     */
+    public void put(String agentKey, String objectName, Set<ObjectName> objectNames) {
+        if (refreshInterval <= 0) {
+            return;
+        }
+        Map<String, Resolved> agentCache = cache.get(agentKey);
+        if (agentCache == null) {
+            agentCache = new ConcurrentHashMap<>();
+            final Map<String, Resolved> existing = cache.putIfAbsent(agentKey, agentCache);
+            if (existing != null) {
+                agentCache = existing;
+            }
+        }
+        agentCache.put(objectName, new Resolved(Collections.unmodifiableSet(objectNames), System.currentTimeMillis()));
+    }
+
+    /**
+     * Drops a single wildcard of the given agent, e.g. because one of its MBeans was unregistered.
+     */
+    public void invalidate(String agentKey, String objectName) {
+        final Map<String, Resolved> agentCache = cache.get(agentKey);
+        if (agentCache != null) {
+            agentCache.remove(objectName);
+        }
+    }
+
+    /**
+     * Drops all wildcards of the given agent, e.g. because the connection to it failed.
+     */
+    public void invalidate(String agentKey) {
+        cache.remove(agentKey);
+    }
+}
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.jmx.impl.connection.connectors;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.opennms.netmgt.jmx.connection.JmxConnectionManager;
+import org.opennms.netmgt.jmx.connection.JmxServerConnectionException;
+import org.opennms.netmgt.jmx.connection.JmxServerConnectionWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps established JMX connections open between collections.
+ * <p/>
+ * Connections are keyed by connection name, agent address and connection properties.
+ * A pooled connection may be used by several threads at once, as {@link javax.management.MBeanServerConnection}
+ * is thread-safe. Connections which were idle for longer than the validation interval are
+ * health checked before they are handed out again, connections which were idle for longer
+ * than the maximum idle time are closed.
+ */
+public class JmxConnectionPool implements JmxConnectionPoolMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JmxConnectionPool.class);
+
+    public static final long DEFAULT_MAX_IDLE_TIME = Long.getLong("org.opennms.netmgt.jmx.pool.maxIdleTime", 15 * 60 * 1000L);
+
+    public static final long DEFAULT_VALIDATION_INTERVAL = Long.getLong("org.opennms.netmgt.jmx.pool.validationInterval", 30 * 1000L);
+
+    private static final long EVICTION_INTERVAL = 10 * 1000L;
+
+    private static final JmxConnectionPool INSTANCE = createInstance();
+
+    /**
+     * A pooled connection and its usage state. All fields besides
+     * {@link #lastValidated} are guarded by the pool's entry map.
+     */
+    static class Entry {
+        private final String key;
+        private final JmxServerConnectionWrapper connectionWrapper;
+        private int borrowers = 0;
+        private long lastUsed = System.currentTimeMillis();
+        private volatile long lastValidated = System.currentTimeMillis();
+        private boolean invalid = false;
+
+        private Entry(String key, JmxServerConnectionWrapper connectionWrapper) {
+            this.key = key;
+            this.connectionWrapper = connectionWrapper;
+        }
+
+        JmxServerConnectionWrapper getConnectionWrapper() {
+            return connectionWrapper;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private final long maxIdleTime;
+
+    private final long validationInterval;
+
+    private long lastEviction = System.currentTimeMillis();
+
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsReused = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong connectionsInvalidated = new AtomicLong();
+    private final AtomicLong connectionsEvicted = new AtomicLong();
+
+    /**
+     * @param maxIdleTime        Time in milliseconds after which an unused connection is closed. If <= 0, connections are closed as soon as they are released.
+     * @param validationInterval Time in milliseconds after which an unused connection is checked before it is handed out again.
+     */
+    public JmxConnectionPool(long maxIdleTime, long validationInterval) {
+        this.maxIdleTime = maxIdleTime;
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * @return the pool shared by all JMX collections of this JVM.
+     */
+    public static JmxConnectionPool getInstance() {
+        return INSTANCE;
+    }
+
+    private static JmxConnectionPool createInstance() {
+        final JmxConnectionPool pool = new JmxConnectionPool(DEFAULT_MAX_IDLE_TIME, DEFAULT_VALIDATION_INTERVAL);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(pool, new ObjectName("OpenNMS:Name=JmxConnectionPool"));
+        } catch (JMException e) {
+            LOG.warn("Could not register JMX connection pool statistics", e);
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the key identifying connections with the same target and properties.
+     */
+    public static String getKey(String connectionName, String ipAddress, Map<String, String> properties) {
+        final StringBuilder key = new StringBuilder();
+        key.append(connectionName).append('|').append(ipAddress).append('|');
+        if (properties != null) {
+            key.append(new TreeMap<>(properties));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns a pooled connection or establishes a new one using the given <code>connectionManager</code>.
+     * The returned wrapper must be closed after use, which hands the connection back to the pool.
+     *
+     * @throws JmxServerConnectionException if no pooled connection is available and a new one could not be established.
+     */
+    public PooledConnectionWrapper getConnection(JmxConnectionManager connectionManager, String connectionName, String ipAddress, Map<String, String> properties) throws JmxServerConnectionException {
+        final String key = getKey(connectionName, ipAddress, properties);
+
+        evictIdleConnections(false);
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null) {
+                entry.borrowers++;
+            }
+        }
+
+        if (entry != null) {
+            if (isValid(entry)) {
+                connectionsReused.incrementAndGet();
+                return new PooledConnectionWrapper(this, entry);
+            }
+            LOG.debug("Pooled connection {} to {} failed the health check, reconnecting", connectionName, ipAddress);
+            validationFailures.incrementAndGet();
+            markInvalid(entry);
+            release(entry);
+        }
+
+        final JmxServerConnectionWrapper connectionWrapper;
+        try {
+            connectionWrapper = connectionManager.connect(connectionName, ipAddress, properties, null);
+        } catch (JmxServerConnectionException e) {
+            connectFailures.incrementAndGet();
+            throw e;
+        }
+        connectionsCreated.incrementAndGet();
+
+        entry = new Entry(key, connectionWrapper);
+        entry.borrowers = 1;
+
+        Entry replaced;
+        synchronized (entries) {
+            replaced = entries.put(key, entry);
+            if (replaced != null) {
+                // another thread connected concurrently, its connection is closed once released
+                replaced.invalid = true;
+                if (replaced.borrowers > 0) {
+                    replaced = null;
+                }
+            }
+        }
+        if (replaced != null) {
+            replaced.connectionWrapper.close();
+        }
+
+        return new PooledConnectionWrapper(this, entry);
+    }
+
+    /**
+     * Closes all connections which are currently not in use.
+     */
+    public void clear() {
+        evictIdleConnections(true);
+    }
+
+    void release(Entry entry) {
+        boolean close;
+        synchronized (entries) {
+            entry.borrowers--;
+            entry.lastUsed = System.currentTimeMillis();
+            close = entry.borrowers == 0 && (entry.invalid || maxIdleTime <= 0);
+            if (close && entries.get(entry.key) == entry) {
+                entries.remove(entry.key);
+            }
+        }
+        if (close) {
+            entry.connectionWrapper.close();
+        }
+    }
+
+    void invalidate(Entry entry) {
+        if (markInvalid(entry)) {
+            connectionsInvalidated.incrementAndGet();
+        }
+    }
+
+    private boolean markInvalid(Entry entry) {
+        synchronized (entries) {
+            if (entry.invalid) {
+                return false;
+            }
+            entry.invalid = true;
+            if (entries.get(entry.key) == entry) {
+                entries.remove(entry.key);
+            }
+            return true;
+        }
+    }
+
+    private boolean isValid(Entry entry) {
+        final long now = System.currentTimeMillis();
+        if (now - entry.lastValidated < validationInterval) {
+            return true;
+        }
+        try {
+            entry.connectionWrapper.getMBeanServerConnection().getMBeanCount();
+            entry.lastValidated = now;
+            return true;
+        } catch (Exception e) {
+            LOG.debug("Health check of pooled connection failed", e);
+            return false;
+        }
+    }
+
+    private void evictIdleConnections(boolean all) {
+        final List<Entry> evicted = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        synchronized (entries) {
+            if (!all && now - lastEviction < EVICTION_INTERVAL) {
+                return;
+            }
+            lastEviction = now;
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                final Entry entry = it.next();
+                if (entry.borrowers == 0 && (all || now - entry.lastUsed > maxIdleTime)) {
+                    it.remove();
+                    evicted.add(entry);
+                }
+            }
+        }
+        for (Entry entry : evicted) {
+            connectionsEvicted.incrementAndGet();
+            entry.connectionWrapper.close();
+        }
+    }
+
+    @Override
+    public int getPooledConnections() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+
+    @Override
+    public long getConnectionsReused() {
+        return connectionsReused.get();
+    }
+
+    @Override
+    public long getConnectFailures() {
+        return connectFailures.get();
+    }
+
+    @Override
+    public long getValidationFailures() {
+        return validationFailures.get();
+    }
+
+    @Override
+    public long getConnectionsInvalidated() {
+        return connectionsInvalidated.get();
+    }
+
+    @Override
+    public long getConnectionsEvicted() {
+        return connectionsEvicted.get();
+    }
+}
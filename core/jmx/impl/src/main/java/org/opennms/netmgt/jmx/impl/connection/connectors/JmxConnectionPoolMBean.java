@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.jmx.impl.connection.connectors;
+
+/**
+ * Statistics of the {@link JmxConnectionPool}.
+ */
+public interface JmxConnectionPoolMBean {
+
+    /**
+     * @return the number of connections currently held by the pool.
+     */
+    int getPooledConnections();
+
+    /**
+     * @return the number of connections established by the pool.
+     */
+    long getConnectionsCreated();
+
+    /**
+     * @return the number of times an already established connection was handed out.
+     */
+    long getConnectionsReused();
+
+    /**
+     * @return the number of failed attempts to establish a connection.
+     */
+    long getConnectFailures();
+
+    /**
+     * @return the number of pooled connections which failed the health check.
+     */
+    long getValidationFailures();
+
+    /**
+     * @return the number of pooled connections discarded after a communication error.
+     */
+    long getConnectionsInvalidated();
+
+    /**
+     * @return the number of pooled connections closed after being idle for too long.
+     */
+    long getConnectionsEvicted();
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.jmx.impl.connection.connectors;
+
+import javax.management.MBeanServerConnection;
+
+import org.opennms.netmgt.jmx.connection.JmxServerConnectionWrapper;
+
+/**
+ * A {@link JmxServerConnectionWrapper} handed out by the {@link JmxConnectionPool}.
+ * <p/>
+ * Closing the wrapper hands the connection back to the pool instead of closing it.
+ * If the connection turned out to be broken, {@link #invalidate()} should be called
+ * before closing, so the pool establishes a new connection next time.
+ */
+public class PooledConnectionWrapper implements JmxServerConnectionWrapper {
+
+    private final JmxConnectionPool pool;
+    private final JmxConnectionPool.Entry entry;
+    private boolean closed = false;
+
+    PooledConnectionWrapper(JmxConnectionPool pool, JmxConnectionPool.Entry entry) {
+        this.pool = pool;
+        this.entry = entry;
+    }
+
+    @Override
+    public MBeanServerConnection getMBeanServerConnection() {
+        return entry.getConnectionWrapper().getMBeanServerConnection();
+    }
+
+    /**
+     * Marks the underlying connection as broken. It is closed as soon as it is
+     * no longer in use and will not be handed out again.
+     */
+    public void invalidate() {
+        pool.invalidate(entry);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            pool.release(entry);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.jmx.impl.connection.connectors;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServerConnection;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opennms.netmgt.jmx.connection.JmxConnectionManager;
+import org.opennms.netmgt.jmx.connection.JmxServerConnectionException;
+import org.opennms.netmgt.jmx.connection.JmxServerConnectionWrapper;
+
+public class JmxConnectionPoolTest {
+
+    private static class TestConnection implements JmxServerConnectionWrapper {
+        private final MBeanServerConnection connection;
+        private boolean closed = false;
+
+        private TestConnection(MBeanServerConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public MBeanServerConnection getMBeanServerConnection() {
+            return connection;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class TestConnectionManager implements JmxConnectionManager {
+        private final List<TestConnection> connections = new ArrayList<>();
+        private MBeanServerConnection connection = ManagementFactory.getPlatformMBeanServer();
+
+        @Override
+        public JmxServerConnectionWrapper connect(String connectionName, String ipAddress, Map<String, String> connectionProperties, RetryCallback retryCallback) throws JmxServerConnectionException {
+            if (connection == null) {
+                throw new JmxServerConnectionException("unreachable");
+            }
+            TestConnection testConnection = new TestConnection(connection);
+            connections.add(testConnection);
+            return testConnection;
+        }
+    }
+
+    private static MBeanServerConnection createBrokenConnection() {
+        return (MBeanServerConnection) Proxy.newProxyInstance(JmxConnectionPoolTest.class.getClassLoader(), new Class<?>[]{MBeanServerConnection.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                throw new IOException("connection lost");
+            }
+        });
+    }
+
+    private final Map<String, String> properties = new HashMap<>();
+
+    @Test
+    public void testConnectionIsReused() throws JmxServerConnectionException {
+        JmxConnectionPool pool = new JmxConnectionPool(60000, 60000);
+        TestConnectionManager connectionManager = new TestConnectionManager();
+
+        try (PooledConnectionWrapper wrapper = pool.getConnection(connectionManager, "jsr160", "127.0.0.1", properties)) {
+            Assert.assertNotNull(wrapper.getMBeanServerConnection());
+        }
+        try (PooledConnectionWrapper wrapper = pool.getConnection(connectionManager, "jsr160", "127.0.0.1", properties)) {
+            Assert.assertNotNull(wrapper.getMBeanServerConnection());
+        }
+
+        Assert.assertEquals(1, connectionManager.connections.size());
+        Assert.assertFalse(connectionManager.connections.get(0).closed);
+        Assert.assertEquals(1, pool.getConnectionsCreated());
+        Assert.assertEquals(1, pool.getConnectionsReused());
+        Assert.assertEquals(1, pool.getPooledConnections());
+
+        // a different agent gets its own connection
+        pool.getConnection(connectionManager, "jsr160", "127.0.0.2", properties).close();
+        Assert.assertEquals(2, connectionManager.connections.size());
+
+        pool.clear();
+        Assert.assertEquals(0, pool.getPooledConnections());
+        Assert.assertTrue(connectionManager.connections.get(0).closed);
+        Assert.assertTrue(connectionManager.connections.get(1).closed);
+    }
+
+    @Test
+    public void testInvalidatedConnectionIsClosed() throws JmxServerConnectionException {
+        JmxConnectionPool pool = new JmxConnectionPool(60000, 60000);
+        TestConnectionManager connectionManager = new TestConnectionManager();
+
+        try (PooledConnectionWrapper wrapper = pool.getConnection(connectionManager, "jsr160", "127.0.0.1", properties)) {
+            wrapper.invalidate();
+            Assert.assertFalse(connectionManager.connections.get(0).closed);
+        }
+        Assert.assertTrue(connectionManager.connections.get(0).closed);
+
+        pool.getConnection(connectionManager, "jsr160", "127.0.0.1", properties).close();
+        Assert.assertEquals(2, connectionManager.connections.size());
+        Assert.assertEquals(1, pool.getConnectionsInvalidated());
+    }
+
+    @Test
+    public void testBrokenConnectionFailsHealthCheck() throws JmxServerConnectionException {
+        JmxConnectionPool pool = new JmxConnectionPool(60000, 0);
+        TestConnectionManager connectionManager = new TestConnectionManager();
+        connectionManager.connection = createBrokenConnection();
+
+        pool.getConnection(connectionManager, "jsr160", "127.0.0.1", properties).close();
+
+        connectionManager.connection = ManagementFactory.getPlatformMBeanServer();
+        pool.getConnection(connectionManager, "jsr160", "127.0.0.1", properties).close();
+
+        Assert.assertEquals(2, connectionManager.connections.size());
+        Assert.assertTrue(connectionManager.connections.get(0).closed);
+        Assert.assertEquals(1, pool.getValidationFailures());
+
+        // the healthy connection passes the check
+        pool.getConnection(connectionManager, "jsr160", "127.0.0.1", properties).close();
+        Assert.assertEquals(2, connectionManager.connections.size());
+        Assert.assertEquals(1, pool.getConnectionsReused());
+    }
+
+    @Test
+    public void testConnectFailureIsCounted() {
+        JmxConnectionPool pool = new JmxConnectionPool(60000, 60000);
+        TestConnectionManager connectionManager = new TestConnectionManager();
+        connectionManager.connection = null;
+
+        try {
+            pool.getConnection(connectionManager, "jsr160", "127.0.0.1", properties);
+            Assert.fail("JmxServerConnectionException expected");
+        } catch (JmxServerConnectionException e) {
+            // expected
+        }
+        Assert.assertEquals(1, pool.getConnectFailures());
+        Assert.assertEquals(0, pool.getPooledConnections());
+    }
+
+    @Test
+    public void testNoPoolingWithoutIdleTime() throws JmxServerConnectionException {
+        JmxConnectionPool pool = new JmxConnectionPool(0, 60000);
+        TestConnectionManager connectionManager = new TestConnectionManager();
+
+        pool.getConnection(connectionManager, "jsr160", "127.0.0.1", properties).close();
+
+        Assert.assertTrue(connectionManager.connections.get(0).closed);
+        Assert.assertEquals(0, pool.getPooledConnections());
+    }
+}
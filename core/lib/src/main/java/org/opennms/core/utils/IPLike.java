@@ -56,8 +56,16 @@ public abstract class IPLike {
         }
     }
 
+    /**
+     * Matches the address against a compiled (and cached) form of the
+     * pattern; see {@link IPLikePattern}.
+     *
+     * @param address the address to match
+     * @param pattern the IPLIKE expression
+     * @return true if the address matches the expression
+     */
     public static boolean matches(final InetAddress address, final String pattern) {
-    	return matches(InetAddressUtils.str(address), pattern);
+        return IPLikePattern.compile(pattern).matches(address);
     }
     
     /**
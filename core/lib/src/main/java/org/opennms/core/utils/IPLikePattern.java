@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.utils;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A compiled IPLIKE expression.
+ *
+ * <p>The expression is parsed once into a 256-bit set per IPv4 octet and a
+ * list of ranges per IPv6 hextet (plus the optional scope identifier), and is
+ * then matched against the raw address bytes without converting the address
+ * to a string. Compiled patterns are cached, see {@link #compile(String)}.</p>
+ *
+ * <p>Expressions that {@link IPLike#matches(String, String)} evaluates lazily
+ * or rejects, such as malformed list elements, are not compiled; matching
+ * against them falls back to {@link IPLike#matches(String, String)} so the
+ * result, including any exception, stays the same.</p>
+ */
+public final class IPLikePattern {
+    private static final int MAX_CACHED_PATTERNS = 1000;
+    private static final ConcurrentMap<String, IPLikePattern> s_patterns = new ConcurrentHashMap<String, IPLikePattern>();
+
+    private final String m_pattern;
+    /** one 256-bit set per octet, or null if the IPv4 form can't be compiled */
+    private final long[][] m_octets;
+    /** inclusive [begin, end] pairs per hextet, or null if the IPv6 form can't be compiled */
+    private final long[][] m_hextets;
+    /** inclusive [begin, end] pairs for the scope identifier, or null if the pattern has no scope */
+    private final long[] m_scope;
+
+    private IPLikePattern(final String pattern) {
+        m_pattern = pattern;
+        m_octets = compileIPv4(pattern);
+
+        long[][] hextets = null;
+        long[] scope = null;
+        final String[] patternAndScope = pattern.split("%");
+        if (patternAndScope.length <= 2) {
+            hextets = compileIPv6(patternAndScope[0]);
+            if (hextets != null && patternAndScope.length == 2) {
+                scope = compileList(patternAndScope[1], 10);
+                if (scope == null) {
+                    hextets = null;
+                }
+            }
+        }
+        m_hextets = hextets;
+        m_scope = scope;
+    }
+
+    /**
+     * Returns the compiled form of an IPLIKE expression. Compiled patterns are
+     * cached; the cache is cleared when it grows beyond a fixed size.
+     *
+     * @param pattern the IPLIKE expression, e.g. <code>192.168.1-3.*</code>
+     * @return the compiled pattern
+     */
+    public static IPLikePattern compile(final String pattern) {
+        IPLikePattern compiled = s_patterns.get(pattern);
+        if (compiled == null) {
+            compiled = new IPLikePattern(pattern);
+            if (s_patterns.size() >= MAX_CACHED_PATTERNS) {
+                s_patterns.clear();
+            }
+            s_patterns.put(pattern, compiled);
+        }
+        return compiled;
+    }
+
+    public String getPattern() {
+        return m_pattern;
+    }
+
+    /**
+     * @param address the address to match
+     * @return true if the address matches the expression
+     * @throws IllegalArgumentException if the expression does not apply to
+     *         the address family, like {@link IPLike#matches(String, String)}
+     */
+    public boolean matches(final InetAddress address) {
+        final byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address && m_octets != null) {
+            for (int i = 0; i < 4; i++) {
+                final int value = bytes[i] & 0xff;
+                if ((m_octets[i][value >>> 6] & (1L << (value & 0x3f))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (address instanceof Inet6Address && m_hextets != null) {
+            if (m_scope != null) {
+                final int scopeId = ((Inet6Address) address).getScopeId();
+                if (scopeId == 0 || !inRanges(m_scope, scopeId)) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < 8; i++) {
+                if (!inRanges(m_hextets[i], ((bytes[i * 2] & 0xff) << 8) | (bytes[i * 2 + 1] & 0xff))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return IPLike.matches(InetAddressUtils.str(address), m_pattern);
+    }
+
+    private static boolean inRanges(final long[] ranges, final long value) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (value >= ranges[i] && value <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[][] compileIPv4(final String pattern) {
+        final String[] octets = pattern.split("\\.", 0);
+        if (octets.length != 4) {
+            return null;
+        }
+        final long[][] ret = new long[4][];
+        for (int i = 0; i < 4; i++) {
+            final long[] ranges = compileList(octets[i], 10);
+            if (ranges == null) {
+                return null;
+            }
+            final long[] bits = new long[4];
+            for (int r = 0; r < ranges.length; r += 2) {
+                for (long value = Math.max(0, ranges[r]); value <= Math.min(255, ranges[r + 1]); value++) {
+                    bits[(int) value >>> 6] |= 1L << (value & 0x3f);
+                }
+            }
+            ret[i] = bits;
+        }
+        return ret;
+    }
+
+    private static long[][] compileIPv6(final String pattern) {
+        final String[] hextets = pattern.split("\\:", 0);
+        if (hextets.length != 8) {
+            return null;
+        }
+        final long[][] ret = new long[8][];
+        for (int i = 0; i < 8; i++) {
+            ret[i] = compileList(hextets[i], 16);
+            if (ret[i] == null) {
+                return null;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Parses a comma separated list of numbers, ranges and wildcards the same
+     * way {@link IPLike#matchRange(String, String)} and
+     * {@link IPLike#matchRangeHex(String, String)} do.
+     *
+     * @return inclusive [begin, end] pairs, or null if any element would make
+     *         the string based matcher throw
+     */
+    private static long[] compileList(final String list, final int radix) {
+        final String[] elements = list.split(",", 0);
+        final long[] ranges = new long[elements.length * 2];
+        int count = 0;
+        try {
+            for (final String element : elements) {
+                final int dashCount = IPLike.countChar('-', element);
+                if ("*".equals(element)) {
+                    ranges[count++] = Long.MIN_VALUE;
+                    ranges[count++] = Long.MAX_VALUE;
+                } else if (dashCount == 0) {
+                    final long value = Long.parseLong(element, radix);
+                    ranges[count++] = value;
+                    ranges[count++] = value;
+                } else if (dashCount == 1) {
+                    final String[] ar = element.split("-");
+                    ranges[count++] = Long.parseLong(ar[0], radix);
+                    ranges[count++] = Long.parseLong(ar[1], radix);
+                }
+                // more than one dash never matches
+            }
+        } catch (final RuntimeException e) {
+            return null;
+        }
+        final long[] ret = new long[count];
+        System.arraycopy(ranges, 0, ret, 0, count);
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return m_pattern;
+    }
+}
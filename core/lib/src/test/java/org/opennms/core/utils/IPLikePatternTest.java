@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.Random;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class IPLikePatternTest {
+    private static final Logger LOG = LoggerFactory.getLogger(IPLikePatternTest.class);
+
+    private static final String[] PATTERNS = new String[] {
+        "*.*.*.*",
+        "192.168.*.*",
+        "192.166,167,168.*.0,1,5-10",
+        "10.0-3.*.100-300",
+        "10.*.1.1-1-1",
+        "10.*.1.1,x",
+        "10.*.1",
+        "*:*:*:*:*:*:*:*",
+        "fe80:*:*:*:*:*:*:*%4",
+        "fe80:*:*:*:*:*:*:*%1-3,5",
+        "fe20,fe70-fe90:0000:0000:0000:*:bbb0,bbb1,bbbb:*:*",
+        "fe80:0:0:0:0:0:0:0-ff"
+    };
+
+    @Test
+    public void testCompiledMatchesStringMatcher() throws Exception {
+        final Random random = new Random(17);
+        for (int i = 0; i < 5000; i++) {
+            final InetAddress address = randomAddress(random);
+            for (final String pattern : PATTERNS) {
+                Object expected;
+                try {
+                    expected = IPLike.matches(InetAddressUtils.str(address), pattern);
+                } catch (final RuntimeException e) {
+                    expected = e.getClass();
+                }
+                Object actual;
+                try {
+                    actual = IPLikePattern.compile(pattern).matches(address);
+                } catch (final RuntimeException e) {
+                    actual = e.getClass();
+                }
+                assertEquals(pattern + " / " + InetAddressUtils.str(address), expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+        assertTrue(IPLike.matches(InetAddressUtils.addr("192.168.0.1"), "192.166,167,168.*.0,1,5-10"));
+        assertFalse(IPLike.matches(InetAddressUtils.addr("192.168.0.2"), "192.166,167,168.*.0,1,5-10"));
+        assertTrue(IPLike.matches(Inet6Address.getByAddress(null, InetAddressUtils.toIpAddrBytes("fe80::aaaa:bbbb:cccc:dddd"), 4), "fe80:*:*:*:*:*:*:*%4"));
+        assertFalse(IPLike.matches(InetAddressUtils.addr("fe80::aaaa:bbbb:cccc:dddd"), "fe80:*:*:*:*:*:*:*%4"));
+        try {
+            IPLike.matches(InetAddressUtils.addr("fe80::1"), "*.*.*.*");
+            fail("IPv4 expressions should not apply to IPv6 addresses");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+        assertSame(IPLikePattern.compile("10.*.*.*"), IPLikePattern.compile("10.*.*.*"));
+    }
+
+    /**
+     * Compares the compiled matcher with the string based one. The timings
+     * are only logged.
+     */
+    @Test
+    public void testCompiledVersusStringMatcher() throws Exception {
+        final Random random = new Random(5);
+        final InetAddress[] addresses = new InetAddress[20000];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = randomAddress(random);
+        }
+        final String v4 = "192.166,167,168.*.0,1,5-10";
+        final String v6 = "fe20,fe70-fe90:0000:0000:0000:*:bbb0,bbb1,bbbb:*:*";
+
+        long start = System.nanoTime();
+        int stringMatches = 0;
+        for (final InetAddress address : addresses) {
+            if (IPLike.matches(InetAddressUtils.str(address), address.getAddress().length == 4 ? v4 : v6)) {
+                stringMatches++;
+            }
+        }
+        final long stringNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int compiledMatches = 0;
+        for (final InetAddress address : addresses) {
+            if (IPLike.matches(address, address.getAddress().length == 4 ? v4 : v6)) {
+                compiledMatches++;
+            }
+        }
+        final long compiledNanos = System.nanoTime() - start;
+
+        assertEquals(stringMatches, compiledMatches);
+        LOG.info("{} addresses: string matcher took {}ms, compiled matcher took {}ms", addresses.length, stringNanos / 1000000, compiledNanos / 1000000);
+    }
+
+    private static InetAddress randomAddress(final Random random) throws Exception {
+        if (random.nextBoolean()) {
+            return InetAddress.getByAddress(new byte[] { (byte) (random.nextBoolean() ? 192 : 10), (byte) (166 + random.nextInt(4)), (byte) random.nextInt(4), (byte) random.nextInt(12) });
+        }
+        final byte[] bytes = new byte[16];
+        bytes[0] = (byte) 0xfe;
+        bytes[1] = (byte) (random.nextBoolean() ? 0x80 : 0x20 + random.nextInt(0x80));
+        for (int i = 8; i < 16; i++) {
+            bytes[i] = random.nextInt(3) == 0 ? (byte) 0xbb : (byte) random.nextInt(256);
+        }
+        return Inet6Address.getByAddress(null, bytes, random.nextInt(6));
+    }
+}
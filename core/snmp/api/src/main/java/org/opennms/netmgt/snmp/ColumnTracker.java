@@ -95,10 +95,7 @@ public class ColumnTracker extends CollectionTracker {
 
                 m_last = responseObjId;
                 if (m_base.isPrefixOf(responseObjId) && !m_base.equals(responseObjId)) {
-                    SnmpInstId inst = responseObjId.getInstance(m_base);
-                    if (inst != null) {
-                        storeResult(new SnmpResult(m_base, inst, val));
-                    }
+                    storeResponse(responseObjId, val);
                 }
                 
                 if (!m_base.isPrefixOf(m_last)) {
@@ -130,6 +127,20 @@ public class ColumnTracker extends CollectionTracker {
         return rp;
     }
 
+    /**
+     * Stores a value received for an instance of this column. Subclasses may
+     * override this to store the value without creating a {@link SnmpResult}.
+     *
+     * @param responseObjId the full object id of the response, prefixed by the base
+     * @param val the value received
+     */
+    protected void storeResponse(SnmpObjId responseObjId, SnmpValue val) {
+        SnmpInstId inst = responseObjId.getInstance(m_base);
+        if (inst != null) {
+            storeResult(new SnmpResult(m_base, inst, val));
+        }
+    }
+
     public int getMaxRepetitions() {
         return m_maxRepetitions;
     }
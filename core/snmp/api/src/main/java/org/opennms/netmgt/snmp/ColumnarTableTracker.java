@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp;
+
+/**
+ * Walks a set of table columns into a {@link SnmpColumnarTable} instead of
+ * creating a {@link SnmpResult} and {@link SnmpInstId} for every value
+ * received. The values themselves are the {@link SnmpValue}s decoded by the
+ * strategy.
+ * <p>
+ * Values of instances that consist of more than one sub-identifier can't be
+ * stored in the table, they are passed on to {@link #storeResult(SnmpResult)}
+ * like other trackers do.
+ * </p>
+ */
+public class ColumnarTableTracker extends AggregateTracker {
+
+    private final SnmpColumnarTable m_table;
+    private boolean m_tableFinished = false;
+
+    public ColumnarTableTracker(SnmpObjId... columns) {
+        this(2, columns);
+    }
+
+    public ColumnarTableTracker(int maxRepetitions, SnmpObjId... columns) {
+        this(new SnmpColumnarTable(columns), maxRepetitions);
+    }
+
+    private ColumnarTableTracker(SnmpColumnarTable table, int maxRepetitions) {
+        super(createColumnTrackers(table, maxRepetitions));
+        m_table = table;
+    }
+
+    private static Collectable[] createColumnTrackers(SnmpColumnarTable table, int maxRepetitions) {
+        Collectable[] trackers = new Collectable[table.getColumnCount()];
+        for (int i = 0; i < trackers.length; i++) {
+            trackers[i] = new ColumnarColumnTracker(table, i, maxRepetitions);
+        }
+        return trackers;
+    }
+
+    public SnmpColumnarTable getTable() {
+        return m_table;
+    }
+
+    @Override
+    public boolean isFinished() {
+        boolean finished = super.isFinished();
+        if (finished && !m_tableFinished) {
+            m_tableFinished = true;
+            tableFinished(m_table);
+        }
+        return finished;
+    }
+
+    /**
+     * Called once after all columns have been walked.
+     *
+     * @param table the table holding all values received
+     */
+    protected void tableFinished(SnmpColumnarTable table) {
+    }
+
+    private static class ColumnarColumnTracker extends ColumnTracker {
+        private final SnmpColumnarTable m_table;
+        private final int m_column;
+        private final int m_instanceLength;
+
+        public ColumnarColumnTracker(SnmpColumnarTable table, int column, int maxRepetitions) {
+            super(table.getColumn(column), maxRepetitions);
+            m_table = table;
+            m_column = column;
+            m_instanceLength = table.getColumn(column).length() + 1;
+        }
+
+        @Override
+        protected void storeResponse(SnmpObjId responseObjId, SnmpValue val) {
+            if (responseObjId.length() == m_instanceLength) {
+                m_table.setValue(m_column, responseObjId.getLastSubId(), val);
+            } else {
+                super.storeResponse(responseObjId, val);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp;
+
+import java.util.Arrays;
+
+/**
+ * Column oriented storage for the result of a table walk whose instances are
+ * a single sub-identifier, like the ifIndex of the ifTable and ifXTable.
+ * <p>
+ * Rows are kept in arrays indexed by row number, a primitive hash maps the
+ * instance to its row. Numeric values are additionally stored as longs so
+ * consumers can read them without going through the {@link SnmpValue}.
+ * </p>
+ * <p>
+ * This saves the {@link SnmpResult} and {@link SnmpInstId} that other
+ * trackers create for every value. It does not avoid the per value objects
+ * of the strategy: the response {@link SnmpObjId} and the decoded
+ * {@link SnmpValue}, which is stored as it is. Consumers that need an
+ * {@link SnmpInstId} still create one per row.
+ * </p>
+ */
+public class SnmpColumnarTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final byte ABSENT = 0;
+    private static final byte OBJECT = 1;
+    private static final byte NUMERIC = 2;
+
+    private final SnmpObjId[] m_columns;
+
+    private int m_rowCount = 0;
+    private int[] m_instances = new int[INITIAL_CAPACITY];
+
+    // open addressing hash: instance -> row + 1, 0 marks an empty slot
+    private int[] m_hashKeys = new int[INITIAL_CAPACITY * 2];
+    private int[] m_hashRows = new int[INITIAL_CAPACITY * 2];
+
+    private final byte[][] m_states;
+    private final long[][] m_longValues;
+    private final SnmpValue[][] m_values;
+
+    public SnmpColumnarTable(SnmpObjId... columns) {
+        m_columns = columns.clone();
+        m_states = new byte[columns.length][INITIAL_CAPACITY];
+        m_longValues = new long[columns.length][INITIAL_CAPACITY];
+        m_values = new SnmpValue[columns.length][INITIAL_CAPACITY];
+    }
+
+    public int getColumnCount() {
+        return m_columns.length;
+    }
+
+    public SnmpObjId getColumn(int column) {
+        return m_columns[column];
+    }
+
+    /**
+     * @return the index of the column with the given base oid or -1
+     */
+    public int getColumnIndex(SnmpObjId base) {
+        for (int i = 0; i < m_columns.length; i++) {
+            if (m_columns[i] == base || m_columns[i].equals(base)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getRowCount() {
+        return m_rowCount;
+    }
+
+    /**
+     * @return the instance of the given row, rows are numbered in the order their first value was received
+     */
+    public int getInstance(int row) {
+        checkRow(row);
+        return m_instances[row];
+    }
+
+    /**
+     * @return the row of the given instance or -1 if no value was received for the instance
+     */
+    public int getRow(int instance) {
+        final int mask = m_hashKeys.length - 1;
+        for (int slot = hash(instance) & mask; m_hashRows[slot] != 0; slot = (slot + 1) & mask) {
+            if (m_hashKeys[slot] == instance) {
+                return m_hashRows[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    public boolean hasValue(int column, int row) {
+        checkRow(row);
+        return m_states[column][row] != ABSENT;
+    }
+
+    public boolean isNumeric(int column, int row) {
+        checkRow(row);
+        return m_states[column][row] == NUMERIC;
+    }
+
+    /**
+     * @return the value as long, only valid for numeric values
+     */
+    public long getLong(int column, int row) {
+        if (!isNumeric(column, row)) {
+            throw new IllegalStateException("No numeric value for column " + m_columns[column] + " and instance " + m_instances[row]);
+        }
+        return m_longValues[column][row];
+    }
+
+    /**
+     * @return the value or null if no value was received
+     */
+    public SnmpValue getValue(int column, int row) {
+        checkRow(row);
+        return m_values[column][row];
+    }
+
+    /**
+     * @return the instances of all rows in ascending order
+     */
+    public int[] getSortedInstances() {
+        final int[] instances = Arrays.copyOf(m_instances, m_rowCount);
+        Arrays.sort(instances);
+        return instances;
+    }
+
+    void setValue(int column, int instance, SnmpValue value) {
+        int row = getRow(instance);
+        if (row < 0) {
+            row = addRow(instance);
+        }
+
+        m_values[column][row] = value;
+        if (value.isNumeric()) {
+            m_longValues[column][row] = value.toLong();
+            m_states[column][row] = NUMERIC;
+        } else {
+            m_states[column][row] = OBJECT;
+        }
+    }
+
+    private int addRow(int instance) {
+        if (m_rowCount == m_instances.length) {
+            final int capacity = m_instances.length * 2;
+            m_instances = Arrays.copyOf(m_instances, capacity);
+            for (int i = 0; i < m_columns.length; i++) {
+                m_states[i] = Arrays.copyOf(m_states[i], capacity);
+                m_longValues[i] = Arrays.copyOf(m_longValues[i], capacity);
+                m_values[i] = Arrays.copyOf(m_values[i], capacity);
+            }
+            rehash(capacity * 2);
+        }
+
+        final int row = m_rowCount++;
+        m_instances[row] = instance;
+        putRow(instance, row);
+        return row;
+    }
+
+    private void putRow(int instance, int row) {
+        final int mask = m_hashKeys.length - 1;
+        int slot = hash(instance) & mask;
+        while (m_hashRows[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        m_hashKeys[slot] = instance;
+        m_hashRows[slot] = row + 1;
+    }
+
+    private void rehash(int capacity) {
+        m_hashKeys = new int[capacity];
+        m_hashRows = new int[capacity];
+        for (int row = 0; row < m_rowCount; row++) {
+            putRow(m_instances[row], row);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= m_rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range, table has " + m_rowCount + " rows");
+        }
+    }
+
+    private static int hash(int instance) {
+        final int h = instance * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.snmp.mock.MockSnmpValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walks a simulated ifTable with the {@link ColumnarTableTracker} and compares
+ * the result with the one of the classic {@link ColumnTracker}s.
+ */
+public class ColumnarTableTrackerTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ColumnarTableTrackerTest.class);
+
+    private static final SnmpObjId IF_TABLE = SnmpObjId.get(".1.3.6.1.2.1.2.2.1");
+    private static final SnmpObjId IF_DESCR = SnmpObjId.get(IF_TABLE, "2");
+    private static final SnmpObjId IF_SPEED = SnmpObjId.get(IF_TABLE, "5");
+    private static final SnmpObjId IF_IN_OCTETS = SnmpObjId.get(IF_TABLE, "10");
+    private static final SnmpObjId IF_OUT_OCTETS = SnmpObjId.get(IF_TABLE, "16");
+    private static final SnmpObjId IF_OUT_ERRORS = SnmpObjId.get(IF_TABLE, "20");
+
+    private static final SnmpObjId[] COLUMNS = { IF_DESCR, IF_SPEED, IF_IN_OCTETS, IF_OUT_OCTETS, IF_OUT_ERRORS };
+
+    private NavigableMap<SnmpObjId, SnmpValue> m_agent;
+
+    private static class RequestBuilder extends PduBuilder {
+        private final List<SnmpObjId> m_oids = new ArrayList<SnmpObjId>();
+        private int m_nonRepeaters = 0;
+        private int m_maxRepetitions = 1;
+
+        public RequestBuilder(int maxVarsPerPdu) {
+            super(maxVarsPerPdu);
+        }
+
+        @Override
+        public void addOid(SnmpObjId snmpObjId) {
+            m_oids.add(snmpObjId);
+        }
+
+        @Override
+        public void setNonRepeaters(int numNonRepeaters) {
+            m_nonRepeaters = numNonRepeaters;
+        }
+
+        @Override
+        public void setMaxRepetitions(int maxRepetitions) {
+            m_maxRepetitions = maxRepetitions;
+        }
+    }
+
+    private static class CollectingTracker extends AggregateTracker {
+        private final Map<SnmpObjId, Map<SnmpInstId, SnmpValue>> m_results = new HashMap<SnmpObjId, Map<SnmpInstId, SnmpValue>>();
+
+        public CollectingTracker(Collectable... children) {
+            super(children);
+        }
+
+        @Override
+        protected void storeResult(SnmpResult res) {
+            Map<SnmpInstId, SnmpValue> column = m_results.get(res.getBase());
+            if (column == null) {
+                column = new HashMap<SnmpInstId, SnmpValue>();
+                m_results.put(res.getBase(), column);
+            }
+            column.put(res.getInstance(), res.getValue());
+        }
+    }
+
+    @Before
+    public void setUp() {
+        m_agent = createIfTable(2000);
+    }
+
+    private static NavigableMap<SnmpObjId, SnmpValue> createIfTable(int rows) {
+        NavigableMap<SnmpObjId, SnmpValue> agent = new TreeMap<SnmpObjId, SnmpValue>();
+        for (int ifIndex = 1; ifIndex <= rows; ifIndex++) {
+            agent.put(SnmpObjId.get(IF_DESCR, String.valueOf(ifIndex)), new MockSnmpValue.StringSnmpValue("eth" + ifIndex));
+            agent.put(SnmpObjId.get(IF_SPEED, String.valueOf(ifIndex)), new MockSnmpValue.Gauge32SnmpValue(1000000000L));
+            agent.put(SnmpObjId.get(IF_IN_OCTETS, String.valueOf(ifIndex)), new MockSnmpValue.Counter32SnmpValue(ifIndex * 1000L));
+            agent.put(SnmpObjId.get(IF_OUT_OCTETS, String.valueOf(ifIndex)), new MockSnmpValue.Counter32SnmpValue(ifIndex * 2000L));
+            // sparse column
+            if (ifIndex % 2 == 0) {
+                agent.put(SnmpObjId.get(IF_OUT_ERRORS, String.valueOf(ifIndex)), new MockSnmpValue.Counter32SnmpValue(ifIndex));
+            }
+        }
+        agent.put(SnmpObjId.get(".1.3.6.1.2.1.31.1.1.1.1.1"), new MockSnmpValue.StringSnmpValue("after the ifTable"));
+        return agent;
+    }
+
+    /**
+     * Answers GETBULK requests of the tracker from the simulated agent until the walk is finished.
+     */
+    private static void walk(CollectionTracker tracker, NavigableMap<SnmpObjId, SnmpValue> agent) {
+        while (!tracker.isFinished()) {
+            RequestBuilder request = new RequestBuilder(10);
+            ResponseProcessor processor = tracker.buildNextPdu(request);
+
+            for (int i = 0; i < request.m_nonRepeaters; i++) {
+                respond(processor, agent, request.m_oids.get(i));
+            }
+
+            List<SnmpObjId> repeaters = new ArrayList<SnmpObjId>(request.m_oids.subList(request.m_nonRepeaters, request.m_oids.size()));
+            for (int r = 0; r < request.m_maxRepetitions; r++) {
+                for (int i = 0; i < repeaters.size(); i++) {
+                    repeaters.set(i, respond(processor, agent, repeaters.get(i)));
+                }
+            }
+            processor.processErrors(CollectionTracker.NO_ERR, 0);
+        }
+    }
+
+    private static SnmpObjId respond(ResponseProcessor processor, NavigableMap<SnmpObjId, SnmpValue> agent, SnmpObjId oid) {
+        Map.Entry<SnmpObjId, SnmpValue> next = agent.higherEntry(oid);
+        if (next == null) {
+            processor.processResponse(oid, MockSnmpValue.END_OF_MIB);
+            return oid;
+        }
+        processor.processResponse(next.getKey(), next.getValue());
+        return next.getKey();
+    }
+
+    @Test
+    public void testColumnarWalkMatchesColumnTrackers() {
+        ColumnarTableTracker columnarTracker = new ColumnarTableTracker(COLUMNS);
+        walk(columnarTracker, m_agent);
+
+        Collectable[] columnTrackers = new Collectable[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columnTrackers[i] = new ColumnTracker(COLUMNS[i]);
+        }
+        CollectingTracker classicTracker = new CollectingTracker(columnTrackers);
+        walk(classicTracker, m_agent);
+
+        SnmpColumnarTable table = columnarTracker.getTable();
+        assertEquals(2000, table.getRowCount());
+        assertEquals(COLUMNS.length, table.getColumnCount());
+
+        int values = 0;
+        for (int column = 0; column < table.getColumnCount(); column++) {
+            Map<SnmpInstId, SnmpValue> expected = classicTracker.m_results.get(COLUMNS[column]);
+            for (int row = 0; row < table.getRowCount(); row++) {
+                SnmpValue value = expected.get(new SnmpInstId(table.getInstance(row)));
+                if (value == null) {
+                    assertFalse(table.hasValue(column, row));
+                    assertNull(table.getValue(column, row));
+                } else {
+                    assertTrue(table.hasValue(column, row));
+                    assertEquals(value, table.getValue(column, row));
+                    assertEquals(value.isNumeric(), table.isNumeric(column, row));
+                    if (value.isNumeric()) {
+                        assertEquals(value.toLong(), table.getLong(column, row));
+                    }
+                    values++;
+                }
+            }
+            assertEquals(expected.size(), values);
+            values = 0;
+        }
+
+        int row = table.getRow(42);
+        assertEquals(42, table.getInstance(row));
+        assertEquals(42000L, table.getLong(table.getColumnIndex(IF_IN_OCTETS), row));
+        assertEquals(-1, table.getRow(2001));
+        assertEquals(1, table.getSortedInstances()[0]);
+        assertEquals(2000, table.getSortedInstances()[1999]);
+    }
+
+    @Test
+    public void testTableFinishedCalledOnce() {
+        final int[] calls = new int[1];
+        ColumnarTableTracker tracker = new ColumnarTableTracker(COLUMNS) {
+            @Override
+            protected void tableFinished(SnmpColumnarTable table) {
+                calls[0]++;
+                assertEquals(2000, table.getRowCount());
+            }
+        };
+        walk(tracker, m_agent);
+        assertTrue(tracker.isFinished());
+        assertTrue(tracker.isFinished());
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    public void testMultiSubIdInstancesArePassedOn() {
+        SnmpObjId column = SnmpObjId.get(".1.3.6.1.2.1.4.22.1.2");
+        NavigableMap<SnmpObjId, SnmpValue> agent = new TreeMap<SnmpObjId, SnmpValue>();
+        agent.put(SnmpObjId.get(column, "7"), new MockSnmpValue.StringSnmpValue("single"));
+        agent.put(SnmpObjId.get(column, "7.10.0.0.1"), new MockSnmpValue.StringSnmpValue("multi"));
+
+        final List<SnmpResult> passedOn = new ArrayList<SnmpResult>();
+        CollectionTracker parent = new AggregateTracker(new Collectable[] { new ColumnarTableTracker(column) }) {
+            @Override
+            protected void storeResult(SnmpResult res) {
+                passedOn.add(res);
+            }
+        };
+        walk(parent, agent);
+
+        assertEquals(1, passedOn.size());
+        assertEquals(new SnmpInstId("7.10.0.0.1"), passedOn.get(0).getInstance());
+    }
+
+    /**
+     * Not a precise benchmark, logs the time and the garbage collections caused by both walk modes for a large ifTable.
+     */
+    @Test
+    public void testLargeIfTableWalk() {
+        NavigableMap<SnmpObjId, SnmpValue> agent = createIfTable(20000);
+
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            long collections = getCollectionCount();
+            Collectable[] columnTrackers = new Collectable[COLUMNS.length];
+            for (int c = 0; c < COLUMNS.length; c++) {
+                columnTrackers[c] = new ColumnTracker(COLUMNS[c], 10);
+            }
+            CollectingTracker classicTracker = new CollectingTracker(columnTrackers);
+            walk(classicTracker, agent);
+            LOG.info("column trackers: {}ms, {} garbage collection(s)", (System.nanoTime() - start) / 1000000, getCollectionCount() - collections);
+
+            start = System.nanoTime();
+            collections = getCollectionCount();
+            ColumnarTableTracker columnarTracker = new ColumnarTableTracker(10, COLUMNS);
+            walk(columnarTracker, agent);
+            LOG.info("columnar table tracker: {}ms, {} garbage collection(s)", (System.nanoTime() - start) / 1000000, getCollectionCount() - collections);
+
+            assertEquals(20000, columnarTracker.getTable().getRowCount());
+        }
+    }
+
+    private static long getCollectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // -1 if the collector does not report its count
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.test.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.db.EventPartitionManager;
+import org.opennms.core.db.EventPartitionManager.Interval;
+import org.opennms.core.db.EventPartitionManager.Partition;
+import org.opennms.core.db.EventPartitionManager.Reference;
+import org.opennms.core.db.install.InstallerDb;
+import org.springframework.dao.DataAccessException;
+
+public class EventPartitionManagerTest extends TemporaryDatabaseTestCase {
+    private static final long DAY = 24L * 60L * 60L * 1000L;
+
+    private InstallerDb m_installerDb;
+    private EventPartitionManager m_manager;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        m_installerDb = new InstallerDb();
+        m_installerDb.setDatabaseName(getTestDatabase());
+        m_installerDb.setPostgresOpennmsUser("opennms");
+        m_installerDb.setCreateSqlLocation("../../../opennms-base-assembly/src/main/filtered/etc/create.sql");
+        m_installerDb.setStoredProcedureDirectory("../../../opennms-base-assembly/src/main/filtered/etc");
+        m_installerDb.readTables();
+        m_installerDb.setDataSource(getDataSource());
+
+        m_installerDb.createSequences();
+        m_installerDb.updatePlPgsql();
+        m_installerDb.addStoredProcedures();
+        m_installerDb.createTables();
+
+        m_manager = new EventPartitionManager(getDataSource(), Interval.DAILY);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_installerDb.closeConnection();
+        super.tearDown();
+    }
+
+    @Test
+    public void testMigrate() throws Exception {
+        assertFalse(m_manager.isPartitioned());
+
+        m_manager.migrate(2);
+
+        assertTrue(m_manager.isPartitioned());
+        assertEquals(3, m_manager.getPartitions().size());
+        assertEquals(0, count("SELECT COUNT(*) FROM pg_constraint WHERE contype = 'f' AND confrelid = 'events'::regclass"));
+
+        final List<Reference> references = m_manager.getReferences();
+        assertEquals(4, references.size());
+        for (final Reference reference : references) {
+            assertEquals(reference.toString(), "c", reference.getDeleteAction());
+        }
+
+        // migrating again changes nothing
+        m_manager.migrate(2);
+        assertEquals(4, m_manager.getReferences().size());
+        assertEquals(3, m_manager.getPartitions().size());
+    }
+
+    @Test
+    public void testNewEventsAreRoutedToPartitions() throws Exception {
+        m_manager.migrate(1);
+
+        insertEvent(1, new Date());
+        insertEvent(2, new Date(System.currentTimeMillis() - 30 * DAY));
+
+        assertEquals(2, count("SELECT COUNT(*) FROM events"));
+        assertEquals(1, count("SELECT COUNT(*) FROM ONLY events"));
+        assertEquals(1, count("SELECT COUNT(*) FROM " + m_manager.getPartitions().get(0).getName()));
+    }
+
+    @Test
+    public void testReferencesAreChecked() throws Exception {
+        m_manager.migrate(1);
+        insertEvent(1, new Date());
+
+        insertNotification(1, 1);
+        try {
+            insertNotification(2, 2);
+            org.junit.Assert.fail("inserting a notification for a missing event should fail");
+        } catch (final DataAccessException e) {
+            assertEquals("23503", ((SQLException)e.getMostSpecificCause()).getSQLState());
+        }
+        try {
+            getJdbcTemplate().update("UPDATE notifications SET eventID = 2 WHERE notifyID = 1");
+            org.junit.Assert.fail("pointing a notification at a missing event should fail");
+        } catch (final DataAccessException e) {
+            assertEquals("23503", ((SQLException)e.getMostSpecificCause()).getSQLState());
+        }
+
+        // deleting the event cascades like the foreign key did
+        getJdbcTemplate().update("DELETE FROM events WHERE eventID = 1");
+        assertEquals(0, count("SELECT COUNT(*) FROM notifications"));
+    }
+
+    @Test
+    public void testCreatePartitions() throws Exception {
+        m_manager.migrate(0);
+        assertEquals(1, m_manager.getPartitions().size());
+
+        assertEquals(3, m_manager.createPartitions(3));
+        assertEquals(0, m_manager.createPartitions(3));
+
+        final List<Partition> partitions = m_manager.getPartitions();
+        assertEquals(4, partitions.size());
+        for (int i = 1; i < partitions.size(); i++) {
+            assertEquals(partitions.get(i - 1).getEnd(), partitions.get(i).getStart());
+        }
+
+        final Date lastWeek = new Date(System.currentTimeMillis() - 7 * DAY);
+        assertEquals(7, m_manager.createPartitions(lastWeek, 9));
+        assertEquals(11, m_manager.getPartitions().size());
+    }
+
+    @Test
+    public void testIntervalMismatch() throws Exception {
+        final EventPartitionManager weekly = new EventPartitionManager(getDataSource(), Interval.WEEKLY);
+        weekly.migrate(1);
+        assertEquals(2, weekly.getPartitions().size());
+        assertEquals(Interval.WEEKLY, Interval.fromPartition(weekly.getPartitions().get(0)));
+
+        // daily partitions would overlap the weekly ones
+        assertEquals(0, m_manager.createPartitions(7));
+        assertEquals(2, m_manager.getPartitions().size());
+        assertEquals(0, weekly.createPartitions(1));
+    }
+
+    @Test
+    public void testDropPartitions() throws Exception {
+        m_manager.migrate(0);
+        final Date lastWeek = new Date(System.currentTimeMillis() - 7 * DAY);
+        m_manager.createPartitions(lastWeek, 7);
+
+        insertEvent(1, lastWeek);
+        insertEvent(2, lastWeek);
+        insertEvent(3, new Date());
+        insertNotification(1, 2);
+        assertEquals(0, count("SELECT COUNT(*) FROM ONLY events"));
+
+        assertEquals(7, m_manager.dropPartitionsBefore(new Date(System.currentTimeMillis() - DAY)));
+        assertEquals(1, m_manager.getPartitions().size());
+
+        // the referenced event was kept in the parent table, the other one is gone
+        assertEquals(2, count("SELECT COUNT(*) FROM events"));
+        assertEquals(1, count("SELECT COUNT(*) FROM ONLY events WHERE eventID = 2"));
+        assertEquals(0, count("SELECT COUNT(*) FROM events WHERE eventID = 1"));
+        assertEquals(1, count("SELECT COUNT(*) FROM notifications WHERE eventID = 2"));
+
+        // new events for the dropped range stay in the parent table
+        insertEvent(4, lastWeek);
+        assertEquals(1, count("SELECT COUNT(*) FROM ONLY events WHERE eventID = 4"));
+
+        assertEquals(0, m_manager.dropPartitionsBefore(new Date(System.currentTimeMillis() - DAY)));
+    }
+
+    @Test
+    public void testCreateTablesAfterMigrate() throws Exception {
+        m_manager.migrate(1);
+
+        m_installerDb.createTables();
+        m_installerDb.createTables();
+
+        assertEquals(0, count("SELECT COUNT(*) FROM pg_constraint WHERE contype = 'f' AND confrelid = 'events'::regclass"));
+        assertEquals(4, count("SELECT COUNT(*) FROM pg_trigger WHERE tgname LIKE 'events_ref_%'"));
+        assertEquals(2, m_manager.getPartitions().size());
+    }
+
+    private void insertEvent(final int id, final Date time) {
+        getJdbcTemplate().update("INSERT INTO events (eventID, eventUei, eventTime, eventSource, eventDpName, eventCreateTime, eventSeverity, eventLog, eventDisplay) "
+                + "VALUES (?, 'uei.opennms.org/test', ?, 'test', 'localhost', ?, 1, 'Y', 'Y')", id, new Timestamp(time.getTime()), new Timestamp(time.getTime()));
+    }
+
+    private void insertNotification(final int id, final int eventId) {
+        getJdbcTemplate().update("INSERT INTO notifications (notifyID, textMsg, eventUEI, eventID) VALUES (?, 'test', 'uei.opennms.org/test', ?)", id, eventId);
+    }
+
+    private int count(final String sql) {
+        return getJdbcTemplate().queryForInt(sql);
+    }
+}
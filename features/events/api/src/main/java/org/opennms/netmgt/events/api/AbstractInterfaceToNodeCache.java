@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.events.api;
+
+import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Base implementation of {@link InterfaceToNodeCache}. Lookups read a
+ * {@link ConcurrentHashMap} without taking a lock; updates and reloads are
+ * serialized on the cache, and a reload builds a new map and swaps it in
+ * so that lookups never see a partially loaded cache.
+ * </p>
+ *
+ * <p>
+ * The cache is loaded the first time it is used. Subclasses provide the
+ * addresses from the database and decide whether an address may be moved
+ * to another node.
+ * </p>
+ */
+public abstract class AbstractInterfaceToNodeCache implements InterfaceToNodeCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractInterfaceToNodeCache.class);
+
+    private static InterfaceToNodeCache s_instance;
+
+    private volatile ConcurrentMap<InetAddress, Long> m_knownips;
+
+    private final AtomicLong m_hits = new AtomicLong();
+
+    private final AtomicLong m_misses = new AtomicLong();
+
+    /**
+     * Returns the shared cache instance.
+     *
+     * @return the {@link InterfaceToNodeCache}
+     */
+    public static InterfaceToNodeCache getInstance() {
+        Assert.state(s_instance != null, "the interface to node cache has not been initialized");
+        return s_instance;
+    }
+
+    /**
+     * <p>setInstance</p>
+     *
+     * @param instance the shared {@link InterfaceToNodeCache}
+     */
+    public static void setInstance(final InterfaceToNodeCache instance) {
+        s_instance = instance;
+    }
+
+    /**
+     * Loads every known interface address and the node it belongs to. When
+     * an address is on more than one node, the node on which it is the
+     * primary interface should be returned.
+     *
+     * @return the interface addresses and their node IDs
+     */
+    protected abstract Map<InetAddress, Integer> loadInterfaces();
+
+    /**
+     * @return true if the address is the primary interface of the node
+     */
+    protected abstract boolean isPrimaryInterface(long nodeId, InetAddress addr);
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void dataSourceSync() {
+        final Map<InetAddress, Integer> interfaces = loadInterfaces();
+        final ConcurrentMap<InetAddress, Long> knownips = new ConcurrentHashMap<InetAddress, Long>(Math.max(16, interfaces.size() * 4 / 3 + 1));
+        for (final Map.Entry<InetAddress, Integer> entry : interfaces.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                knownips.put(entry.getKey(), entry.getValue().longValue());
+            }
+        }
+        m_knownips = knownips;
+        LOG.info("dataSourceSync: loaded {} interface addresses", knownips.size());
+    }
+
+    private ConcurrentMap<InetAddress, Long> getKnownIps() {
+        ConcurrentMap<InetAddress, Long> knownips = m_knownips;
+        if (knownips == null) {
+            synchronized (this) {
+                if (m_knownips == null) {
+                    dataSourceSync();
+                }
+                knownips = m_knownips;
+            }
+        }
+        return knownips;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getNodeId(final InetAddress addr) {
+        if (addr == null) {
+            return -1;
+        }
+        final Long nodeId = getKnownIps().get(addr);
+        if (nodeId == null) {
+            m_misses.incrementAndGet();
+            return -1;
+        }
+        m_hits.incrementAndGet();
+        return nodeId;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized long setNodeId(final InetAddress addr, final long nodeId) {
+        if (addr == null || nodeId == -1) {
+            return -1;
+        }
+        final ConcurrentMap<InetAddress, Long> knownips = getKnownIps();
+        // Only replace an existing address if it is the primary interface of the new node
+        if (knownips.containsKey(addr) && !isPrimaryInterface(nodeId, addr)) {
+            LOG.debug("setNodeId: not moving {} to node {}, it is not the node's primary interface", addr, nodeId);
+            return -1;
+        }
+        return longValue(knownips.put(addr, nodeId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized long removeNodeId(final InetAddress addr) {
+        if (addr == null) {
+            return -1;
+        }
+        return longValue(getKnownIps().remove(addr));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized int removeNode(final long nodeId) {
+        int removed = 0;
+        final Iterator<Long> it = getKnownIps().values().iterator();
+        while (it.hasNext()) {
+            if (it.next().longValue() == nodeId) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return getKnownIps().size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getHits() {
+        return m_hits.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getMisses() {
+        return m_misses.get();
+    }
+
+    private static long longValue(final Long result) {
+        return (result == null ? -1 : result.longValue());
+    }
+}
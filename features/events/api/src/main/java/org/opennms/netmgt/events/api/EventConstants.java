@@ -1039,6 +1039,12 @@ public abstract class EventConstants {
      */
     public static final String EVENT_ACKNOWLEDGED_UEI = "uei.opennms.org/ackd/acknowledgment";
 
+    /**
+     * UEI used for summarizing an acknowledgment action applied to many
+     * OnmsAcknowledgeables at once.
+     */
+    public static final String BULK_ACKNOWLEDGED_UEI = "uei.opennms.org/ackd/bulkAcknowledgment";
+
     /**
      * UEI used for indicating a change management event.
      */
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.events.api;
+
+import java.net.InetAddress;
+
+/**
+ * Maps the IP addresses of known interfaces to the ID of the node they
+ * belong to. A single instance, available through
+ * {@link AbstractInterfaceToNodeCache#getInstance()}, is shared by the
+ * daemons that need to associate incoming traps, syslog messages and
+ * events with a node.
+ */
+public interface InterfaceToNodeCache {
+
+    /**
+     * Clears and reloads the cache from the database.
+     */
+    void dataSourceSync();
+
+    /**
+     * @param addr the interface address
+     * @return the node ID of the address, or -1 if the address is not known
+     */
+    long getNodeId(InetAddress addr);
+
+    /**
+     * Associates an address with a node. If the address is already known it
+     * is only moved to the new node when it is that node's primary interface.
+     *
+     * @param addr the interface address
+     * @param nodeId the node ID
+     * @return the node ID the address was previously associated with, or -1
+     */
+    long setNodeId(InetAddress addr, long nodeId);
+
+    /**
+     * @param addr the interface address
+     * @return the node ID the address was associated with, or -1
+     */
+    long removeNodeId(InetAddress addr);
+
+    /**
+     * Removes every address associated with a node.
+     *
+     * @param nodeId the node ID
+     * @return the number of addresses removed
+     */
+    int removeNode(long nodeId);
+
+    /** @return the number of addresses in the cache */
+    int size();
+
+    /** @return the number of lookups that found a node */
+    long getHits();
+
+    /** @return the number of lookups that did not find a node */
+    long getMisses();
+}
@@ -32,6 +32,7 @@ import java.net.InetAddress;
 import java.sql.SQLException;
 import java.text.DateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -306,6 +307,8 @@ public abstract class AbstractEventUtil implements EventUtil {
 
 	private static EventUtil m_instance = null; 
 
+	private final ThreadLocal<ParmMemo> m_parmMemo = new ThreadLocal<ParmMemo>();
+
 	public static EventUtil getInstance() {
 		if (m_instance == null) {
 			return BeanUtils.getBean("eventDaemonContext", "eventUtil", EventUtil.class);
@@ -398,9 +401,11 @@ public abstract class AbstractEventUtil implements EventUtil {
 		} else if (parm.equals(TAG_NODELABEL)) {
 			retParmVal = Long.toString(event.getNodeid());
 			String nodeLabel = null;
-			if (event.getNodeid() > 0) {
+			// events without a node ID get the node that owns their interface, if it is known
+			final long nodeId = event.getNodeid() > 0 ? event.getNodeid() : getNodeIdForInterface(event.getInterfaceAddress());
+			if (nodeId > 0) {
 				try {
-					nodeLabel = getNodeLabel(event.getNodeid());
+					nodeLabel = getNodeLabel(nodeId);
 				} catch (SQLException e) {
 					// do nothing
 				}
@@ -898,74 +903,74 @@ public abstract class AbstractEventUtil implements EventUtil {
 	 * @param event a {@link org.opennms.netmgt.xml.event.Event} object.
 	 */
 	public String expandParms(String inp, Event event, Map<String, Map<String, String>> decode) {
-		int index1 = -1;
-		int index2 = -1;
-
 		if (inp == null) {
 			return null;
 		}
+		return ExpansionTemplate.getTemplate(inp).expand(this, event, decode);
+	}
 
-		StringBuffer ret = new StringBuffer();
-
-		String tempInp = inp;
-		int inpLen = inp.length();
-
-		// check input string to see if it has any %xxx% substring
-		while ((tempInp != null) && ((index1 = tempInp.indexOf(PERCENT)) != -1)) {
-		        LOG.debug("checking input " + tempInp);
-			// copy till first %
-			ret.append(tempInp.substring(0, index1));
-			tempInp = tempInp.substring(index1);
-
-			index2 = tempInp.indexOf(PERCENT, 1);
-			if (index2 != -1) {
-				// Get the value between the %s
-				String parm = tempInp.substring(1, index2);
-				LOG.debug("parm: " + parm + " found in value");
-
-				// If there's any whitespace in between the % signs, then do not try to 
-				// expand it with a parameter value
-				if (parm.matches(".*\\s(?s).*")) {
-					ret.append(PERCENT);
-					tempInp = tempInp.substring(1);
-		                        LOG.debug("skipping parm: " + parm + " because whitespace found in value");
-					continue;
-				}
+	/**
+	 * Returns the value of a parm like {@link #getValueOfParm(String, Event)},
+	 * but looks up parms that need the database or DNS (node label, ifAlias,
+	 * asset and hardware fields, resolved interface) only once per event, no
+	 * matter how many of the event's fields use them.
+	 *
+	 * @param parm the parm name, without the surrounding percent signs
+	 * @param event the event being expanded
+	 * @return value of the event parm/element
+	 */
+	protected String getMemoizedValueOfParm(String parm, Event event) {
+		if (!isLookupParm(parm)) {
+			return getValueOfParm(parm, event);
+		}
 
-				String parmVal = getValueOfParm(parm, event);
-				LOG.debug("value of parm: " + parmVal);
-
-				if (parmVal != null) {
-					if (decode != null && decode.containsKey(parm) && decode.get(parm).containsKey(parmVal)) {
-					ret.append(decode.get(parm).get(parmVal));
-					ret.append("(");
-					ret.append(parmVal);
-					ret.append(")");
-					} else {
-					ret.append(parmVal);
-					}
-				}
+		ParmMemo memo = m_parmMemo.get();
+		if (memo == null || !memo.isFor(event)) {
+			memo = new ParmMemo(event);
+			m_parmMemo.set(memo);
+		}
+		if (memo.values.containsKey(parm)) {
+			return memo.values.get(parm);
+		}
+		final String value = getValueOfParm(parm, event);
+		memo.values.put(parm, value);
+		return value;
+	}
 
-				if (index2 < (inpLen - 1)) {
-					tempInp = tempInp.substring(index2 + 1);
-				} else {
-					tempInp = null;
-				}
-			}
-			else {
-				break;
-			}
+	private static boolean isLookupParm(String parm) {
+		return parm.equals(TAG_NODELABEL)
+			|| parm.equals(TAG_IFALIAS)
+			|| parm.equals(TAG_INTERFACE_RESOLVE)
+			|| parm.startsWith(ASSET_BEGIN)
+			|| parm.startsWith(HARDWARE_BEGIN);
+	}
+
+	/**
+	 * Looked up parm values for the last event this thread expanded. An event
+	 * is expanded field by field on one thread, so remembering only the last
+	 * one is enough, and the memo is dropped as soon as the thread moves on
+	 * or the event's node or interface changes.
+	 */
+	private static final class ParmMemo {
+		private final Event m_event;
+		private final Long m_nodeId;
+		private final String m_interface;
+		final Map<String, String> values = new HashMap<String, String>();
+
+		ParmMemo(Event event) {
+			m_event = event;
+			m_nodeId = event.getNodeid();
+			m_interface = event.getInterface();
 		}
 
-		if ((index1 == -1 || index2 == -1) && (tempInp != null)) {
-			ret.append(tempInp);
+		boolean isFor(Event event) {
+			return m_event == event
+				&& equal(m_nodeId, event.getNodeid())
+				&& equal(m_interface, event.getInterface());
 		}
 
-		String retStr = ret.toString();
-		if (retStr != null && !retStr.equals(inp)) {
-			return retStr;
-		} else {
-			return null;
+		private static boolean equal(Object a, Object b) {
+			return a == null ? b == null : a.equals(b);
 		}
 	}
 
@@ -1009,6 +1014,19 @@ public abstract class AbstractEventUtil implements EventUtil {
 	 */
 	protected abstract String getNodeLabel(long nodeId) throws SQLException;
 
+	/**
+	 * Retrieve the ID of the node that owns an interface, for events that
+	 * do not carry a node ID.
+	 *
+	 * @param addr
+	 *            Interface IP address, may be null
+	 *
+	 * @return the node ID, or -1 if it is not known
+	 */
+	protected long getNodeIdForInterface(InetAddress addr) {
+		return -1;
+	}
+
 	/**
 	 * Retrieve ifAlias from the snmpinterface table of the database given a particular
 	 * nodeId and ipAddr.
@@ -62,6 +62,8 @@ public final class DefaultEventHandlerImpl implements InitializingBean, EventHan
 
     private boolean m_logEventSummaries;
 
+    private EventdStatistics m_statistics;
+
     /**
      * <p>Constructor for DefaultEventHandlerImpl.</p>
      */
@@ -130,17 +132,32 @@ public final class DefaultEventHandlerImpl implements InitializingBean, EventHan
                     LOG.debug("}");
                 }
 
+                final EventdStatistics statistics = m_statistics != null && m_statistics.isEnabled() ? m_statistics : null;
+                final long eventStart = statistics == null ? 0 : System.nanoTime();
+                boolean failed = false;
+
                 for (final EventProcessor eventProcessor : m_eventProcessors) {
+                    final long processorStart = statistics == null ? 0 : System.nanoTime();
                     try {
                         eventProcessor.process(m_eventLog.getHeader(), event);
                     } catch (EventProcessorException e) {
                         LOG.warn("Unable to process event using processor {}; not processing with any later processors.", eventProcessor, e);
-                        break;
+                        failed = true;
                     } catch (Throwable t) {
                         LOG.warn("Unknown exception processing event with processor {}; not processing with any later processors.", eventProcessor, t);
+                        failed = true;
+                    }
+                    if (statistics != null) {
+                        statistics.recordProcessor(eventProcessor, System.nanoTime() - processorStart, failed);
+                    }
+                    if (failed) {
                         break;
                     }
                 }
+
+                if (statistics != null) {
+                    statistics.recordEvent(event.getUei(), System.nanoTime() - eventStart, failed);
+                }
             }
         }
 
@@ -163,6 +180,12 @@ public final class DefaultEventHandlerImpl implements InitializingBean, EventHan
     @Override
     public void afterPropertiesSet() throws IllegalStateException {
         Assert.state(m_eventProcessors != null, "property eventPersisters must be set");
+
+        if (m_statistics != null) {
+            for (final EventProcessor eventProcessor : m_eventProcessors) {
+                m_statistics.addProcessor(eventProcessor);
+            }
+        }
     }
 
     /**
@@ -190,4 +213,16 @@ public final class DefaultEventHandlerImpl implements InitializingBean, EventHan
     public void setLogEventSummaries(final boolean logEventSummaries) {
         m_logEventSummaries = logEventSummaries;
     }
+
+    public EventdStatistics getStatistics() {
+        return m_statistics;
+    }
+
+    /**
+     * Sets where per-processor and per-UEI timings are recorded. Without
+     * statistics, events are processed without reading the clock.
+     */
+    public void setStatistics(final EventdStatistics statistics) {
+        m_statistics = statistics;
+    }
 }
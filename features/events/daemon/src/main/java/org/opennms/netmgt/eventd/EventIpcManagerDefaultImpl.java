@@ -576,4 +576,16 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         Assert.state(m_eventHandlerPool == null, "handlerQueueLength property cannot be set after afterPropertiesSet() is called");
         m_handlerQueueLength = size;
     }
+
+    /**
+     * Returns the number of event logs waiting for a handler thread.
+     *
+     * @return a int.
+     */
+    public int getEventLogsQueued() {
+        if (m_eventHandlerPool instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor)m_eventHandlerPool).getQueue().size();
+        }
+        return 0;
+    }
 }
@@ -30,6 +30,7 @@ package org.opennms.netmgt.eventd;
 
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -49,6 +50,7 @@ import org.opennms.netmgt.dao.api.HwEntityDao;
 import org.opennms.netmgt.dao.api.IpInterfaceDao;
 import org.opennms.netmgt.dao.api.NodeDao;
 import org.opennms.netmgt.dao.api.SnmpInterfaceDao;
+import org.opennms.netmgt.events.api.InterfaceToNodeCache;
 import org.opennms.netmgt.model.OnmsAssetRecord;
 import org.opennms.netmgt.model.OnmsHwEntity;
 import org.opennms.netmgt.model.OnmsIpInterface;
@@ -77,6 +79,9 @@ public class EventUtilDaoImpl extends AbstractEventUtil {
     @Autowired
     private HwEntityDao hwEntityDao;
 
+    @Autowired(required=false)
+    private InterfaceToNodeCache interfaceToNodeCache;
+
 	private final Pattern ASSET_PARM_PATTERN = Pattern.compile("^asset\\[(.*)\\]$");
 
 	private final Pattern HW_PARM_PATTERN = Pattern.compile("^hardware\\[(.*):(.*)\\]$");
@@ -90,6 +95,14 @@ public class EventUtilDaoImpl extends AbstractEventUtil {
         return nodeDao.getLabelForId(Integer.valueOf((int)nodeId));
     }
 
+    @Override
+    protected long getNodeIdForInterface(InetAddress addr) {
+        if (interfaceToNodeCache == null || addr == null) {
+            return -1;
+        }
+        return interfaceToNodeCache.getNodeId(addr);
+    }
+
     @Override
     protected String getIfAlias(long nodeId, String ipaddr) {
         OnmsIpInterface iface = ipInterfaceDao.findByNodeIdAndIpAddress((int)nodeId, ipaddr);
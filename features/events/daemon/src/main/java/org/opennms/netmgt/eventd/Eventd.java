@@ -95,6 +95,16 @@ public final class Eventd extends AbstractServiceDaemon {
      */
     private Collection<EventReceiver> m_eventReceivers;
 
+    /**
+     * Event processing counters and latencies, may be null.
+     */
+    private EventdStatistics m_statistics;
+
+    /**
+     * The event manager whose handler queue is reported, may be null.
+     */
+    private EventIpcManagerDefaultImpl m_eventIpcManager;
+
     /**
      * Constuctor creates the localhost address(to be used eventually when
      * eventd originates events during correlation) and the broadcast queue
@@ -201,4 +211,66 @@ public final class Eventd extends AbstractServiceDaemon {
     public void setEventReceivers(Collection<EventReceiver> eventReceivers) {
         m_eventReceivers = eventReceivers;
     }
+
+    public EventdStatistics getStatistics() {
+        return m_statistics;
+    }
+
+    public void setStatistics(EventdStatistics statistics) {
+        m_statistics = statistics;
+    }
+
+    public EventIpcManagerDefaultImpl getEventIpcManager() {
+        return m_eventIpcManager;
+    }
+
+    public void setEventIpcManager(EventIpcManagerDefaultImpl eventIpcManager) {
+        m_eventIpcManager = eventIpcManager;
+    }
+
+    /**
+     * <p>getEventsProcessed</p>
+     *
+     * @return the number of events run through the event processors
+     */
+    public long getEventsProcessed() {
+        return m_statistics == null ? 0 : m_statistics.getEventsProcessed();
+    }
+
+    /**
+     * <p>getEventsFailed</p>
+     *
+     * @return the number of events an event processor failed on
+     */
+    public long getEventsFailed() {
+        return m_statistics == null ? 0 : m_statistics.getEventsFailed();
+    }
+
+    /**
+     * <p>getEventLogsQueued</p>
+     *
+     * @return the number of event logs waiting for a handler thread
+     */
+    public int getEventLogsQueued() {
+        return m_eventIpcManager == null ? 0 : m_eventIpcManager.getEventLogsQueued();
+    }
+
+    /**
+     * <p>getMeanProcessingLatency</p>
+     *
+     * @return the mean time in microseconds events spent in the event processors
+     */
+    public long getMeanProcessingLatency() {
+        return m_statistics == null ? 0 : m_statistics.getTotalHistogram().getMeanLatency();
+    }
+
+    public boolean isStatisticsEnabled() {
+        return m_statistics != null && m_statistics.isEnabled();
+    }
+
+    public void setStatisticsEnabled(boolean enabled) {
+        if (m_statistics != null) {
+            m_statistics.setEnabled(enabled);
+        }
+    }
 }
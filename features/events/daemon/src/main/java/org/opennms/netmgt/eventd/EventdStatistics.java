@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.opennms.netmgt.events.api.EventProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Throughput counters and latency histograms for the {@link EventProcessor}s
+ * run by {@link DefaultEventHandlerImpl}. Each processor, all processors
+ * together, and each of the first <code>maxUeis</code> UEIs seen get a
+ * {@link LatencyHistogram} registered with JMX as
+ * <code>OpenNMS:Name=EventdLatency,Processor=&lt;name&gt;</code>,
+ * <code>OpenNMS:Name=EventdLatency,Processor=Total</code> and
+ * <code>OpenNMS:Name=EventdLatency,Uei=&lt;uei&gt;</code>.
+ */
+public class EventdStatistics implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventdStatistics.class);
+
+    private static final String OBJECT_NAME_PREFIX = "OpenNMS:Name=EventdLatency,";
+
+    private static final String TOTAL = "Total";
+
+    private volatile boolean m_enabled = Boolean.valueOf(System.getProperty("org.opennms.eventd.statistics.enabled", "true"));
+
+    private int m_maxUeis = Integer.getInteger("org.opennms.eventd.statistics.maxUeis", 100);
+
+    private final AtomicLong m_eventsProcessed = new AtomicLong();
+    private final AtomicLong m_eventsFailed = new AtomicLong();
+
+    private final ConcurrentMap<EventProcessor, LatencyHistogram> m_processors = new ConcurrentHashMap<EventProcessor, LatencyHistogram>();
+    private final ConcurrentMap<String, LatencyHistogram> m_ueis = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final LatencyHistogram m_total;
+
+    private final Map<ObjectName, LatencyHistogram> m_registered = new ConcurrentHashMap<ObjectName, LatencyHistogram>();
+
+    public EventdStatistics() {
+        m_total = new LatencyHistogram();
+        register(OBJECT_NAME_PREFIX + "Processor=" + TOTAL, m_total);
+    }
+
+    public boolean isEnabled() {
+        return m_enabled;
+    }
+
+    /**
+     * Turns timing on or off. While it is off, the event handler does not
+     * read the clock at all.
+     */
+    public void setEnabled(final boolean enabled) {
+        m_enabled = enabled;
+    }
+
+    public int getMaxUeis() {
+        return m_maxUeis;
+    }
+
+    /**
+     * Sets how many distinct UEIs get their own histogram. Events with UEIs
+     * seen after the limit is reached are still counted in the processor
+     * and total histograms. Zero turns per-UEI histograms off.
+     */
+    public void setMaxUeis(final int maxUeis) {
+        m_maxUeis = maxUeis;
+    }
+
+    /**
+     * Creates and registers the histogram for a processor ahead of the
+     * first event, so that it can be collected before there is traffic.
+     */
+    public void addProcessor(final EventProcessor processor) {
+        getProcessorHistogram(processor);
+    }
+
+    public void recordProcessor(final EventProcessor processor, final long nanos, final boolean failed) {
+        final LatencyHistogram histogram = getProcessorHistogram(processor);
+        if (failed) {
+            histogram.recordError(nanos);
+        } else {
+            histogram.record(nanos);
+        }
+    }
+
+    /**
+     * Records an event that has been through the processors.
+     *
+     * @param uei the event's UEI, may be null
+     * @param nanos the time spent in all processors
+     * @param failed whether a processor failed, which stops later processors
+     */
+    public void recordEvent(final String uei, final long nanos, final boolean failed) {
+        m_eventsProcessed.incrementAndGet();
+        if (failed) {
+            m_eventsFailed.incrementAndGet();
+            m_total.recordError(nanos);
+        } else {
+            m_total.record(nanos);
+        }
+
+        final LatencyHistogram histogram = uei == null ? null : getUeiHistogram(uei);
+        if (histogram != null) {
+            if (failed) {
+                histogram.recordError(nanos);
+            } else {
+                histogram.record(nanos);
+            }
+        }
+    }
+
+    public long getEventsProcessed() {
+        return m_eventsProcessed.get();
+    }
+
+    public long getEventsFailed() {
+        return m_eventsFailed.get();
+    }
+
+    public LatencyHistogram getTotalHistogram() {
+        return m_total;
+    }
+
+    public LatencyHistogram getProcessorHistogram(final EventProcessor processor) {
+        LatencyHistogram histogram = m_processors.get(processor);
+        if (histogram == null) {
+            final LatencyHistogram created = new LatencyHistogram();
+            histogram = m_processors.putIfAbsent(processor, created);
+            if (histogram == null) {
+                histogram = created;
+                register(OBJECT_NAME_PREFIX + "Processor=" + getProcessorName(processor), created);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the histogram for a UEI, or null if the UEI limit has been
+     * reached before the UEI was first seen.
+     */
+    public LatencyHistogram getUeiHistogram(final String uei) {
+        LatencyHistogram histogram = m_ueis.get(uei);
+        if (histogram == null && m_ueis.size() < m_maxUeis) {
+            final LatencyHistogram created = new LatencyHistogram();
+            histogram = m_ueis.putIfAbsent(uei, created);
+            if (histogram == null) {
+                histogram = created;
+                register(OBJECT_NAME_PREFIX + "Uei=" + ObjectName.quote(uei), created);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Processors are named by their class, looking through any Spring proxy.
+     */
+    private static String getProcessorName(final EventProcessor processor) {
+        final Class<?> processorClass = ClassUtils.getUserClass(processor);
+        return processorClass.getSimpleName().isEmpty() ? processorClass.getName() : processorClass.getSimpleName();
+    }
+
+    private void register(final String objectName, final LatencyHistogram histogram) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(objectName);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(histogram, name);
+                m_registered.put(name, histogram);
+            }
+        } catch (final Exception e) {
+            LOG.warn("Unable to register {} with JMX", objectName, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (final ObjectName name : m_registered.keySet()) {
+            try {
+                server.unregisterMBean(name);
+            } catch (final Exception e) {
+                LOG.debug("Unable to unregister {} from JMX", name, e);
+            }
+        }
+        m_registered.clear();
+    }
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opennms.netmgt.xml.event.Event;
+
+/**
+ * A template string split into literal text and <code>%parm%</code> tokens,
+ * so that {@link AbstractEventUtil#expandParms(String, Event, Map)} does not
+ * have to re-scan the same logmsg, descr or notification text for every
+ * event. Compiled templates are cached by their text.
+ */
+final class ExpansionTemplate {
+
+    /**
+     * The maximum number of templates kept in the cache; the least recently
+     * used template is dropped to make room for a new one.
+     */
+    static final int MAX_CACHED = Integer.getInteger("org.opennms.eventd.expansion.templateCacheSize", 20000);
+
+    /**
+     * Access ordered, so one-off texts are evicted before the eventconf
+     * templates used by every event of their kind.
+     */
+    private static final Map<String, ExpansionTemplate> s_cache = new LinkedHashMap<String, ExpansionTemplate>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, ExpansionTemplate> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private final String m_template;
+
+    /**
+     * Literal text and parm names, in template order.
+     */
+    private final String[] m_segments;
+
+    /**
+     * Whether the segment at the same index is a parm name.
+     */
+    private final boolean[] m_parms;
+
+    private final boolean m_hasParms;
+
+    private ExpansionTemplate(final String template, final List<String> segments, final List<Boolean> parms) {
+        m_template = template;
+        m_segments = segments.toArray(new String[segments.size()]);
+        m_parms = new boolean[m_segments.length];
+        boolean hasParms = false;
+        for (int i = 0; i < m_parms.length; i++) {
+            m_parms[i] = parms.get(i);
+            hasParms |= m_parms[i];
+        }
+        m_hasParms = hasParms;
+    }
+
+    /**
+     * Returns the compiled form of a template, from the cache if it has been
+     * seen before.
+     */
+    static ExpansionTemplate getTemplate(final String template) {
+        ExpansionTemplate compiled;
+        synchronized (s_cache) {
+            compiled = s_cache.get(template);
+        }
+        if (compiled == null) {
+            // compiled outside of the lock; compiling the same text twice is harmless
+            compiled = compile(template);
+            synchronized (s_cache) {
+                s_cache.put(template, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    static void clearCache() {
+        synchronized (s_cache) {
+            s_cache.clear();
+        }
+    }
+
+    /**
+     * Splits a template the same way the original scanner did: text between
+     * two percent signs is a parm unless it contains whitespace, in which
+     * case the first percent sign is kept as text and scanning resumes right
+     * after it. An unmatched trailing percent sign is kept as text.
+     */
+    static ExpansionTemplate compile(final String template) {
+        final List<String> segments = new ArrayList<String>();
+        final List<Boolean> parms = new ArrayList<Boolean>();
+        final StringBuilder literal = new StringBuilder();
+
+        int pos = 0;
+        final int len = template.length();
+        while (pos < len) {
+            final int index1 = template.indexOf(AbstractEventUtil.PERCENT, pos);
+            if (index1 == -1) {
+                break;
+            }
+            literal.append(template, pos, index1);
+
+            final int index2 = template.indexOf(AbstractEventUtil.PERCENT, index1 + 1);
+            if (index2 == -1) {
+                pos = index1;
+                break;
+            }
+
+            final String parm = template.substring(index1 + 1, index2);
+            if (containsWhitespace(parm)) {
+                literal.append(AbstractEventUtil.PERCENT);
+                pos = index1 + 1;
+                continue;
+            }
+
+            if (literal.length() > 0) {
+                segments.add(literal.toString());
+                parms.add(Boolean.FALSE);
+                literal.setLength(0);
+            }
+            segments.add(parm);
+            parms.add(Boolean.TRUE);
+            pos = index2 + 1;
+        }
+        literal.append(template, pos, len);
+        if (literal.length() > 0) {
+            segments.add(literal.toString());
+            parms.add(Boolean.FALSE);
+        }
+
+        return new ExpansionTemplate(template, segments, parms);
+    }
+
+    /**
+     * Same character class as <code>\s</code> in {@link java.util.regex.Pattern}.
+     */
+    private static boolean containsWhitespace(final String parm) {
+        for (int i = 0; i < parm.length(); i++) {
+            switch (parm.charAt(i)) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+                return true;
+            default:
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Expands the template for an event.
+     *
+     * @return the expanded text, or null if it is the same as the template
+     */
+    String expand(final AbstractEventUtil eventUtil, final Event event, final Map<String, Map<String, String>> decode) {
+        if (!m_hasParms) {
+            return null;
+        }
+
+        final StringBuilder ret = new StringBuilder(m_template.length() + 64);
+        for (int i = 0; i < m_segments.length; i++) {
+            final String segment = m_segments[i];
+            if (!m_parms[i]) {
+                ret.append(segment);
+                continue;
+            }
+
+            final String parmVal = eventUtil.getMemoizedValueOfParm(segment, event);
+            if (parmVal != null) {
+                final Map<String, String> decodeMap = decode == null ? null : decode.get(segment);
+                if (decodeMap != null && decodeMap.containsKey(parmVal)) {
+                    ret.append(decodeMap.get(parmVal));
+                    ret.append("(");
+                    ret.append(parmVal);
+                    ret.append(")");
+                } else {
+                    ret.append(parmVal);
+                }
+            }
+        }
+
+        final String retStr = ret.toString();
+        return retStr.equals(m_template) ? null : retStr;
+    }
+}
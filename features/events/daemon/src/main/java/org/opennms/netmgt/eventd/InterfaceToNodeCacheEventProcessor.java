@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventIpcManager;
+import org.opennms.netmgt.events.api.EventListener;
+import org.opennms.netmgt.events.api.InterfaceToNodeCache;
+import org.opennms.netmgt.xml.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * Keeps the shared {@link InterfaceToNodeCache} up to date as interfaces
+ * are added, deleted and moved between nodes.
+ */
+public class InterfaceToNodeCacheEventProcessor implements EventListener, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InterfaceToNodeCacheEventProcessor.class);
+
+    private final EventIpcManager m_eventIpcManager;
+    private final InterfaceToNodeCache m_cache;
+
+    public InterfaceToNodeCacheEventProcessor(EventIpcManager eventIpcManager, InterfaceToNodeCache cache) {
+        Assert.notNull(eventIpcManager, "argument eventIpcManager must not be null");
+        Assert.notNull(cache, "argument cache must not be null");
+
+        m_eventIpcManager = eventIpcManager;
+        m_cache = cache;
+
+        final List<String> ueiList = new ArrayList<String>();
+        ueiList.add(EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI);
+        ueiList.add(EventConstants.INTERFACE_DELETED_EVENT_UEI);
+        ueiList.add(EventConstants.INTERFACE_REPARENTED_EVENT_UEI);
+        ueiList.add(EventConstants.NODE_DELETED_EVENT_UEI);
+        m_eventIpcManager.addEventListener(this, ueiList);
+    }
+
+    public synchronized void close() {
+        m_eventIpcManager.removeEventListener(this);
+    }
+
+    @Override
+    public void destroy() {
+        close();
+    }
+
+    @Override
+    public String getName() {
+        return "Eventd:InterfaceToNodeCacheEventProcessor";
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        final String eventUei = event.getUei();
+        if (eventUei == null) {
+            return;
+        }
+
+        if (eventUei.equals(EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI)
+            || eventUei.equals(EventConstants.INTERFACE_REPARENTED_EVENT_UEI)) {
+            if (event.hasNodeid() && event.getInterfaceAddress() != null) {
+                m_cache.setNodeId(event.getInterfaceAddress(), event.getNodeid());
+                LOG.debug("onEvent: added {} to node {} in the interface to node cache", event.getInterface(), event.getNodeid());
+            }
+        } else if (eventUei.equals(EventConstants.INTERFACE_DELETED_EVENT_UEI)) {
+            if (event.getInterfaceAddress() != null) {
+                m_cache.removeNodeId(event.getInterfaceAddress());
+                LOG.debug("onEvent: removed {} from the interface to node cache", event.getInterface());
+            }
+        } else if (eventUei.equals(EventConstants.NODE_DELETED_EVENT_UEI)) {
+            if (event.hasNodeid()) {
+                final int removed = m_cache.removeNode(event.getNodeid());
+                LOG.debug("onEvent: removed {} addresses of node {} from the interface to node cache", removed, event.getNodeid());
+            }
+        }
+    }
+}
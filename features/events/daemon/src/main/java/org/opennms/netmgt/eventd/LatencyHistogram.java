@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-bucket latency histogram that can be updated from many threads
+ * without locking. Buckets follow a 1-2-5 series from 10 microseconds to 10
+ * seconds, with one more bucket for anything slower.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    /**
+     * Bucket upper bounds in microseconds; the last bucket is unbounded.
+     */
+    private static final long[] BOUNDS = new long[] {
+        10, 20, 50,
+        100, 200, 500,
+        1000, 2000, 5000,
+        10000, 20000, 50000,
+        100000, 200000, 500000,
+        1000000, 2000000, 5000000,
+        10000000
+    };
+
+    private final AtomicLongArray m_buckets = new AtomicLongArray(BOUNDS.length + 1);
+    private final AtomicLong m_count = new AtomicLong();
+    private final AtomicLong m_errors = new AtomicLong();
+    private final AtomicLong m_total = new AtomicLong();
+    private final AtomicLong m_max = new AtomicLong();
+
+    /**
+     * Records one sample.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(final long nanos) {
+        final long micros = nanos / 1000;
+        int bucket = 0;
+        while (bucket < BOUNDS.length && micros > BOUNDS[bucket]) {
+            bucket++;
+        }
+        m_buckets.incrementAndGet(bucket);
+        m_count.incrementAndGet();
+        m_total.addAndGet(micros);
+
+        long max = m_max.get();
+        while (micros > max && !m_max.compareAndSet(max, micros)) {
+            max = m_max.get();
+        }
+    }
+
+    /**
+     * Records one sample that ended in an error.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void recordError(final long nanos) {
+        m_errors.incrementAndGet();
+        record(nanos);
+    }
+
+    @Override
+    public long getCount() {
+        return m_count.get();
+    }
+
+    @Override
+    public long getErrors() {
+        return m_errors.get();
+    }
+
+    @Override
+    public long getTotalLatency() {
+        return m_total.get();
+    }
+
+    @Override
+    public long getMeanLatency() {
+        final long count = m_count.get();
+        return count == 0 ? 0 : m_total.get() / count;
+    }
+
+    @Override
+    public long getMaxLatency() {
+        return m_max.get();
+    }
+
+    @Override
+    public long getLatency50th() {
+        return getPercentile(0.50);
+    }
+
+    @Override
+    public long getLatency95th() {
+        return getPercentile(0.95);
+    }
+
+    @Override
+    public long getLatency99th() {
+        return getPercentile(0.99);
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given fraction of
+     * the samples, or the largest sample if that is the unbounded bucket.
+     */
+    long getPercentile(final double fraction) {
+        long total = 0;
+        for (int i = 0; i < m_buckets.length(); i++) {
+            total += m_buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = (long)Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += m_buckets.get(i);
+            if (seen >= rank) {
+                return BOUNDS[i];
+            }
+        }
+        return m_max.get();
+    }
+
+    @Override
+    public long getCountUnder100us() {
+        return countUpTo(100);
+    }
+
+    @Override
+    public long getCountUnder1ms() {
+        return countUpTo(1000);
+    }
+
+    @Override
+    public long getCountUnder10ms() {
+        return countUpTo(10000);
+    }
+
+    @Override
+    public long getCountUnder100ms() {
+        return countUpTo(100000);
+    }
+
+    @Override
+    public long getCountUnder1s() {
+        return countUpTo(1000000);
+    }
+
+    @Override
+    public long getCountOver1s() {
+        long count = 0;
+        for (int i = 0; i < m_buckets.length(); i++) {
+            if (i == BOUNDS.length || BOUNDS[i] > 1000000) {
+                count += m_buckets.get(i);
+            }
+        }
+        return count;
+    }
+
+    private long countUpTo(final long bound) {
+        long count = 0;
+        for (int i = 0; i < BOUNDS.length && BOUNDS[i] <= bound; i++) {
+            count += m_buckets.get(i);
+        }
+        return count;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < m_buckets.length(); i++) {
+            m_buckets.set(i, 0);
+        }
+        m_count.set(0);
+        m_errors.set(0);
+        m_total.set(0);
+        m_max.set(0);
+    }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+/**
+ * JMX view of a {@link LatencyHistogram}. Latencies are in microseconds;
+ * percentiles are the upper bound of the bucket they fall in.
+ */
+public interface LatencyHistogramMBean {
+
+    long getCount();
+
+    long getErrors();
+
+    long getTotalLatency();
+
+    long getMeanLatency();
+
+    long getMaxLatency();
+
+    long getLatency50th();
+
+    long getLatency95th();
+
+    long getLatency99th();
+
+    long getCountUnder100us();
+
+    long getCountUnder1ms();
+
+    long getCountUnder10ms();
+
+    long getCountUnder100ms();
+
+    long getCountUnder1s();
+
+    long getCountOver1s();
+
+    void reset();
+}
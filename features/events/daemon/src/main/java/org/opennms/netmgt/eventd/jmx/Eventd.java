@@ -48,4 +48,40 @@ public class Eventd extends AbstractSpringContextJmxServiceDaemon<org.opennms.ne
     protected String getSpringContext() {
         return "eventDaemonContext";       
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getEventsProcessed() {
+        return getDaemon().getEventsProcessed();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getEventsFailed() {
+        return getDaemon().getEventsFailed();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEventLogsQueued() {
+        return getDaemon().getEventLogsQueued();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getMeanProcessingLatency() {
+        return getDaemon().getMeanProcessingLatency();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isStatisticsEnabled() {
+        return getDaemon().isStatisticsEnabled();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setStatisticsEnabled(boolean enabled) {
+        getDaemon().setStatisticsEnabled(enabled);
+    }
 }
@@ -37,4 +37,34 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface EventdMBean extends BaseOnmsMBean {
+
+    /**
+     * @return the number of events run through the event processors
+     */
+    long getEventsProcessed();
+
+    /**
+     * @return the number of events an event processor failed on
+     */
+    long getEventsFailed();
+
+    /**
+     * @return the number of event logs waiting for a handler thread
+     */
+    int getEventLogsQueued();
+
+    /**
+     * @return the mean time in microseconds events spent in the event processors
+     */
+    long getMeanProcessingLatency();
+
+    /**
+     * @return whether event processing is being timed
+     */
+    boolean isStatisticsEnabled();
+
+    /**
+     * Turns timing of event processing on or off.
+     */
+    void setStatisticsEnabled(boolean enabled);
 }
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.events.api.EventProcessor;
+import org.opennms.netmgt.events.api.EventProcessorException;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Events;
+import org.opennms.netmgt.xml.event.Header;
+import org.opennms.netmgt.xml.event.Log;
+
+public class EventdStatisticsTest {
+
+    private EventdStatistics m_statistics;
+    private DefaultEventHandlerImpl m_handler;
+    private final SleepingProcessor m_expander = new SleepingProcessor(2);
+    private final FailingProcessor m_writer = new FailingProcessor();
+    private final SleepingProcessor m_broadcaster = new SleepingProcessor(0);
+
+    @Before
+    public void setUp() {
+        m_statistics = new EventdStatistics();
+        m_handler = new DefaultEventHandlerImpl();
+        m_handler.setEventProcessors(Arrays.<EventProcessor>asList(m_expander, m_writer, m_broadcaster));
+        m_handler.setStatistics(m_statistics);
+        m_handler.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        m_statistics.destroy();
+    }
+
+    @Test
+    public void testProcessorsAreTimed() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertTrue(server.isRegistered(new ObjectName("OpenNMS:Name=EventdLatency,Processor=SleepingProcessor")));
+        assertTrue(server.isRegistered(new ObjectName("OpenNMS:Name=EventdLatency,Processor=Total")));
+
+        m_handler.createRunnable(createLog("uei.opennms.org/test/a", "uei.opennms.org/test/b")).run();
+
+        assertEquals(2, m_statistics.getEventsProcessed());
+        assertEquals(0, m_statistics.getEventsFailed());
+        final LatencyHistogram expander = m_statistics.getProcessorHistogram(m_expander);
+        assertEquals(2, expander.getCount());
+        assertTrue(expander.getMeanLatency() >= 2000);
+        assertTrue(expander.getLatency95th() >= 2000);
+        assertEquals(2, m_statistics.getTotalHistogram().getCount());
+        assertEquals(1, m_statistics.getUeiHistogram("uei.opennms.org/test/a").getCount());
+        assertEquals(1L, server.getAttribute(new ObjectName("OpenNMS:Name=EventdLatency,Uei=" + ObjectName.quote("uei.opennms.org/test/b")), "Count"));
+    }
+
+    @Test
+    public void testFailureStopsLaterProcessors() {
+        m_writer.fail = true;
+        m_handler.createRunnable(createLog("uei.opennms.org/test/a")).run();
+
+        assertEquals(1, m_statistics.getEventsFailed());
+        assertEquals(1, m_statistics.getProcessorHistogram(m_writer).getErrors());
+        assertEquals(0, m_statistics.getProcessorHistogram(m_broadcaster).getCount());
+        assertEquals(1, m_statistics.getTotalHistogram().getErrors());
+    }
+
+    @Test
+    public void testDisabled() {
+        m_statistics.setEnabled(false);
+        m_handler.createRunnable(createLog("uei.opennms.org/test/a")).run();
+
+        assertEquals(0, m_statistics.getEventsProcessed());
+        assertEquals(0, m_statistics.getProcessorHistogram(m_expander).getCount());
+    }
+
+    @Test
+    public void testUeiLimit() {
+        m_statistics.setMaxUeis(1);
+        m_handler.createRunnable(createLog("uei.opennms.org/test/a", "uei.opennms.org/test/b")).run();
+
+        assertEquals(1, m_statistics.getUeiHistogram("uei.opennms.org/test/a").getCount());
+        assertEquals(null, m_statistics.getUeiHistogram("uei.opennms.org/test/b"));
+        assertEquals(2, m_statistics.getTotalHistogram().getCount());
+    }
+
+    @Test
+    public void testHistogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(80000);
+        }
+        histogram.record(3000000);
+        histogram.record(3000000000L);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getLatency50th());
+        assertEquals(5000, histogram.getLatency99th());
+        assertEquals(3000000, histogram.getMaxLatency());
+        assertEquals(98, histogram.getCountUnder100us());
+        assertEquals(99, histogram.getCountUnder1s());
+        assertEquals(1, histogram.getCountOver1s());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getLatency95th());
+    }
+
+    private static Log createLog(final String... ueis) {
+        final Events events = new Events();
+        for (final String uei : ueis) {
+            events.addEvent(new EventBuilder(uei, "EventdStatisticsTest").getEvent());
+        }
+        final Log log = new Log();
+        log.setEvents(events);
+        return log;
+    }
+
+    private static class SleepingProcessor implements EventProcessor {
+        private final long m_millis;
+
+        SleepingProcessor(final long millis) {
+            m_millis = millis;
+        }
+
+        @Override
+        public void process(final Header eventHeader, final Event event) throws EventProcessorException {
+            if (m_millis > 0) {
+                try {
+                    Thread.sleep(m_millis);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static class FailingProcessor implements EventProcessor {
+        volatile boolean fail = false;
+
+        @Override
+        public void process(final Header eventHeader, final Event event) throws EventProcessorException {
+            if (fail) {
+                throw new EventProcessorException("failed on purpose");
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.core.test.ConfigurationTestUtils;
+import org.opennms.netmgt.config.DefaultEventConfDao;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Checks that compiled templates expand to exactly what the original
+ * scanner produced, and times both on the templates in the default
+ * eventconf.
+ */
+public class ExpansionTemplateTest {
+    private static final Logger LOG = LoggerFactory.getLogger(ExpansionTemplateTest.class);
+
+    private static final String[] TEMPLATES = new String[] {
+        "",
+        "no parms at all",
+        "%",
+        "%%",
+        "a%b",
+        "trailing%",
+        "%uei%",
+        "%uei",
+        "100% sure: %uei%",
+        "%a b%uei%",
+        "%a\nb%c%uei%",
+        "x%nodelabel%y%",
+        "%parm[#1]% and % spaced % and %parm[#2]%",
+        "%parm[all]% / %parm[##]% / %parm[names-all]%",
+        "%nodelabel%:%ifalias%:%asset[building]%:%nodelabel%",
+        "<p>Node %nodelabel% (%interface%) is down.</p>",
+    };
+
+    private final CountingEventUtil m_eventUtil = new CountingEventUtil();
+
+    @After
+    public void tearDown() {
+        ExpansionTemplate.clearCache();
+    }
+
+    @Test
+    public void testMatchesLegacyExpansion() {
+        final Event event = createEvent("uei.opennms.org/test");
+        for (final String template : TEMPLATES) {
+            assertEquals(template, legacyExpandParms(m_eventUtil, template, event, null), m_eventUtil.expandParms(template, event, null));
+        }
+    }
+
+    @Test
+    public void testDecode() {
+        final Event event = createEvent("uei.opennms.org/test");
+        final Map<String, Map<String, String>> decode = new java.util.HashMap<String, Map<String, String>>();
+        final Map<String, String> values = new java.util.HashMap<String, String>();
+        values.put("2", "down");
+        decode.put("parm[#2]", values);
+
+        assertEquals("state down(2)", m_eventUtil.expandParms("state %parm[#2]%", event, decode));
+        assertEquals(legacyExpandParms(m_eventUtil, "state %parm[#2]%", event, decode), m_eventUtil.expandParms("state %parm[#2]%", event, decode));
+    }
+
+    @Test
+    public void testLookupsOncePerEvent() {
+        final Event event = createEvent("uei.opennms.org/test");
+        m_eventUtil.expandParms("%nodelabel% %asset[building]%", event);
+        m_eventUtil.expandParms("%nodelabel% is in %asset[building]%", event);
+        assertEquals(1, m_eventUtil.nodeLabelLookups.get());
+        assertEquals(1, m_eventUtil.assetLookups.get());
+
+        // a different event, or the same one moved to another node, looks them up again
+        m_eventUtil.expandParms("%nodelabel%", createEvent("uei.opennms.org/test"));
+        assertEquals(2, m_eventUtil.nodeLabelLookups.get());
+        event.setNodeid(2L);
+        assertEquals("node2", m_eventUtil.expandParms("%nodelabel%", event));
+        assertEquals(3, m_eventUtil.nodeLabelLookups.get());
+    }
+
+    @Test
+    public void testCacheEvictsLeastRecentlyUsed() {
+        final ExpansionTemplate frequent = ExpansionTemplate.getTemplate("Node %nodelabel% is down.");
+        final ExpansionTemplate rare = ExpansionTemplate.getTemplate("Node %nodelabel% is up.");
+
+        // more one-off texts than the cache holds
+        for (int i = 0; i <= ExpansionTemplate.MAX_CACHED; i++) {
+            ExpansionTemplate.getTemplate("one-off message " + i + " from %interface%");
+            if (i % 1000 == 0) {
+                assertSame(frequent, ExpansionTemplate.getTemplate("Node %nodelabel% is down."));
+            }
+        }
+
+        assertSame(frequent, ExpansionTemplate.getTemplate("Node %nodelabel% is down."));
+        assertNotSame(rare, ExpansionTemplate.getTemplate("Node %nodelabel% is up."));
+
+        // new templates are still cached once the cache is full
+        final ExpansionTemplate late = ExpansionTemplate.getTemplate("late %parm[#1]%");
+        assertSame(late, ExpansionTemplate.getTemplate("late %parm[#1]%"));
+    }
+
+    @Test
+    public void testEventconfTemplates() throws Exception {
+        final DefaultEventConfDao eventConfDao = new DefaultEventConfDao();
+        eventConfDao.setConfigResource(new FileSystemResource(ConfigurationTestUtils.getFileForConfigFile("eventconf.xml")));
+        eventConfDao.afterPropertiesSet();
+
+        final List<Event> events = new ArrayList<Event>();
+        final List<String[]> templates = new ArrayList<String[]>();
+        for (final org.opennms.netmgt.xml.eventconf.Event definition : eventConfDao.getAllEvents()) {
+            events.add(createEvent(definition.getUei()));
+            templates.add(new String[] {
+                definition.getDescr(),
+                definition.getLogmsg() == null ? null : definition.getLogmsg().getContent(),
+                definition.getOperinstruct()
+            });
+        }
+        LOG.info("Expanding the templates of {} event definitions", events.size());
+
+        for (int i = 0; i < events.size(); i++) {
+            for (final String template : templates.get(i)) {
+                assertEquals(template, legacyExpandParms(m_eventUtil, template, events.get(i), null), m_eventUtil.expandParms(template, events.get(i), null));
+            }
+        }
+
+        final int rounds = 5;
+        m_eventUtil.reset();
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < events.size(); i++) {
+                final Event event = createEvent(events.get(i).getUei());
+                for (final String template : templates.get(i)) {
+                    legacyExpandParms(m_eventUtil, template, event, null);
+                }
+            }
+        }
+        final long legacyNanos = System.nanoTime() - start;
+        final int legacyLookups = m_eventUtil.lookups();
+
+        m_eventUtil.reset();
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < events.size(); i++) {
+                final Event event = createEvent(events.get(i).getUei());
+                for (final String template : templates.get(i)) {
+                    m_eventUtil.expandParms(template, event, null);
+                }
+            }
+        }
+        final long compiledNanos = System.nanoTime() - start;
+        final int compiledLookups = m_eventUtil.lookups();
+
+        LOG.info("Legacy expansion: {}ms, {} lookups; compiled expansion: {}ms, {} lookups", legacyNanos / 1000000, legacyLookups, compiledNanos / 1000000, compiledLookups);
+        assertTrue(compiledLookups <= legacyLookups);
+    }
+
+    private static Event createEvent(final String uei) {
+        final EventBuilder bldr = new EventBuilder(uei, "ExpansionTemplateTest");
+        bldr.setNodeid(1);
+        bldr.setInterface(addr("192.168.1.1"));
+        bldr.addParam("ifIndex", "2");
+        bldr.addParam("ifAdminStatus", "2");
+        bldr.addParam("ifDescr", "eth0");
+        return bldr.getEvent();
+    }
+
+    /**
+     * The scanner {@link AbstractEventUtil#expandParms(String, Event, Map)}
+     * used before templates were compiled.
+     */
+    private static String legacyExpandParms(final AbstractEventUtil eventUtil, final String inp, final Event event, final Map<String, Map<String, String>> decode) {
+        int index1 = -1;
+        int index2 = -1;
+
+        if (inp == null) {
+            return null;
+        }
+
+        final StringBuffer ret = new StringBuffer();
+        String tempInp = inp;
+        final int inpLen = inp.length();
+
+        while ((tempInp != null) && ((index1 = tempInp.indexOf('%')) != -1)) {
+            ret.append(tempInp.substring(0, index1));
+            tempInp = tempInp.substring(index1);
+
+            index2 = tempInp.indexOf('%', 1);
+            if (index2 != -1) {
+                final String parm = tempInp.substring(1, index2);
+                if (parm.matches(".*\\s(?s).*")) {
+                    ret.append('%');
+                    tempInp = tempInp.substring(1);
+                    continue;
+                }
+
+                final String parmVal = eventUtil.getValueOfParm(parm, event);
+                if (parmVal != null) {
+                    if (decode != null && decode.containsKey(parm) && decode.get(parm).containsKey(parmVal)) {
+                        ret.append(decode.get(parm).get(parmVal));
+                        ret.append("(");
+                        ret.append(parmVal);
+                        ret.append(")");
+                    } else {
+                        ret.append(parmVal);
+                    }
+                }
+
+                if (index2 < (inpLen - 1)) {
+                    tempInp = tempInp.substring(index2 + 1);
+                } else {
+                    tempInp = null;
+                }
+            } else {
+                break;
+            }
+        }
+
+        if ((index1 == -1 || index2 == -1) && (tempInp != null)) {
+            ret.append(tempInp);
+        }
+
+        final String retStr = ret.toString();
+        return retStr.equals(inp) ? null : retStr;
+    }
+
+    private static class CountingEventUtil extends AbstractEventUtil {
+        final AtomicInteger nodeLabelLookups = new AtomicInteger();
+        final AtomicInteger ifAliasLookups = new AtomicInteger();
+        final AtomicInteger assetLookups = new AtomicInteger();
+
+        void reset() {
+            nodeLabelLookups.set(0);
+            ifAliasLookups.set(0);
+            assetLookups.set(0);
+        }
+
+        int lookups() {
+            return nodeLabelLookups.get() + ifAliasLookups.get() + assetLookups.get();
+        }
+
+        @Override
+        protected String getNodeLabel(final long nodeId) throws SQLException {
+            nodeLabelLookups.incrementAndGet();
+            return "node" + nodeId;
+        }
+
+        @Override
+        protected String getIfAlias(final long nodeId, final String ipaddr) throws SQLException {
+            ifAliasLookups.incrementAndGet();
+            return "alias-" + ipaddr;
+        }
+
+        @Override
+        protected String getAssetFieldValue(final String parm, final long nodeId) {
+            assetLookups.incrementAndGet();
+            return "building" + nodeId;
+        }
+
+        @Override
+        public String getHardwareFieldValue(final String parm, final long nodeId) {
+            return null;
+        }
+
+        @Override
+        public String getHostName(final int nodeId, final String hostip) {
+            return hostip;
+        }
+    }
+}
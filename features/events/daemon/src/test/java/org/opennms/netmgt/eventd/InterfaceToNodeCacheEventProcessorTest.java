@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import static org.junit.Assert.assertEquals;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.dao.mock.MockEventIpcManager;
+import org.opennms.netmgt.events.api.AbstractInterfaceToNodeCache;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.model.events.EventBuilder;
+
+public class InterfaceToNodeCacheEventProcessorTest {
+
+    private MockEventIpcManager m_eventIpcManager;
+
+    private int m_loads;
+
+    private boolean m_primary;
+
+    private AbstractInterfaceToNodeCache m_cache;
+
+    @Before
+    public void setUp() {
+        m_eventIpcManager = new MockEventIpcManager();
+        m_loads = 0;
+        m_primary = false;
+        m_cache = new AbstractInterfaceToNodeCache() {
+            @Override
+            protected Map<InetAddress, Integer> loadInterfaces() {
+                m_loads++;
+                final Map<InetAddress, Integer> interfaces = new HashMap<InetAddress, Integer>();
+                interfaces.put(addr("10.0.0.1"), 1);
+                interfaces.put(addr("10.0.0.2"), 1);
+                interfaces.put(addr("10.0.0.3"), 2);
+                return interfaces;
+            }
+
+            @Override
+            protected boolean isPrimaryInterface(long nodeId, InetAddress addr) {
+                return m_primary;
+            }
+        };
+        new InterfaceToNodeCacheEventProcessor(m_eventIpcManager, m_cache);
+    }
+
+    private void sendInterfaceEvent(final String uei, final long nodeId, final String ipAddr) {
+        final EventBuilder bldr = new EventBuilder(uei, "test");
+        bldr.setNodeid(nodeId);
+        bldr.setInterface(addr(ipAddr));
+        m_eventIpcManager.broadcastNow(bldr.getEvent());
+    }
+
+    @Test
+    public void testLookupLoadsOnce() {
+        assertEquals(1, m_cache.getNodeId(addr("10.0.0.1")));
+        assertEquals(2, m_cache.getNodeId(addr("10.0.0.3")));
+        assertEquals(-1, m_cache.getNodeId(addr("10.0.0.4")));
+        assertEquals(-1, m_cache.getNodeId(null));
+
+        assertEquals(1, m_loads);
+        assertEquals(2, m_cache.getHits());
+        assertEquals(1, m_cache.getMisses());
+    }
+
+    @Test
+    public void testInterfaceEvents() {
+        sendInterfaceEvent(EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI, 3, "10.0.0.4");
+        assertEquals(3, m_cache.getNodeId(addr("10.0.0.4")));
+
+        // an address that is already known only moves to the primary interface of another node
+        sendInterfaceEvent(EventConstants.INTERFACE_REPARENTED_EVENT_UEI, 3, "10.0.0.1");
+        assertEquals(1, m_cache.getNodeId(addr("10.0.0.1")));
+        m_primary = true;
+        sendInterfaceEvent(EventConstants.INTERFACE_REPARENTED_EVENT_UEI, 3, "10.0.0.1");
+        assertEquals(3, m_cache.getNodeId(addr("10.0.0.1")));
+
+        sendInterfaceEvent(EventConstants.INTERFACE_DELETED_EVENT_UEI, 2, "10.0.0.3");
+        assertEquals(-1, m_cache.getNodeId(addr("10.0.0.3")));
+
+        final EventBuilder bldr = new EventBuilder(EventConstants.NODE_DELETED_EVENT_UEI, "test");
+        bldr.setNodeid(3);
+        m_eventIpcManager.broadcastNow(bldr.getEvent());
+        assertEquals(-1, m_cache.getNodeId(addr("10.0.0.1")));
+        assertEquals(-1, m_cache.getNodeId(addr("10.0.0.4")));
+        assertEquals(1, m_cache.getNodeId(addr("10.0.0.2")));
+        assertEquals(1, m_cache.size());
+
+        assertEquals(1, m_loads);
+    }
+}
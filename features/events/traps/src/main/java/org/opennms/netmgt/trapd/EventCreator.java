@@ -55,11 +55,10 @@ public class EventCreator implements TrapProcessor {
 	private static final Logger LOG = LoggerFactory.getLogger(EventCreator.class);
     
     private final EventBuilder m_eventBuilder;
-    private final TrapdIpMgr m_trapdIpMgr;
+    private InetAddress m_trapAddress;
 
     
-    public EventCreator(TrapdIpMgr trapdIpMgr) {
-        m_trapdIpMgr = trapdIpMgr;
+    public EventCreator() {
         m_eventBuilder = new EventBuilder(null, "trapd");
     }
     
@@ -113,10 +112,18 @@ public class EventCreator implements TrapProcessor {
     public void setTrapAddress(InetAddress trapAddress) {
         m_eventBuilder.setSnmpHost(str(trapAddress));
         m_eventBuilder.setInterface(trapAddress);
-        long nodeId = m_trapdIpMgr.getNodeId(str(trapAddress));
-        if (nodeId != -1) {
-            m_eventBuilder.setNodeid(nodeId);
-        }
+        m_trapAddress = trapAddress;
+    }
+
+    /**
+     * The address the trap was received from. The node ID for this address
+     * is resolved later by the {@link TrapQueueProcessor}, off the receiving
+     * thread.
+     *
+     * @return the trap source address, or null if it has not been set
+     */
+    public InetAddress getTrapAddress() {
+        return m_trapAddress;
     }
 
     /** {@inheritDoc} */
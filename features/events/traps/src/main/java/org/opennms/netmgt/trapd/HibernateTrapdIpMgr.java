@@ -28,39 +28,25 @@
 
 package org.opennms.netmgt.trapd;
 
-import java.net.InetAddress;
-import java.util.HashMap;
-import java.util.Map;
-
 import org.opennms.core.utils.InetAddressUtils;
-import org.opennms.netmgt.dao.api.IpInterfaceDao;
-import org.opennms.netmgt.model.OnmsIpInterface;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.opennms.netmgt.events.api.InterfaceToNodeCache;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
 /**
  * This class represents a singular instance that is used to map trap IP
- * addresses to known nodes.
+ * addresses to known nodes. The mapping is held by the
+ * {@link InterfaceToNodeCache} shared with the other daemons.
  *
  * @author <a href="mailto:weave@oculan.com">Brian Weaver </a>
  * @author <a href="mailto:tarus@opennms.org">Tarus Balog </a>
  * @author <a href="http://www.opennms.org/">OpenNMS </a>
  */
 public class HibernateTrapdIpMgr implements TrapdIpMgr, InitializingBean {
-	
-	private static final Logger LOG = LoggerFactory.getLogger(HibernateTrapdIpMgr.class);
-	
-	@Autowired
-    private IpInterfaceDao m_ipInterfaceDao;
-    
-    /**
-     * A Map of IP addresses and node IDs
-     */
-    protected Map<InetAddress, Integer> m_knownips = new HashMap<InetAddress, Integer>();
+
+    @Autowired
+    private InterfaceToNodeCache m_interfaceToNodeCache;
 
     /**
      * Default construct for the instance.
@@ -74,10 +60,9 @@ public class HibernateTrapdIpMgr implements TrapdIpMgr, InitializingBean {
     /**
      * <p>dataSourceSync</p>
      */
-    @Transactional(readOnly = true)
     @Override
-    public synchronized void dataSourceSync() {
-        m_knownips = m_ipInterfaceDao.getInterfacesForNodes();
+    public void dataSourceSync() {
+        m_interfaceToNodeCache.dataSourceSync();
     }
 
     /* (non-Javadoc)
@@ -85,11 +70,11 @@ public class HibernateTrapdIpMgr implements TrapdIpMgr, InitializingBean {
      */
     /** {@inheritDoc} */
     @Override
-    public synchronized long getNodeId(String addr) {
+    public long getNodeId(String addr) {
         if (addr == null) {
             return -1;
         }
-        return longValue(m_knownips.get(InetAddressUtils.getInetAddress(addr)));
+        return m_interfaceToNodeCache.getNodeId(InetAddressUtils.getInetAddress(addr));
     }
 
     /* (non-Javadoc)
@@ -97,18 +82,11 @@ public class HibernateTrapdIpMgr implements TrapdIpMgr, InitializingBean {
      */
     /** {@inheritDoc} */
     @Override
-    public synchronized long setNodeId(String addr, long nodeid) {
-        if (addr == null || nodeid == -1) {
+    public long setNodeId(String addr, long nodeid) {
+        if (addr == null) {
             return -1;
         }
-        // Only add the address if it doesn't exist on the map. If it exists, only replace the current one if the new address is primary.
-        boolean add = true;
-        if (m_knownips.containsKey(InetAddressUtils.getInetAddress(addr))) {
-            OnmsIpInterface intf = m_ipInterfaceDao.findByNodeIdAndIpAddress(Integer.valueOf((int) nodeid), addr);
-            add = intf != null && intf.isPrimary();
-            LOG.info("setNodeId: address found {}. Should be added? {}", intf, add);
-        }
-        return add ? longValue(m_knownips.put(InetAddressUtils.getInetAddress(addr), Integer.valueOf((int) nodeid))) : -1;
+        return m_interfaceToNodeCache.setNodeId(InetAddressUtils.getInetAddress(addr), nodeid);
     }
 
     /* (non-Javadoc)
@@ -116,15 +94,11 @@ public class HibernateTrapdIpMgr implements TrapdIpMgr, InitializingBean {
      */
     /** {@inheritDoc} */
     @Override
-    public synchronized long removeNodeId(String addr) {
+    public long removeNodeId(String addr) {
         if (addr == null) {
             return -1;
         }
-        return longValue(m_knownips.remove(InetAddressUtils.getInetAddress(addr)));
-    }
-
-    private static long longValue(Integer result) {
-        return (result == null ? -1 : result.longValue());
+        return m_interfaceToNodeCache.removeNodeId(InetAddressUtils.getInetAddress(addr));
     }
 
     /**
@@ -134,16 +108,16 @@ public class HibernateTrapdIpMgr implements TrapdIpMgr, InitializingBean {
      */
     @Override
     public void afterPropertiesSet() throws Exception {
-        Assert.state(m_ipInterfaceDao != null, "property ipInterfaceDao must be set");
+        Assert.state(m_interfaceToNodeCache != null, "property interfaceToNodeCache must be set");
     }
 
     /**
-     * <p>getIpInterfaceDao</p>
+     * <p>getInterfaceToNodeCache</p>
      *
-     * @return a {@link org.opennms.netmgt.dao.api.IpInterfaceDao} object.
+     * @return a {@link org.opennms.netmgt.events.api.InterfaceToNodeCache} object.
      */
-    public IpInterfaceDao getIpInterfaceDao() {
-        return m_ipInterfaceDao;
+    public InterfaceToNodeCache getInterfaceToNodeCache() {
+        return m_interfaceToNodeCache;
     }
 
 }
@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.trapd;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.netmgt.events.api.EventForwarder;
+import org.opennms.netmgt.snmp.TrapNotification;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Events;
+import org.opennms.netmgt.xml.event.Log;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * <p>
+ * Staged trap processing pipeline. Traps are decoded on the SNMP receiver
+ * thread and handed to {@link #submit(TrapNotification)}, which places them
+ * on one of several processing lanes. Each lane is a single thread with its
+ * own bounded queue that enriches and matches the trap (see
+ * {@link TrapQueueProcessor#createEvents()}). A single forwarder thread
+ * collects the resulting events and sends them to eventd in batches.
+ * </p>
+ *
+ * <p>
+ * The lane is chosen from the trap source address, so traps from the same
+ * agent are always processed by the same thread and reach eventd in the
+ * order they were received. When a lane queue is full the trap is dropped
+ * and counted rather than blocking the receiver.
+ * </p>
+ *
+ * <p>
+ * The sizes can be tuned with the <code>org.opennms.netmgt.trapd.threads</code>,
+ * <code>org.opennms.netmgt.trapd.queueSize</code> and
+ * <code>org.opennms.netmgt.trapd.batchSize</code> system properties.
+ * </p>
+ */
+public class TrapPipeline implements InitializingBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrapPipeline.class);
+
+    private static final long POLL_INTERVAL = 250;
+
+    private TrapQueueProcessorFactory m_processorFactory;
+
+    private EventForwarder m_eventForwarder;
+
+    private int m_threads = Integer.getInteger("org.opennms.netmgt.trapd.threads", Runtime.getRuntime().availableProcessors());
+
+    private int m_queueSize = Integer.getInteger("org.opennms.netmgt.trapd.queueSize", 10000);
+
+    private int m_batchSize = Integer.getInteger("org.opennms.netmgt.trapd.batchSize", 100);
+
+    private List<BlockingQueue<QueuedTrap>> m_lanes;
+
+    private BlockingQueue<List<Event>> m_forwardQueue;
+
+    private final List<Thread> m_laneThreads = new ArrayList<Thread>();
+
+    private Thread m_forwarderThread;
+
+    private volatile boolean m_running = false;
+
+    private volatile boolean m_lanesStopped = false;
+
+    /**
+     * A trap waiting on a lane queue, along with the time it was queued.
+     */
+    private static class QueuedTrap {
+        private final TrapNotification m_trapNotification;
+        private final long m_queuedAt;
+
+        public QueuedTrap(final TrapNotification trapNotification) {
+            m_trapNotification = trapNotification;
+            m_queuedAt = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Assert.state(m_processorFactory != null, "processorFactory must be set");
+        Assert.state(m_eventForwarder != null, "eventForwarder must be set");
+        Assert.state(m_threads > 0, "threads must be greater than zero");
+        Assert.state(m_queueSize > 0, "queueSize must be greater than zero");
+        Assert.state(m_batchSize > 0, "batchSize must be greater than zero");
+    }
+
+    /**
+     * Starts the lane and forwarder threads.
+     */
+    public synchronized void start() {
+        if (m_running) {
+            return;
+        }
+        afterPropertiesSet();
+
+        m_lanes = new ArrayList<BlockingQueue<QueuedTrap>>(m_threads);
+        m_forwardQueue = new ArrayBlockingQueue<List<Event>>(m_queueSize);
+        m_running = true;
+        m_lanesStopped = false;
+
+        for (int i = 0; i < m_threads; i++) {
+            final BlockingQueue<QueuedTrap> lane = new ArrayBlockingQueue<QueuedTrap>(m_queueSize);
+            m_lanes.add(lane);
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    processLane(lane);
+                }
+            }, "Trapd-Lane-" + i);
+            m_laneThreads.add(thread);
+            thread.start();
+        }
+
+        m_forwarderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                forward();
+            }
+        }, "Trapd-Forwarder");
+        m_forwarderThread.start();
+
+        LOG.debug("start: trap pipeline started with {} lanes, queue size {}, batch size {}", m_threads, m_queueSize, m_batchSize);
+    }
+
+    /**
+     * Stops accepting traps, waits for the queued traps to be processed and
+     * forwarded, and then stops the pipeline threads.
+     */
+    public synchronized void stop() {
+        if (!m_running) {
+            return;
+        }
+        m_running = false;
+
+        try {
+            for (final Thread thread : m_laneThreads) {
+                thread.join();
+            }
+            m_lanesStopped = true;
+            m_forwarderThread.join();
+        } catch (final InterruptedException e) {
+            LOG.warn("stop: interrupted while waiting for the trap pipeline to drain");
+            Thread.currentThread().interrupt();
+        }
+
+        m_laneThreads.clear();
+        m_forwarderThread = null;
+
+        LOG.debug("stop: trap pipeline stopped");
+    }
+
+    /**
+     * Queues a trap for processing on the lane belonging to its source.
+     *
+     * @param trapNotification the decoded trap
+     * @return false if the pipeline is stopped or the lane is full and the
+     *         trap was dropped
+     */
+    public boolean submit(final TrapNotification trapNotification) {
+        if (!m_running || !m_lanes.get(getLane(trapNotification)).offer(new QueuedTrap(trapNotification))) {
+            m_processorFactory.getStatistics().incrementTrapsDropped();
+            LOG.debug("submit: trap pipeline is full or stopped, dropping trap");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of traps currently waiting on the lane queues
+     */
+    public int getQueuedTraps() {
+        final List<BlockingQueue<QueuedTrap>> lanes = m_lanes;
+        int size = 0;
+        if (lanes != null) {
+            for (final BlockingQueue<QueuedTrap> lane : lanes) {
+                size += lane.size();
+            }
+        }
+        return size;
+    }
+
+    private int getLane(final TrapNotification trapNotification) {
+        final InetAddress address = ((EventCreator)trapNotification.getTrapProcessor()).getTrapAddress();
+        return address == null ? 0 : (address.hashCode() & Integer.MAX_VALUE) % m_lanes.size();
+    }
+
+    private void processLane(final BlockingQueue<QueuedTrap> lane) {
+        final TrapdStatistics statistics = m_processorFactory.getStatistics();
+        try {
+            while (m_running || !lane.isEmpty()) {
+                final QueuedTrap queued = lane.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (queued == null) {
+                    continue;
+                }
+                final long start = System.nanoTime();
+                statistics.recordQueueTime(start - queued.m_queuedAt);
+
+                final List<Event> events = m_processorFactory.getInstance(queued.m_trapNotification).createEvents();
+                statistics.recordProcessTime(System.nanoTime() - start);
+
+                if (!events.isEmpty()) {
+                    // blocks when the forwarder falls behind, which keeps the per-source order
+                    m_forwardQueue.put(events);
+                }
+            }
+        } catch (final InterruptedException e) {
+            LOG.warn("processLane: interrupted, {} queued traps will not be processed", lane.size());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void forward() {
+        final TrapdStatistics statistics = m_processorFactory.getStatistics();
+        final List<List<Event>> pending = new ArrayList<List<Event>>(m_batchSize);
+        try {
+            while (!m_lanesStopped || !m_forwardQueue.isEmpty()) {
+                final List<Event> first = m_forwardQueue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                pending.add(first);
+                m_forwardQueue.drainTo(pending, m_batchSize - 1);
+
+                final Events events = new Events();
+                for (final List<Event> trapEvents : pending) {
+                    for (final Event event : trapEvents) {
+                        events.addEvent(event);
+                    }
+                }
+                pending.clear();
+
+                final Log log = new Log();
+                log.setEvents(events);
+
+                final long start = System.nanoTime();
+                try {
+                    m_eventForwarder.sendNow(log);
+                    statistics.recordForwardTime(events.getEventCount(), System.nanoTime() - start);
+                } catch (final Throwable e) {
+                    LOG.error("forward: failed to send {} events to eventd", events.getEventCount(), e);
+                    statistics.incrementTrapsErrored();
+                }
+            }
+        } catch (final InterruptedException e) {
+            LOG.warn("forward: interrupted, {} queued events will not be sent", m_forwardQueue.size());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public TrapQueueProcessorFactory getProcessorFactory() {
+        return m_processorFactory;
+    }
+
+    public void setProcessorFactory(final TrapQueueProcessorFactory processorFactory) {
+        m_processorFactory = processorFactory;
+    }
+
+    public EventForwarder getEventForwarder() {
+        return m_eventForwarder;
+    }
+
+    public void setEventForwarder(final EventForwarder eventForwarder) {
+        m_eventForwarder = eventForwarder;
+    }
+
+    public int getThreads() {
+        return m_threads;
+    }
+
+    public void setThreads(final int threads) {
+        m_threads = threads;
+    }
+
+    public int getQueueSize() {
+        return m_queueSize;
+    }
+
+    public void setQueueSize(final int queueSize) {
+        m_queueSize = queueSize;
+    }
+
+    public int getBatchSize() {
+        return m_batchSize;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        m_batchSize = batchSize;
+    }
+}
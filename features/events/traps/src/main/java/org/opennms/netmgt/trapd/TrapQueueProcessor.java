@@ -31,6 +31,9 @@ package org.opennms.netmgt.trapd;
 import static org.opennms.core.utils.InetAddressUtils.addr;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import org.opennms.core.utils.InetAddressUtils;
@@ -83,17 +86,17 @@ class TrapQueueProcessor implements Callable<Callable<?>>, InitializingBean {
      */
     private EventConfDao m_eventConfDao;
 
+    /**
+     * The IP manager used to resolve the node ID of the trap source.
+     */
+    private TrapdIpMgr m_trapdIpMgr;
+
+    /**
+     * The statistics shared by all processors of this Trapd instance.
+     */
+    private TrapdStatistics m_statistics;
+
     private TrapNotification m_trapNotification;
-    
-    private static long s_v1TrapsReceived = 0;
-    
-    private static long s_v2cTrapsReceived = 0;
-    
-    private static long s_v3TrapsReceived = 0;
-    
-    private static long s_trapsDiscarded = 0;
-    
-    private static long s_trapsErrored = 0;
 
     /**
      * Process a V2 trap and convert it to an event for transmission.
@@ -164,15 +167,30 @@ class TrapQueueProcessor implements Callable<Callable<?>>, InitializingBean {
      */
     @Override
     public Callable<Void> call() {
+        for (final Event event : createEvents()) {
+            m_eventMgr.sendNow(event);
+        }
+        return null;
+    }
+
+    /**
+     * Enriches and matches the trap, returning the events that should be
+     * sent to eventd: the trap event itself, followed by a newSuspect event
+     * if the trap came from an unknown interface. The list is empty if the
+     * trap was discarded or could not be processed.
+     *
+     * @return the events to forward, in order
+     */
+    public List<Event> createEvents() {
         try {
-            processTrapEvent(((EventCreator)m_trapNotification.getTrapProcessor()).getEvent());
+            return processTrapEvent(((EventCreator)m_trapNotification.getTrapProcessor()).getEvent());
         } catch (IllegalArgumentException e) {
             LOG.info(e.getMessage());
         } catch (Throwable e) {
             LOG.error("Unexpected error processing trap: {}", e, e);
-            s_trapsErrored++;
+            m_statistics.incrementTrapsErrored();
         }
-        return null;
+        return Collections.emptyList();
     }
 
     /**
@@ -180,9 +198,16 @@ class TrapQueueProcessor implements Callable<Callable<?>>, InitializingBean {
      *
      * @param event a {@link org.opennms.netmgt.xml.event.Event} object.
      */
-    private void processTrapEvent(final Event event) {
+    private List<Event> processTrapEvent(final Event event) {
     	final InetAddress trapInterface = event.getInterfaceAddress();
 
+        if (trapInterface != null) {
+            final long nodeId = m_trapdIpMgr.getNodeId(InetAddressUtils.str(trapInterface));
+            if (nodeId != -1) {
+                event.setNodeid(nodeId);
+            }
+        }
+
     	final org.opennms.netmgt.xml.eventconf.Event econf = m_eventConfDao.findByEvent(event);
         if (econf == null || econf.getUei() == null) {
             event.setUei("uei.opennms.org/default/trap");
@@ -194,11 +219,11 @@ class TrapQueueProcessor implements Callable<Callable<?>>, InitializingBean {
             final Snmp snmp = econf.getSnmp();
             if (snmp != null) {
                 if ("v1".equals(snmp.getVersion())) {
-                    s_v1TrapsReceived++;
+                    m_statistics.incrementV1TrapsReceived();
                 } else if ("v2c".equals(snmp.getVersion())) {
-                    s_v2cTrapsReceived++;
+                    m_statistics.incrementV2cTrapsReceived();
                 } else if ("v3".equals(snmp.getVersion())) {
-                    s_v3TrapsReceived++;
+                    m_statistics.incrementV3TrapsReceived();
                 }
             }
             final Logmsg logmsg = econf.getLogmsg();
@@ -206,40 +231,39 @@ class TrapQueueProcessor implements Callable<Callable<?>>, InitializingBean {
                 final String dest = logmsg.getDest();
                 if ("discardtraps".equals(dest)) {
                     LOG.debug("Trap discarded due to matching event having logmsg dest == discardtraps");
-                    s_trapsDiscarded++;
-                    return;
+                    m_statistics.incrementTrapsDiscarded();
+                    return Collections.emptyList();
                 }
             }
         }
 
-        // send the event to eventd
-        m_eventMgr.sendNow(event);
+        final List<Event> events = new ArrayList<Event>(2);
+        events.add(event);
 
-        LOG.debug("Trap successfully converted and sent to eventd with UEI {}", event.getUei());
+        LOG.debug("Trap successfully converted to an event with UEI {}", event.getUei());
 
         if (!event.hasNodeid() && m_newSuspect) {
-            sendNewSuspectEvent(InetAddressUtils.str(trapInterface));
+            events.add(createNewSuspectEvent(InetAddressUtils.str(trapInterface)));
 
-            LOG.debug("Sent newSuspectEvent for interface: {}", trapInterface);
+            LOG.debug("Created newSuspectEvent for interface: {}", trapInterface);
 
         }
+        return events;
     }
 
     /**
-     * Send a newSuspect event for the interface
+     * Create a newSuspect event for the interface
      * 
      * @param trapInterface
      *            The interface for which the newSuspect event is to be
      *            generated
      */
-    private void sendNewSuspectEvent(String trapInterface) {
+    private static Event createNewSuspectEvent(String trapInterface) {
         // construct event with 'trapd' as source
         EventBuilder bldr = new EventBuilder(org.opennms.netmgt.events.api.EventConstants.NEW_SUSPECT_INTERFACE_EVENT_UEI, "trapd");
         bldr.setInterface(addr(trapInterface));
         bldr.setHost(LOCALHOST_ADDRESS);
-
-        // send the event to eventd
-        m_eventMgr.sendNow(bldr.getEvent());
+        return bldr.getEvent();
     }
 
     /**
@@ -302,6 +326,22 @@ class TrapQueueProcessor implements Callable<Callable<?>>, InitializingBean {
         m_newSuspect = newSuspect;
     }
 
+    public TrapdIpMgr getTrapdIpMgr() {
+        return m_trapdIpMgr;
+    }
+
+    public void setTrapdIpMgr(TrapdIpMgr trapdIpMgr) {
+        m_trapdIpMgr = trapdIpMgr;
+    }
+
+    public TrapdStatistics getStatistics() {
+        return m_statistics;
+    }
+
+    public void setStatistics(TrapdStatistics statistics) {
+        m_statistics = statistics;
+    }
+
     public TrapNotification getTrapNotification() {
         return m_trapNotification;
     }
@@ -315,26 +355,8 @@ class TrapQueueProcessor implements Callable<Callable<?>>, InitializingBean {
         Assert.state(m_eventConfDao != null, "property eventConfDao must be set");
         Assert.state(m_eventMgr != null, "property eventMgr must be set");
         Assert.state(m_newSuspect != null, "property newSuspect must be set");
+        Assert.state(m_trapdIpMgr != null, "property trapdIpMgr must be set");
+        Assert.state(m_statistics != null, "property statistics must be set");
         Assert.state(m_trapNotification != null, "property trapNotification must be set");
     }
-    
-    public static long getV1TrapsReceived() {
-        return s_v1TrapsReceived;
-    }
-    
-    public static long getV2cTrapsReceived() {
-        return s_v2cTrapsReceived;
-    }
-    
-    public static long getV3TrapsReceived() {
-        return s_v3TrapsReceived;
-    }
-    
-    public static long getTrapsDiscarded() {
-        return s_trapsDiscarded;
-    }
-    
-    public static long getTrapsErrored() {
-        return s_trapsErrored;
-    }
 }
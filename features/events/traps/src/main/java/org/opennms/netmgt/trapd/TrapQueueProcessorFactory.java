@@ -89,6 +89,24 @@ public class TrapQueueProcessorFactory implements InitializingBean {
     @Autowired
     private EventConfDao m_eventConfDao;
 
+    /**
+     * The IP manager used to resolve the node ID of each trap source.
+     */
+    @Autowired
+    private TrapdIpMgr m_trapdIpMgr;
+
+    /**
+     * The statistics shared by every processor created by this factory.
+     */
+    private final TrapdStatistics m_statistics = new TrapdStatistics();
+
+    /**
+     * @return the statistics updated by the processors created by this factory
+     */
+    public TrapdStatistics getStatistics() {
+        return m_statistics;
+    }
+
     /**
      * The constructor
      */
@@ -100,6 +118,8 @@ public class TrapQueueProcessorFactory implements InitializingBean {
         retval.setEventConfDao(m_eventConfDao);
         retval.setEventManager(m_eventManager);
         retval.setNewSuspect(m_newSuspectOnTrap);
+        retval.setTrapdIpMgr(m_trapdIpMgr);
+        retval.setStatistics(m_statistics);
         retval.setTrapNotification(info);
         retval.afterPropertiesSet();
         return retval;
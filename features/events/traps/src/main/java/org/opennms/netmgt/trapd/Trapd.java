@@ -31,9 +31,7 @@ package org.opennms.netmgt.trapd;
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.net.InetAddress;
-import java.sql.SQLException;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Resource;
 
@@ -88,9 +86,9 @@ public class Trapd extends AbstractServiceDaemon implements TrapProcessorFactory
     private int m_status = START_PENDING;
 
     /**
-     * The thread pool that processes traps
+     * The pipeline that processes traps and forwards them to eventd
      */
-    private ExecutorService m_backlogQ;
+    private TrapPipeline m_pipeline;
 
     /**
      * The queue processing thread
@@ -98,18 +96,6 @@ public class Trapd extends AbstractServiceDaemon implements TrapProcessorFactory
     @Autowired
     private TrapQueueProcessorFactory m_processorFactory;
 
-    /**
-     * The class instance used to receive new events from for the system.
-     */
-    @Autowired
-    private BroadcastEventProcessor m_eventReader;
-    
-    /**
-     * Trapd IP manager.  Contains IP address -> node ID mapping.
-     */
-    @Autowired
-    private TrapdIpMgr m_trapdIpMgr;
-
     @Resource(name="snmpTrapAddress")
     private String m_snmpTrapAddress;
 
@@ -142,13 +128,13 @@ public class Trapd extends AbstractServiceDaemon implements TrapProcessorFactory
      */
     @Override
     public TrapProcessor createTrapProcessor() {
-        return new EventCreator(m_trapdIpMgr);
+        return new EventCreator();
     }
 
     /** {@inheritDoc} */
     @Override
     public void trapReceived(TrapNotification trapNotification) {
-        m_backlogQ.submit(m_processorFactory.getInstance(trapNotification));
+        m_pipeline.submit(trapNotification);
     }
 
     /**
@@ -158,14 +144,9 @@ public class Trapd extends AbstractServiceDaemon implements TrapProcessorFactory
     public synchronized void onInit() {
         BeanUtils.assertAutowiring(this);
 
-        Assert.state(m_backlogQ != null, "backlogQ must be set");
+        Assert.state(m_pipeline != null, "pipeline must be set");
 
-        try {
-            m_trapdIpMgr.dataSourceSync();
-        } catch (final SQLException e) {
-            LOG.error("init: Failed to load known IP address list", e);
-            throw new UndeclaredThrowableException(e);
-        }
+        m_pipeline.start();
 
         try {
         	InetAddress address = getInetAddress();
@@ -188,13 +169,6 @@ public class Trapd extends AbstractServiceDaemon implements TrapProcessorFactory
             }
             throw new UndeclaredThrowableException(e);
         }
-
-        try {
-            m_eventReader.open();
-        } catch (final Throwable e) {
-            LOG.error("init: Failed to open event reader", e);
-            throw new UndeclaredThrowableException(e);
-        }
     }
 
     private InetAddress getInetAddress() {
@@ -286,11 +260,9 @@ public class Trapd extends AbstractServiceDaemon implements TrapProcessorFactory
             LOG.debug("stop: The SNMP session was already closed", e);
         }
 
-        LOG.debug("stop: Stopping queue processor.");
+        LOG.debug("stop: Stopping trap pipeline.");
 
-        m_backlogQ.shutdown();
-
-        m_eventReader.close();
+        m_pipeline.stop();
 
         m_status = STOPPED;
 
@@ -314,39 +286,21 @@ public class Trapd extends AbstractServiceDaemon implements TrapProcessorFactory
     }
 
     /**
-     * <p>getEventReader</p>
-     *
-     * @return a {@link org.opennms.netmgt.trapd.BroadcastEventProcessor} object.
-     */
-    public BroadcastEventProcessor getEventReader() {
-        return m_eventReader;
-    }
-
-    /**
-     * <p>setEventReader</p>
-     *
-     * @param eventReader a {@link org.opennms.netmgt.trapd.BroadcastEventProcessor} object.
-     */
-    public void setEventReader(BroadcastEventProcessor eventReader) {
-        m_eventReader = eventReader;
-    }
-
-    /**
-     * <p>getBacklogQ</p>
+     * <p>getPipeline</p>
      *
-     * @return a {@link java.util.concurrent.ExecutorService} object.
+     * @return a {@link org.opennms.netmgt.trapd.TrapPipeline} object.
      */
-    public ExecutorService getBacklogQ() {
-        return m_backlogQ;
+    public TrapPipeline getPipeline() {
+        return m_pipeline;
     }
 
     /**
-     * <p>setBacklogQ</p>
+     * <p>setPipeline</p>
      *
-     * @param backlogQ a {@link java.util.concurrent.ExecutorService} object.
+     * @param pipeline a {@link org.opennms.netmgt.trapd.TrapPipeline} object.
      */
-    public void setBacklogQ(ExecutorService backlogQ) {
-        m_backlogQ = backlogQ;
+    public void setPipeline(TrapPipeline pipeline) {
+        m_pipeline = pipeline;
     }
 
     public static String getLoggingCategory() {
@@ -354,22 +308,46 @@ public class Trapd extends AbstractServiceDaemon implements TrapProcessorFactory
     }
 
     public long getV1TrapsReceived() {
-        return TrapQueueProcessor.getV1TrapsReceived();
+        return m_processorFactory.getStatistics().getV1TrapsReceived();
     }
 
     public long getV2cTrapsReceived() {
-        return TrapQueueProcessor.getV2cTrapsReceived();
+        return m_processorFactory.getStatistics().getV2cTrapsReceived();
     }
 
     public long getV3TrapsReceived() {
-        return TrapQueueProcessor.getV3TrapsReceived();
+        return m_processorFactory.getStatistics().getV3TrapsReceived();
     }
 
     public long getTrapsDiscarded() {
-        return TrapQueueProcessor.getTrapsDiscarded();
+        return m_processorFactory.getStatistics().getTrapsDiscarded();
     }
 
     public long getTrapsErrored() {
-        return TrapQueueProcessor.getTrapsErrored();
+        return m_processorFactory.getStatistics().getTrapsErrored();
+    }
+
+    public long getTrapsDropped() {
+        return m_processorFactory.getStatistics().getTrapsDropped();
+    }
+
+    public long getTrapsQueued() {
+        return m_pipeline.getQueuedTraps();
+    }
+
+    public long getEventBatchesForwarded() {
+        return m_processorFactory.getStatistics().getBatchesForwarded();
+    }
+
+    public long getAverageQueueTime() {
+        return m_processorFactory.getStatistics().getAverageQueueTime();
+    }
+
+    public long getAverageProcessTime() {
+        return m_processorFactory.getStatistics().getAverageProcessTime();
+    }
+
+    public long getAverageForwardTime() {
+        return m_processorFactory.getStatistics().getAverageForwardTime();
     }
 }
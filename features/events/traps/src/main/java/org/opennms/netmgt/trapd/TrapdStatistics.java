@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.trapd;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and per-stage latency totals for the trap processing pipeline.
+ * A single instance is shared by the {@link TrapQueueProcessorFactory}, the
+ * {@link TrapQueueProcessor} instances it creates and the {@link TrapPipeline},
+ * so every stage updates the same set of counters.
+ */
+public class TrapdStatistics {
+
+    private final AtomicLong m_v1TrapsReceived = new AtomicLong();
+    private final AtomicLong m_v2cTrapsReceived = new AtomicLong();
+    private final AtomicLong m_v3TrapsReceived = new AtomicLong();
+    private final AtomicLong m_trapsDiscarded = new AtomicLong();
+    private final AtomicLong m_trapsErrored = new AtomicLong();
+    private final AtomicLong m_trapsDropped = new AtomicLong();
+
+    private final AtomicLong m_trapsQueued = new AtomicLong();
+    private final AtomicLong m_queueNanos = new AtomicLong();
+
+    private final AtomicLong m_trapsProcessed = new AtomicLong();
+    private final AtomicLong m_processNanos = new AtomicLong();
+
+    private final AtomicLong m_batchesForwarded = new AtomicLong();
+    private final AtomicLong m_eventsForwarded = new AtomicLong();
+    private final AtomicLong m_forwardNanos = new AtomicLong();
+
+    public void incrementV1TrapsReceived() {
+        m_v1TrapsReceived.incrementAndGet();
+    }
+
+    public void incrementV2cTrapsReceived() {
+        m_v2cTrapsReceived.incrementAndGet();
+    }
+
+    public void incrementV3TrapsReceived() {
+        m_v3TrapsReceived.incrementAndGet();
+    }
+
+    public void incrementTrapsDiscarded() {
+        m_trapsDiscarded.incrementAndGet();
+    }
+
+    public void incrementTrapsErrored() {
+        m_trapsErrored.incrementAndGet();
+    }
+
+    public void incrementTrapsDropped() {
+        m_trapsDropped.incrementAndGet();
+    }
+
+    /**
+     * Records the time a trap spent waiting in its lane queue.
+     */
+    public void recordQueueTime(final long nanos) {
+        m_trapsQueued.incrementAndGet();
+        m_queueNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records the time spent enriching and matching a single trap.
+     */
+    public void recordProcessTime(final long nanos) {
+        m_trapsProcessed.incrementAndGet();
+        m_processNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records the time spent handing a batch of events to eventd.
+     */
+    public void recordForwardTime(final int eventCount, final long nanos) {
+        m_batchesForwarded.incrementAndGet();
+        m_eventsForwarded.addAndGet(eventCount);
+        m_forwardNanos.addAndGet(nanos);
+    }
+
+    public long getV1TrapsReceived() {
+        return m_v1TrapsReceived.get();
+    }
+
+    public long getV2cTrapsReceived() {
+        return m_v2cTrapsReceived.get();
+    }
+
+    public long getV3TrapsReceived() {
+        return m_v3TrapsReceived.get();
+    }
+
+    public long getTrapsDiscarded() {
+        return m_trapsDiscarded.get();
+    }
+
+    public long getTrapsErrored() {
+        return m_trapsErrored.get();
+    }
+
+    public long getTrapsDropped() {
+        return m_trapsDropped.get();
+    }
+
+    public long getTrapsProcessed() {
+        return m_trapsProcessed.get();
+    }
+
+    public long getBatchesForwarded() {
+        return m_batchesForwarded.get();
+    }
+
+    public long getEventsForwarded() {
+        return m_eventsForwarded.get();
+    }
+
+    /**
+     * @return the average time, in microseconds, a trap waited in its lane queue
+     */
+    public long getAverageQueueTime() {
+        return averageMicros(m_queueNanos.get(), m_trapsQueued.get());
+    }
+
+    /**
+     * @return the average time, in microseconds, spent enriching and matching a trap
+     */
+    public long getAverageProcessTime() {
+        return averageMicros(m_processNanos.get(), m_trapsProcessed.get());
+    }
+
+    /**
+     * @return the average time, in microseconds, spent forwarding a batch to eventd
+     */
+    public long getAverageForwardTime() {
+        return averageMicros(m_forwardNanos.get(), m_batchesForwarded.get());
+    }
+
+    private static long averageMicros(final long nanos, final long count) {
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(nanos / count);
+    }
+}
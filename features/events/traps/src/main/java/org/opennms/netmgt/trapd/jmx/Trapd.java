@@ -78,4 +78,40 @@ public class Trapd extends AbstractSpringContextJmxServiceDaemon<org.opennms.net
     public long getTrapsErrored() {
         return getDaemon().getTrapsErrored();
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getTrapsDropped() {
+        return getDaemon().getTrapsDropped();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getTrapsQueued() {
+        return getDaemon().getTrapsQueued();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getEventBatchesForwarded() {
+        return getDaemon().getEventBatchesForwarded();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getAverageQueueTime() {
+        return getDaemon().getAverageQueueTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getAverageProcessTime() {
+        return getDaemon().getAverageProcessTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getAverageForwardTime() {
+        return getDaemon().getAverageForwardTime();
+    }
 }
@@ -51,4 +51,22 @@ public interface TrapdMBean extends BaseOnmsMBean {
     
     /** @return The number of traps not processed due to errors since Trapd was last started */
     public long getTrapsErrored();
+
+    /** @return The number of traps dropped because the processing queues were full since Trapd was last started */
+    public long getTrapsDropped();
+
+    /** @return The number of traps currently waiting to be processed */
+    public long getTrapsQueued();
+
+    /** @return The number of event batches sent to eventd since Trapd was last started */
+    public long getEventBatchesForwarded();
+
+    /** @return The average time, in microseconds, a trap waits in the queue before it is processed */
+    public long getAverageQueueTime();
+
+    /** @return The average time, in microseconds, spent converting a trap into events */
+    public long getAverageProcessTime();
+
+    /** @return The average time, in microseconds, spent sending a batch of events to eventd */
+    public long getAverageForwardTime();
 }
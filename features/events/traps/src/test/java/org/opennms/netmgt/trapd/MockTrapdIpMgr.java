@@ -28,24 +28,52 @@
 
 package org.opennms.netmgt.trapd;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * A TrapdIpMgr that doesn't talk to the database.  If we want something
  * there for our test, we'll populate it.
  * 
  * @author <a href="mailto:dj@opennms.org">DJ Gregor</a>
  */
-public class MockTrapdIpMgr extends HibernateTrapdIpMgr {
-    @Override
-    public void afterPropertiesSet() throws Exception {
-        // Don't check for the dataSource property being set
-    }
+public class MockTrapdIpMgr implements TrapdIpMgr {
+    private final Map<String, Long> m_knownips = new ConcurrentHashMap<String, Long>();
 
     @Override
     public synchronized void dataSourceSync() {
         // Don't do anything... don't want to have to mess with the DB here
     }
 
+    @Override
+    public long getNodeId(String addr) {
+        if (addr == null) {
+            return -1;
+        }
+        return longValue(m_knownips.get(addr));
+    }
+
+    @Override
+    public long setNodeId(String addr, long nodeid) {
+        if (addr == null || nodeid == -1) {
+            return -1;
+        }
+        return longValue(m_knownips.put(addr, nodeid));
+    }
+
+    @Override
+    public long removeNodeId(String addr) {
+        if (addr == null) {
+            return -1;
+        }
+        return longValue(m_knownips.remove(addr));
+    }
+
     public synchronized void clearKnownIpsMap() {
         m_knownips.clear();
     }
-}
\ No newline at end of file
+
+    private static long longValue(Long result) {
+        return (result == null ? -1 : result.longValue());
+    }
+}
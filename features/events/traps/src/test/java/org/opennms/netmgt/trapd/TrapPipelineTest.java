@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.trapd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.events.api.EventForwarder;
+import org.opennms.netmgt.snmp.TrapNotification;
+import org.opennms.netmgt.snmp.TrapProcessor;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Log;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TrapPipelineTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrapPipelineTest.class);
+
+    /**
+     * Collects the events forwarded by the pipeline.
+     */
+    private static class RecordingForwarder implements EventForwarder {
+        private final List<Event> m_events = Collections.synchronizedList(new ArrayList<Event>());
+        private volatile int m_batches = 0;
+
+        @Override
+        public void sendNow(final Event event) {
+            m_events.add(event);
+        }
+
+        @Override
+        public void sendNow(final Log eventLog) {
+            m_batches++;
+            m_events.addAll(eventLog.getEvents().getEventCollection());
+        }
+    }
+
+    /**
+     * A factory whose processors turn the trap straight into an event,
+     * optionally waiting on a latch first.
+     */
+    private static TrapQueueProcessorFactory createFactory(final CountDownLatch latch) {
+        return new TrapQueueProcessorFactory() {
+            @Override
+            public TrapQueueProcessor getInstance(final TrapNotification info) {
+                return new TrapQueueProcessor() {
+                    @Override
+                    public List<Event> createEvents() {
+                        if (latch != null) {
+                            try {
+                                latch.await();
+                            } catch (final InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return Collections.singletonList(((EventCreator)info.getTrapProcessor()).getEvent());
+                    }
+                };
+            }
+        };
+    }
+
+    private static TrapNotification createTrap(final InetAddress source, final long sequence) {
+        final EventCreator creator = new EventCreator();
+        creator.setTrapAddress(source);
+        creator.setTimeStamp(sequence);
+        return new TrapNotification() {
+            @Override
+            public TrapProcessor getTrapProcessor() {
+                return creator;
+            }
+        };
+    }
+
+    private static TrapPipeline createPipeline(final TrapQueueProcessorFactory factory, final EventForwarder forwarder, final int threads, final int queueSize, final int batchSize) {
+        final TrapPipeline pipeline = new TrapPipeline();
+        pipeline.setProcessorFactory(factory);
+        pipeline.setEventForwarder(forwarder);
+        pipeline.setThreads(threads);
+        pipeline.setQueueSize(queueSize);
+        pipeline.setBatchSize(batchSize);
+        return pipeline;
+    }
+
+    @Test
+    public void testPreservesOrderPerSource() throws Exception {
+        final int sources = 16;
+        final int trapsPerSource = 5000;
+
+        final TrapQueueProcessorFactory factory = createFactory(null);
+        final RecordingForwarder forwarder = new RecordingForwarder();
+        final TrapPipeline pipeline = createPipeline(factory, forwarder, 4, sources * trapsPerSource, 100);
+        pipeline.start();
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < trapsPerSource; i++) {
+            for (int s = 0; s < sources; s++) {
+                assertTrue(pipeline.submit(createTrap(InetAddressUtils.addr("10.0.0." + (s + 1)), i)));
+            }
+        }
+        pipeline.stop();
+        final long elapsed = System.nanoTime() - start;
+
+        assertEquals(sources * trapsPerSource, forwarder.m_events.size());
+        assertTrue("events should be forwarded in batches", forwarder.m_batches < forwarder.m_events.size());
+
+        final Map<String,Long> lastSequence = new HashMap<String,Long>();
+        for (final Event event : forwarder.m_events) {
+            final Long previous = lastSequence.get(event.getInterface());
+            final long sequence = event.getSnmp().getTimeStamp();
+            assertTrue("out of order trap from " + event.getInterface(), previous == null || previous < sequence);
+            lastSequence.put(event.getInterface(), sequence);
+        }
+        assertEquals(sources, lastSequence.size());
+
+        final TrapdStatistics statistics = factory.getStatistics();
+        assertEquals(sources * trapsPerSource, statistics.getTrapsProcessed());
+        assertEquals(sources * trapsPerSource, statistics.getEventsForwarded());
+        assertEquals(0, statistics.getTrapsDropped());
+
+        LOG.info("Processed {} traps in {} batches at {} traps/s", forwarder.m_events.size(), forwarder.m_batches, (long)(forwarder.m_events.size() / (elapsed / 1e9)));
+    }
+
+    @Test
+    public void testDropsWhenQueueIsFull() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final TrapQueueProcessorFactory factory = createFactory(latch);
+        final RecordingForwarder forwarder = new RecordingForwarder();
+        final TrapPipeline pipeline = createPipeline(factory, forwarder, 1, 2, 10);
+        pipeline.start();
+
+        final InetAddress source = InetAddressUtils.addr("10.0.0.1");
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (pipeline.submit(createTrap(source, i))) {
+                accepted++;
+            }
+        }
+        assertTrue(accepted < 10);
+        assertEquals(10 - accepted, factory.getStatistics().getTrapsDropped());
+
+        latch.countDown();
+        pipeline.stop();
+
+        assertEquals(accepted, forwarder.m_events.size());
+        assertFalse(pipeline.submit(createTrap(source, 10)));
+        assertEquals(11 - accepted, factory.getStatistics().getTrapsDropped());
+    }
+}
@@ -31,12 +31,22 @@ package org.opennms.netmgt.collectd;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
 
 import org.opennms.core.db.DataSourceFactory;
 import org.opennms.core.spring.BeanUtils;
@@ -45,6 +55,7 @@ import org.opennms.netmgt.collectd.jdbc.JdbcAgentState;
 import org.opennms.netmgt.collectd.jdbc.JdbcCollectionAttributeType;
 import org.opennms.netmgt.collectd.jdbc.JdbcCollectionResource;
 import org.opennms.netmgt.collectd.jdbc.JdbcCollectionSet;
+import org.opennms.netmgt.collectd.jdbc.JdbcCollectorException;
 import org.opennms.netmgt.collectd.jdbc.JdbcMultiInstanceCollectionResource;
 import org.opennms.netmgt.collectd.jdbc.JdbcSingleInstanceCollectionResource;
 import org.opennms.netmgt.collection.api.AttributeGroupType;
@@ -68,6 +79,7 @@ public class JdbcCollector implements ServiceCollector {
     private final Map<Integer, JdbcAgentState> m_scheduledNodes = new HashMap<Integer, JdbcAgentState>();
     private Map<String, AttributeGroupType> m_groupTypeList = new HashMap<String, AttributeGroupType>();
     private Map<String, JdbcCollectionAttributeType> m_attribTypeList = new HashMap<String, JdbcCollectionAttributeType>();
+    private ExecutorService m_queryExecutor;
     
     public JdbcDataCollectionConfigDao getJdbcCollectionDao() {
         return m_jdbcCollectionDao;
@@ -76,6 +88,10 @@ public class JdbcCollector implements ServiceCollector {
     public void setJdbcCollectionDao(JdbcDataCollectionConfigDao jdbcCollectionDao) {
         m_jdbcCollectionDao = jdbcCollectionDao;
     }
+
+    public void setQueryExecutor(ExecutorService queryExecutor) {
+        m_queryExecutor = queryExecutor;
+    }
     
     private void loadAttributeGroupList(JdbcDataCollection collection) {
         for (JdbcQuery query : collection.getQueries()) {
@@ -102,6 +118,9 @@ public class JdbcCollector implements ServiceCollector {
         
         // Clear out the node list.
         m_scheduledNodes.clear();
+
+        // Executes the queries of collections with parallel-queries > 1.
+        m_queryExecutor = Executors.newCachedThreadPool(new LogPreservingThreadFactory(getClass().getSimpleName(), Integer.MAX_VALUE));
         
         initializeRrdDirs();
     }
@@ -126,7 +145,14 @@ public class JdbcCollector implements ServiceCollector {
 
     @Override
     public void release() {
+        for (JdbcAgentState agentState : m_scheduledNodes.values()) {
+            agentState.closeAgentConnection();
+        }
         m_scheduledNodes.clear();
+        if (m_queryExecutor != null) {
+            m_queryExecutor.shutdownNow();
+            m_queryExecutor = null;
+        }
     }
 
     @Override
@@ -159,135 +185,264 @@ public class JdbcCollector implements ServiceCollector {
         Integer scheduledNodeKey = Integer.valueOf(agent.getNodeId());
         JdbcAgentState nodeState = m_scheduledNodes.get(scheduledNodeKey);
         if (nodeState != null) {
+            nodeState.closeAgentConnection();
             m_scheduledNodes.remove(scheduledNodeKey);
         }
     }
 
     @Override
     public CollectionSet collect(CollectionAgent agent, EventProxy eproxy, Map<String, Object> parameters) throws CollectionException {
-        JdbcAgentState agentState = null;
         if(parameters == null) {
             LOG.error("Null parameters is now allowed in JdbcCollector!!");
         }
         
+        String collectionName = ParameterMap.getKeyedString(parameters, "collection", null);
+        if (collectionName == null) {
+            //Look for the old configuration style:
+            collectionName = ParameterMap.getKeyedString(parameters, "jdbc-collection", null);
+        }
+    
+        JdbcDataCollection collection = m_jdbcCollectionDao.getDataCollectionByName(collectionName);
+    
+        JdbcAgentState agentState = m_scheduledNodes.get(agent.getNodeId());
+        agentState.setupDatabaseConnections(parameters);
+
+        // Independent queries may run in parallel, all of them have to finish before the deadline.
+        int parallelQueries = ParameterMap.getKeyedInteger(parameters, "parallel-queries", 1);
+        long collectionTimeout = ParameterMap.getKeyedLong(parameters, "collection-timeout", 0);
+        long deadline = collectionTimeout > 0 ? System.currentTimeMillis() + collectionTimeout : Long.MAX_VALUE;
+    
+        // Load the attribute group types.
+        loadAttributeGroupList(collection);
+
+        // Load the attribute types.
+        loadAttributeTypeList(collection);
+    
+        // Create a new collection set.
+        JdbcCollectionSet collectionSet = new JdbcCollectionSet();
+        collectionSet.setCollectionTimestamp(new Date());
+
+        // Creating a single resource object, because all node-level metric must belong to the exact same resource.
+        final JdbcSingleInstanceCollectionResource nodeResource = new JdbcSingleInstanceCollectionResource(agent);
+    
+        // Cycle through all of the queries for this collection and determine the available ones.
+        // This is done up front, since it updates the agent state.
+        final List<JdbcQuery> queries = new ArrayList<JdbcQuery>();
+        for(JdbcQuery query : collection.getQueries()) {
+            // Verify if we should check for availability of a query.
+            if (agentState.shouldCheckAvailability(query.getQueryName(), query.getRecheckInterval())) {
+                // Check to see if the query is available.
+                if (!isGroupAvailable(agentState, query)) {
+                    LOG.warn("Group is not available.");
+                    continue;
+                }
+            }
+            
+            // If the query is available, lets collect it.
+            if (agentState.groupIsAvailable(query.getQueryName())) {
+                queries.add(query);
+            }
+        }
+
+        final QueryResult[] results;
+        if (parallelQueries > 1 && queries.size() > 1) {
+            results = executeQueriesInParallel(agentState, queries, Math.min(parallelQueries, queries.size()), deadline);
+        } else {
+            results = new QueryResult[queries.size()];
+            executeQueries(agentState, queries, 0, 1, deadline, results);
+        }
+
+        // Build the resources in the order of the queries.
+        for (QueryResult result : results) {
+            if (result == null) {
+                continue;
+            }
+            for (QueryRow row : result.rows) {
+                JdbcCollectionResource resource = null;
+                
+                // Create the appropriate resource container.
+                if (result.singleInstance) {
+                    resource = nodeResource;
+                } else {
+                    resource = new JdbcMultiInstanceCollectionResource(agent, row.instance, result.query.getResourceType());
+                }
+                
+                int i = 0;
+                for(JdbcColumn curColumn : result.query.getJdbcColumns()) {
+                    JdbcCollectionAttributeType attribType = m_attribTypeList.get(curColumn.getColumnName());
+                    resource.setAttributeValue(attribType, row.values.get(i++));
+                }
+
+                collectionSet.getCollectionResources().add(resource);
+            }
+        }
+
+        collectionSet.setStatus(ServiceCollector.COLLECTION_SUCCEEDED);
+        return collectionSet;
+    }
+
+    /**
+     * Distributes the queries over <code>workers</code> tasks of the query executor and waits until
+     * all of them finished or the deadline passed. Queries which did not finish in time are missing
+     * from the returned results.
+     */
+    private QueryResult[] executeQueriesInParallel(final JdbcAgentState agentState, final List<JdbcQuery> queries, final int workers, final long deadline) {
+        final QueryResult[] results = new QueryResult[queries.size()];
+        final List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+        for (int worker = 0; worker < workers; worker++) {
+            final int offset = worker;
+            futures.add(m_queryExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    executeQueries(agentState, queries, offset, workers, deadline, results);
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    if (deadline == Long.MAX_VALUE) {
+                        future.get();
+                    } else {
+                        future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    }
+                } catch (TimeoutException e) {
+                    LOG.warn("Collection from {} did not finish before the deadline, skipping outstanding queries.", agentState.getAddress());
+                    break;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new JdbcCollectorException("Unable to execute queries: " + e.getCause(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while waiting for the queries of {}", agentState.getAddress());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        // copy the results, late queries must not change what was already collected
+        synchronized (results) {
+            return results.clone();
+        }
+    }
+
+    /**
+     * Executes every <code>step</code>-th query starting at <code>offset</code> and stores the results at the query's index.
+     */
+    private void executeQueries(JdbcAgentState agentState, List<JdbcQuery> queries, int offset, int step, long deadline, QueryResult[] results) {
+        for (int i = offset; i < queries.size(); i += step) {
+            if (System.currentTimeMillis() >= deadline || Thread.currentThread().isInterrupted()) {
+                LOG.warn("Collection from {} did not finish before the deadline, skipping query '{}'.", agentState.getAddress(), queries.get(i).getQueryName());
+                continue;
+            }
+            QueryResult result = executeQuery(agentState, queries.get(i), deadline);
+            synchronized (results) {
+                results[i] = result;
+            }
+        }
+    }
+
+    /**
+     * Executes a single query on a (pooled) connection and copies the values of its configured columns.
+     *
+     * @return the rows of the query, or null if the query failed or returned no results.
+     */
+    private QueryResult executeQuery(JdbcAgentState agentState, JdbcQuery query, long deadline) {
         Connection con = null;
         ResultSet results = null;
-        Statement stmt = null;
+        PreparedStatement stmt = null;
         
         try {
-            String collectionName = ParameterMap.getKeyedString(parameters, "collection", null);
-            if (collectionName == null) {
-                //Look for the old configuration style:
-                collectionName = ParameterMap.getKeyedString(parameters, "jdbc-collection", null);
+            if(agentState.getUseDataSourceName()) {
+                initDatabaseConnectionFactory(agentState.getDataSourceName());
+                con = DataSourceFactory.getInstance(agentState.getDataSourceName()).getConnection();
+            } else {
+                con = agentState.getJdbcConnection();
             }
+            stmt = agentState.prepareJdbcQuery(con, query);
+            if (deadline != Long.MAX_VALUE) {
+                stmt.setQueryTimeout((int) Math.max(1, (deadline - System.currentTimeMillis() + 999) / 1000));
+            }
+            results = agentState.executeJdbcQuery(stmt, query);
         
-            JdbcDataCollection collection = m_jdbcCollectionDao.getDataCollectionByName(collectionName);
-        
-            agentState = m_scheduledNodes.get(agent.getNodeId());
-            agentState.setupDatabaseConnections(parameters);
-        
-            // Load the attribute group types.
-            loadAttributeGroupList(collection);
-
-            // Load the attribute types.
-            loadAttributeTypeList(collection);
-        
-            // Create a new collection set.
-            JdbcCollectionSet collectionSet = new JdbcCollectionSet();
-            collectionSet.setCollectionTimestamp(new Date());
+            // Determine if there were any results for this query to                    
+            if (results.isBeforeFirst() && results.isAfterLast()) {
+                LOG.warn("Query '{}' returned no results.", query.getQueryName());
+                return null;
+            }
+            
+            // Determine if there are results and how many.
+            results.last();
+            boolean singleInstance = (results.getRow()==1)?true:false;
+            results.beforeFirst();
+            
+            QueryResult queryResult = new QueryResult(query, singleInstance);
 
-            // Creating a single resource object, because all node-level metric must belong to the exact same resource.
-            final JdbcSingleInstanceCollectionResource nodeResource = new JdbcSingleInstanceCollectionResource(agent);
-        
-            // Cycle through all of the queries for this collection
-            for(JdbcQuery query : collection.getQueries()) {
-                // Verify if we should check for availability of a query.
-                if (agentState.shouldCheckAvailability(query.getQueryName(), query.getRecheckInterval())) {
-                    // Check to see if the query is available.
-                    if (!isGroupAvailable(agentState, query)) {
-                        LOG.warn("Group is not available.");
-                        continue;
-                    }
-                }
+            // Iterate through each row.
+            while(results.next() ) {
+                // Retrieve the name of the column to use as the instance key for multi-row queries.
+                String instance = singleInstance ? null : results.getString(query.getInstanceColumn());
+                QueryRow row = new QueryRow(instance);
                 
-                try {
-                    // If the query is available, lets collect it.
-                    if (agentState.groupIsAvailable(query.getQueryName())) {
-                        if(agentState.getUseDataSourceName()) {
-                            initDatabaseConnectionFactory(agentState.getDataSourceName());
-                            con = DataSourceFactory.getInstance(agentState.getDataSourceName()).getConnection();
-                        } else {
-                            con = agentState.getJdbcConnection();
-                        }
-                        stmt = agentState.createStatement(con);
-                        results = agentState.executeJdbcQuery(stmt, query);
-                    
-                        // Determine if there were any results for this query to                    
-                        if (results.isBeforeFirst() && results.isAfterLast()) {
-                            LOG.warn("Query '{}' returned no results.", query.getQueryName());
-                            // Close the statement, but retain the connection.
-                            agentState.closeResultSet(results);
-                            agentState.closeStmt(stmt);
-                            continue;
-                        }
-                        
-                        // Determine if there are results and how many.
-                        results.last();
-                        boolean singleInstance = (results.getRow()==1)?true:false;
-                        results.beforeFirst();
-                        
-                        // Iterate through each row.
-                        while(results.next() ) {
-                            JdbcCollectionResource resource = null;
-                            
-                            // Create the appropriate resource container.
-                            if(singleInstance) {
-                                resource = nodeResource;
-                            } else {
-                                // Retrieve the name of the column to use as the instance key for multi-row queries.
-                                String instance = results.getString(query.getInstanceColumn());
-                                resource = new JdbcMultiInstanceCollectionResource(agent,instance, query.getResourceType());
-                            }
-                            
-                            for(JdbcColumn curColumn : query.getJdbcColumns()) {
-                                String columnName = null;
-                                if(curColumn.getDataSourceName() != null && curColumn.getDataSourceName().length() != 0) {
-                                    columnName = curColumn.getDataSourceName();
-                                } else {
-                                    columnName = curColumn.getColumnName();
-                                }
-                                
-                                JdbcCollectionAttributeType attribType = m_attribTypeList.get(curColumn.getColumnName());
-                                resource.setAttributeValue(attribType, results.getString(columnName));
-                            }
-
-                            collectionSet.getCollectionResources().add(resource);
-                        }
+                for(JdbcColumn curColumn : query.getJdbcColumns()) {
+                    String columnName = null;
+                    if(curColumn.getDataSourceName() != null && curColumn.getDataSourceName().length() != 0) {
+                        columnName = curColumn.getDataSourceName();
+                    } else {
+                        columnName = curColumn.getColumnName();
                     }
-                } catch(SQLException e) {
-                    // Close the statement but retain the connection, log the exception and continue to the next query.
-                    LOG.warn("There was a problem executing query '{}' Please review the query or configuration. Reason: {}", query.getQueryName(), e.getMessage());
-                    agentState.closeResultSet(results);
-                    agentState.closeStmt(stmt);
-                    agentState.closeConnection(con);
-                    continue;
+                    row.values.add(results.getString(columnName));
                 }
+
+                queryResult.rows.add(row);
+            }
+            return queryResult;
+        } catch(SQLException e) {
+            // Log the exception and continue to the next query.
+            LOG.warn("There was a problem executing query '{}' Please review the query or configuration. Reason: {}", query.getQueryName(), e.getMessage());
+            return null;
+        } catch(JdbcCollectorException e) {
+            if (con == null) {
+                // Without a connection none of the queries can succeed.
+                throw e;
             }
-            collectionSet.setStatus(ServiceCollector.COLLECTION_SUCCEEDED);
-            return collectionSet;
+            // The query failed or was cancelled by the query timeout, continue to the next query.
+            LOG.warn("There was a problem executing query '{}' Please review the query or configuration. Reason: {}", query.getQueryName(), e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+            return null;
         } finally {
-            // Make sure that when we're done we close all results, statements and connections.
+            // Closing a pooled connection hands it and its cached statements back to the pool.
             agentState.closeResultSet(results);
             agentState.closeStmt(stmt);
             agentState.closeConnection(con);
-            
-            if(agentState != null) {
-                //agentState.closeAgentConnection();
-            }
         }
     }
     
-    
+    private static class QueryResult {
+        private final JdbcQuery query;
+        private final boolean singleInstance;
+        private final List<QueryRow> rows = new ArrayList<QueryRow>();
+
+        private QueryResult(JdbcQuery query, boolean singleInstance) {
+            this.query = query;
+            this.singleInstance = singleInstance;
+        }
+    }
+
+    private static class QueryRow {
+        private final String instance;
+        private final List<String> values = new ArrayList<String>();
+
+        private QueryRow(String instance) {
+            this.instance = instance;
+        }
+    }
+
     // Simply check the database the query is supposed to connect to to see if it is available.
     private boolean isGroupAvailable(JdbcAgentState agentState, JdbcQuery query) {
         LOG.debug("Checking availability of group {}", query.getQueryName());
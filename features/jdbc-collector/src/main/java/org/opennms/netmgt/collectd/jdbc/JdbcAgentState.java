@@ -28,9 +28,11 @@
 
 package org.opennms.netmgt.collectd.jdbc;
 
+import java.beans.PropertyVetoException;
 import java.net.InetAddress;
 import java.sql.Connection;
 import java.sql.Driver;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -45,10 +47,17 @@ import org.opennms.netmgt.config.jdbc.JdbcQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
 public class JdbcAgentState {
     private static final Logger LOG = LoggerFactory.getLogger(JdbcAgentState.class);
 
     private static final String JAS_NO_DATASOURCE_FOUND = "NO_DATASOURCE_FOUND";
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 4;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+    private static final int DEFAULT_IDLE_TIMEOUT = 600;
+    private static final int DEFAULT_CONNECTION_TEST_PERIOD = 60;
     
     private boolean m_useDataSourceName;
     private String m_dataSourceName;
@@ -57,6 +66,14 @@ public class JdbcAgentState {
     
     Driver m_driver = null;
     Properties m_dbProps = null;
+
+    private String m_driverClass;
+    private boolean m_usePool;
+    private int m_maxConnections;
+    private int m_statementCacheSize;
+    private int m_idleTimeout;
+    private String m_testQuery;
+    private ComboPooledDataSource m_pool;
     
     private String m_address;
     private Map<String, JdbcGroupState> m_groupStates = new HashMap<String, JdbcGroupState>();
@@ -90,8 +107,8 @@ public class JdbcAgentState {
         m_useDataSourceName = false;
         
         // Extract the driver class name and create a driver class instance.
+        String driverClass = ParameterMap.getKeyedString(parameters, "driver", DBTools.DEFAULT_JDBC_DRIVER);
         try {
-            String driverClass = ParameterMap.getKeyedString(parameters, "driver", DBTools.DEFAULT_JDBC_DRIVER);
             m_driver = (Driver)Class.forName(driverClass).newInstance();
         } catch (Throwable exp) {
             throw new RuntimeException("Unable to load driver class: "+exp.toString(), exp);
@@ -100,28 +117,101 @@ public class JdbcAgentState {
         LOG.info("Loaded JDBC driver");
 
         // Get the JDBC url host part
-        m_dbUrl = DBTools.constructUrl(ParameterMap.getKeyedString(parameters, "url", DBTools.DEFAULT_URL), m_address);
-        LOG.debug("JDBC url: {}", m_dbUrl);
+        String dbUrl = DBTools.constructUrl(ParameterMap.getKeyedString(parameters, "url", DBTools.DEFAULT_URL), m_address);
+        LOG.debug("JDBC url: {}", dbUrl);
 
         String dbUser = ParameterMap.getKeyedString(parameters, "user", DBTools.DEFAULT_DATABASE_USER);
         String dbPass = ParameterMap.getKeyedString(parameters, "password", DBTools.DEFAULT_DATABASE_PASSWORD);
 
+        boolean usePool = ParameterMap.getKeyedBoolean(parameters, "pool-connections", true);
+        int maxConnections = ParameterMap.getKeyedInteger(parameters, "max-connections", DEFAULT_MAX_CONNECTIONS);
+        int statementCacheSize = ParameterMap.getKeyedInteger(parameters, "statement-cache-size", DEFAULT_STATEMENT_CACHE_SIZE);
+        int idleTimeout = ParameterMap.getKeyedInteger(parameters, "idle-timeout", DEFAULT_IDLE_TIMEOUT);
+        String testQuery = ParameterMap.getKeyedString(parameters, "test-query", null);
+
+        // The parameters are passed on every collection, only rebuild the pool if they changed.
+        if (m_pool != null && !(dbUrl.equals(m_dbUrl) && driverClass.equals(m_driverClass)
+                && dbUser.equals(m_dbProps.getProperty("user")) && dbPass.equals(m_dbProps.getProperty("password"))
+                && usePool == m_usePool && maxConnections == m_maxConnections
+                && statementCacheSize == m_statementCacheSize && idleTimeout == m_idleTimeout
+                && (testQuery == null ? m_testQuery == null : testQuery.equals(m_testQuery)))) {
+            closeAgentConnection();
+        }
+
+        m_dbUrl = dbUrl;
+        m_driverClass = driverClass;
+        m_usePool = usePool;
+        m_maxConnections = maxConnections;
+        m_statementCacheSize = statementCacheSize;
+        m_idleTimeout = idleTimeout;
+        m_testQuery = testQuery;
+
         m_dbProps = new Properties();
         m_dbProps.setProperty("user", dbUser);
         m_dbProps.setProperty("password", dbPass);
     }
-    
+
+    /**
+     * Creates the connection pool of this agent. The pool is bounded by the
+     * <code>max-connections</code> parameter, caches up to <code>statement-cache-size</code>
+     * prepared statements per connection and tests idle connections periodically.
+     * Connections are not tested on every check-in, since without a
+     * <code>test-query</code> the pool tests a connection by reading the table
+     * list of the database, which would cost more than most collection queries.
+     */
+    private synchronized ComboPooledDataSource getPool() throws SQLException {
+        if (m_pool == null) {
+            ComboPooledDataSource pool = new ComboPooledDataSource();
+            try {
+                pool.setDriverClass(m_driverClass);
+            } catch (final PropertyVetoException e) {
+                throw new SQLException("Unable to set driver class.", e);
+            }
+            pool.setJdbcUrl(m_dbUrl);
+            pool.setUser(m_dbProps.getProperty("user"));
+            pool.setPassword(m_dbProps.getProperty("password"));
+            pool.setInitialPoolSize(1);
+            pool.setMinPoolSize(0);
+            pool.setMaxPoolSize(m_maxConnections);
+            pool.setMaxIdleTime(m_idleTimeout);
+            pool.setMaxStatementsPerConnection(m_statementCacheSize);
+            pool.setIdleConnectionTestPeriod(DEFAULT_CONNECTION_TEST_PERIOD);
+            if (m_testQuery != null) {
+                pool.setPreferredTestQuery(m_testQuery);
+            }
+            // fail fast instead of retrying in the background if the database is down
+            pool.setAcquireRetryAttempts(1);
+            LOG.debug("Created connection pool for JDBC url: {}", m_dbUrl);
+            m_pool = pool;
+        }
+        return m_pool;
+    }
+
     public Connection getJdbcConnection() throws JdbcCollectorException {
         if(m_useDataSourceName) {
             throw new JdbcCollectorException("Attempt to retrieve a JDBC Connection when the collector should be using the DataSourceFactory!");
         }
         
         try {
+            if (m_usePool) {
+                return getPool().getConnection();
+            }
             return m_driver.connect(m_dbUrl, m_dbProps);
         } catch(SQLException e) {
             throw new JdbcCollectorException("Unable to connect to JDBC URL: '" + m_dbUrl +"'", e);
         }
     }
+
+    /**
+     * Closes the connection pool of this agent, if there is one.
+     */
+    public synchronized void closeAgentConnection() {
+        if (m_pool != null) {
+            LOG.debug("Closing connection pool for JDBC url: {}", m_dbUrl);
+            m_pool.close();
+            m_pool = null;
+        }
+    }
     
     public Statement createStatement(Connection con) {
         try {
@@ -142,6 +232,27 @@ public class JdbcAgentState {
         }
     }
     
+    /**
+     * Prepares the statement of the given query. Pooled connections cache prepared
+     * statements, so the statement is only parsed once per connection.
+     */
+    public PreparedStatement prepareJdbcQuery(Connection con, JdbcQuery query) {
+        try {
+            return con.prepareStatement(query.getJdbcStatement().getJdbcQuery(), ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        } catch(SQLException e) {
+            LOG.warn("Unable to create SQL statement: {}", e.getMessage());
+            throw new JdbcCollectorException("Unable to create SQL statement: " + e.getMessage(), e);
+        }
+    }
+
+    public ResultSet executeJdbcQuery(PreparedStatement stmt, JdbcQuery query) {
+        try {
+            return stmt.executeQuery();
+        } catch(SQLException e) {
+            throw new JdbcCollectorException("Unable to execute query '" + query.getQueryName() + "'! Check your jdbc-datacollection-config.xml configuration!", e);
+        }
+    }
+
     public void closeConnection(Connection con) {
         if (con == null) return;
         try {
@@ -0,0 +1,403 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.collection.api.CollectionAgent;
+import org.opennms.netmgt.collection.api.ServiceCollector;
+import org.opennms.netmgt.collectd.jdbc.JdbcCollectionSet;
+import org.opennms.netmgt.config.jdbc.JdbcColumn;
+import org.opennms.netmgt.config.jdbc.JdbcDataCollection;
+import org.opennms.netmgt.config.jdbc.JdbcDataCollectionConfig;
+import org.opennms.netmgt.config.jdbc.JdbcQuery;
+import org.opennms.netmgt.config.jdbc.JdbcStatement;
+import org.opennms.netmgt.dao.JdbcDataCollectionConfigDao;
+
+public class JdbcCollectorTest {
+    private static final String SLOW_QUERY = "SELECT slow";
+    private static final String BROKEN_QUERY = "SELECT broken";
+
+    private JdbcCollector m_collector;
+    private JdbcDataCollection m_collection;
+    private CollectionAgent m_agent;
+    private Map<String, Object> m_parameters;
+
+    @Before
+    public void setUp() throws Exception {
+        TestDriver.reset();
+
+        m_collection = new JdbcDataCollection();
+        m_collection.setName("test");
+
+        m_collector = new JdbcCollector();
+        m_collector.setJdbcCollectionDao(new JdbcDataCollectionConfigDao() {
+            @Override
+            public JdbcDataCollectionConfig getConfig() {
+                return null;
+            }
+
+            @Override
+            public JdbcDataCollection getDataCollectionByName(String name) {
+                return m_collection;
+            }
+
+            @Override
+            public JdbcDataCollection getDataCollectionByIndex(int idx) {
+                return m_collection;
+            }
+        });
+        m_collector.setQueryExecutor(Executors.newCachedThreadPool());
+
+        m_agent = createNiceMock(CollectionAgent.class);
+        expect(m_agent.getNodeId()).andReturn(1).anyTimes();
+        expect(m_agent.getAddress()).andReturn(InetAddress.getLoopbackAddress()).anyTimes();
+        expect(m_agent.getStorageDir()).andReturn(new File("1")).anyTimes();
+        replay(m_agent);
+
+        m_parameters = new HashMap<String, Object>();
+        m_parameters.put("collection", "test");
+        m_parameters.put("driver", TestDriver.class.getName());
+        m_parameters.put("url", TestDriver.URL);
+        m_parameters.put("user", "opennms");
+        m_parameters.put("password", "opennms");
+
+        m_collector.initialize(m_agent, m_parameters);
+    }
+
+    @After
+    public void tearDown() {
+        m_collector.release();
+    }
+
+    @Test
+    public void testFailingQueryDoesNotAbortCollection() throws Exception {
+        addQuery("first", "SELECT first");
+        addQuery("broken", BROKEN_QUERY);
+        addQuery("second", "SELECT second");
+
+        JdbcCollectionSet collectionSet = (JdbcCollectionSet) m_collector.collect(m_agent, null, m_parameters);
+
+        assertEquals(ServiceCollector.COLLECTION_SUCCEEDED, collectionSet.getStatus());
+        assertEquals(4, collectionSet.getCollectionResources().size());
+    }
+
+    @Test
+    public void testFailingQueryInParallel() throws Exception {
+        m_parameters.put("parallel-queries", "3");
+        addQuery("first", "SELECT first");
+        addQuery("broken", BROKEN_QUERY);
+        addQuery("second", "SELECT second");
+
+        JdbcCollectionSet collectionSet = (JdbcCollectionSet) m_collector.collect(m_agent, null, m_parameters);
+
+        assertEquals(ServiceCollector.COLLECTION_SUCCEEDED, collectionSet.getStatus());
+        assertEquals(4, collectionSet.getCollectionResources().size());
+        assertEquals(3, TestDriver.s_executed.get());
+    }
+
+    @Test
+    public void testQueryTimeout() throws Exception {
+        m_parameters.put("collection-timeout", "1000");
+        addQuery("first", "SELECT first");
+        addQuery("slow", SLOW_QUERY);
+        addQuery("second", "SELECT second");
+
+        JdbcCollectionSet collectionSet = (JdbcCollectionSet) m_collector.collect(m_agent, null, m_parameters);
+
+        // the slow query is cancelled by its query timeout, the query after it missed the deadline
+        assertEquals(ServiceCollector.COLLECTION_SUCCEEDED, collectionSet.getStatus());
+        assertEquals(2, collectionSet.getCollectionResources().size());
+        assertEquals(Collections.singletonList(1), TestDriver.s_queryTimeouts);
+    }
+
+    @Test
+    public void testPooledConnectionsAreReused() throws Exception {
+        addQuery("first", "SELECT first");
+        addQuery("second", "SELECT second");
+
+        for (int i = 0; i < 5; i++) {
+            m_collector.collect(m_agent, null, m_parameters);
+        }
+
+        // one availability check per query and two queries per collection were run ...
+        assertEquals(10, TestDriver.s_executed.get());
+        // ... on a handful of physical connections
+        assertTrue("opened " + TestDriver.s_connections.get() + " connections", TestDriver.s_connections.get() <= 3);
+    }
+
+    @Test
+    public void testUnpooledConnections() throws Exception {
+        m_parameters.put("pool-connections", "false");
+        addQuery("first", "SELECT first");
+        addQuery("second", "SELECT second");
+
+        for (int i = 0; i < 5; i++) {
+            m_collector.collect(m_agent, null, m_parameters);
+        }
+
+        // two availability checks and ten queries
+        assertEquals(12, TestDriver.s_connections.get());
+    }
+
+    private void addQuery(String name, String sql) {
+        JdbcStatement statement = new JdbcStatement();
+        statement.setJdbcQuery(sql);
+
+        JdbcColumn column = new JdbcColumn();
+        column.setColumnName(name + "Value");
+        column.setDataSourceName("value");
+        column.setDataType("gauge");
+        column.setAlias(name);
+
+        JdbcQuery query = new JdbcQuery();
+        query.setQueryName(name);
+        query.setRecheckInterval(3600000);
+        query.setIfType("ignore");
+        query.setResourceType("testResource");
+        query.setInstanceColumn("name");
+        query.setJdbcStatement(statement);
+        query.addJdbcColumn(column);
+
+        m_collection.addQuery(query);
+    }
+
+    /**
+     * A JDBC driver for in-memory connections. Every query returns two rows, except for
+     * {@link JdbcCollectorTest#BROKEN_QUERY}, which fails, and {@link JdbcCollectorTest#SLOW_QUERY},
+     * which runs until its query timeout cancels it.
+     */
+    public static class TestDriver implements Driver {
+        public static final String URL = "jdbc:opennms-test:collector";
+
+        private static final AtomicInteger s_connections = new AtomicInteger();
+        private static final AtomicInteger s_executed = new AtomicInteger();
+        private static final List<Integer> s_queryTimeouts = Collections.synchronizedList(new ArrayList<Integer>());
+
+        static {
+            try {
+                DriverManager.registerDriver(new TestDriver());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void reset() {
+            s_connections.set(0);
+            s_executed.set(0);
+            s_queryTimeouts.clear();
+        }
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            s_connections.incrementAndGet();
+            return proxy(Connection.class, new ConnectionHandler());
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith("jdbc:opennms-test:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(JdbcCollectorTest.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * Answers every call with a neutral value; JDBC objects are answered with empty proxies.
+     */
+    private static class DefaultHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("equals".equals(method.getName())) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(method.getName())) {
+                return getClass().getSimpleName();
+            }
+            Class<?> type = method.getReturnType();
+            if (type == void.class) {
+                return null;
+            } else if (type == boolean.class) {
+                return false;
+            } else if (type.isPrimitive()) {
+                return Array.get(Array.newInstance(type, 1), 0);
+            } else if (type.isInterface() && type.getName().startsWith("java.sql.")) {
+                return proxy(type, new DefaultHandler());
+            }
+            return null;
+        }
+    }
+
+    private static class ConnectionHandler extends DefaultHandler {
+        private boolean m_closed = false;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                m_closed = true;
+                return null;
+            } else if ("isClosed".equals(name)) {
+                return m_closed;
+            } else if ("isValid".equals(name)) {
+                return !m_closed;
+            } else if ("prepareStatement".equals(name)) {
+                return proxy(method.getReturnType(), new StatementHandler((String) args[0]));
+            }
+            return super.invoke(proxy, method, args);
+        }
+    }
+
+    private static class StatementHandler extends DefaultHandler {
+        private final String m_sql;
+        private int m_queryTimeout = 0;
+
+        private StatementHandler(String sql) {
+            m_sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("setQueryTimeout".equals(name)) {
+                m_queryTimeout = (Integer) args[0];
+                return null;
+            } else if ("executeQuery".equals(name)) {
+                TestDriver.s_executed.incrementAndGet();
+                if (BROKEN_QUERY.equals(m_sql)) {
+                    throw new SQLException("relation \"broken\" does not exist", "42P01");
+                } else if (SLOW_QUERY.equals(m_sql)) {
+                    TestDriver.s_queryTimeouts.add(m_queryTimeout);
+                    Thread.sleep(m_queryTimeout > 0 ? m_queryTimeout * 1000L : 20000L);
+                    throw new SQLException("canceling statement due to statement timeout", "57014");
+                }
+                return proxy(ResultSet.class, new ResultSetHandler());
+            }
+            return super.invoke(proxy, method, args);
+        }
+    }
+
+    private static class ResultSetHandler extends DefaultHandler {
+        private final List<Map<String, String>> m_rows = new ArrayList<Map<String, String>>();
+        private int m_cursor = 0;
+
+        private ResultSetHandler() {
+            for (int i = 1; i <= 2; i++) {
+                Map<String, String> row = new HashMap<String, String>();
+                row.put("name", "instance" + i);
+                row.put("value", Integer.toString(i * 10));
+                m_rows.add(row);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("isBeforeFirst".equals(name)) {
+                return !m_rows.isEmpty() && m_cursor == 0;
+            } else if ("isAfterLast".equals(name)) {
+                return !m_rows.isEmpty() && m_cursor > m_rows.size();
+            } else if ("last".equals(name)) {
+                m_cursor = m_rows.size();
+                return !m_rows.isEmpty();
+            } else if ("beforeFirst".equals(name)) {
+                m_cursor = 0;
+                return null;
+            } else if ("next".equals(name)) {
+                m_cursor++;
+                return m_cursor <= m_rows.size();
+            } else if ("getRow".equals(name)) {
+                return m_cursor >= 1 && m_cursor <= m_rows.size() ? m_cursor : 0;
+            } else if ("getString".equals(name) && args[0] instanceof String) {
+                return m_rows.get(m_cursor - 1).get(args[0]);
+            }
+            return super.invoke(proxy, method, args);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.nrtg.api;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opennms.nrtg.api.model.CollectionJob;
+import org.opennms.nrtg.api.model.DefaultCollectionJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Merges identical {@link CollectionJob}s triggered by concurrent NRTG viewers.
+ * </p>
+ * <p>
+ * Two jobs are identical if they query the same metrics of the same service on
+ * the same agent. Every job offered registers its destinations as subscribers of
+ * the shared job. The first job offered in an interval is replaced by a job
+ * delivering to all subscribers seen within the subscription timeout, all other
+ * jobs offered in the same interval are swallowed. In addition the number of jobs
+ * passed on per agent and second is capped.
+ * </p>
+ */
+public class CollectionJobDeduplicator {
+    private static final Logger logger = LoggerFactory.getLogger(CollectionJobDeduplicator.class);
+
+    public static final long DEFAULT_INTERVAL = 900L;
+    public static final long DEFAULT_SUBSCRIPTION_TIMEOUT = 30000L;
+    public static final int DEFAULT_MAX_JOBS_PER_AGENT = 20;
+
+    private static final long RATE_WINDOW = 1000L;
+
+    private static class Subscriber {
+        private final Map<String, Set<String>> m_destinationsByMetric = new HashMap<String, Set<String>>();
+        private long m_lastSeen;
+    }
+
+    private static class SharedJob {
+        private final Map<String, Subscriber> m_subscribers = new HashMap<String, Subscriber>();
+        private long m_lastPublished = 0L;
+    }
+
+    private static class AgentRate {
+        private long m_windowStart;
+        private int m_count;
+    }
+
+    private long m_interval = DEFAULT_INTERVAL;
+    private long m_subscriptionTimeout = DEFAULT_SUBSCRIPTION_TIMEOUT;
+    private int m_maxJobsPerAgent = DEFAULT_MAX_JOBS_PER_AGENT;
+
+    private final Map<String, SharedJob> m_sharedJobs = new HashMap<String, SharedJob>();
+    private final Map<String, AgentRate> m_agentRates = new HashMap<String, AgentRate>();
+    private long m_lastHousekeeping = 0L;
+
+    private final AtomicLong m_publishedJobs = new AtomicLong(0L);
+    private final AtomicLong m_deduplicatedJobs = new AtomicLong(0L);
+    private final AtomicLong m_rateLimitedJobs = new AtomicLong(0L);
+
+    /**
+     * Offers a job triggered by a subscriber.
+     *
+     * @param collectionJob the job as triggered by the subscriber, never modified
+     * @return the job to collect on behalf of all subscribers or <code>null</code>
+     *         if the job is already covered by a recent or an upcoming collection
+     */
+    public CollectionJob offer(final CollectionJob collectionJob) {
+        return offer(collectionJob, System.currentTimeMillis());
+    }
+
+    synchronized CollectionJob offer(final CollectionJob collectionJob, final long now) {
+        doHousekeeping(now);
+
+        if (m_interval <= 0) {
+            if (isRateLimited(collectionJob, now)) {
+                return null;
+            }
+            m_publishedJobs.incrementAndGet();
+            return collectionJob;
+        }
+
+        final String jobKey = getJobKey(collectionJob);
+
+        SharedJob sharedJob = m_sharedJobs.get(jobKey);
+        if (sharedJob == null) {
+            sharedJob = new SharedJob();
+            m_sharedJobs.put(jobKey, sharedJob);
+        }
+
+        final Subscriber subscriber = new Subscriber();
+        final Set<String> allDestinations = new TreeSet<String>();
+        for (final String metricId : collectionJob.getAllMetrics()) {
+            final Set<String> destinationSet = collectionJob.getDestinationSet(metricId);
+            subscriber.m_destinationsByMetric.put(metricId, destinationSet);
+            allDestinations.addAll(destinationSet);
+        }
+        subscriber.m_lastSeen = now;
+        sharedJob.m_subscribers.put(allDestinations.toString(), subscriber);
+
+        if (now - sharedJob.m_lastPublished < m_interval) {
+            logger.trace("Job for '{}' already collected {}ms ago, adding subscriber {}", jobKey, now - sharedJob.m_lastPublished, allDestinations);
+            m_deduplicatedJobs.incrementAndGet();
+            return null;
+        }
+
+        if (isRateLimited(collectionJob, now)) {
+            return null;
+        }
+
+        sharedJob.m_lastPublished = now;
+        m_publishedJobs.incrementAndGet();
+
+        return createSharedJob(collectionJob, sharedJob.m_subscribers.values());
+    }
+
+    private CollectionJob createSharedJob(final CollectionJob template, final Iterable<Subscriber> subscribers) {
+        final DefaultCollectionJob collectionJob = new DefaultCollectionJob();
+        collectionJob.setNodeId(template.getNodeId());
+        collectionJob.setSite(template.getSite());
+        collectionJob.setNetInterface(template.getNetInterface());
+        collectionJob.setService(template.getService());
+        collectionJob.setProtocolConfiguration(template.getProtocolConfiguration());
+        collectionJob.setParameters(template.getParameters());
+
+        for (final String metricId : template.getAllMetrics()) {
+            final Set<String> destinationSet = new HashSet<String>();
+            for (final Subscriber subscriber : subscribers) {
+                final Set<String> subscriberDestinations = subscriber.m_destinationsByMetric.get(metricId);
+                if (subscriberDestinations != null) {
+                    destinationSet.addAll(subscriberDestinations);
+                }
+            }
+            collectionJob.addMetric(metricId, destinationSet, template.getOnmsLogicMetricId(metricId));
+        }
+
+        return collectionJob;
+    }
+
+    private boolean isRateLimited(final CollectionJob collectionJob, final long now) {
+        final String agentKey = getAgentKey(collectionJob);
+        if (acquireAgentPermit(agentKey, now)) {
+            return false;
+        }
+
+        logger.debug("Rate limit of {} jobs per second reached for agent '{}', skipping job", m_maxJobsPerAgent, agentKey);
+        m_rateLimitedJobs.incrementAndGet();
+        return true;
+    }
+
+    private boolean acquireAgentPermit(final String agentKey, final long now) {
+        if (m_maxJobsPerAgent <= 0) {
+            return true;
+        }
+
+        AgentRate agentRate = m_agentRates.get(agentKey);
+        if (agentRate == null) {
+            agentRate = new AgentRate();
+            m_agentRates.put(agentKey, agentRate);
+        }
+
+        if (now - agentRate.m_windowStart >= RATE_WINDOW) {
+            agentRate.m_windowStart = now;
+            agentRate.m_count = 0;
+        }
+
+        if (agentRate.m_count >= m_maxJobsPerAgent) {
+            return false;
+        }
+
+        agentRate.m_count++;
+        return true;
+    }
+
+    private void doHousekeeping(final long now) {
+        if (now - m_lastHousekeeping < RATE_WINDOW) {
+            return;
+        }
+        m_lastHousekeeping = now;
+
+        final Iterator<SharedJob> sharedJobIterator = m_sharedJobs.values().iterator();
+        while (sharedJobIterator.hasNext()) {
+            final SharedJob sharedJob = sharedJobIterator.next();
+
+            final Iterator<Subscriber> subscriberIterator = sharedJob.m_subscribers.values().iterator();
+            while (subscriberIterator.hasNext()) {
+                if (now - subscriberIterator.next().m_lastSeen > m_subscriptionTimeout) {
+                    subscriberIterator.remove();
+                }
+            }
+
+            if (sharedJob.m_subscribers.isEmpty()) {
+                sharedJobIterator.remove();
+            }
+        }
+
+        final Iterator<AgentRate> agentRateIterator = m_agentRates.values().iterator();
+        while (agentRateIterator.hasNext()) {
+            if (now - agentRateIterator.next().m_windowStart >= RATE_WINDOW) {
+                agentRateIterator.remove();
+            }
+        }
+    }
+
+    private static String getAgentKey(final CollectionJob collectionJob) {
+        return collectionJob.getNodeId() + "|" + collectionJob.getNetInterface();
+    }
+
+    private static String getJobKey(final CollectionJob collectionJob) {
+        final Map<String, String> metrics = new TreeMap<String, String>();
+        for (final String metricId : collectionJob.getAllMetrics()) {
+            metrics.put(metricId, collectionJob.getOnmsLogicMetricId(metricId));
+        }
+
+        return collectionJob.getService() + "|" + getAgentKey(collectionJob) + "|" + collectionJob.getProtocolConfiguration() + "|" + metrics;
+    }
+
+    public synchronized int getSharedJobCount() {
+        return m_sharedJobs.size();
+    }
+
+    public synchronized int getSubscriberCount() {
+        int count = 0;
+        for (final SharedJob sharedJob : m_sharedJobs.values()) {
+            count += sharedJob.m_subscribers.size();
+        }
+        return count;
+    }
+
+    public long getPublishedJobs() {
+        return m_publishedJobs.get();
+    }
+
+    public long getDeduplicatedJobs() {
+        return m_deduplicatedJobs.get();
+    }
+
+    public long getRateLimitedJobs() {
+        return m_rateLimitedJobs.get();
+    }
+
+    public synchronized long getInterval() {
+        return m_interval;
+    }
+
+    /**
+     * @param interval minimum time in milliseconds between two collections of
+     *        the same job, 0 disables deduplication
+     */
+    public synchronized void setInterval(final long interval) {
+        m_interval = interval;
+    }
+
+    public synchronized long getSubscriptionTimeout() {
+        return m_subscriptionTimeout;
+    }
+
+    /**
+     * @param subscriptionTimeout time in milliseconds a subscriber keeps receiving
+     *        the results of a shared job after its last trigger
+     */
+    public synchronized void setSubscriptionTimeout(final long subscriptionTimeout) {
+        m_subscriptionTimeout = subscriptionTimeout;
+    }
+
+    public synchronized int getMaxJobsPerAgent() {
+        return m_maxJobsPerAgent;
+    }
+
+    /**
+     * @param maxJobsPerAgent maximum number of jobs collected per agent and
+     *        second, 0 disables the limit
+     */
+    public synchronized void setMaxJobsPerAgent(final int maxJobsPerAgent) {
+        m_maxJobsPerAgent = maxJobsPerAgent;
+    }
+}
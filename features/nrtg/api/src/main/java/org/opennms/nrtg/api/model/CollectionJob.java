@@ -63,6 +63,8 @@ public interface CollectionJob extends Serializable {
 
     void addMetric(String metricId, Set<String> destinationSet, String onmsLogicMetricId) throws IllegalArgumentException;
 
+    Set<String> getDestinationSet(String metricId) throws IllegalArgumentException;
+
     void setParameters(Map<String, Object> parameters);
 
     Map<String, Object> getParameters();
@@ -29,6 +29,7 @@
 package org.opennms.nrtg.api.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -225,6 +226,21 @@ public class DefaultCollectionJob implements CollectionJob {
         m_onmsLogicMetricIdMapping.put(metricId, onmsLogicMetricId);
     }
 
+    @Override
+    public Set<String> getDestinationSet(String metricId) throws IllegalArgumentException {
+        if (metricId == null) {
+            throw new IllegalArgumentException("metricId must not be null");
+        }
+
+        for (Set<String> destinationSet : m_metricSets.keySet()) {
+            if (m_metricSets.get(destinationSet).contains(metricId)) {
+                return Collections.unmodifiableSet(destinationSet);
+            }
+        }
+
+        throw new IllegalArgumentException("metricId is undefined");
+    }
+
     /*
     public void addAllMetrics(List<String> metric, Set<String> destinationSet) {
         for (String metricId : metric) {
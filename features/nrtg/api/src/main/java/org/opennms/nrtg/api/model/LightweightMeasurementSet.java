@@ -94,6 +94,13 @@ public class LightweightMeasurementSet implements MeasurementSet {
         return measurements;
     }
 
+    /**
+     * Raw access for {@link MeasurementSetCodec}, maps the metricId to metricType, value and onmsLogicMetricId.
+     */
+    Map<String, ArrayList<String>> getValues() {
+        return m_values;
+    }
+
     public void setNodeId(int nodeId) {
         m_nodeId = nodeId;
     }
@@ -0,0 +1,401 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.nrtg.api.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Compact binary encoding for a batch of {@link MeasurementSet}s. Collectors use it
+ * instead of Java serialization for the JMS messages to the broker when
+ * <code>encodeMeasurementSets</code> is enabled, and poll requests with
+ * <code>format=binary</code> return it. The graph page in the browser still
+ * receives JSON.
+ * </p>
+ * <p>
+ * All strings of a batch (metric ids, types, services, interfaces) are written once
+ * into a string table and referenced by index. Timestamps are stored as deltas to
+ * the first timestamp of the set, integral values as variable length longs and
+ * other numeric values as doubles. Values that would not survive the conversion
+ * unchanged are kept as strings, so decoding always yields the original values.
+ * </p>
+ */
+public final class MeasurementSetCodec {
+    public static final String CONTENT_TYPE = "application/x-opennms-nrtg";
+
+    private static final int MAGIC = 0x4e52;
+    private static final int VERSION = 1;
+
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_LONG = 1;
+    private static final int VALUE_DOUBLE = 2;
+    private static final int VALUE_STRING = 3;
+    private static final int VALUE_MASK = 0x0f;
+    private static final int FLAG_TIMESTAMP = 0x10;
+
+    private MeasurementSetCodec() {
+    }
+
+    private static class StringTable {
+        private final Map<String, Integer> m_indexes = new HashMap<String, Integer>();
+        private final List<String> m_strings = new ArrayList<String>();
+
+        /**
+         * @return the index of the string plus one, 0 represents <code>null</code>
+         */
+        private int add(final String string) {
+            if (string == null) {
+                return 0;
+            }
+
+            Integer index = m_indexes.get(string);
+            if (index == null) {
+                index = m_strings.size() + 1;
+                m_indexes.put(string, index);
+                m_strings.add(string);
+            }
+            return index;
+        }
+    }
+
+    private static class Record {
+        private int m_nodeId;
+        private int m_service, m_netInterface, m_metricId, m_metricType, m_onmsLogicMetricId;
+        private Date m_timestamp;
+        private int m_valueType;
+        private long m_longValue;
+        private double m_doubleValue;
+        private int m_stringValue;
+    }
+
+    public static byte[] encode(final MeasurementSet measurementSet) {
+        final List<MeasurementSet> measurementSets = new ArrayList<MeasurementSet>(1);
+        measurementSets.add(measurementSet);
+        return encode(measurementSets);
+    }
+
+    public static byte[] encode(final List<? extends MeasurementSet> measurementSets) {
+        final StringTable stringTable = new StringTable();
+        final List<List<Record>> sets = new ArrayList<List<Record>>(measurementSets.size());
+
+        for (final MeasurementSet measurementSet : measurementSets) {
+            sets.add(toRecords(measurementSet, stringTable));
+        }
+
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeShort(MAGIC);
+            out.writeByte(VERSION);
+
+            writeVarLong(out, stringTable.m_strings.size());
+            for (final String string : stringTable.m_strings) {
+                out.writeUTF(string);
+            }
+
+            writeVarLong(out, sets.size());
+            for (final List<Record> records : sets) {
+                writeVarLong(out, records.size());
+
+                long baseTimestamp = 0L;
+                for (final Record record : records) {
+                    if (record.m_timestamp != null) {
+                        baseTimestamp = record.m_timestamp.getTime();
+                        break;
+                    }
+                }
+                out.writeLong(baseTimestamp);
+
+                for (final Record record : records) {
+                    writeVarLong(out, zigZag(record.m_nodeId));
+                    writeVarLong(out, record.m_service);
+                    writeVarLong(out, record.m_netInterface);
+                    writeVarLong(out, record.m_metricId);
+                    writeVarLong(out, record.m_metricType);
+                    writeVarLong(out, record.m_onmsLogicMetricId);
+
+                    out.writeByte(record.m_valueType | (record.m_timestamp != null ? FLAG_TIMESTAMP : 0));
+                    if (record.m_timestamp != null) {
+                        writeVarLong(out, zigZag(record.m_timestamp.getTime() - baseTimestamp));
+                    }
+
+                    switch (record.m_valueType) {
+                    case VALUE_LONG:
+                        writeVarLong(out, zigZag(record.m_longValue));
+                        break;
+                    case VALUE_DOUBLE:
+                        out.writeDouble(record.m_doubleValue);
+                        break;
+                    case VALUE_STRING:
+                        writeVarLong(out, record.m_stringValue);
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            }
+
+            out.flush();
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Error encoding measurement sets", e);
+        }
+    }
+
+    public static List<MeasurementSet> decode(final byte[] data) throws IllegalArgumentException {
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+            if (in.readUnsignedShort() != MAGIC) {
+                throw new IllegalArgumentException("Data is not an encoded measurement set batch");
+            }
+            final int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported measurement set encoding version " + version);
+            }
+
+            final String[] strings = new String[readCount(in, data.length) + 1];
+            for (int i = 1; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+
+            final int setCount = readCount(in, data.length);
+            final List<MeasurementSet> measurementSets = new ArrayList<MeasurementSet>(setCount);
+
+            for (int i = 0; i < setCount; i++) {
+                final int measurementCount = readCount(in, data.length);
+                final long baseTimestamp = in.readLong();
+                final List<Measurement> measurements = new ArrayList<Measurement>(measurementCount);
+
+                for (int j = 0; j < measurementCount; j++) {
+                    final Measurement measurement = new DefaultMeasurement();
+                    measurement.setNodeId((int) unZigZag(readVarLong(in)));
+                    measurement.setService(getString(strings, readVarLong(in)));
+                    measurement.setNetInterface(getString(strings, readVarLong(in)));
+                    measurement.setMetricId(getString(strings, readVarLong(in)));
+                    measurement.setMetricType(getString(strings, readVarLong(in)));
+                    measurement.setOnmsLogicMetricId(getString(strings, readVarLong(in)));
+
+                    final int flags = in.readUnsignedByte();
+                    if ((flags & FLAG_TIMESTAMP) != 0) {
+                        measurement.setTimestamp(new Date(baseTimestamp + unZigZag(readVarLong(in))));
+                    }
+
+                    switch (flags & VALUE_MASK) {
+                    case VALUE_NULL:
+                        break;
+                    case VALUE_LONG:
+                        measurement.setValue(Long.toString(unZigZag(readVarLong(in))));
+                        break;
+                    case VALUE_DOUBLE:
+                        measurement.setValue(Double.toString(in.readDouble()));
+                        break;
+                    case VALUE_STRING:
+                        measurement.setValue(getString(strings, readVarLong(in)));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown value type " + (flags & VALUE_MASK));
+                    }
+
+                    measurements.add(measurement);
+                }
+
+                measurementSets.add(toMeasurementSet(measurements));
+            }
+
+            return measurementSets;
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Error decoding measurement sets", e);
+        }
+    }
+
+    private static List<Record> toRecords(final MeasurementSet measurementSet, final StringTable stringTable) {
+        final List<Record> records = new ArrayList<Record>();
+
+        if (measurementSet instanceof LightweightMeasurementSet) {
+            // avoid creating a Measurement object per value
+            final LightweightMeasurementSet lightweightMeasurementSet = (LightweightMeasurementSet) measurementSet;
+            final int service = stringTable.add(lightweightMeasurementSet.getService());
+            final int netInterface = stringTable.add(lightweightMeasurementSet.getNetInterface());
+
+            for (final Map.Entry<String, ArrayList<String>> entry : lightweightMeasurementSet.getValues().entrySet()) {
+                final Record record = new Record();
+                record.m_nodeId = lightweightMeasurementSet.getNodeId();
+                record.m_service = service;
+                record.m_netInterface = netInterface;
+                record.m_timestamp = lightweightMeasurementSet.getTimestamp();
+                record.m_metricId = stringTable.add(entry.getKey());
+                record.m_metricType = stringTable.add(entry.getValue().get(0));
+                record.m_onmsLogicMetricId = stringTable.add(entry.getValue().get(2));
+                setValue(record, entry.getValue().get(1), stringTable);
+                records.add(record);
+            }
+        } else {
+            for (final Measurement measurement : measurementSet.getMeasurements()) {
+                final Record record = new Record();
+                record.m_nodeId = measurement.getNodeId();
+                record.m_service = stringTable.add(measurement.getService());
+                record.m_netInterface = stringTable.add(measurement.getNetInterface());
+                record.m_timestamp = measurement.getTimestamp();
+                record.m_metricId = stringTable.add(measurement.getMetricId());
+                record.m_metricType = stringTable.add(measurement.getMetricType());
+                record.m_onmsLogicMetricId = stringTable.add(measurement.getOnmsLogicMetricId());
+                setValue(record, measurement.getValue(), stringTable);
+                records.add(record);
+            }
+        }
+
+        return records;
+    }
+
+    private static void setValue(final Record record, final String value, final StringTable stringTable) {
+        if (value == null) {
+            record.m_valueType = VALUE_NULL;
+            return;
+        }
+
+        try {
+            final long longValue = Long.parseLong(value);
+            if (Long.toString(longValue).equals(value)) {
+                record.m_valueType = VALUE_LONG;
+                record.m_longValue = longValue;
+                return;
+            }
+        } catch (final NumberFormatException e) {
+            // not an integral value
+        }
+
+        try {
+            final double doubleValue = Double.parseDouble(value);
+            if (Double.toString(doubleValue).equals(value)) {
+                record.m_valueType = VALUE_DOUBLE;
+                record.m_doubleValue = doubleValue;
+                return;
+            }
+        } catch (final NumberFormatException e) {
+            // not a numeric value
+        }
+
+        record.m_valueType = VALUE_STRING;
+        record.m_stringValue = stringTable.add(value);
+    }
+
+    /**
+     * Measurements sharing node, service, interface and timestamp are returned as
+     * a {@link LightweightMeasurementSet}, which is what the collectors produce.
+     */
+    private static MeasurementSet toMeasurementSet(final List<Measurement> measurements) {
+        if (!measurements.isEmpty()) {
+            final Measurement first = measurements.get(0);
+            boolean uniform = true;
+            for (final Measurement measurement : measurements) {
+                if (measurement.getNodeId() != first.getNodeId()
+                        || !equals(measurement.getService(), first.getService())
+                        || !equals(measurement.getNetInterface(), first.getNetInterface())
+                        || !equals(measurement.getTimestamp(), first.getTimestamp())) {
+                    uniform = false;
+                    break;
+                }
+            }
+
+            if (!uniform) {
+                final DefaultMeasurementSet measurementSet = new DefaultMeasurementSet();
+                for (final Measurement measurement : measurements) {
+                    measurementSet.addMeasurement(measurement);
+                }
+                return measurementSet;
+            }
+        }
+
+        final LightweightMeasurementSet measurementSet = measurements.isEmpty() ? new LightweightMeasurementSet() :
+            new LightweightMeasurementSet(measurements.get(0).getNodeId(), measurements.get(0).getService(), measurements.get(0).getNetInterface(), measurements.get(0).getTimestamp());
+        for (final Measurement measurement : measurements) {
+            measurementSet.addMeasurement(measurement.getMetricId(), measurement.getMetricType(), measurement.getValue(), measurement.getOnmsLogicMetricId());
+        }
+        return measurementSet;
+    }
+
+    private static boolean equals(final Object a, final Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static String getString(final String[] strings, final long index) {
+        if (index < 0 || index >= strings.length) {
+            throw new IllegalArgumentException("String index " + index + " out of range");
+        }
+        return strings[(int) index];
+    }
+
+    private static int readCount(final DataInputStream in, final int maxCount) throws IOException {
+        final long count = readVarLong(in);
+        // every element takes at least one byte
+        if (count < 0 || count > maxCount) {
+            throw new IllegalArgumentException("Invalid count " + count);
+        }
+        return (int) count;
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(final DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(final DataInputStream in) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable length number");
+    }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.nrtg.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.nrtg.api.model.CollectionJob;
+import org.opennms.nrtg.api.model.DefaultCollectionJob;
+import org.opennms.nrtg.api.model.MeasurementSet;
+
+public class CollectionJobDeduplicatorTest {
+
+    private CollectionJobDeduplicator m_deduplicator;
+
+    @Before
+    public void setUp() {
+        m_deduplicator = new CollectionJobDeduplicator();
+        m_deduplicator.setInterval(1000L);
+        m_deduplicator.setSubscriptionTimeout(5000L);
+        m_deduplicator.setMaxJobsPerAgent(0);
+    }
+
+    private static CollectionJob createJob(String destination, String netInterface, String... metricIds) {
+        DefaultCollectionJob collectionJob = new DefaultCollectionJob();
+        collectionJob.setNodeId(1);
+        collectionJob.setNetInterface(netInterface);
+        collectionJob.setService("SNMP");
+        collectionJob.setProtocolConfiguration("SNMP_All_Metrics");
+        for (String metricId : metricIds) {
+            collectionJob.addMetric(metricId, Collections.singleton(destination), metricId + "-logic");
+        }
+        return collectionJob;
+    }
+
+    @Test
+    public void testIdenticalJobsAreFannedOut() {
+        CollectionJob first = m_deduplicator.offer(createJob("viewerA", "10.0.0.1", ".1.3.6.1.2.1.1.3.0", ".1.3.6.1.2.1.2.2.1.10.1"), 10000L);
+        assertNotNull(first);
+        assertEquals(Collections.singleton("viewerA"), first.getDestinationSet(".1.3.6.1.2.1.1.3.0"));
+
+        // a second viewer of the same graph within the interval is not polled separately
+        assertNull(m_deduplicator.offer(createJob("viewerB", "10.0.0.1", ".1.3.6.1.2.1.2.2.1.10.1", ".1.3.6.1.2.1.1.3.0"), 10300L));
+        assertEquals(1, m_deduplicator.getSharedJobCount());
+        assertEquals(2, m_deduplicator.getSubscriberCount());
+
+        CollectionJob shared = m_deduplicator.offer(createJob("viewerA", "10.0.0.1", ".1.3.6.1.2.1.1.3.0", ".1.3.6.1.2.1.2.2.1.10.1"), 11000L);
+        assertNotNull(shared);
+        assertEquals(new TreeSet<String>(Arrays.asList("viewerA", "viewerB")), new TreeSet<String>(shared.getDestinationSet(".1.3.6.1.2.1.1.3.0")));
+        assertEquals(".1.3.6.1.2.1.2.2.1.10.1-logic", shared.getOnmsLogicMetricId(".1.3.6.1.2.1.2.2.1.10.1"));
+
+        shared.setMetricValue(".1.3.6.1.2.1.1.3.0", "42");
+        shared.setMetricValue(".1.3.6.1.2.1.2.2.1.10.1", "4711");
+        Map<String, MeasurementSet> measurementSets = shared.getMeasurementSetsByDestination();
+        assertEquals(1, measurementSets.size());
+        assertEquals("viewerA, viewerB", measurementSets.keySet().iterator().next());
+
+        assertEquals(2, m_deduplicator.getPublishedJobs());
+        assertEquals(1, m_deduplicator.getDeduplicatedJobs());
+    }
+
+    @Test
+    public void testDifferentJobsAreNotMerged() {
+        assertNotNull(m_deduplicator.offer(createJob("viewerA", "10.0.0.1", "metricA"), 10000L));
+        assertNotNull(m_deduplicator.offer(createJob("viewerB", "10.0.0.1", "metricB"), 10000L));
+        assertNotNull(m_deduplicator.offer(createJob("viewerC", "10.0.0.2", "metricA"), 10000L));
+        assertEquals(3, m_deduplicator.getSharedJobCount());
+        assertEquals(0, m_deduplicator.getDeduplicatedJobs());
+    }
+
+    @Test
+    public void testSubscriptionTimeout() {
+        assertNotNull(m_deduplicator.offer(createJob("viewerA", "10.0.0.1", "metricA"), 10000L));
+        assertNull(m_deduplicator.offer(createJob("viewerB", "10.0.0.1", "metricA"), 10100L));
+
+        // viewerB has left, only viewerA keeps triggering
+        CollectionJob shared = m_deduplicator.offer(createJob("viewerA", "10.0.0.1", "metricA"), 16000L);
+        assertNotNull(shared);
+        assertEquals(Collections.singleton("viewerA"), shared.getDestinationSet("metricA"));
+        assertEquals(1, m_deduplicator.getSubscriberCount());
+    }
+
+    @Test
+    public void testAgentRateLimit() {
+        m_deduplicator.setMaxJobsPerAgent(2);
+
+        assertNotNull(m_deduplicator.offer(createJob("viewerA", "10.0.0.1", "metricA"), 10000L));
+        assertNotNull(m_deduplicator.offer(createJob("viewerB", "10.0.0.1", "metricB"), 10100L));
+        assertNull(m_deduplicator.offer(createJob("viewerC", "10.0.0.1", "metricC"), 10200L));
+        assertNotNull(m_deduplicator.offer(createJob("viewerD", "10.0.0.2", "metricC"), 10200L));
+        assertEquals(1, m_deduplicator.getRateLimitedJobs());
+
+        // the skipped viewer is served once the next window opens
+        CollectionJob shared = m_deduplicator.offer(createJob("viewerC", "10.0.0.1", "metricC"), 11000L);
+        assertNotNull(shared);
+        assertEquals(Collections.singleton("viewerC"), shared.getDestinationSet("metricC"));
+    }
+
+    @Test
+    public void testDeduplicationDisabled() {
+        m_deduplicator.setInterval(0L);
+
+        CollectionJob collectionJob = createJob("viewerA", "10.0.0.1", "metricA");
+        assertSame(collectionJob, m_deduplicator.offer(collectionJob, 10000L));
+        assertNotNull(m_deduplicator.offer(createJob("viewerB", "10.0.0.1", "metricA"), 10000L));
+        assertEquals(0, m_deduplicator.getSharedJobCount());
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.nrtg.api.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MeasurementSetCodecTest {
+
+    private static Map<String, Measurement> byMetricId(MeasurementSet measurementSet) {
+        Map<String, Measurement> measurements = new HashMap<String, Measurement>();
+        for (Measurement measurement : measurementSet.getMeasurements()) {
+            measurements.put(measurement.getMetricId(), measurement);
+        }
+        return measurements;
+    }
+
+    @Test
+    public void testLightweightMeasurementSet() throws Exception {
+        Date timestamp = new Date();
+        LightweightMeasurementSet measurementSet = new LightweightMeasurementSet(42, "SNMP", "10.0.0.1", timestamp);
+        measurementSet.addMeasurement(".1.3.6.1.2.1.2.2.1.10.1", "counter64", "18446744073709551615", "ifInOctets");
+        measurementSet.addMeasurement(".1.3.6.1.2.1.2.2.1.16.1", "counter32", "4711", "ifOutOctets");
+        measurementSet.addMeasurement(".1.3.6.1.4.1.27091.3.1.6.1.2", "gauge", "0.125", "inboundJitter");
+        measurementSet.addMeasurement(".1.3.6.1.2.1.1.3.0", "timeticks", null, "sysUpTime");
+        measurementSet.addMeasurement(".1.3.6.1.2.1.1.5.0", "string", "007", "sysName");
+
+        List<MeasurementSet> decoded = MeasurementSetCodec.decode(MeasurementSetCodec.encode(measurementSet));
+        assertEquals(1, decoded.size());
+        assertTrue(decoded.get(0) instanceof LightweightMeasurementSet);
+
+        Map<String, Measurement> expected = byMetricId(measurementSet);
+        Map<String, Measurement> actual = byMetricId(decoded.get(0));
+        assertEquals(expected.keySet(), actual.keySet());
+
+        for (String metricId : expected.keySet()) {
+            assertEquals(expected.get(metricId).getValue(), actual.get(metricId).getValue());
+            assertEquals(expected.get(metricId).getMetricType(), actual.get(metricId).getMetricType());
+            assertEquals(expected.get(metricId).getOnmsLogicMetricId(), actual.get(metricId).getOnmsLogicMetricId());
+            assertEquals(42, actual.get(metricId).getNodeId());
+            assertEquals("SNMP", actual.get(metricId).getService());
+            assertEquals("10.0.0.1", actual.get(metricId).getNetInterface());
+            assertEquals(timestamp, actual.get(metricId).getTimestamp());
+        }
+        assertNull(actual.get(".1.3.6.1.2.1.1.3.0").getValue());
+    }
+
+    @Test
+    public void testBatchOfMixedMeasurementSets() {
+        List<MeasurementSet> measurementSets = new ArrayList<MeasurementSet>();
+
+        DefaultMeasurementSet defaultMeasurementSet = new DefaultMeasurementSet();
+        for (int i = 0; i < 3; i++) {
+            DefaultMeasurement measurement = new DefaultMeasurement();
+            measurement.setNodeId(i);
+            measurement.setService("TCA");
+            measurement.setNetInterface("interface" + i);
+            measurement.setTimestamp(new Date(1000000L - i * 1000L));
+            measurement.setMetricId("metric" + i);
+            measurement.setValue(String.valueOf(-i));
+            defaultMeasurementSet.addMeasurement(measurement);
+        }
+        measurementSets.add(defaultMeasurementSet);
+        measurementSets.add(new LightweightMeasurementSet(1, "SNMP", "10.0.0.2", null));
+
+        List<MeasurementSet> decoded = MeasurementSetCodec.decode(MeasurementSetCodec.encode(measurementSets));
+        assertEquals(2, decoded.size());
+
+        List<Measurement> measurements = decoded.get(0).getMeasurements();
+        assertEquals(3, measurements.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, measurements.get(i).getNodeId());
+            assertEquals("interface" + i, measurements.get(i).getNetInterface());
+            assertEquals(new Date(1000000L - i * 1000L), measurements.get(i).getTimestamp());
+            assertEquals(String.valueOf(-i), measurements.get(i).getValue());
+        }
+        assertEquals(0, decoded.get(1).getMeasurements().size());
+    }
+
+    @Test
+    public void testEncodingIsSmallerThanSerialization() throws Exception {
+        LightweightMeasurementSet measurementSet = new LightweightMeasurementSet(1, "SNMP", "10.0.0.1", new Date());
+        for (int i = 0; i < 50; i++) {
+            measurementSet.addMeasurement(".1.3.6.1.2.1.2.2.1.10." + i, "counter32", String.valueOf(i * 1000), "ifInOctets" + i);
+        }
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(serialized);
+        out.writeObject(measurementSet);
+        out.close();
+
+        assertTrue(MeasurementSetCodec.encode(measurementSet).length < serialized.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeGarbage() {
+        MeasurementSetCodec.decode(new byte[] { 1, 2, 3, 4 });
+    }
+}
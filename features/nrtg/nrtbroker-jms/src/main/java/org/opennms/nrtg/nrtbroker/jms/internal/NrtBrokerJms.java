@@ -34,9 +34,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.opennms.nrtg.api.CollectionJobDeduplicator;
 import org.opennms.nrtg.api.NrtBroker;
 import org.opennms.nrtg.api.model.CollectionJob;
 import org.opennms.nrtg.api.model.MeasurementSet;
+import org.opennms.nrtg.api.model.MeasurementSetCodec;
 
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.support.converter.MessageConversionException;
@@ -61,9 +63,16 @@ public class NrtBrokerJms implements NrtBroker {
     private final SimpleMessageConverter simpleMessageConverter = new SimpleMessageConverter();
     Map<String, List<String>> m_messageStore = new HashMap<String, List<String>>();
     Map<String, Date> m_lastMessagePolled = new HashMap<String, Date>();
+    private final CollectionJobDeduplicator m_deduplicator = new CollectionJobDeduplicator();
 
     @Override
     public void publishCollectionJob(CollectionJob collectionJob) {
+        collectionJob = m_deduplicator.offer(collectionJob);
+
+        if (collectionJob == null) {
+            return;
+        }
+
         logger.debug("JmsTemplate '{}'", m_jmsTemplate);
         m_jmsTemplate.convertAndSend("NrtCollectMe", collectionJob);
     }
@@ -78,11 +87,19 @@ public class NrtBrokerJms implements NrtBroker {
         Message message = m_jmsTemplate.receive(nrtCollectionTaskId);
 
         while (message != null) {
-            MeasurementSet measurementSet;
             try {
-                measurementSet = (MeasurementSet) simpleMessageConverter.fromMessage(message);
-    
-                result.add(measurementSet);
+                Object payload = simpleMessageConverter.fromMessage(message);
+
+                if (payload instanceof byte[]) {
+                    result.addAll(MeasurementSetCodec.decode((byte[]) payload));
+                } else {
+                    // serialized measurement sets sent by older collectors
+                    result.add((MeasurementSet) payload);
+                }
+            } catch (IllegalArgumentException ex) {
+                logger.error("Error decoding messages", ex);
+
+                return result;
             } catch (JMSException ex) {
                 logger.error("Error receiving messages", ex);
 
@@ -102,4 +119,16 @@ public class NrtBrokerJms implements NrtBroker {
     public void setJmsTemplate(JmsTemplate jmsTemplate) {
         m_jmsTemplate = jmsTemplate;
     }
+
+    public void setDeduplicationInterval(long deduplicationInterval) {
+        m_deduplicator.setInterval(deduplicationInterval);
+    }
+
+    public void setSubscriptionTimeout(long subscriptionTimeout) {
+        m_deduplicator.setSubscriptionTimeout(subscriptionTimeout);
+    }
+
+    public void setMaxJobsPerAgent(int maxJobsPerAgent) {
+        m_deduplicator.setMaxJobsPerAgent(maxJobsPerAgent);
+    }
 }
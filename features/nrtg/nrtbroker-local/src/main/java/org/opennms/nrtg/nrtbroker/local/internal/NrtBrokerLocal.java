@@ -36,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.opennms.nrtg.api.CollectionJobDeduplicator;
 import org.opennms.nrtg.api.NrtBroker;
 import org.opennms.nrtg.api.ProtocolCollector;
 import org.opennms.nrtg.api.model.CollectionJob;
@@ -107,9 +108,16 @@ public class NrtBrokerLocal implements NrtBroker, NrtBrokerLocalMBean {
 
     private List<ProtocolCollector> m_protocolCollectors;
     private TimedOutMap m_measurementSets = new TimedOutMap();
+    private final CollectionJobDeduplicator m_deduplicator = new CollectionJobDeduplicator();
 
     @Override
     public void publishCollectionJob(CollectionJob collectionJob) {
+        collectionJob = m_deduplicator.offer(collectionJob);
+
+        if (collectionJob == null) {
+            return;
+        }
+
         ProtocolCollector protocolCollector = getProtocolCollector(collectionJob.getService());
 
         if (protocolCollector != null) {
@@ -144,8 +152,45 @@ public class NrtBrokerLocal implements NrtBroker, NrtBrokerLocalMBean {
         return m_protocolCollectors;
     }
 
+    public void setDeduplicationInterval(long deduplicationInterval) {
+        m_deduplicator.setInterval(deduplicationInterval);
+    }
+
+    public void setSubscriptionTimeout(long subscriptionTimeout) {
+        m_deduplicator.setSubscriptionTimeout(subscriptionTimeout);
+    }
+
+    public void setMaxJobsPerAgent(int maxJobsPerAgent) {
+        m_deduplicator.setMaxJobsPerAgent(maxJobsPerAgent);
+    }
+
     @Override
     public Integer getMeasurementSetSize() {
         return m_measurementSets.getAmountOfMeasurementSets();
     }
+
+    @Override
+    public Integer getSharedJobCount() {
+        return m_deduplicator.getSharedJobCount();
+    }
+
+    @Override
+    public Integer getSubscriberCount() {
+        return m_deduplicator.getSubscriberCount();
+    }
+
+    @Override
+    public Long getPublishedJobs() {
+        return m_deduplicator.getPublishedJobs();
+    }
+
+    @Override
+    public Long getDeduplicatedJobs() {
+        return m_deduplicator.getDeduplicatedJobs();
+    }
+
+    @Override
+    public Long getRateLimitedJobs() {
+        return m_deduplicator.getRateLimitedJobs();
+    }
 }
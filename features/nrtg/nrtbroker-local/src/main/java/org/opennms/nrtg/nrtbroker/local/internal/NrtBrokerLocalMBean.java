@@ -34,4 +34,14 @@ package org.opennms.nrtg.nrtbroker.local.internal;
  */
 public interface NrtBrokerLocalMBean {
     public Integer getMeasurementSetSize();
+
+    public Integer getSharedJobCount();
+
+    public Integer getSubscriberCount();
+
+    public Long getPublishedJobs();
+
+    public Long getDeduplicatedJobs();
+
+    public Long getRateLimitedJobs();
 }
@@ -31,6 +31,7 @@ package org.opennms.nrtg.nrtcollector.internal.jms;
 import org.opennms.nrtg.api.model.CollectionJob;
 import org.opennms.nrtg.api.model.LightweightMeasurementSet;
 import org.opennms.nrtg.api.model.MeasurementSet;
+import org.opennms.nrtg.api.model.MeasurementSetCodec;
 import org.opennms.nrtg.nrtcollector.internal.ProtocolCollectorRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,6 +64,8 @@ public class CollectionJobListener implements MessageListener {
 
     private ProtocolCollectorRegistry protocolCollectorRegistry;
 
+    private boolean encodeMeasurementSets = false;
+
     private static AtomicInteger counter = new AtomicInteger(0);
 
     public CollectionJobListener() {
@@ -88,6 +91,17 @@ public class CollectionJobListener implements MessageListener {
         this.protocolCollectorRegistry = protocolCollectorRegistry;
     }
 
+    /**
+     * Sends the measurement sets in the compact encoding of {@link MeasurementSetCodec} instead of serialized
+     * objects. Brokers before the codec was introduced can only read serialized measurement sets, so this must
+     * only be enabled once all brokers receiving from this collector are upgraded.
+     *
+     * @param encodeMeasurementSets the encodeMeasurementSets to set
+     */
+    public void setEncodeMeasurementSets(boolean encodeMeasurementSets) {
+        this.encodeMeasurementSets = encodeMeasurementSets;
+    }
+
     @Override
     public void onMessage(Message message) {
 
@@ -113,8 +127,16 @@ public class CollectionJobListener implements MessageListener {
             }
 
             for (String destinationString : measurementSets.keySet()) {
-                jmsTemplate.convertAndSend(destinationString, measurementSets.get(destinationString));
-                logger.info("** sending msg '{}' to '{}'", measurementSets.get(destinationString), destinationString);
+                // encoded once, jobs shared by several viewers deliver to a comma separated list of destinations
+                Object payload = measurementSets.get(destinationString);
+                if (encodeMeasurementSets) {
+                    payload = MeasurementSetCodec.encode(measurementSets.get(destinationString));
+                }
+
+                for (String destination : destinationString.split(",")) {
+                    jmsTemplate.convertAndSend(destination.trim(), payload);
+                    logger.info("** sending msg '{}' to '{}'", measurementSets.get(destinationString), destination.trim());
+                }
             }
 
             LightweightMeasurementSet errorMeasurementSet = new LightweightMeasurementSet(
@@ -55,6 +55,7 @@ import org.opennms.nrtg.api.NrtBroker;
 import org.opennms.nrtg.api.model.CollectionJob;
 import org.opennms.nrtg.api.model.DefaultCollectionJob;
 import org.opennms.nrtg.api.model.MeasurementSet;
+import org.opennms.nrtg.api.model.MeasurementSetCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -179,8 +180,32 @@ public class NrtController {
      * @return Json Representation of MeasurementeSets for the given nrtCollectionTaskId
      */
     public String getMeasurementSetsForDestination(String nrtCollectionTaskId) {
+        return toJson(receiveMeasurementSets(nrtCollectionTaskId));
+    }
+
+    /**
+     * Same as {@link #getMeasurementSetsForDestination(String)}, but returns the MeasurementSets in the compact
+     * binary encoding of {@link MeasurementSetCodec}.
+     *
+     * @param nrtCollectionTaskId
+     * @return encoded MeasurementSets for the given nrtCollectionTaskId
+     */
+    public byte[] getEncodedMeasurementSetsForDestination(String nrtCollectionTaskId) {
+        return MeasurementSetCodec.encode(receiveMeasurementSets(nrtCollectionTaskId));
+    }
+
+    private List<MeasurementSet> receiveMeasurementSets(String nrtCollectionTaskId) {
         List<MeasurementSet> measurementSets = m_nrtBroker.receiveMeasurementSets(nrtCollectionTaskId);
 
+        // the local broker returns null until the first results for a destination arrived
+        if (measurementSets == null) {
+            return Collections.emptyList();
+        }
+
+        return measurementSets;
+    }
+
+    protected static String toJson(List<MeasurementSet> measurementSets) {
         StringBuffer buffer = new StringBuffer();
 
         for (MeasurementSet measurementSet : measurementSets) {
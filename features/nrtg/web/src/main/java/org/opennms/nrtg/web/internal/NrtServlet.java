@@ -30,6 +30,7 @@ package org.opennms.nrtg.web.internal;
 
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -39,9 +40,17 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Map.Entry;
 
+import org.opennms.nrtg.api.model.MeasurementSetCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class NrtServlet extends HttpServlet {
 
     private static final long serialVersionUID = 1L;
+    private static final Logger logger = LoggerFactory.getLogger(NrtServlet.class);
+
+    private static final long MIN_RETRY_INTERVAL = 250L;
+    private static final long DEFAULT_RETRY_INTERVAL = 1000L;
 
     private NrtController m_controller;
 
@@ -55,11 +64,18 @@ public class NrtServlet extends HttpServlet {
         HttpSession httpSession = req.getSession(true);
         resp.setContentType("text/html");
 
-        if (req.getParameter("nrtCollectionTaskId") != null) {
+        if (req.getParameter("nrtCollectionTaskId") != null && "true".equals(req.getParameter("stream"))) {
+            writeMeasurementSetEvent(req.getParameter("nrtCollectionTaskId"), getInterval(req), httpSession, resp);
+        } else if (req.getParameter("nrtCollectionTaskId") != null) {
             m_controller.nrtCollectionJobTrigger(req.getParameter("nrtCollectionTaskId"), httpSession);
 
             if ("true".equals(req.getParameter("poll"))) {
-                resp.getOutputStream().println(m_controller.getMeasurementSetsForDestination(req.getParameter("nrtCollectionTaskId")));
+                if ("binary".equals(req.getParameter("format"))) {
+                    resp.setContentType(MeasurementSetCodec.CONTENT_TYPE);
+                    resp.getOutputStream().write(m_controller.getEncodedMeasurementSetsForDestination(req.getParameter("nrtCollectionTaskId")));
+                } else {
+                    resp.getOutputStream().println(m_controller.getMeasurementSetsForDestination(req.getParameter("nrtCollectionTaskId")));
+                }
             }
         } else if (req.getParameter("resourceId") != null && req.getParameter("report") != null) {
             ModelAndView modelAndView = m_controller.nrtStart(req.getParameter("resourceId"), req.getParameter("report"), httpSession);
@@ -76,6 +92,39 @@ public class NrtServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Answers an EventSource request with a single server-sent event holding all measurement sets received since
+     * the last request and republishes the collection job. The retry field makes the browser reconnect after the
+     * interval, so this is still one request per interval and one job per request, just like the AJAX timer.
+     * A persistent push channel would need asynchronous request processing, which neither the OSGi proxy servlet
+     * nor the filters of the web application support, so a long-lived response would block a container thread
+     * for every open graph.
+     */
+    private void writeMeasurementSetEvent(String nrtCollectionTaskId, long interval, HttpSession httpSession, HttpServletResponse resp) throws IOException {
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+
+        m_controller.nrtCollectionJobTrigger(nrtCollectionTaskId, httpSession);
+
+        try {
+            final ServletOutputStream outputStream = resp.getOutputStream();
+            outputStream.print("retry: " + interval + "\n\n");
+            outputStream.print("data: " + m_controller.getMeasurementSetsForDestination(nrtCollectionTaskId) + "\n\n");
+            outputStream.flush();
+        } catch (IOException e) {
+            logger.debug("Event request for '{}' closed by client", nrtCollectionTaskId);
+        }
+    }
+
+    private static long getInterval(HttpServletRequest req) {
+        try {
+            return Math.max(MIN_RETRY_INTERVAL, Long.parseLong(req.getParameter("interval")));
+        } catch (NumberFormatException e) {
+            return DEFAULT_RETRY_INTERVAL;
+        }
+    }
+
     public String getTemplateAsString(String templateName) throws IOException {
 
         BufferedReader r = null;
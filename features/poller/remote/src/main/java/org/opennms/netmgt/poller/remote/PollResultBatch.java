@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.poller.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.opennms.netmgt.poller.PollStatus;
+
+/**
+ * <p>A batch of poll results reported by a remote poller with
+ * {@link PollerBackEnd#reportResults(int, PollResultBatch)}.</p>
+ *
+ * <p>The results are compressed when the batch is serialized, since poll
+ * statuses of one poller are highly repetitive.</p>
+ */
+public class PollResultBatch implements Serializable {
+
+    /**
+     * DO NOT CHANGE!
+     * This class is serialized by remote poller communications.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The result of polling one service.
+     */
+    public static class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int m_serviceId;
+        private final PollStatus m_status;
+
+        public Result(final int serviceId, final PollStatus status) {
+            m_serviceId = serviceId;
+            m_status = status;
+        }
+
+        public int getServiceId() {
+            return m_serviceId;
+        }
+
+        public PollStatus getStatus() {
+            return m_status;
+        }
+    }
+
+    private transient List<Result> m_results = new ArrayList<Result>();
+
+    /**
+     * <p>addResult</p>
+     *
+     * @param serviceId the id of the service that was polled
+     * @param status the poll result
+     */
+    public void addResult(final int serviceId, final PollStatus status) {
+        m_results.add(new Result(serviceId, status));
+    }
+
+    /**
+     * <p>getResults</p>
+     *
+     * @return the results in the order they were added
+     */
+    public List<Result> getResults() {
+        return Collections.unmodifiableList(m_results);
+    }
+
+    /**
+     * <p>size</p>
+     *
+     * @return the number of results in the batch
+     */
+    public int size() {
+        return m_results.size();
+    }
+
+    /**
+     * <p>isEmpty</p>
+     *
+     * @return true if the batch contains no results
+     */
+    public boolean isEmpty() {
+        return m_results.isEmpty();
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream results = new ObjectOutputStream(new GZIPOutputStream(bytes));
+        try {
+            results.writeObject(new ArrayList<Result>(m_results));
+        } finally {
+            results.close();
+        }
+        out.writeObject(bytes.toByteArray());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        final ObjectInputStream results = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream((byte[]) in.readObject())));
+        try {
+            m_results = (List<Result>) results.readObject();
+        } finally {
+            results.close();
+        }
+    }
+}
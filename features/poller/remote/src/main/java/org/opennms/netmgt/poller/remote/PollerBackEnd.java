@@ -130,6 +130,15 @@ public interface PollerBackEnd {
      */
     void reportResult(int locationMonitorID, int serviceId, PollStatus status);
 
+    /**
+     * Report a batch of poll results from the client to the server.  The
+     * batch is applied in a single transaction.
+     *
+     * @param locationMonitorID the id of the location monitor that did the polls
+     * @param results a {@link org.opennms.netmgt.poller.remote.PollResultBatch} object.
+     */
+    void reportResults(int locationMonitorID, PollResultBatch results);
+
 
     /**
      * <p>configurationUpdated</p>
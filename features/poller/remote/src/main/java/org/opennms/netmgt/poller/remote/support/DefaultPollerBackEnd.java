@@ -37,10 +37,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -71,6 +74,7 @@ import org.opennms.netmgt.poller.DistributionContext;
 import org.opennms.netmgt.poller.PollStatus;
 import org.opennms.netmgt.poller.ServiceMonitorLocator;
 import org.opennms.netmgt.poller.remote.OnmsPollModel;
+import org.opennms.netmgt.poller.remote.PollResultBatch;
 import org.opennms.netmgt.poller.remote.PolledService;
 import org.opennms.netmgt.poller.remote.PollerBackEnd;
 import org.opennms.netmgt.poller.remote.PollerConfiguration;
@@ -81,7 +85,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.PermissionDeniedDataAccessException;
 import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.util.Assert;
 
 /**
@@ -139,6 +148,7 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
     private EventIpcManager m_eventIpcManager;
     private PollerConfig m_pollerConfig;
     private TimeKeeper m_timeKeeper;
+    private TransactionOperations m_transactionTemplate;
     private int m_disconnectedTimeout;
 
     private long m_minimumConfigurationReloadInterval;
@@ -158,6 +168,7 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
         Assert.notNull(m_pollerConfig, "The PollerConfig must be set");
         Assert.notNull(m_timeKeeper, "The timeKeeper must be set");
         Assert.notNull(m_eventIpcManager, "The eventIpcManager must be set");
+        Assert.notNull(m_transactionTemplate, "The transactionTemplate must be set");
         Assert.state(m_disconnectedTimeout > 0, "the disconnectedTimeout property must be set");
         
         m_minimumConfigurationReloadInterval = Long.getLong("opennms.pollerBackend.minimumConfigurationReloadInterval", 300000L).longValue();
@@ -500,7 +511,7 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
         sendMonitorStoppedEvent(mon);
     }
 
-    private void processStatusChange(final OnmsLocationSpecificStatus currentStatus, final OnmsLocationSpecificStatus newStatus) {
+    private boolean processStatusChange(final OnmsLocationSpecificStatus currentStatus, final OnmsLocationSpecificStatus newStatus) {
         if (databaseStatusChanged(currentStatus, newStatus)) {
             m_locMonDao.saveStatusChange(newStatus);
 
@@ -510,7 +521,9 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
             if (logicalStatusChanged(currentStatus, newStatus)) {
                 sendRegainedOrLostServiceEvent(newStatus, pollResult);
             }
+            return true;
         }
+        return false;
     }
 
     /** {@inheritDoc} */
@@ -580,6 +593,166 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
 		}
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The results of each service are saved in a transaction of their own,
+     * so a result that cannot be saved only loses the results of its service
+     * instead of rolling back the whole batch, which the front end would
+     * otherwise send again and again.
+     */
+    @Override
+    @Transactional(propagation=Propagation.NOT_SUPPORTED)
+    public void reportResults(final int locationMonitorId, final PollResultBatch results) {
+        if (results == null || results.isEmpty()) {
+            return;
+        }
+        final long startTime = System.currentTimeMillis();
+
+        final Boolean monitorExists;
+        try {
+            monitorExists = m_transactionTemplate.execute(new TransactionCallback<Boolean>() {
+                @Override
+                public Boolean doInTransaction(final TransactionStatus status) {
+                    return m_locMonDao.get(locationMonitorId) != null;
+                }
+            });
+        } catch (final Exception e) {
+            LOG.info("Unable to report results for location monitor ID {}: Location monitor does not exist.", locationMonitorId, e);
+            return;
+        }
+        if (!monitorExists) {
+            LOG.info("Unable to report results for location monitor ID {}: Location monitor does not exist.", locationMonitorId);
+            return;
+        }
+
+        // group the results by service, oldest first
+        final Map<Integer, List<PollStatus>> resultsByService = new LinkedHashMap<Integer, List<PollStatus>>();
+        for (final PollResultBatch.Result result : results.getResults()) {
+            if (result.getStatus() == null) {
+                LOG.warn("Unable to report result for location monitor ID {}, monitored service ID {}: Poll result is null!", locationMonitorId, result.getServiceId());
+                continue;
+            }
+            List<PollStatus> serviceResults = resultsByService.get(result.getServiceId());
+            if (serviceResults == null) {
+                serviceResults = new ArrayList<PollStatus>();
+                resultsByService.put(result.getServiceId(), serviceResults);
+            }
+            serviceResults.add(result.getStatus());
+        }
+
+        final AtomicReference<Package> pkg = new AtomicReference<Package>();
+        int skipped = 0;
+        for (final Entry<Integer, List<PollStatus>> entry : resultsByService.entrySet()) {
+            try {
+                m_transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                        reportServiceResults(locationMonitorId, entry.getKey(), entry.getValue(), pkg);
+                    }
+                });
+            } catch (final Exception e) {
+                LOG.error("Unable to save {} results for location monitor ID {}, monitored service ID {}. Skipping them.", entry.getValue().size(), locationMonitorId, entry.getKey(), e);
+                skipped += entry.getValue().size();
+            }
+        }
+
+        LOG.debug("Applied {} results ({} skipped) for {} services from location monitor ID {} in {} ms.", results.size() - skipped, skipped, resultsByService.size(), locationMonitorId, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Saves the results of one service, oldest first. Failing to save the
+     * response times is logged, any other failure is passed on so that the
+     * transaction is rolled back.
+     */
+    private void reportServiceResults(final int locationMonitorId, final int serviceId, final List<PollStatus> serviceResults, final AtomicReference<Package> pkg) {
+        final OnmsLocationMonitor locationMonitor = m_locMonDao.get(locationMonitorId);
+        final OnmsMonitoredService monSvc = m_monSvcDao.get(serviceId);
+        if (locationMonitor == null || monSvc == null) {
+            LOG.warn("Unable to report result for location monitor ID {}, monitored service ID {}: Monitored service does not exist.", locationMonitorId, serviceId);
+            return;
+        }
+
+        Collections.sort(serviceResults, new Comparator<PollStatus>() {
+            @Override
+            public int compare(final PollStatus a, final PollStatus b) {
+                return a.getTimestamp().compareTo(b.getTimestamp());
+            }
+        });
+
+        try {
+            if (hasResponseTime(serviceResults)) {
+                if (pkg.get() == null) {
+                    pkg.set(getPollingPackageForMonitor(locationMonitor));
+                }
+                saveResponseTimeData(Integer.toString(locationMonitorId), monSvc, serviceResults, pkg.get());
+            }
+        } catch (final Exception e) {
+            LOG.error("Unable to save response time data for location monitor ID {}, monitored service ID {}.", locationMonitorId, serviceId, e);
+        }
+
+        OnmsLocationSpecificStatus currentStatus = m_locMonDao.getMostRecentStatusChange(locationMonitor, monSvc);
+        for (final PollStatus pollResult : serviceResults) {
+            final OnmsLocationSpecificStatus newStatus = new OnmsLocationSpecificStatus(locationMonitor, monSvc, pollResult);
+            if (processStatusChange(currentStatus, newStatus)) {
+                currentStatus = newStatus;
+            }
+        }
+    }
+
+    private static boolean hasResponseTime(final List<PollStatus> results) {
+        for (final PollStatus result : results) {
+            if (result.getResponseTime() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Saves the response times of several polls of one service, oldest first,
+     * looking up the RRD parameters and creating the RRD file only once.
+     */
+    private void saveResponseTimeData(final String locationMonitor, final OnmsMonitoredService monSvc, final List<PollStatus> results, final Package pkg) {
+        final String svcName = monSvc.getServiceName();
+        final Service svc = m_pollerConfig.getServiceInPackage(svcName, pkg);
+
+        final String dsName = getServiceParameter(svc, "ds-name");
+        if (dsName == null) {
+            return;
+        }
+
+        final String rrdRepository = getServiceParameter(svc, "rrd-repository");
+        if (rrdRepository == null) {
+            return;
+        }
+
+        final String rrdDir = rrdRepository+File.separatorChar+"distributed"+File.separatorChar+locationMonitor+File.separator+str(monSvc.getIpAddress());
+
+        try {
+            final File rrdFile = new File(rrdDir, dsName);
+            if (!rrdFile.exists()) {
+                RrdUtils.createRRD(locationMonitor, rrdDir, dsName, m_pollerConfig.getStep(pkg), "GAUGE", 600, "U", "U", m_pollerConfig.getRRAList(pkg));
+            }
+            final long now = System.currentTimeMillis();
+            long lastUpdate = 0;
+            for (final PollStatus result : results) {
+                if (result.getResponseTime() == null) {
+                    continue;
+                }
+                // RRD updates must be at least a second apart and not in the future
+                final long timestamp = Math.min(result.getTimestamp().getTime(), now);
+                if (timestamp / 1000 <= lastUpdate / 1000) {
+                    continue;
+                }
+                RrdUtils.updateRRD(locationMonitor, rrdDir, dsName, timestamp, String.valueOf(result.getResponseTime()));
+                lastUpdate = timestamp;
+            }
+        } catch (final RrdException e) {
+            throw new PermissionDeniedDataAccessException("Unable to store rrdData from "+locationMonitor+" for service "+monSvc, e);
+        }
+    }
+
     /**
      * <p>saveResponseTimeData</p>
      *
@@ -731,6 +904,15 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
         m_timeKeeper = timeKeeper;
     }
 
+    /**
+     * <p>setTransactionTemplate</p>
+     *
+     * @param transactionTemplate a {@link org.springframework.transaction.support.TransactionOperations} object.
+     */
+    public void setTransactionTemplate(final TransactionOperations transactionTemplate) {
+        m_transactionTemplate = transactionTemplate;
+    }
+
     private MonitorStatus updateMonitorState(final OnmsLocationMonitor mon, final Date currentConfigurationVersion) {
         try {
             switch(mon.getStatus()) {
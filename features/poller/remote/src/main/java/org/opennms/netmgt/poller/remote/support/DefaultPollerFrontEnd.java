@@ -32,6 +32,7 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -49,6 +50,7 @@ import org.opennms.netmgt.model.OnmsMonitoringLocationDefinition;
 import org.opennms.netmgt.poller.DistributionContext;
 import org.opennms.netmgt.poller.PollStatus;
 import org.opennms.netmgt.poller.remote.ConfigurationChangedListener;
+import org.opennms.netmgt.poller.remote.PollResultBatch;
 import org.opennms.netmgt.poller.remote.PollService;
 import org.opennms.netmgt.poller.remote.PolledService;
 import org.opennms.netmgt.poller.remote.PollerBackEnd;
@@ -384,6 +386,16 @@ public class DefaultPollerFrontEnd implements PollerFrontEnd, InitializingBean,
     // current state of polled services
     private Map<Integer, ServicePollState> m_pollState = new LinkedHashMap<Integer, ServicePollState>();
 
+    // poll results waiting to be sent to the back end when batching is enabled
+    private boolean m_batchResults = false;
+
+    private int m_maxBatchSize = 1000;
+
+    private PollResultBatch m_pendingResults = new PollResultBatch();
+
+    // poll results dropped because the back end could not be reached for too long
+    private long m_discardedResults = 0;
+
     /** {@inheritDoc} */
     @Override
     public void addConfigurationChangedListener(ConfigurationChangedListener l) {
@@ -514,7 +526,65 @@ public class DefaultPollerFrontEnd implements PollerFrontEnd, InitializingBean,
 
         updateServicePollState(polledServiceId, result);
 
-        m_backEnd.reportResult(getMonitorId(), polledServiceId, result);
+        if (m_batchResults) {
+            final boolean full;
+            synchronized (this) {
+                m_pendingResults.addResult(polledServiceId, result);
+                full = m_pendingResults.size() >= m_maxBatchSize;
+            }
+            if (full) {
+                flushResults();
+            }
+        } else {
+            m_backEnd.reportResult(getMonitorId(), polledServiceId, result);
+        }
+    }
+
+    /**
+     * Sends all queued poll results to the back end in a single call.  This is
+     * invoked periodically by the scheduler when batching is enabled, and
+     * whenever the queue reaches the maximum batch size.
+     */
+    public void flushResults() {
+        final PollResultBatch results;
+        synchronized (this) {
+            if (m_pendingResults.isEmpty()) {
+                return;
+            }
+            results = m_pendingResults;
+            m_pendingResults = new PollResultBatch();
+        }
+
+        try {
+            m_backEnd.reportResults(getMonitorId(), results);
+        } catch (final RuntimeException e) {
+            LOG.warn("Unable to report {} poll results, will retry with the next batch.", results.size(), e);
+            synchronized (this) {
+                // keep at most two batches worth of results so an unreachable server can't exhaust memory
+                final List<PollResultBatch.Result> queued = new ArrayList<PollResultBatch.Result>(results.getResults());
+                queued.addAll(m_pendingResults.getResults());
+                final int discarded = Math.max(0, queued.size() - m_maxBatchSize * 2);
+                if (discarded > 0) {
+                    m_discardedResults += discarded;
+                    LOG.error("Discarding the {} oldest poll results since the server has been unreachable for too long ({} discarded so far).", discarded, m_discardedResults);
+                }
+                final PollResultBatch merged = new PollResultBatch();
+                for (final PollResultBatch.Result result : queued.subList(discarded, queued.size())) {
+                    merged.addResult(result.getServiceId(), result.getStatus());
+                }
+                m_pendingResults = merged;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of poll results that were dropped because they
+     * could not be reported before the queue overflowed.
+     *
+     * @return the number of discarded poll results
+     */
+    public synchronized long getDiscardedResultCount() {
+        return m_discardedResults;
     }
 
     /**
@@ -535,6 +605,7 @@ public class DefaultPollerFrontEnd implements PollerFrontEnd, InitializingBean,
      * <p>doStop</p>
      */
     private void doStop() {
+        flushResults();
         m_backEnd.pollerStopping(getMonitorId());
     }
 
@@ -718,6 +789,25 @@ public class DefaultPollerFrontEnd implements PollerFrontEnd, InitializingBean,
         m_pollerSettings = settings;
     }
 
+    /**
+     * Whether poll results are queued and sent to the back end in batches
+     * by {@link #flushResults()} rather than reported one at a time.
+     *
+     * @param batchResults a boolean.
+     */
+    public void setBatchResults(final boolean batchResults) {
+        m_batchResults = batchResults;
+    }
+
+    /**
+     * <p>setMaxBatchSize</p>
+     *
+     * @param maxBatchSize the number of queued results that triggers an immediate flush
+     */
+    public void setMaxBatchSize(final int maxBatchSize) {
+        m_maxBatchSize = maxBatchSize;
+    }
+
     /**
      * @param timeAdjustment the timeAdjustment to set
      */
@@ -42,6 +42,7 @@ import org.opennms.netmgt.model.OnmsLocationMonitor.MonitorStatus;
 import org.opennms.netmgt.poller.DistributionContext;
 import org.opennms.netmgt.poller.PollStatus;
 import org.opennms.netmgt.poller.ServiceMonitorLocator;
+import org.opennms.netmgt.poller.remote.PollResultBatch;
 import org.opennms.netmgt.poller.remote.PollerBackEnd;
 import org.opennms.netmgt.poller.remote.PollerConfiguration;
 import org.springframework.remoting.RemoteAccessException;
@@ -174,6 +175,27 @@ public class ServerUnreachableAdaptor implements PollerBackEnd {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Unlike single results, a batch is never dropped here: if the server
+     * is unresponsive the exception is passed on so that the front end can
+     * keep the results and send them again with the next batch.
+     */
+    @Override
+    public void reportResults(final int locationMonitorID, final PollResultBatch results) {
+        if (m_serverUnresponsive) {
+            throw new RemoteAccessException("Server is unresponsive, not reporting " + results.size() + " poll results.");
+        }
+        try {
+            m_remoteBackEnd.reportResults(locationMonitorID, results);
+        } catch (RemoteAccessException e) {
+            m_serverUnresponsive = true;
+            LOG.warn("Server is unable to respond due to the following exception.", e);
+            throw e;
+        }
+    }
+
 
     /** {@inheritDoc} */
     @Override
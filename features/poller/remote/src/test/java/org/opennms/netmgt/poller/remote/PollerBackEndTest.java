@@ -37,6 +37,10 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
 import static org.easymock.EasyMock.verify;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -67,6 +71,7 @@ import org.opennms.netmgt.config.poller.Rrd;
 import org.opennms.netmgt.config.poller.Service;
 import org.opennms.netmgt.dao.api.LocationMonitorDao;
 import org.opennms.netmgt.dao.api.MonitoredServiceDao;
+import org.opennms.netmgt.dao.mock.MockTransactionTemplate;
 import org.opennms.netmgt.events.api.EventConstants;
 import org.opennms.netmgt.events.api.EventIpcManager;
 import org.opennms.netmgt.model.NetworkBuilder;
@@ -348,6 +353,9 @@ public class PollerBackEndTest extends TestCase {
         m_backEnd.setPollerConfig(m_pollerConfig);
         m_backEnd.setTimeKeeper(m_timeKeeper);
         m_backEnd.setEventIpcManager(m_eventIpcManager);
+        final MockTransactionTemplate transactionTemplate = new MockTransactionTemplate();
+        transactionTemplate.afterPropertiesSet();
+        m_backEnd.setTransactionTemplate(transactionTemplate);
         m_backEnd.setDisconnectedTimeout(DISCONNECTED_TIMEOUT);
 
         
@@ -660,6 +668,90 @@ public class PollerBackEndTest extends TestCase {
         m_backEnd.reportResult(1, 1, newStatus);
     }
 
+    public void testReportResultsBatch() {
+        // once to check the monitor and once in the transaction of each service
+        expect(m_locMonDao.get(1)).andReturn(m_locationMonitor).times(3);
+        expect(m_monSvcDao.get(1)).andReturn(m_httpService);
+        expect(m_monSvcDao.get(2)).andReturn(m_dnsService);
+
+        expect(m_locMonDao.getMostRecentStatusChange(m_locationMonitor, m_httpService)).andReturn(m_httpCurrentStatus);
+        expect(m_locMonDao.getMostRecentStatusChange(m_locationMonitor, m_dnsService)).andReturn(m_dnsCurrentStatus);
+
+        final PollStatus firstDown = PollStatus.unavailable("Test Down");
+        firstDown.setTimestamp(new Date(1000));
+        final PollStatus secondDown = PollStatus.unavailable("Test Down");
+        secondDown.setTimestamp(new Date(2000));
+
+        // only the first of the two down results for HTTP is a status change
+        EventBuilder eventBuilder = new EventBuilder(EventConstants.REMOTE_NODE_LOST_SERVICE_UEI, "PollerBackEnd")
+        .setMonitoredService(m_httpService)
+        .addParam(EventConstants.PARM_LOCATION_MONITOR_ID, "1");
+        m_eventIpcManager.sendNow(eq(eventBuilder.getEvent()));
+
+        m_locMonDao.saveStatusChange(isA(OnmsLocationSpecificStatus.class));
+        expectLastCall().andAnswer(new StatusChecker(new OnmsLocationSpecificStatus(m_locationMonitor, m_httpService, firstDown)));
+
+        m_mocks.replayAll();
+
+        final PollResultBatch batch = new PollResultBatch();
+        batch.addResult(1, secondDown);
+        batch.addResult(2, PollStatus.unavailable("Still Down"));
+        batch.addResult(1, firstDown);
+        m_backEnd.reportResults(1, batch);
+    }
+
+    public void testReportResultsBatchSkipsFailingService() {
+        expect(m_locMonDao.get(1)).andReturn(m_locationMonitor).times(3);
+        expect(m_monSvcDao.get(1)).andReturn(m_httpService);
+        expect(m_monSvcDao.get(2)).andReturn(m_dnsService);
+
+        expect(m_locMonDao.getMostRecentStatusChange(m_locationMonitor, m_httpService)).andReturn(m_httpCurrentStatus);
+        expect(m_locMonDao.getMostRecentStatusChange(m_locationMonitor, m_dnsService)).andReturn(m_dnsCurrentStatus);
+
+        final PollStatus httpDown = PollStatus.unavailable("Test Down");
+        final PollStatus dnsUp = PollStatus.available();
+
+        // saving the HTTP result fails, which must not keep the DNS result from being saved
+        m_locMonDao.saveStatusChange(isA(OnmsLocationSpecificStatus.class));
+        expectLastCall().andThrow(new RuntimeException("Broken status change"));
+
+        m_locMonDao.saveStatusChange(isA(OnmsLocationSpecificStatus.class));
+        expectLastCall().andAnswer(new StatusChecker(new OnmsLocationSpecificStatus(m_locationMonitor, m_dnsService, dnsUp)));
+        EventBuilder eventBuilder = new EventBuilder(EventConstants.REMOTE_NODE_REGAINED_SERVICE_UEI, "PollerBackEnd")
+        .setMonitoredService(m_dnsService)
+        .addParam(EventConstants.PARM_LOCATION_MONITOR_ID, "1");
+        m_eventIpcManager.sendNow(eq(eventBuilder.getEvent()));
+
+        m_mocks.replayAll();
+
+        final PollResultBatch batch = new PollResultBatch();
+        batch.addResult(1, httpDown);
+        batch.addResult(2, dnsUp);
+        m_backEnd.reportResults(1, batch);
+    }
+
+    public void testPollResultBatchSerialization() throws Exception {
+        final PollResultBatch batch = new PollResultBatch();
+        batch.addResult(1, PollStatus.available(1234.0));
+        batch.addResult(2, PollStatus.unavailable("Test Down"));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(batch);
+        out.close();
+
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        final PollResultBatch copy = (PollResultBatch)in.readObject();
+
+        assertEquals(2, copy.size());
+        assertEquals(1, copy.getResults().get(0).getServiceId());
+        assertEquals(1234.0, copy.getResults().get(0).getStatus().getResponseTime());
+        assertEquals(2, copy.getResults().get(1).getServiceId());
+        assertEquals("Test Down", copy.getResults().get(1).getStatus().getReason());
+
+        m_mocks.replayAll();
+    }
+
     public void testStatusDownWhenDown() {
         expect(m_locMonDao.get(1)).andReturn(m_locationMonitor);
         expect(m_monSvcDao.get(2)).andReturn(m_dnsService);
@@ -30,6 +30,7 @@ package org.opennms.netmgt.poller.remote.support;
 
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
@@ -38,7 +39,10 @@ import java.util.Map;
 
 import junit.framework.TestCase;
 
+import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.remote.PollResultBatch;
 import org.opennms.netmgt.poller.remote.PollerBackEnd;
+import org.springframework.remoting.RemoteAccessException;
 
 public class ServerUnreachableAdaptorTest extends TestCase {
     public void testPollerStartingWhenBackEndReturnsFalse() {
@@ -55,4 +59,32 @@ public class ServerUnreachableAdaptorTest extends TestCase {
         adaptor.pollerStarting(id, details);
         verify(backEnd);
     }
+
+    public void testReportResultsPassesOnFailures() {
+        final PollResultBatch results = new PollResultBatch();
+        results.addResult(1, PollStatus.available());
+
+        PollerBackEnd backEnd = createMock(PollerBackEnd.class);
+        backEnd.reportResults(1, results);
+        expectLastCall().andThrow(new RemoteAccessException("connection refused"));
+
+        ServerUnreachableAdaptor adaptor = new ServerUnreachableAdaptor();
+        adaptor.setRemoteBackEnd(backEnd);
+
+        replay(backEnd);
+        try {
+            adaptor.reportResults(1, results);
+            fail("the failure should be passed on so that the results are queued again");
+        } catch (final RemoteAccessException e) {
+            // expected
+        }
+        // once the server is known to be unresponsive the back end is not called at all
+        try {
+            adaptor.reportResults(1, results);
+            fail("results should not be dropped while the server is unresponsive");
+        } catch (final RemoteAccessException e) {
+            // expected
+        }
+        verify(backEnd);
+    }
 }
@@ -30,7 +30,6 @@ package org.opennms.netmgt.collectd;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.rmi.RemoteException;
 import java.util.Date;
 import java.util.HashMap;
@@ -46,6 +45,7 @@ import org.opennms.netmgt.collectd.vmware.vijava.VmwareCollectionAttributeType;
 import org.opennms.netmgt.collectd.vmware.vijava.VmwareCollectionResource;
 import org.opennms.netmgt.collectd.vmware.vijava.VmwareCollectionSet;
 import org.opennms.netmgt.collectd.vmware.vijava.VmwareMultiInstanceCollectionResource;
+import org.opennms.netmgt.collectd.vmware.vijava.VmwarePerformanceBatch;
 import org.opennms.netmgt.collectd.vmware.vijava.VmwarePerformanceValues;
 import org.opennms.netmgt.collectd.vmware.vijava.VmwareSingleInstanceCollectionResource;
 import org.opennms.netmgt.collection.api.AttributeGroupType;
@@ -63,6 +63,7 @@ import org.opennms.netmgt.events.api.EventProxy;
 import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.rrd.RrdRepository;
 import org.opennms.protocols.vmware.VmwareViJavaAccess;
+import org.opennms.protocols.vmware.VmwareViJavaAccessPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -92,6 +93,13 @@ public class VmwareCollector implements ServiceCollector {
      */
     private VmwareDatacollectionConfigDao m_vmwareDatacollectionConfigDao;
 
+    /**
+     * defaults for the batched collection mode
+     */
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_BATCH_MAX_AGE = 60000;
+    private static final long DEFAULT_BATCH_EXPIRY = 900000;
+
     /**
      * Initializes this instance with a given parameter map.
      *
@@ -213,13 +221,7 @@ public class VmwareCollector implements ServiceCollector {
         VmwareViJavaAccess vmwareViJavaAccess = null;
 
         try {
-            vmwareViJavaAccess = new VmwareViJavaAccess(vmwareManagementServer);
-            int timeout = ParameterMap.getKeyedInteger(parameters, "timeout", -1);
-            if (timeout > 0) {
-                if (!vmwareViJavaAccess.setTimeout(timeout)) {
-                    logger.warn("Error setting connection timeout for VMware management server '{}'", vmwareManagementServer);
-                }
-            }
+            vmwareViJavaAccess = VmwareViJavaAccessPool.getInstance().borrowAccess(vmwareManagementServer);
         } catch (MarshalException e) {
             logger.warn("Error initialising VMware connection to '{}': '{}'", vmwareManagementServer, e.getMessage());
             return collectionSet;
@@ -227,34 +229,45 @@ public class VmwareCollector implements ServiceCollector {
             logger.warn("Error initialising VMware connection to '{}': '{}'", vmwareManagementServer, e.getMessage());
             return collectionSet;
         } catch (IOException e) {
-            logger.warn("Error initialising VMware connection to '{}': '{}'", vmwareManagementServer, e.getMessage());
-            return collectionSet;
-        }
-
-        try {
-            vmwareViJavaAccess.connect();
-        } catch (MalformedURLException e) {
-            logger.warn("Error connecting VMware management server '{}': '{}' exception: {} cause: '{}'", vmwareManagementServer, e.getMessage(), e.getClass().getName(), e.getCause());
-            return collectionSet;
-        } catch (RemoteException e) {
             logger.warn("Error connecting VMware management server '{}': '{}' exception: {} cause: '{}'", vmwareManagementServer, e.getMessage(), e.getClass().getName(), e.getCause());
             return collectionSet;
         }
 
-        ManagedEntity managedEntity = vmwareViJavaAccess.getManagedEntityByManagedObjectId(vmwareManagedObjectId);
+        int timeout = ParameterMap.getKeyedInteger(parameters, "timeout", -1);
+        if (timeout > 0) {
+            if (!vmwareViJavaAccess.setTimeout(timeout)) {
+                logger.warn("Error setting connection timeout for VMware management server '{}'", vmwareManagementServer);
+            }
+        }
 
         VmwarePerformanceValues vmwarePerformanceValues = null;
 
         try {
-            vmwarePerformanceValues = vmwareViJavaAccess.queryPerformanceValues(managedEntity);
+            if (ParameterMap.getKeyedBoolean(parameters, "batch", false)) {
+                int batchSize = ParameterMap.getKeyedInteger(parameters, "batch-size", DEFAULT_BATCH_SIZE);
+                long batchMaxAge = ParameterMap.getKeyedLong(parameters, "batch-max-age", DEFAULT_BATCH_MAX_AGE);
+                long batchExpiry = ParameterMap.getKeyedLong(parameters, "batch-expiry", DEFAULT_BATCH_EXPIRY);
+
+                vmwarePerformanceValues = VmwarePerformanceBatch.getInstance(vmwareManagementServer).getPerformanceValues(vmwareViJavaAccess, vmwareManagedObjectId, batchMaxAge, batchSize, batchExpiry);
+            } else {
+                ManagedEntity managedEntity = vmwareViJavaAccess.getManagedEntityByManagedObjectId(vmwareManagedObjectId);
+
+                vmwarePerformanceValues = vmwareViJavaAccess.queryPerformanceValues(managedEntity);
+            }
         } catch (RemoteException e) {
             logger.warn("Error retrieving performance values from VMware management server '" + vmwareManagementServer + "' for managed object '" + vmwareManagedObjectId + "'", e.getMessage());
 
-            vmwareViJavaAccess.disconnect();
+            VmwareViJavaAccessPool.getInstance().invalidateAccess(vmwareViJavaAccess);
 
             return collectionSet;
+        } catch (RuntimeException e) {
+            VmwareViJavaAccessPool.getInstance().invalidateAccess(vmwareViJavaAccess);
+
+            throw e;
         }
 
+        VmwareViJavaAccessPool.getInstance().returnAccess(vmwareViJavaAccess);
+
         for (final VmwareGroup vmwareGroup : collection.getVmwareGroup()) {
             final AttributeGroupType attribGroupType = new AttributeGroupType(vmwareGroup.getName(), AttributeGroupType.IF_TYPE_ALL);
 
@@ -329,8 +342,6 @@ public class VmwareCollector implements ServiceCollector {
 
         collectionSet.setStatus(ServiceCollector.COLLECTION_SUCCEEDED);
 
-        vmwareViJavaAccess.disconnect();
-
         return collectionSet;
     }
 
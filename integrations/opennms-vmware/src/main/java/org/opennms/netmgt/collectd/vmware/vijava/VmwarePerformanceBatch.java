@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd.vmware.vijava;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.opennms.protocols.vmware.VmwareViJavaAccess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vmware.vim25.mo.ManagedEntity;
+
+/**
+ * The Class VmwarePerformanceBatch
+ * <p/>
+ * Collects the performance values of all managed entities of a single VMware management
+ * server with as few QueryPerf calls as possible. A collection that finds its values
+ * missing or outdated queries every recently collected entity whose values are missing
+ * or outdated as well; the following collections of the same interval are served from
+ * the result of that query. Entities that are already being queried by another thread
+ * are not queried again, and no lock is held while talking to the server, so collectors
+ * of different entities of the same server do not wait for each other's queries.
+ */
+public class VmwarePerformanceBatch {
+
+    /**
+     * logging for VMware data collection
+     */
+    private static final Logger logger = LoggerFactory.getLogger(VmwarePerformanceBatch.class);
+
+    private static final Map<String, VmwarePerformanceBatch> s_batches = new HashMap<String, VmwarePerformanceBatch>();
+
+    private final String m_hostname;
+
+    /**
+     * the managed object Ids of this server and the time they were last requested
+     */
+    private final Map<String, Long> m_lastRequested = new HashMap<String, Long>();
+
+    /**
+     * the most recent values per managed object Id
+     */
+    private final Map<String, QueryResult> m_values = new HashMap<String, QueryResult>();
+
+    /**
+     * the managed object Ids that are currently being queried, and the latch that is released
+     * once that query is done
+     */
+    private final Map<String, CountDownLatch> m_pending = new HashMap<String, CountDownLatch>();
+
+    private static class QueryResult {
+        private final VmwarePerformanceValues m_values;
+        private final long m_timestamp;
+
+        private QueryResult(VmwarePerformanceValues values, long timestamp) {
+            m_values = values;
+            m_timestamp = timestamp;
+        }
+    }
+
+    VmwarePerformanceBatch(String hostname) {
+        m_hostname = hostname;
+    }
+
+    /**
+     * Returns the batch for the given management server.
+     *
+     * @param hostname the vCenter's hostname
+     * @return the batch
+     */
+    public static VmwarePerformanceBatch getInstance(String hostname) {
+        synchronized (s_batches) {
+            VmwarePerformanceBatch batch = s_batches.get(hostname);
+            if (batch == null) {
+                batch = new VmwarePerformanceBatch(hostname);
+                s_batches.put(hostname, batch);
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Returns the performance values for a managed entity. If the values of the entity
+     * are missing or older than maxAge, the entity is queried together with all other
+     * entities requested within the expiry time whose values are missing or older than
+     * maxAge, in chunks of batchSize entities. If the entity is already being queried by
+     * another thread, that query's result is awaited instead.
+     *
+     * @param vmwareViJavaAccess the connected session to use for querying
+     * @param managedObjectId    the managed object Id of the entity
+     * @param maxAge             the maximum age of the values in milliseconds
+     * @param batchSize          the maximum number of entities per QueryPerf call
+     * @param expiry             entities not requested within this time are dropped from the batch
+     * @return the performance values
+     * @throws RemoteException
+     */
+    public VmwarePerformanceValues getPerformanceValues(VmwareViJavaAccess vmwareViJavaAccess, String managedObjectId, long maxAge, int batchSize, long expiry) throws RemoteException {
+        List<String> managedObjectIds;
+        CountDownLatch latch;
+
+        while (true) {
+            CountDownLatch pending;
+
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+
+                m_lastRequested.put(managedObjectId, now);
+
+                QueryResult queryResult = m_values.get(managedObjectId);
+
+                if (queryResult != null && now - queryResult.m_timestamp <= maxAge) {
+                    return queryResult.m_values;
+                }
+
+                pending = m_pending.get(managedObjectId);
+
+                if (pending == null) {
+                    managedObjectIds = getOutdated(now, maxAge, expiry);
+                    latch = new CountDownLatch(1);
+                    for (String outdated : managedObjectIds) {
+                        m_pending.put(outdated, latch);
+                    }
+                    break;
+                }
+            }
+
+            try {
+                pending.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RemoteException("Interrupted while waiting for the performance values of managed object '" + managedObjectId + "'", e);
+            }
+        }
+
+        Map<String, VmwarePerformanceValues> values = new HashMap<String, VmwarePerformanceValues>();
+
+        try {
+            for (int i = 0; i < managedObjectIds.size(); i += batchSize) {
+                queryChunk(vmwareViJavaAccess, managedObjectIds.subList(i, Math.min(i + batchSize, managedObjectIds.size())), managedObjectId, values);
+            }
+
+            logger.debug("Queried performance values of {} managed entities from VMware management server '{}'", values.size(), m_hostname);
+        } finally {
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+
+                for (Map.Entry<String, VmwarePerformanceValues> entry : values.entrySet()) {
+                    m_values.put(entry.getKey(), new QueryResult(entry.getValue(), now));
+                }
+
+                for (String queried : managedObjectIds) {
+                    m_pending.remove(queried);
+                }
+            }
+
+            latch.countDown();
+        }
+
+        return values.get(managedObjectId);
+    }
+
+    /**
+     * Returns the entities whose values are missing or outdated and which are not being
+     * queried already, and drops the entities that have not been requested recently.
+     */
+    private List<String> getOutdated(long now, long maxAge, long expiry) {
+        List<String> managedObjectIds = new ArrayList<String>();
+
+        for (Iterator<Map.Entry<String, Long>> it = m_lastRequested.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Long> entry = it.next();
+
+            if (now - entry.getValue() > expiry) {
+                it.remove();
+                m_values.remove(entry.getKey());
+                continue;
+            }
+
+            QueryResult queryResult = m_values.get(entry.getKey());
+
+            if ((queryResult == null || now - queryResult.m_timestamp > maxAge) && !m_pending.containsKey(entry.getKey())) {
+                managedObjectIds.add(entry.getKey());
+            }
+        }
+
+        return managedObjectIds;
+    }
+
+    /**
+     * Queries one chunk of entities. If the combined query fails, e.g. because one of the
+     * entities was removed from the vCenter, the entities are queried one by one and the
+     * failing ones are dropped from the batch.
+     */
+    private void queryChunk(VmwareViJavaAccess vmwareViJavaAccess, List<String> managedObjectIds, String requestedManagedObjectId, Map<String, VmwarePerformanceValues> values) throws RemoteException {
+        List<ManagedEntity> managedEntities = new ArrayList<ManagedEntity>(managedObjectIds.size());
+
+        for (String managedObjectId : managedObjectIds) {
+            managedEntities.add(vmwareViJavaAccess.getManagedEntityByManagedObjectId(managedObjectId));
+        }
+
+        try {
+            Map<String, VmwarePerformanceValues> chunkValues = vmwareViJavaAccess.queryPerformanceValues(managedEntities);
+
+            for (String managedObjectId : managedObjectIds) {
+                VmwarePerformanceValues vmwarePerformanceValues = chunkValues.get(managedObjectId);
+                values.put(managedObjectId, vmwarePerformanceValues != null ? vmwarePerformanceValues : new VmwarePerformanceValues());
+            }
+        } catch (RemoteException e) {
+            logger.debug("Batched query against VMware management server '{}' failed, querying {} managed entities separately: {}", m_hostname, managedEntities.size(), e.getMessage());
+
+            for (ManagedEntity managedEntity : managedEntities) {
+                String managedObjectId = managedEntity.getMOR().getVal();
+
+                try {
+                    values.put(managedObjectId, vmwareViJavaAccess.queryPerformanceValues(managedEntity));
+                } catch (RemoteException ex) {
+                    if (managedObjectId.equals(requestedManagedObjectId)) {
+                        throw ex;
+                    }
+                    logger.debug("Dropping managed object '{}' from batch for VMware management server '{}': {}", managedObjectId, m_hostname, ex.getMessage());
+                    synchronized (this) {
+                        m_lastRequested.remove(managedObjectId);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -45,12 +45,11 @@ import org.opennms.netmgt.poller.DistributionContext;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.PollStatus;
 import org.opennms.protocols.vmware.VmwareViJavaAccess;
+import org.opennms.protocols.vmware.VmwareViJavaAccessPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.rmi.RemoteException;
 import java.util.Map;
 
 /**
@@ -120,7 +119,7 @@ public class VmwareMonitor extends AbstractServiceMonitor {
             VmwareViJavaAccess vmwareViJavaAccess = null;
 
             try {
-                vmwareViJavaAccess = new VmwareViJavaAccess(vmwareManagementServer);
+                vmwareViJavaAccess = VmwareViJavaAccessPool.getInstance().borrowAccess(vmwareManagementServer);
             } catch (MarshalException e) {
                 logger.warn("Error initialising VMware connection to '{}': '{}'", vmwareManagementServer, e.getMessage());
                 return PollStatus.unavailable("Error initialising VMware connection to '" + vmwareManagementServer + "'");
@@ -128,81 +127,75 @@ public class VmwareMonitor extends AbstractServiceMonitor {
                 logger.warn("Error initialising VMware connection to '{}': '{}'", vmwareManagementServer, e.getMessage());
                 return PollStatus.unavailable("Error initialising VMware connection to '" + vmwareManagementServer + "'");
             } catch (IOException e) {
-                logger.warn("Error initialising VMware connection to '{}': '{}'", vmwareManagementServer, e.getMessage());
-                return PollStatus.unavailable("Error initialising VMware connection to '" + vmwareManagementServer + "'");
-            }
-
-            try {
-                vmwareViJavaAccess.connect();
-            } catch (MalformedURLException e) {
-                logger.warn("Error connecting VMware management server '{}': '{}' exception: {} cause: '{}'", vmwareManagementServer, e.getMessage(), e.getClass().getName(), e.getCause());
-                return PollStatus.unavailable("Error connecting VMware management server '" + vmwareManagementServer + "'");
-            } catch (RemoteException e) {
                 logger.warn("Error connecting VMware management server '{}': '{}' exception: {} cause: '{}'", vmwareManagementServer, e.getMessage(), e.getClass().getName(), e.getCause());
                 return PollStatus.unavailable("Error connecting VMware management server '" + vmwareManagementServer + "'");
             }
 
-            if (!vmwareViJavaAccess.setTimeout(tracker.getConnectionTimeout())) {
-                logger.warn("Error setting connection timeout for VMware management server '{}'", vmwareManagementServer);
-            }
+            try {
+                if (!vmwareViJavaAccess.setTimeout(tracker.getConnectionTimeout())) {
+                    logger.warn("Error setting connection timeout for VMware management server '{}'", vmwareManagementServer);
+                }
 
-            String powerState = "unknown";
+                String powerState = "unknown";
 
-            if ("HostSystem".equals(vmwareManagedEntityType)) {
-                HostSystem hostSystem = vmwareViJavaAccess.getHostSystemByManagedObjectId(vmwareManagedObjectId);
-                if (hostSystem == null) {
-                    return PollStatus.unknown("hostSystem=null");
-                } else {
-                    HostRuntimeInfo hostRuntimeInfo = hostSystem.getRuntime();
-                    if (hostRuntimeInfo == null) {
-                        return PollStatus.unknown("hostRuntimeInfo=null");
+                if ("HostSystem".equals(vmwareManagedEntityType)) {
+                    HostSystem hostSystem = vmwareViJavaAccess.getHostSystemByManagedObjectId(vmwareManagedObjectId);
+                    if (hostSystem == null) {
+                        return PollStatus.unknown("hostSystem=null");
                     } else {
-                        HostSystemPowerState hostSystemPowerState = hostRuntimeInfo.getPowerState();
-                        if (hostSystemPowerState == null) {
-                            return PollStatus.unknown("hostSystemPowerState=null");
+                        HostRuntimeInfo hostRuntimeInfo = hostSystem.getRuntime();
+                        if (hostRuntimeInfo == null) {
+                            return PollStatus.unknown("hostRuntimeInfo=null");
                         } else {
-                            powerState = hostSystemPowerState.toString();
+                            HostSystemPowerState hostSystemPowerState = hostRuntimeInfo.getPowerState();
+                            if (hostSystemPowerState == null) {
+                                return PollStatus.unknown("hostSystemPowerState=null");
+                            } else {
+                                powerState = hostSystemPowerState.toString();
+                            }
                         }
                     }
-                }
-            } else {
-                if ("VirtualMachine".equals(vmwareManagedEntityType)) {
-                    VirtualMachine virtualMachine = vmwareViJavaAccess.getVirtualMachineByManagedObjectId(vmwareManagedObjectId);
-                    if (virtualMachine == null) {
-                        return PollStatus.unknown("virtualMachine=null");
-                    } else {
-                        VirtualMachineRuntimeInfo virtualMachineRuntimeInfo = virtualMachine.getRuntime();
-                        if (virtualMachineRuntimeInfo == null) {
-                            return PollStatus.unknown("virtualMachineRuntimeInfo=null");
+                } else {
+                    if ("VirtualMachine".equals(vmwareManagedEntityType)) {
+                        VirtualMachine virtualMachine = vmwareViJavaAccess.getVirtualMachineByManagedObjectId(vmwareManagedObjectId);
+                        if (virtualMachine == null) {
+                            return PollStatus.unknown("virtualMachine=null");
                         } else {
-                            VirtualMachinePowerState virtualMachinePowerState = virtualMachineRuntimeInfo.getPowerState();
-                            if (virtualMachinePowerState == null) {
-                                return PollStatus.unknown("virtualMachinePowerState=null");
+                            VirtualMachineRuntimeInfo virtualMachineRuntimeInfo = virtualMachine.getRuntime();
+                            if (virtualMachineRuntimeInfo == null) {
+                                return PollStatus.unknown("virtualMachineRuntimeInfo=null");
                             } else {
-                                powerState = virtualMachinePowerState.toString();
+                                VirtualMachinePowerState virtualMachinePowerState = virtualMachineRuntimeInfo.getPowerState();
+                                if (virtualMachinePowerState == null) {
+                                    return PollStatus.unknown("virtualMachinePowerState=null");
+                                } else {
+                                    powerState = virtualMachinePowerState.toString();
+                                }
                             }
                         }
-                    }
-                } else {
-                    logger.warn("Error getting '{}' for '{}'", vmwareManagedEntityType, vmwareManagedObjectId);
-
-                    vmwareViJavaAccess.disconnect();
+                    } else {
+                        logger.warn("Error getting '{}' for '{}'", vmwareManagedEntityType, vmwareManagedObjectId);
 
-                    return serviceStatus;
+                        return serviceStatus;
+                    }
                 }
-            }
 
-            if ("poweredOn".equals(powerState)) {
-                serviceStatus = PollStatus.available();
-            } else {
-                if (ignoreStandBy && "standBy".equals(powerState)) {
-                    serviceStatus = PollStatus.up();
+                if ("poweredOn".equals(powerState)) {
+                    serviceStatus = PollStatus.available();
                 } else {
-                    serviceStatus = PollStatus.unavailable("The system's state is '" + powerState + "'");
+                    if (ignoreStandBy && "standBy".equals(powerState)) {
+                        serviceStatus = PollStatus.up();
+                    } else {
+                        serviceStatus = PollStatus.unavailable("The system's state is '" + powerState + "'");
+                    }
                 }
+            } catch (RuntimeException e) {
+                VmwareViJavaAccessPool.getInstance().invalidateAccess(vmwareViJavaAccess);
+                vmwareViJavaAccess = null;
+                throw e;
+            } finally {
+                VmwareViJavaAccessPool.getInstance().returnAccess(vmwareViJavaAccess);
             }
-
-            vmwareViJavaAccess.disconnect();
         }
 
         return serviceStatus;
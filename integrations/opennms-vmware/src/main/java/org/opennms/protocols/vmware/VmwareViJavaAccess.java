@@ -48,6 +48,7 @@ import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
@@ -134,6 +135,8 @@ public class VmwareViJavaAccess {
 
     private Map<Integer, PerfCounterInfo> m_perfCounterInfoMap = null;
 
+    private Map<String, Integer> m_refreshRates = new HashMap<String, Integer>();
+
     private Map<HostSystem, HostServiceTicket> m_hostServiceTickets = new HashMap<HostSystem, HostServiceTicket>();
 
     private Map<HostSystem, String> m_hostSystemCimUrls = new HashMap<HostSystem, String>();
@@ -208,6 +211,44 @@ public class VmwareViJavaAccess {
         m_serviceInstance = new ServiceInstance(new URL("https://" + m_hostname + "/sdk"), m_username, m_password);
     }
 
+    /**
+     * Returns the hostname of the management server this instance is talking to.
+     *
+     * @return the vCenter's hostname
+     */
+    public String getHostname() {
+        return m_hostname;
+    }
+
+    /**
+     * Returns the username used to log into the management server.
+     *
+     * @return the username
+     */
+    public String getUsername() {
+        return m_username;
+    }
+
+    /**
+     * Checks whether the session of this instance is still usable. This issues a cheap
+     * CurrentTime call against the server, so it will also detect sessions that were
+     * expired on the vCenter side.
+     *
+     * @return true, if the session is still valid
+     */
+    public boolean isSessionValid() {
+        if (m_serviceInstance == null || m_serviceInstance.getServerConnection() == null) {
+            return false;
+        }
+
+        try {
+            return m_serviceInstance.currentTime() != null;
+        } catch (Exception e) {
+            logger.debug("Session for VMware management server '{}' is no longer valid: {}", m_hostname, e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Sets the timeout for server connections.
      *
@@ -317,6 +358,26 @@ public class VmwareViJavaAccess {
         return m_perfCounterInfoMap;
     }
 
+    /**
+     * Sets the performance counters to be used by this instance. This allows multiple
+     * sessions to the same vCenter to share the counter metadata instead of retrieving
+     * it again for every session.
+     *
+     * @param perfCounterInfoMap the map of performance counters
+     */
+    public void setPerfCounterInfoMap(Map<Integer, PerfCounterInfo> perfCounterInfoMap) {
+        m_perfCounterInfoMap = perfCounterInfoMap;
+    }
+
+    /**
+     * Returns the performance counters if they were already retrieved by this instance.
+     *
+     * @return the map of performance counters or null
+     */
+    Map<Integer, PerfCounterInfo> getLoadedPerfCounterInfoMap() {
+        return m_perfCounterInfoMap;
+    }
+
     /**
      * Returns a managed entitiy for a given managed object Id.
      *
@@ -401,31 +462,113 @@ public class VmwareViJavaAccess {
 
         if (perfEntityMetricBases != null) {
             for (int i = 0; i < perfEntityMetricBases.length; i++) {
-                PerfMetricSeries[] perfMetricSeries = ((PerfEntityMetric) perfEntityMetricBases[i]).getValue();
+                addPerformanceValues((PerfEntityMetric) perfEntityMetricBases[i], vmwarePerformanceValues);
+            }
+        }
+
+        return vmwarePerformanceValues;
+    }
+
+    /**
+     * This method queries performance values for multiple managed entities using a single
+     * QueryPerf call. The refresh rate is only looked up once per managed entity type.
+     *
+     * @param managedEntities the managed entities to query
+     * @return the performance values keyed by the managed object Id of the entities
+     * @throws RemoteException
+     */
+    public Map<String, VmwarePerformanceValues> queryPerformanceValues(Collection<ManagedEntity> managedEntities) throws RemoteException {
+
+        Map<String, VmwarePerformanceValues> vmwarePerformanceValuesMap = new HashMap<String, VmwarePerformanceValues>();
+
+        if (managedEntities.isEmpty()) {
+            return vmwarePerformanceValuesMap;
+        }
+
+        List<PerfQuerySpec> perfQuerySpecs = new ArrayList<PerfQuerySpec>(managedEntities.size());
+
+        for (ManagedEntity managedEntity : managedEntities) {
+            PerfQuerySpec perfQuerySpec = new PerfQuerySpec();
+            perfQuerySpec.setEntity(managedEntity.getMOR());
+            perfQuerySpec.setMaxSample(Integer.valueOf(1));
+            perfQuerySpec.setIntervalId(getRefreshRate(managedEntity));
+
+            perfQuerySpecs.add(perfQuerySpec);
+        }
+
+        PerfEntityMetricBase[] perfEntityMetricBases = getPerformanceManager().queryPerf(perfQuerySpecs.toArray(new PerfQuerySpec[perfQuerySpecs.size()]));
+
+        if (perfEntityMetricBases != null) {
+            for (int i = 0; i < perfEntityMetricBases.length; i++) {
+                if (perfEntityMetricBases[i].getEntity() == null) {
+                    continue;
+                }
+
+                String managedObjectId = perfEntityMetricBases[i].getEntity().getVal();
+
+                VmwarePerformanceValues vmwarePerformanceValues = vmwarePerformanceValuesMap.get(managedObjectId);
+
+                if (vmwarePerformanceValues == null) {
+                    vmwarePerformanceValues = new VmwarePerformanceValues();
+                    vmwarePerformanceValuesMap.put(managedObjectId, vmwarePerformanceValues);
+                }
+
+                addPerformanceValues((PerfEntityMetric) perfEntityMetricBases[i], vmwarePerformanceValues);
+            }
+        }
+
+        return vmwarePerformanceValuesMap;
+    }
+
+    /**
+     * Returns the refresh rate for a given managed entity. The value is cached per managed
+     * entity type since all hosts resp. virtual machines share the same real-time interval.
+     *
+     * @param managedEntity the managed entity
+     * @return the refresh rate
+     * @throws RemoteException
+     */
+    private int getRefreshRate(ManagedEntity managedEntity) throws RemoteException {
+        String type = managedEntity.getMOR().getType();
+
+        Integer refreshRate = m_refreshRates.get(type);
+
+        if (refreshRate == null) {
+            refreshRate = getPerformanceManager().queryPerfProviderSummary(managedEntity).getRefreshRate();
+            m_refreshRates.put(type, refreshRate);
+        }
+
+        return refreshRate;
+    }
+
+    /**
+     * Adds the values of a single entity metric to the given performance values object.
+     *
+     * @param perfEntityMetric        the metric returned by the server
+     * @param vmwarePerformanceValues the values object to add to
+     */
+    private void addPerformanceValues(PerfEntityMetric perfEntityMetric, VmwarePerformanceValues vmwarePerformanceValues) {
+        PerfMetricSeries[] perfMetricSeries = perfEntityMetric.getValue();
 
-                for (int j = 0; perfMetricSeries != null && j < perfMetricSeries.length; j++) {
+        for (int j = 0; perfMetricSeries != null && j < perfMetricSeries.length; j++) {
 
-                    if (perfMetricSeries[j] instanceof PerfMetricIntSeries) {
-                        long[] longs = ((PerfMetricIntSeries) perfMetricSeries[j]).getValue();
+            if (perfMetricSeries[j] instanceof PerfMetricIntSeries) {
+                long[] longs = ((PerfMetricIntSeries) perfMetricSeries[j]).getValue();
 
-                        if (longs.length == 1) {
+                if (longs.length == 1) {
 
-                            PerfCounterInfo perfCounterInfo = getPerfCounterInfoMap().get(perfMetricSeries[j].getId().getCounterId());
-                            String instance = perfMetricSeries[j].getId().getInstance();
-                            String name = getHumanReadableName(perfCounterInfo);
+                    PerfCounterInfo perfCounterInfo = getPerfCounterInfoMap().get(perfMetricSeries[j].getId().getCounterId());
+                    String instance = perfMetricSeries[j].getId().getInstance();
+                    String name = getHumanReadableName(perfCounterInfo);
 
-                            if (instance != null && !"".equals(instance)) {
-                                vmwarePerformanceValues.addValue(name, instance, longs[0]);
-                            } else {
-                                vmwarePerformanceValues.addValue(name, longs[0]);
-                            }
-                        }
+                    if (instance != null && !"".equals(instance)) {
+                        vmwarePerformanceValues.addValue(name, instance, longs[0]);
+                    } else {
+                        vmwarePerformanceValues.addValue(name, longs[0]);
                     }
                 }
             }
         }
-
-        return vmwarePerformanceValues;
     }
 
     /**
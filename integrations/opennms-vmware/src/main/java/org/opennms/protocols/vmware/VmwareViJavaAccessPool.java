@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.protocols.vmware;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.exolab.castor.xml.MarshalException;
+import org.exolab.castor.xml.ValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vmware.vim25.PerfCounterInfo;
+
+/**
+ * The Class VmwareViJavaAccessPool
+ * <p/>
+ * Keeps logged-in sessions to VMware management servers so that collectors and monitors
+ * do not have to perform a full SOAP login for every single collection or poll. Sessions
+ * are handed out exclusively, so a borrowed {@link VmwareViJavaAccess} is never used by two
+ * threads at the same time. The performance counter metadata is retrieved once per
+ * management server and shared by all of its sessions.
+ */
+public class VmwareViJavaAccessPool {
+
+    /**
+     * logging for VMware session pool
+     */
+    private static final Logger logger = LoggerFactory.getLogger(VmwareViJavaAccessPool.class);
+
+    private static final VmwareViJavaAccessPool s_instance = new VmwareViJavaAccessPool();
+
+    /**
+     * idle sessions per management server, most recently used first
+     */
+    private final Map<String, LinkedList<PooledAccess>> m_idleSessions = new HashMap<String, LinkedList<PooledAccess>>();
+
+    /**
+     * the shared performance counter metadata per management server
+     */
+    private final Map<String, Map<Integer, PerfCounterInfo>> m_perfCounterInfoMaps = new ConcurrentHashMap<String, Map<Integer, PerfCounterInfo>>();
+
+    private int m_maxIdlePerServer = Integer.getInteger("org.opennms.vmware.session.maxIdle", 8);
+
+    private long m_maxIdleTime = Long.getLong("org.opennms.vmware.session.maxIdleTime", 10 * 60 * 1000L);
+
+    private long m_validationInterval = Long.getLong("org.opennms.vmware.session.validationInterval", 60 * 1000L);
+
+    private static class PooledAccess {
+        private final VmwareViJavaAccess m_access;
+        private final long m_lastUsed;
+
+        private PooledAccess(VmwareViJavaAccess access, long lastUsed) {
+            m_access = access;
+            m_lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * Returns the shared pool instance.
+     *
+     * @return the pool
+     */
+    public static VmwareViJavaAccessPool getInstance() {
+        return s_instance;
+    }
+
+    /**
+     * Returns a connected session for the given management server. An idle session is
+     * reused if one is available and still valid, otherwise a new session is created.
+     * The session must be handed back using {@link #returnAccess(VmwareViJavaAccess)} or
+     * {@link #invalidateAccess(VmwareViJavaAccess)}.
+     *
+     * @param hostname the vCenter's hostname
+     * @return a connected session
+     * @throws MarshalException
+     * @throws ValidationException
+     * @throws IOException
+     */
+    public VmwareViJavaAccess borrowAccess(String hostname) throws MarshalException, ValidationException, IOException {
+        PooledAccess pooledAccess;
+
+        while ((pooledAccess = pollIdle(hostname)) != null) {
+            long idleTime = System.currentTimeMillis() - pooledAccess.m_lastUsed;
+
+            if (idleTime > m_maxIdleTime) {
+                logger.debug("Discarding session for VMware management server '{}' after being idle for {} ms", hostname, idleTime);
+                invalidateAccess(pooledAccess.m_access);
+            } else if (idleTime > m_validationInterval && !pooledAccess.m_access.isSessionValid()) {
+                logger.debug("Discarding invalid session for VMware management server '{}'", hostname);
+            } else {
+                return pooledAccess.m_access;
+            }
+        }
+
+        VmwareViJavaAccess vmwareViJavaAccess = createAccess(hostname);
+
+        Map<Integer, PerfCounterInfo> perfCounterInfoMap = m_perfCounterInfoMaps.get(hostname);
+
+        if (perfCounterInfoMap != null) {
+            vmwareViJavaAccess.setPerfCounterInfoMap(perfCounterInfoMap);
+        }
+
+        vmwareViJavaAccess.connect();
+
+        logger.debug("Created new session for VMware management server '{}'", hostname);
+
+        return vmwareViJavaAccess;
+    }
+
+    /**
+     * Hands a session back to the pool after it was used successfully.
+     *
+     * @param vmwareViJavaAccess the session to return
+     */
+    public void returnAccess(VmwareViJavaAccess vmwareViJavaAccess) {
+        if (vmwareViJavaAccess == null) {
+            return;
+        }
+
+        String hostname = vmwareViJavaAccess.getHostname();
+
+        Map<Integer, PerfCounterInfo> perfCounterInfoMap = vmwareViJavaAccess.getLoadedPerfCounterInfoMap();
+
+        if (perfCounterInfoMap != null && !m_perfCounterInfoMaps.containsKey(hostname)) {
+            m_perfCounterInfoMaps.put(hostname, perfCounterInfoMap);
+        }
+
+        synchronized (m_idleSessions) {
+            LinkedList<PooledAccess> idleSessions = m_idleSessions.get(hostname);
+
+            if (idleSessions == null) {
+                idleSessions = new LinkedList<PooledAccess>();
+                m_idleSessions.put(hostname, idleSessions);
+            }
+
+            if (idleSessions.size() < m_maxIdlePerServer) {
+                idleSessions.addFirst(new PooledAccess(vmwareViJavaAccess, System.currentTimeMillis()));
+                return;
+            }
+        }
+
+        vmwareViJavaAccess.disconnect();
+    }
+
+    /**
+     * Discards a session, e.g. after a remote error occurred while using it.
+     *
+     * @param vmwareViJavaAccess the session to discard
+     */
+    public void invalidateAccess(VmwareViJavaAccess vmwareViJavaAccess) {
+        if (vmwareViJavaAccess == null) {
+            return;
+        }
+
+        try {
+            vmwareViJavaAccess.disconnect();
+        } catch (Exception e) {
+            logger.debug("Error disconnecting from VMware management server '{}': {}", vmwareViJavaAccess.getHostname(), e.getMessage());
+        }
+    }
+
+    /**
+     * Logs out all idle sessions and drops the cached counter metadata.
+     */
+    public void clear() {
+        LinkedList<PooledAccess> idleSessions = new LinkedList<PooledAccess>();
+
+        synchronized (m_idleSessions) {
+            for (LinkedList<PooledAccess> sessions : m_idleSessions.values()) {
+                idleSessions.addAll(sessions);
+            }
+            m_idleSessions.clear();
+        }
+
+        for (PooledAccess pooledAccess : idleSessions) {
+            invalidateAccess(pooledAccess.m_access);
+        }
+
+        m_perfCounterInfoMaps.clear();
+    }
+
+    /**
+     * Returns the number of idle sessions for the given management server.
+     *
+     * @param hostname the vCenter's hostname
+     * @return the number of idle sessions
+     */
+    public int getIdleCount(String hostname) {
+        synchronized (m_idleSessions) {
+            LinkedList<PooledAccess> idleSessions = m_idleSessions.get(hostname);
+            return idleSessions == null ? 0 : idleSessions.size();
+        }
+    }
+
+    /**
+     * Sets the maximum number of idle sessions kept per management server.
+     *
+     * @param maxIdlePerServer the maximum number of idle sessions
+     */
+    public void setMaxIdlePerServer(int maxIdlePerServer) {
+        m_maxIdlePerServer = maxIdlePerServer;
+    }
+
+    /**
+     * Sets the time in milliseconds after which an idle session is logged out.
+     *
+     * @param maxIdleTime the maximum idle time
+     */
+    public void setMaxIdleTime(long maxIdleTime) {
+        m_maxIdleTime = maxIdleTime;
+    }
+
+    /**
+     * Sets the idle time in milliseconds after which a session is validated before reuse.
+     *
+     * @param validationInterval the validation interval
+     */
+    public void setValidationInterval(long validationInterval) {
+        m_validationInterval = validationInterval;
+    }
+
+    /**
+     * Creates a new, not yet connected session object for the given management server.
+     *
+     * @param hostname the vCenter's hostname
+     * @return the session object
+     * @throws MarshalException
+     * @throws ValidationException
+     * @throws IOException
+     */
+    protected VmwareViJavaAccess createAccess(String hostname) throws MarshalException, ValidationException, IOException {
+        return new VmwareViJavaAccess(hostname);
+    }
+
+    private PooledAccess pollIdle(String hostname) {
+        LinkedList<PooledAccess> expiredSessions = new LinkedList<PooledAccess>();
+        PooledAccess pooledAccess = null;
+
+        synchronized (m_idleSessions) {
+            LinkedList<PooledAccess> idleSessions = m_idleSessions.get(hostname);
+
+            if (idleSessions != null) {
+                // the least recently used sessions are at the tail, drop the expired ones
+                long now = System.currentTimeMillis();
+                for (Iterator<PooledAccess> it = idleSessions.descendingIterator(); it.hasNext(); ) {
+                    PooledAccess idleSession = it.next();
+                    if (now - idleSession.m_lastUsed <= m_maxIdleTime) {
+                        break;
+                    }
+                    it.remove();
+                    expiredSessions.add(idleSession);
+                }
+
+                pooledAccess = idleSessions.pollFirst();
+            }
+        }
+
+        for (PooledAccess expiredSession : expiredSessions) {
+            invalidateAccess(expiredSession.m_access);
+        }
+
+        return pooledAccess;
+    }
+}
@@ -405,6 +405,48 @@ public class VmwareViJavaAccessTest {
         verify(mockPerformanceManager, mockPerfProviderSummary, mockServiceInstance, ServiceInstance.class);
     }
 
+    @Test
+    public void testQueryPerformanceValuesBatched() {
+        for (int i = 0; i < perfEntityMetricBases.length; i++) {
+            perfEntityMetricBases[i].setEntity(managedObjectReferenceManagedEntity);
+        }
+
+        replay(mockPerformanceManager, mockPerfProviderSummary, mockServiceInstance, ServiceInstance.class);
+
+        Map<String, VmwarePerformanceValues> vmwarePerformanceValuesMap = null;
+
+        try {
+            vmwareViJavaAccess.connect();
+
+            vmwarePerformanceValuesMap = vmwareViJavaAccess.queryPerformanceValues(Collections.singletonList(managedEntity));
+        } catch (MalformedURLException e) {
+            Assert.fail(e.getMessage());
+        } catch (RemoteException e) {
+            Assert.fail(e.getMessage());
+        }
+
+        Assert.assertNotNull(vmwarePerformanceValuesMap);
+        Assert.assertEquals(1, vmwarePerformanceValuesMap.size());
+
+        VmwarePerformanceValues vmwarePerformanceValues = vmwarePerformanceValuesMap.get(managedEntity.getMOR().getVal());
+
+        Assert.assertNotNull(vmwarePerformanceValues);
+
+        for (int i = 0; i < perfCounterInfos.length; i++) {
+            PerfCounterInfo perfCounterInfo = perfCounterInfos[i];
+
+            String expectedName = perfCounterInfo.getGroupInfo().getKey() + "." + perfCounterInfo.getNameInfo().getKey() + "." + perfCounterInfo.getRollupType().toString();
+
+            if (vmwarePerformanceValues.hasInstances(expectedName)) {
+                Assert.assertEquals(vmwarePerformanceValues.getInstances(expectedName).size(), ((PerfEntityMetric) perfEntityMetricBases[i]).getValue().length);
+            } else {
+                Assert.assertTrue(vmwarePerformanceValues.hasSingleValue(expectedName));
+            }
+        }
+
+        verify(mockPerformanceManager, mockPerfProviderSummary, mockServiceInstance, ServiceInstance.class);
+    }
+
     @Test
     public void testQueryCimObjects() {
         replay(mockPerformanceManager, mockHostSystem, mockHostNetworkSystem, mockCIMClient, CIMClient.class, mockServiceInstance, ServiceInstance.class);
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd.vmware.vijava;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.protocols.vmware.VmwareViJavaAccess;
+
+import com.vmware.vim25.ManagedObjectReference;
+import com.vmware.vim25.mo.ManagedEntity;
+
+public class VmwarePerformanceBatchTest {
+
+    private static final long MAX_AGE = 60000;
+    private static final long EXPIRY = 900000;
+
+    private class TestAccess extends VmwareViJavaAccess {
+        private final List<Set<String>> m_queries = Collections.synchronizedList(new ArrayList<Set<String>>());
+        private final Set<String> m_failing = Collections.synchronizedSet(new HashSet<String>());
+        private volatile CountDownLatch m_entered;
+        private volatile CountDownLatch m_release;
+
+        public TestAccess() {
+            super("vcenter", "user", "pass");
+        }
+
+        @Override
+        public ManagedEntity getManagedEntityByManagedObjectId(String managedObjectId) {
+            ManagedObjectReference managedObjectReference = new ManagedObjectReference();
+            managedObjectReference.setType("ManagedEntity");
+            managedObjectReference.setVal(managedObjectId);
+            return new ManagedEntity(null, managedObjectReference);
+        }
+
+        @Override
+        public Map<String, VmwarePerformanceValues> queryPerformanceValues(Collection<ManagedEntity> managedEntities) throws RemoteException {
+            Set<String> managedObjectIds = new HashSet<String>();
+            for (ManagedEntity managedEntity : managedEntities) {
+                managedObjectIds.add(managedEntity.getMOR().getVal());
+            }
+            m_queries.add(managedObjectIds);
+
+            if (m_entered != null) {
+                m_entered.countDown();
+                try {
+                    m_release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RemoteException("interrupted", e);
+                }
+            }
+
+            Map<String, VmwarePerformanceValues> values = new HashMap<String, VmwarePerformanceValues>();
+            for (String managedObjectId : managedObjectIds) {
+                if (m_failing.contains(managedObjectId)) {
+                    throw new RemoteException("managed object " + managedObjectId + " does not exist");
+                }
+                values.put(managedObjectId, new VmwarePerformanceValues());
+            }
+            return values;
+        }
+
+        @Override
+        public VmwarePerformanceValues queryPerformanceValues(ManagedEntity managedEntity) throws RemoteException {
+            return queryPerformanceValues(Collections.singletonList(managedEntity)).get(managedEntity.getMOR().getVal());
+        }
+    }
+
+    private TestAccess m_access;
+
+    private VmwarePerformanceBatch m_batch;
+
+    private ExecutorService m_executor;
+
+    @Before
+    public void setUp() {
+        m_access = new TestAccess();
+        m_batch = new VmwarePerformanceBatch("vcenter");
+        m_executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        m_executor.shutdownNow();
+    }
+
+    @Test
+    public void testFirstIntervalQueriesOnlyMissingEntities() throws Exception {
+        for (String managedObjectId : Arrays.asList("vm-1", "vm-2", "vm-3")) {
+            assertNotNull(m_batch.getPerformanceValues(m_access, managedObjectId, MAX_AGE, 100, EXPIRY));
+        }
+
+        assertEquals(3, m_access.m_queries.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Collections.singleton("vm-" + (i + 1)), m_access.m_queries.get(i));
+        }
+
+        // the rest of the interval is served from memory
+        VmwarePerformanceValues values = m_batch.getPerformanceValues(m_access, "vm-2", MAX_AGE, 100, EXPIRY);
+        assertSame(values, m_batch.getPerformanceValues(m_access, "vm-2", MAX_AGE, 100, EXPIRY));
+        assertEquals(3, m_access.m_queries.size());
+    }
+
+    @Test
+    public void testOutdatedEntitiesAreQueriedTogether() throws Exception {
+        for (String managedObjectId : Arrays.asList("vm-1", "vm-2", "vm-3", "vm-4", "vm-5")) {
+            m_batch.getPerformanceValues(m_access, managedObjectId, MAX_AGE, 100, EXPIRY);
+        }
+        m_access.m_queries.clear();
+
+        // all values are outdated, the first collection of the interval queries them all in chunks
+        m_batch.getPerformanceValues(m_access, "vm-1", -1, 2, EXPIRY);
+
+        assertEquals(3, m_access.m_queries.size());
+        Set<String> queried = new HashSet<String>();
+        for (Set<String> query : m_access.m_queries) {
+            assertTrue(query.size() <= 2);
+            queried.addAll(query);
+        }
+        assertEquals(new HashSet<String>(Arrays.asList("vm-1", "vm-2", "vm-3", "vm-4", "vm-5")), queried);
+
+        m_access.m_queries.clear();
+        m_batch.getPerformanceValues(m_access, "vm-4", MAX_AGE, 2, EXPIRY);
+        assertEquals(0, m_access.m_queries.size());
+    }
+
+    @Test
+    public void testFailingEntityIsDropped() throws Exception {
+        for (String managedObjectId : Arrays.asList("vm-1", "vm-2", "vm-3")) {
+            m_batch.getPerformanceValues(m_access, managedObjectId, MAX_AGE, 100, EXPIRY);
+        }
+        m_access.m_failing.add("vm-2");
+        m_access.m_queries.clear();
+
+        // the combined query fails, the entities are retried one by one
+        assertNotNull(m_batch.getPerformanceValues(m_access, "vm-1", -1, 100, EXPIRY));
+        assertEquals(4, m_access.m_queries.size());
+
+        // the failing entity is not part of the next batch
+        m_access.m_queries.clear();
+        m_batch.getPerformanceValues(m_access, "vm-1", -1, 100, EXPIRY);
+        assertEquals(1, m_access.m_queries.size());
+        assertEquals(new HashSet<String>(Arrays.asList("vm-1", "vm-3")), m_access.m_queries.get(0));
+    }
+
+    @Test
+    public void testFailingRequestedEntityThrows() throws Exception {
+        m_access.m_failing.add("vm-1");
+
+        try {
+            m_batch.getPerformanceValues(m_access, "vm-1", MAX_AGE, 100, EXPIRY);
+            org.junit.Assert.fail("the error of the requested entity should be passed on");
+        } catch (RemoteException e) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentCollections() throws Exception {
+        m_access.m_entered = new CountDownLatch(1);
+        m_access.m_release = new CountDownLatch(1);
+
+        Future<VmwarePerformanceValues> first = m_executor.submit(collect("vm-1"));
+        m_access.m_entered.await();
+
+        // a second collection of the same entity waits for the running query instead of querying again
+        Future<VmwarePerformanceValues> second = m_executor.submit(collect("vm-1"));
+
+        // other entities are not blocked by the running query
+        m_access.m_entered = null;
+        assertNotNull(m_executor.submit(collect("vm-2")).get(5, TimeUnit.SECONDS));
+
+        m_access.m_release.countDown();
+        VmwarePerformanceValues values = first.get();
+        assertSame(values, second.get());
+
+        assertEquals(2, m_access.m_queries.size());
+        assertEquals(Collections.singleton("vm-1"), m_access.m_queries.get(0));
+        assertEquals(Collections.singleton("vm-2"), m_access.m_queries.get(1));
+    }
+
+    private Callable<VmwarePerformanceValues> collect(final String managedObjectId) {
+        return new Callable<VmwarePerformanceValues>() {
+            @Override
+            public VmwarePerformanceValues call() throws Exception {
+                return m_batch.getPerformanceValues(m_access, managedObjectId, MAX_AGE, 100, EXPIRY);
+            }
+        };
+    }
+}
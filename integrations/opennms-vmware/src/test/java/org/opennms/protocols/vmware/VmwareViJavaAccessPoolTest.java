@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.protocols.vmware;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.vim25.PerfCounterInfo;
+
+public class VmwareViJavaAccessPoolTest {
+
+    private static class TestAccess extends VmwareViJavaAccess {
+        private boolean m_connected = false;
+        private boolean m_valid = true;
+
+        public TestAccess(String hostname) {
+            super(hostname, "user", "pass");
+        }
+
+        @Override
+        public void connect() {
+            m_connected = true;
+        }
+
+        @Override
+        public void disconnect() {
+            m_connected = false;
+        }
+
+        @Override
+        public boolean isSessionValid() {
+            return m_connected && m_valid;
+        }
+    }
+
+    private final List<TestAccess> m_created = new ArrayList<TestAccess>();
+
+    private VmwareViJavaAccessPool m_pool;
+
+    @Before
+    public void setUp() {
+        m_pool = new VmwareViJavaAccessPool() {
+            @Override
+            protected VmwareViJavaAccess createAccess(String hostname) {
+                TestAccess access = new TestAccess(hostname);
+                m_created.add(access);
+                return access;
+            }
+        };
+    }
+
+    @Test
+    public void testSessionIsReused() throws Exception {
+        VmwareViJavaAccess first = m_pool.borrowAccess("vcenter");
+        assertTrue(((TestAccess) first).m_connected);
+        assertEquals(0, m_pool.getIdleCount("vcenter"));
+
+        m_pool.returnAccess(first);
+        assertEquals(1, m_pool.getIdleCount("vcenter"));
+
+        assertSame(first, m_pool.borrowAccess("vcenter"));
+        assertEquals(1, m_created.size());
+
+        // sessions are never shared between management servers
+        assertNotSame(first, m_pool.borrowAccess("other-vcenter"));
+        assertEquals(2, m_created.size());
+    }
+
+    @Test
+    public void testBorrowedSessionIsExclusive() throws Exception {
+        VmwareViJavaAccess first = m_pool.borrowAccess("vcenter");
+        VmwareViJavaAccess second = m_pool.borrowAccess("vcenter");
+
+        assertNotSame(first, second);
+        assertEquals(2, m_created.size());
+    }
+
+    @Test
+    public void testInvalidSessionIsReplaced() throws Exception {
+        m_pool.setValidationInterval(-1);
+
+        TestAccess first = (TestAccess) m_pool.borrowAccess("vcenter");
+        m_pool.returnAccess(first);
+        first.m_valid = false;
+
+        VmwareViJavaAccess second = m_pool.borrowAccess("vcenter");
+        assertNotSame(first, second);
+        assertEquals(2, m_created.size());
+    }
+
+    @Test
+    public void testIdleSessionsExpire() throws Exception {
+        m_pool.setMaxIdleTime(-1);
+
+        TestAccess first = (TestAccess) m_pool.borrowAccess("vcenter");
+        m_pool.returnAccess(first);
+
+        assertNotSame(first, m_pool.borrowAccess("vcenter"));
+        assertEquals(false, first.m_connected);
+    }
+
+    @Test
+    public void testMaxIdlePerServer() throws Exception {
+        m_pool.setMaxIdlePerServer(1);
+
+        TestAccess first = (TestAccess) m_pool.borrowAccess("vcenter");
+        TestAccess second = (TestAccess) m_pool.borrowAccess("vcenter");
+        m_pool.returnAccess(first);
+        m_pool.returnAccess(second);
+
+        assertEquals(1, m_pool.getIdleCount("vcenter"));
+        assertEquals(true, first.m_connected);
+        assertEquals(false, second.m_connected);
+
+        m_pool.clear();
+        assertEquals(0, m_pool.getIdleCount("vcenter"));
+        assertEquals(false, first.m_connected);
+    }
+
+    @Test
+    public void testPerfCounterInfoIsShared() throws Exception {
+        Map<Integer, PerfCounterInfo> perfCounterInfoMap = new HashMap<Integer, PerfCounterInfo>();
+
+        VmwareViJavaAccess first = m_pool.borrowAccess("vcenter");
+        VmwareViJavaAccess second = m_pool.borrowAccess("vcenter");
+        first.setPerfCounterInfoMap(perfCounterInfoMap);
+        m_pool.returnAccess(first);
+        m_pool.invalidateAccess(second);
+
+        // the idle session is reused, the next one is created with the shared metadata
+        assertSame(first, m_pool.borrowAccess("vcenter"));
+        VmwareViJavaAccess third = m_pool.borrowAccess("vcenter");
+        assertEquals(3, m_created.size());
+        assertSame(perfCounterInfoMap, third.getLoadedPerfCounterInfoMap());
+    }
+}
@@ -140,101 +140,115 @@ public class AddressSnmpConfigVisitor extends AbstractSnmpConfigVisitor implemen
     }
 
     public void visitSnmpConfigFinished() {
+        m_generatedDefinition = createDefinition(m_currentConfig, m_matchedDefinition);
+    }
+
+    /**
+     * Creates the effective definition for an agent that matched the given
+     * definition, filling in anything it does not set from the top-level
+     * configuration or the SNMP defaults.
+     *
+     * @param config the SNMP configuration
+     * @param matchedDefinition the matching definition, or null if the agent
+     *        did not match any definition
+     * @return a new {@link Definition}
+     */
+    public static Definition createDefinition(final SnmpConfig config, final Definition matchedDefinition) {
         final Definition ret = new Definition();
 
         final Configuration sourceConfig;
-        if (m_matchedDefinition != null) {
-            sourceConfig = m_matchedDefinition;
+        if (matchedDefinition != null) {
+            sourceConfig = matchedDefinition;
         } else {
-            sourceConfig = m_currentConfig;
+            sourceConfig = config;
         }
 
         if (sourceConfig.getProxyHost() != null) {
             ret.setProxyHost(sourceConfig.getProxyHost());
         } else {
-            ret.setProxyHost(m_currentConfig.getProxyHost());
+            ret.setProxyHost(config.getProxyHost());
         }
 
         if (sourceConfig.hasMaxVarsPerPdu()) {
             ret.setMaxVarsPerPdu(sourceConfig.getMaxVarsPerPdu());
-        } else if (m_currentConfig.hasMaxVarsPerPdu()) {
-            ret.setMaxVarsPerPdu(m_currentConfig.getMaxVarsPerPdu());
+        } else if (config.hasMaxVarsPerPdu()) {
+            ret.setMaxVarsPerPdu(config.getMaxVarsPerPdu());
         } else {
             ret.setMaxVarsPerPdu(DEFAULT_MAX_VARS_PER_PDU);
         }
 
         if (sourceConfig.hasMaxRepetitions()) {
             ret.setMaxRepetitions(sourceConfig.getMaxRepetitions());
-        } else if (m_currentConfig.hasMaxRepetitions()) {
-            ret.setMaxRepetitions(m_currentConfig.getMaxRepetitions());
+        } else if (config.hasMaxRepetitions()) {
+            ret.setMaxRepetitions(config.getMaxRepetitions());
         } else {
             ret.setMaxRepetitions(DEFAULT_MAX_REPETITIONS);
         }
 
         if (sourceConfig.hasMaxRequestSize()) {
             ret.setMaxRequestSize(sourceConfig.getMaxRequestSize());
-        } else if (m_currentConfig.hasMaxRequestSize()) {
-            ret.setMaxRequestSize(m_currentConfig.getMaxRequestSize());
+        } else if (config.hasMaxRequestSize()) {
+            ret.setMaxRequestSize(config.getMaxRequestSize());
         } else {
             ret.setMaxRequestSize(DEFAULT_MAX_REQUEST_SIZE);
         }
 
         if (sourceConfig.getSecurityName() != null) {
             ret.setSecurityName(sourceConfig.getSecurityName());
-        } else if (m_currentConfig.getSecurityName() != null) {
-            ret.setSecurityName(m_currentConfig.getSecurityName());
+        } else if (config.getSecurityName() != null) {
+            ret.setSecurityName(config.getSecurityName());
         } else {
             ret.setSecurityName(DEFAULT_SECURITY_NAME);
         }
 
         if (sourceConfig.getAuthPassphrase() != null) {
             ret.setAuthPassphrase(sourceConfig.getAuthPassphrase());
-        } else if (m_currentConfig.getAuthPassphrase() != null) {
-            ret.setAuthPassphrase(m_currentConfig.getAuthPassphrase());
+        } else if (config.getAuthPassphrase() != null) {
+            ret.setAuthPassphrase(config.getAuthPassphrase());
         }
         
         if (sourceConfig.getAuthProtocol() != null) {
             ret.setAuthProtocol(sourceConfig.getAuthProtocol());
-        } else if (m_currentConfig.getAuthProtocol() != null) {
-            ret.setAuthProtocol(m_currentConfig.getAuthProtocol());
+        } else if (config.getAuthProtocol() != null) {
+            ret.setAuthProtocol(config.getAuthProtocol());
         } else {
             ret.setAuthProtocol(DEFAULT_AUTH_PROTOCOL);
         }
         
         if (sourceConfig.getEngineId() != null) {
             ret.setEngineId(sourceConfig.getEngineId());
-        } else if (m_currentConfig.getEngineId() != null) {
-            ret.setEngineId(m_currentConfig.getEngineId());
+        } else if (config.getEngineId() != null) {
+            ret.setEngineId(config.getEngineId());
         } else {
             ret.setEngineId(DEFAULT_ENGINE_ID);
         }
 
         if (sourceConfig.getContextEngineId() != null) {
             ret.setContextEngineId(sourceConfig.getContextEngineId());
-        } else if (m_currentConfig.getContextEngineId() != null) {
-            ret.setContextEngineId(m_currentConfig.getContextEngineId());
+        } else if (config.getContextEngineId() != null) {
+            ret.setContextEngineId(config.getContextEngineId());
         } else {
             ret.setContextEngineId(DEFAULT_CONTEXT_ENGINE_ID);
         }
 
         if (sourceConfig.getContextName() != null) {
             ret.setContextName(sourceConfig.getContextName());
-        } else if (m_currentConfig.getContextName() != null) {
-            ret.setContextName(m_currentConfig.getContextName());
+        } else if (config.getContextName() != null) {
+            ret.setContextName(config.getContextName());
         } else {
             ret.setContextName(DEFAULT_CONTEXT_NAME);
         }
 
         if (sourceConfig.getPrivacyPassphrase() != null) {
             ret.setPrivacyPassphrase(sourceConfig.getPrivacyPassphrase());
-        } else if (m_currentConfig.getPrivacyPassphrase() != null) {
-            ret.setPrivacyPassphrase(m_currentConfig.getPrivacyPassphrase());
+        } else if (config.getPrivacyPassphrase() != null) {
+            ret.setPrivacyPassphrase(config.getPrivacyPassphrase());
         }
 
         if (sourceConfig.getPrivacyProtocol() != null) {
             ret.setPrivacyProtocol(sourceConfig.getPrivacyProtocol());
-        } else if (m_currentConfig.getPrivacyProtocol() != null) {
-            ret.setPrivacyProtocol(m_currentConfig.getPrivacyProtocol());
+        } else if (config.getPrivacyProtocol() != null) {
+            ret.setPrivacyProtocol(config.getPrivacyProtocol());
         } else {
             ret.setPrivacyProtocol(DEFAULT_PRIV_PROTOCOL);
         }
@@ -242,53 +256,53 @@ public class AddressSnmpConfigVisitor extends AbstractSnmpConfigVisitor implemen
         if (sourceConfig.getEnterpriseId() != null) {
             ret.setEnterpriseId(sourceConfig.getEnterpriseId());
         } else {
-            ret.setEnterpriseId(m_currentConfig.getEnterpriseId());
+            ret.setEnterpriseId(config.getEnterpriseId());
         }
 
         if (sourceConfig.getVersion() != null) {
             ret.setVersion(sourceConfig.getVersion());
-        } else if (m_currentConfig.getVersion() != null) {
-            ret.setVersion(m_currentConfig.getVersion());
+        } else if (config.getVersion() != null) {
+            ret.setVersion(config.getVersion());
         } else {
             ret.setVersion(versionToString(VERSION1));
         }
 
         if (sourceConfig.getWriteCommunity() != null) {
             ret.setWriteCommunity(sourceConfig.getWriteCommunity());
-        } else if (m_currentConfig.getWriteCommunity() != null) {
-            ret.setWriteCommunity(m_currentConfig.getWriteCommunity());
+        } else if (config.getWriteCommunity() != null) {
+            ret.setWriteCommunity(config.getWriteCommunity());
         } else {
             ret.setWriteCommunity(DEFAULT_WRITE_COMMUNITY);
         }
 
         if (sourceConfig.getReadCommunity() != null) {
             ret.setReadCommunity(sourceConfig.getReadCommunity());
-        } else if (m_currentConfig.getReadCommunity() != null) {
-            ret.setReadCommunity(m_currentConfig.getReadCommunity());
+        } else if (config.getReadCommunity() != null) {
+            ret.setReadCommunity(config.getReadCommunity());
         } else {
             ret.setReadCommunity(DEFAULT_READ_COMMUNITY);
         }
 
         if (sourceConfig.hasTimeout()) {
             ret.setTimeout(sourceConfig.getTimeout());
-        } else if (m_currentConfig.hasTimeout()) {
-            ret.setTimeout(m_currentConfig.getTimeout());
+        } else if (config.hasTimeout()) {
+            ret.setTimeout(config.getTimeout());
         } else {
             ret.setTimeout(DEFAULT_TIMEOUT);
         }
 
         if (sourceConfig.hasRetry()) {
             ret.setRetry(sourceConfig.getRetry());
-        } else if (m_currentConfig.hasRetry()) {
-            ret.setRetry(m_currentConfig.getRetry());
+        } else if (config.hasRetry()) {
+            ret.setRetry(config.getRetry());
         } else {
             ret.setRetry(DEFAULT_RETRIES);
         }
 
         if (sourceConfig.hasPort()) {
             ret.setPort(sourceConfig.getPort());
-        } else if (m_currentConfig.hasPort()) {
-            ret.setPort(m_currentConfig.getPort());
+        } else if (config.hasPort()) {
+            ret.setPort(config.getPort());
         } else {
             ret.setPort(DEFAULT_PORT);
         }
@@ -303,9 +317,9 @@ public class AddressSnmpConfigVisitor extends AbstractSnmpConfigVisitor implemen
         if (sourceConfig.hasSecurityLevel()) {
             //LOG.debug("setSecurityLevel: {}", sourceConfig.getSecurityLevel());
             ret.setSecurityLevel(sourceConfig.getSecurityLevel());
-        } else if (m_currentConfig.hasSecurityLevel()) {
-            //LOG.debug("setSecurityLevel: {}", m_currentConfig.getSecurityLevel());
-            ret.setSecurityLevel(m_currentConfig.getSecurityLevel());
+        } else if (config.hasSecurityLevel()) {
+            //LOG.debug("setSecurityLevel: {}", config.getSecurityLevel());
+            ret.setSecurityLevel(config.getSecurityLevel());
         } else {
             int securityLevel = NOAUTH_NOPRIV;
             if (isBlank(ret.getAuthPassphrase())) {
@@ -322,14 +336,14 @@ public class AddressSnmpConfigVisitor extends AbstractSnmpConfigVisitor implemen
         }
 
         //LOG.debug("generated: {}", ret);
-        m_generatedDefinition = ret;
+        return ret;
     }
 
     public Definition getDefinition() {
         return m_generatedDefinition;
     }
 
-    private boolean isBlank(final String s) {
+    private static boolean isBlank(final String s) {
         return s == null || s.length() == 0 || s.trim().length() == 0;
     }
 }
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2011-2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config.vacuumd;
+
+import java.io.Serializable;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Maintenance settings for a time-partitioned events table.  When present,
+ * vacuumd creates upcoming partitions and drops partitions that are older
+ * than the retention period.
+ */
+@XmlRootElement(name = "event-partitioning")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class EventPartitioning implements Serializable {
+    private static final long serialVersionUID = 2186397409451871372L;
+
+    /**
+     * the partition interval, daily or weekly
+     */
+    @XmlAttribute(name = "interval")
+    private String _interval;
+
+    /**
+     * how many future partitions to keep created
+     */
+    @XmlAttribute(name = "ahead")
+    private Integer _ahead;
+
+    /**
+     * how many days of events to keep
+     */
+    @XmlAttribute(name = "retention-days")
+    private Integer _retentionDays;
+
+    public EventPartitioning() {
+        super();
+    }
+
+    public EventPartitioning(final String interval, final int ahead, final int retentionDays) {
+        super();
+        setInterval(interval);
+        setAhead(ahead);
+        setRetentionDays(retentionDays);
+    }
+
+    public String getInterval() {
+        return _interval == null ? "daily" : _interval;
+    }
+
+    public void setInterval(final String interval) {
+        _interval = interval;
+    }
+
+    public int getAhead() {
+        return _ahead == null ? 3 : _ahead;
+    }
+
+    public void setAhead(final int ahead) {
+        _ahead = ahead;
+    }
+
+    public int getRetentionDays() {
+        return _retentionDays == null ? 42 : _retentionDays;
+    }
+
+    public void setRetentionDays(final int retentionDays) {
+        _retentionDays = retentionDays;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((_ahead == null) ? 0 : _ahead.hashCode());
+        result = prime * result + ((_interval == null) ? 0 : _interval.hashCode());
+        result = prime * result + ((_retentionDays == null) ? 0 : _retentionDays.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        final EventPartitioning other = (EventPartitioning) obj;
+        if (_ahead == null) {
+            if (other._ahead != null)
+                return false;
+        } else if (!_ahead.equals(other._ahead))
+            return false;
+        if (_interval == null) {
+            if (other._interval != null)
+                return false;
+        } else if (!_interval.equals(other._interval))
+            return false;
+        if (_retentionDays == null) {
+            if (other._retentionDays != null)
+                return false;
+        } else if (!_retentionDays.equals(other._retentionDays))
+            return false;
+        return true;
+    }
+}
@@ -104,6 +104,12 @@ public class VacuumdConfiguration implements Serializable {
     @XmlElement(name = "action-events")
     private ActionEvents _actionEvents = new ActionEvents();
 
+    /**
+     * Field _eventPartitioning.
+     */
+    @XmlElement(name = "event-partitioning")
+    private EventPartitioning _eventPartitioning;
+
     // ----------------/
     // - Constructors -/
     // ----------------/
@@ -199,6 +205,11 @@ public class VacuumdConfiguration implements Serializable {
                 return false;
         } else if (!_automations.equals(other._automations))
             return false;
+        if (_eventPartitioning == null) {
+            if (other._eventPartitioning != null)
+                return false;
+        } else if (!_eventPartitioning.equals(other._eventPartitioning))
+            return false;
         if (_period == null) {
             if (other._period != null)
                 return false;
@@ -254,6 +265,16 @@ public class VacuumdConfiguration implements Serializable {
         return this._automations;
     }
 
+    /**
+     * Returns the value of field 'eventPartitioning', or null if the
+     * events table is not partitioned.
+     *
+     * @return the value of field 'EventPartitioning'.
+     */
+    public EventPartitioning getEventPartitioning() {
+        return this._eventPartitioning;
+    }
+
     /**
      * Returns the value of field 'period'. The field 'period' has the
      * following description: how often to vacuum the database in seconds
@@ -348,6 +369,8 @@ public class VacuumdConfiguration implements Serializable {
                 + ((_autoEvents == null) ? 0 : _autoEvents.hashCode());
         result = prime * result
                 + ((_automations == null) ? 0 : _automations.hashCode());
+        result = prime * result
+                + ((_eventPartitioning == null) ? 0 : _eventPartitioning.hashCode());
         result = prime * result
                 + ((_period == null) ? 0 : _period.hashCode());
         result = prime * result
@@ -433,6 +456,16 @@ public class VacuumdConfiguration implements Serializable {
         this._automations = automations;
     }
 
+    /**
+     * Sets the value of field 'eventPartitioning'.
+     *
+     * @param eventPartitioning
+     *            the value of field 'eventPartitioning'.
+     */
+    public void setEventPartitioning(final EventPartitioning eventPartitioning) {
+        this._eventPartitioning = eventPartitioning;
+    }
+
     /**
      * Sets the value of field 'period'. The field 'period' has the following
      * description: how often to vacuum the database in seconds
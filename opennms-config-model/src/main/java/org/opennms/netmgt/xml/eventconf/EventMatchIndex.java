@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.xml.eventconf;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Decision index over the mask elements and varbinds of a list of event
+ * definitions.
+ *
+ * <p>For every field used by a mask, the index records which definitions
+ * require an exact value, which require a value prefix (<code>value%</code>)
+ * and which do not constrain the field at all (no such mask element, or a
+ * regular expression). Looking up an incoming event intersects, field by
+ * field, the definitions whose constraint the event can satisfy; only the
+ * remaining candidates are tested with their full {@link EventMatcher}, in
+ * definition order, so the first match is the same one a linear scan would
+ * find.</p>
+ */
+final class EventMatchIndex {
+    private static final String VARBIND_PREFIX = "varbind#";
+
+    private final Event[] m_events;
+    private final FieldIndex[] m_fields;
+
+    private static final class FieldIndex {
+        private final Field m_field;
+        private final BitSet m_constrained = new BitSet();
+        private final BitSet m_unconstrained = new BitSet();
+        private final Map<String, BitSet> m_exact = new HashMap<String, BitSet>();
+        private final Map<String, BitSet> m_prefixes = new HashMap<String, BitSet>();
+        private int[] m_prefixLengths;
+
+        private FieldIndex(final Field field) {
+            m_field = field;
+        }
+
+        private void addExact(final int event, final String value) {
+            BitSet events = m_exact.get(value);
+            if (events == null) {
+                events = new BitSet();
+                m_exact.put(value, events);
+            }
+            events.set(event);
+        }
+
+        private void addPrefix(final int event, final String prefix) {
+            BitSet events = m_prefixes.get(prefix);
+            if (events == null) {
+                events = new BitSet();
+                m_prefixes.put(prefix, events);
+            }
+            events.set(event);
+        }
+
+        private void complete(final int size) {
+            m_unconstrained.set(0, size);
+            m_unconstrained.andNot(m_constrained);
+
+            final SortedSet<Integer> lengths = new TreeSet<Integer>();
+            for (final String prefix : m_prefixes.keySet()) {
+                lengths.add(prefix.length());
+            }
+            m_prefixLengths = new int[lengths.size()];
+            int i = 0;
+            for (final Integer length : lengths) {
+                m_prefixLengths[i++] = length;
+            }
+        }
+
+        /**
+         * Narrows the candidates to the definitions whose constraint on this
+         * field the event can satisfy.
+         */
+        private void retainCandidates(final org.opennms.netmgt.xml.event.Event matchingEvent, final BitSet candidates) {
+            final String value;
+            try {
+                value = m_field.get(matchingEvent);
+            } catch (final RuntimeException e) {
+                // let the matchers deal with events we cannot read
+                return;
+            }
+            if (value == null) {
+                candidates.and(m_unconstrained);
+                return;
+            }
+
+            final BitSet allowed = (BitSet) m_unconstrained.clone();
+            final BitSet exact = m_exact.get(value);
+            if (exact != null) {
+                allowed.or(exact);
+            }
+            for (final int length : m_prefixLengths) {
+                if (length > value.length()) {
+                    break;
+                }
+                final BitSet prefixed = m_prefixes.get(value.substring(0, length));
+                if (prefixed != null) {
+                    allowed.or(prefixed);
+                }
+            }
+            candidates.and(allowed);
+        }
+    }
+
+    EventMatchIndex(final List<Event> events) {
+        m_events = events.toArray(new Event[events.size()]);
+
+        final Map<String, FieldIndex> fields = new LinkedHashMap<String, FieldIndex>();
+        for (int i = 0; i < m_events.length; i++) {
+            final Event event = m_events[i];
+            final Mask mask = event.getMask();
+            if (mask == null || mask.getMaskelementCount() <= 0) {
+                // matched by UEI only, see Event.constructMatcher()
+                final FieldIndex ueiIndex = getFieldIndex(fields, Maskelement.TAG_UEI);
+                ueiIndex.m_constrained.set(i);
+                if (event.getUei() != null) {
+                    ueiIndex.addExact(i, event.getUei());
+                }
+                continue;
+            }
+
+            for (final Maskelement element : mask.getMaskelementCollection()) {
+                final FieldIndex fieldIndex = getFieldIndex(fields, element.getMename());
+                if (fieldIndex != null) {
+                    constrain(fieldIndex, i, element.getMevalueCollection());
+                }
+            }
+            for (final Varbind varbind : mask.getVarbindCollection()) {
+                if (varbind.getVbnumber() != null) {
+                    final FieldIndex fieldIndex = getFieldIndex(fields, VARBIND_PREFIX + varbind.getVbnumber());
+                    if (fieldIndex != null) {
+                        constrain(fieldIndex, i, varbind.getVbvalueCollection());
+                    }
+                }
+            }
+        }
+
+        // check the varbinds, which may need decoding, last
+        final List<FieldIndex> fieldIndexes = new ArrayList<FieldIndex>(fields.size());
+        final List<FieldIndex> varbindIndexes = new ArrayList<FieldIndex>();
+        for (final Map.Entry<String, FieldIndex> entry : fields.entrySet()) {
+            final FieldIndex fieldIndex = entry.getValue();
+            if (fieldIndex == null) {
+                continue;
+            }
+            fieldIndex.complete(m_events.length);
+            if (entry.getKey().startsWith(VARBIND_PREFIX)) {
+                varbindIndexes.add(fieldIndex);
+            } else {
+                fieldIndexes.add(fieldIndex);
+            }
+        }
+        fieldIndexes.addAll(varbindIndexes);
+        m_fields = fieldIndexes.toArray(new FieldIndex[fieldIndexes.size()]);
+    }
+
+    private static FieldIndex getFieldIndex(final Map<String, FieldIndex> fields, final String name) {
+        if (fields.containsKey(name)) {
+            return fields.get(name);
+        }
+
+        Field field = null;
+        try {
+            if (name.startsWith(VARBIND_PREFIX)) {
+                field = EventMatchers.varbind(Integer.parseInt(name.substring(VARBIND_PREFIX.length())));
+            } else {
+                field = EventMatchers.field(name);
+            }
+        } catch (final IllegalArgumentException e) {
+            // not indexable, leave it to the matchers
+        } catch (final IllegalStateException e) {
+            // not indexable, leave it to the matchers
+        }
+
+        final FieldIndex fieldIndex = field == null ? null : new FieldIndex(field);
+        fields.put(name, fieldIndex);
+        return fieldIndex;
+    }
+
+    /**
+     * Records the values a definition requires for a field. Only the first
+     * mask element for a field is indexed; any further ones are still
+     * enforced by the definition's matcher.
+     */
+    private static void constrain(final FieldIndex fieldIndex, final int event, final List<String> values) {
+        if (fieldIndex.m_constrained.get(event)) {
+            return;
+        }
+        for (final String value : values) {
+            if (value != null && value.startsWith("~")) {
+                // regular expressions are left to the matcher
+                return;
+            }
+        }
+
+        fieldIndex.m_constrained.set(event);
+        for (final String value : values) {
+            if (value == null) {
+                continue;
+            } else if (value.endsWith("%")) {
+                fieldIndex.addPrefix(event, value.substring(0, value.length() - 1));
+            } else {
+                fieldIndex.addExact(event, value);
+            }
+        }
+    }
+
+    /**
+     * Returns the positions of the definitions that may match the event, in
+     * definition order.
+     */
+    BitSet getCandidates(final org.opennms.netmgt.xml.event.Event matchingEvent) {
+        final BitSet candidates = new BitSet(m_events.length);
+        candidates.set(0, m_events.length);
+        for (final FieldIndex fieldIndex : m_fields) {
+            fieldIndex.retainCandidates(matchingEvent, candidates);
+            if (candidates.isEmpty()) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    Event findFirstMatchingEvent(final org.opennms.netmgt.xml.event.Event matchingEvent) {
+        if (m_events.length == 0) {
+            return null;
+        }
+        final BitSet candidates = getCandidates(matchingEvent);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (m_events[i].matches(matchingEvent)) {
+                return m_events[i];
+            }
+        }
+        return null;
+    }
+}
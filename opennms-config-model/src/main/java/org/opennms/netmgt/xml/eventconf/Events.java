@@ -44,8 +44,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -105,14 +103,8 @@ public class Events implements Serializable {
 	private Partition m_partition;
 	
 	@XmlTransient
-	private Map<String, List<Event>> m_partitionedEvents;
-	
-	@XmlTransient
-	private List<Event> m_nullPartitionedEvents;
-	
-        @XmlTransient
-        private List<Event> m_wildcardEvents;
-        
+	private transient EventMatchIndex m_matchIndex;
+
 	@XmlTransient
 	private EventOrdering m_ordering;
 	
@@ -395,49 +387,20 @@ public class Events implements Serializable {
 	private void partitionEvents(Partition partition) {
 		m_partition = partition;
 
-		m_partitionedEvents = new LinkedHashMap<String, List<Event>>();
-		m_nullPartitionedEvents = new ArrayList<Event>();
-		
-		for(Event event : m_events) {
-			List<String> keys = partition.group(event);
-			if (keys == null) {
-				m_nullPartitionedEvents.add(event);
-			} else {
-				for(String key : keys) {
-					List<Event> events = m_partitionedEvents.get(key);
-					if (events == null) {
-						events = new ArrayList<Event>(1);
-						m_partitionedEvents.put(key, events);
-					}
-					events.add(event);
-				}
-			}
-		}
-		
-		
+		// the match index narrows on every mask element, including the
+		// enterprise id the partition used to group by
+		m_matchIndex = new EventMatchIndex(m_events);
 	}
 	
 	public Event findFirstMatchingEvent(org.opennms.netmgt.xml.event.Event matchingEvent) {
-		String key = m_partition.group(matchingEvent);
-		SortedSet<Event> potentialMatches = new TreeSet<Event>(m_nullPartitionedEvents);
-		if (key != null) {
-			List<Event> events = m_partitionedEvents.get(key);
-			if (events != null) {
-			    potentialMatches.addAll(events);
-			}
-		}
-			
-			
-		
-		for(Event event : potentialMatches) {
-			if (event.matches(matchingEvent)) {
-				return event;
-			}
+		Event event = m_matchIndex.findFirstMatchingEvent(matchingEvent);
+		if (event != null) {
+			return event;
 		}
 		
 		for(Entry<String, Events> loadedEvents : m_loadedEventFiles.entrySet()) {
 			Events subEvents = loadedEvents.getValue();
-			Event event = subEvents.findFirstMatchingEvent(matchingEvent);
+			event = subEvents.findFirstMatchingEvent(matchingEvent);
 			if (event != null) {
 				return event;
 			}
@@ -498,6 +461,33 @@ public class Events implements Serializable {
 
 	}
 
+	/**
+	 * Like {@link #initialize(Partition, EventOrdering)}, but leaves loaded
+	 * event files that were already initialized with the same partition
+	 * untouched. This lets a new root share the unchanged event files of a
+	 * root that is still being used for lookups. Events are only ever compared
+	 * with events of the same file, so the reused files keep a valid order.
+	 */
+	public void initializeChanged(Partition partition, EventOrdering eventOrdering) {
+
+	        m_ordering = eventOrdering;
+
+		for(Event event : m_events) {
+			event.initialize(m_ordering.next());
+		}
+
+		partitionEvents(partition);
+
+		for(Entry<String, Events> loadedEvents : m_loadedEventFiles.entrySet()) {
+			Events events = loadedEvents.getValue();
+			EventOrdering subsequence = m_ordering.subsequence();
+			if (events.m_partition != partition) {
+				events.initialize(partition, subsequence);
+			}
+		}
+
+	}
+
 	public Events getLoadEventsByFile(String relativePath) {
 		return m_loadedEventFiles.get(relativePath);
 	}
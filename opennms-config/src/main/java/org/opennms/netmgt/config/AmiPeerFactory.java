@@ -408,7 +408,7 @@ public class AmiPeerFactory {
                 
                 // check the matching IP expressions
                 for (final String ipMatch : def.getIpMatchCollection()) {
-                    if (IPLike.matches(InetAddressUtils.str(agentInetAddress), ipMatch)) {
+                    if (IPLike.matches(agentInetAddress, ipMatch)) {
                         setAmiAgentConfig(agentConfig, def);
                         break DEFLOOP;
                     }
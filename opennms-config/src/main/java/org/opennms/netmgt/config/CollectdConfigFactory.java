@@ -38,13 +38,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.InetAddress;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.io.IOUtils;
 import org.opennms.core.utils.ConfigFileConstants;
 import org.opennms.core.xml.JaxbUtils;
 import org.opennms.netmgt.config.collectd.CollectdConfiguration;
+import org.opennms.netmgt.config.collectd.ExcludeRange;
+import org.opennms.netmgt.config.collectd.IncludeRange;
 import org.opennms.netmgt.config.collectd.Package;
 import org.opennms.netmgt.filter.FilterDaoFactory;
 import org.opennms.netmgt.model.OnmsIpInterface;
@@ -78,6 +81,13 @@ public class CollectdConfigFactory implements org.opennms.netmgt.config.api.Coll
     private final String m_serverName;
     private final boolean m_verifyServer;
 
+    /**
+     * The compiled membership index of each package, together with the filter
+     * result list it was built from. The filter DAO caches its results, so the
+     * index is only rebuilt when that cache has been flushed.
+     */
+    private final ConcurrentMap<Package, CachedIndex> m_pkgIndexes = new ConcurrentHashMap<Package, CachedIndex>();
+
     static {
         // Make sure that the OpennmsServerConfigFactory is initialized
         try {
@@ -126,6 +136,7 @@ public class CollectdConfigFactory implements org.opennms.netmgt.config.api.Coll
             CollectdConfiguration config = JaxbUtils.unmarshal(CollectdConfiguration.class, isr);
             synchronized (m_collectdConfigMutex) {
                 m_collectdConfig = config;
+                m_pkgIndexes.clear();
             }
         } finally {
             IOUtils.closeQuietly(isr);
@@ -322,33 +333,69 @@ public class CollectdConfigFactory implements org.opennms.netmgt.config.api.Coll
     }
 
     public boolean interfaceInFilter(String iface, Package pkg) {
-        String filter = pkg.getFilter().getContent();
         if (iface == null) return false;
-        final InetAddress ifaceAddress = addr(iface);
-
-        boolean filterPassed = false;
-
-        // get list of IPs in this package
-        List<InetAddress> ipList = Collections.emptyList();
+        final PackageMembershipIndex index = getMembershipIndex(pkg);
+        final boolean filterPassed = index != null && index.isInFilter(addr(iface));
+        if (!filterPassed) {
+            LOG.debug("interfaceInFilter: Interface {} passed filter for package {}?: false", iface, pkg.getName());
+        }
+        return filterPassed;
+    }
 
+    /**
+     * Returns the membership index for the package, rebuilding the filter
+     * part of it whenever the filter DAO returns a different result list.
+     *
+     * @return the index, or null if the filter rule could not be evaluated
+     */
+    private PackageMembershipIndex getMembershipIndex(final Package pkg) {
         //
         // Get a list of IP address per package against the filter rules from
         // database and populate the package, IP list map.
         //
-        String filterRules = getFilterRule(filter, m_serverName, m_verifyServer);
-        
+        final String filterRules = getFilterRule(pkg.getFilter().getContent(), m_serverName, m_verifyServer);
+
         LOG.debug("interfaceInFilter: package is {}. filter rules are {}", pkg.getName(), filterRules);
+        final List<InetAddress> ipList;
         try {
             ipList = FilterDaoFactory.getInstance().getActiveIPAddressList(filterRules);
-            filterPassed = ipList.contains(ifaceAddress);
-            if (!filterPassed) {
-                LOG.debug("interfaceInFilter: Interface {} passed filter for package {}?: false", iface, pkg.getName());
-            }
         } catch (Throwable t) {
             LOG.error("interfaceInFilter: Failed to map package: {} to an IP List with filter \"{}\"", pkg.getName(), pkg.getFilter().getContent(), t);
+            return null;
         }
 
-        return filterPassed;
+        final CachedIndex cached = m_pkgIndexes.get(pkg);
+        if (cached != null && cached.m_ipList == ipList) {
+            return cached.m_index;
+        }
+        final PackageMembershipIndex index = cached == null ? createMembershipIndex(pkg, ipList) : cached.m_index.withFilterAddresses(ipList);
+        m_pkgIndexes.put(pkg, new CachedIndex(ipList, index));
+        return index;
+    }
+
+    private static PackageMembershipIndex createMembershipIndex(final Package pkg, final List<InetAddress> ipList) {
+        final PackageMembershipIndex.Builder builder = new PackageMembershipIndex.Builder(pkg.getName()).filterAddresses(ipList);
+        builder.includeAll(pkg.getIncludeRanges().size() == 0 && pkg.getSpecifics().size() == 0);
+        for (final IncludeRange rng : pkg.getIncludeRanges()) {
+            builder.includeRange(rng.getBegin(), rng.getEnd());
+        }
+        for (final String spec : pkg.getSpecifics()) {
+            builder.specific(spec);
+        }
+        for (final ExcludeRange rng : pkg.getExcludeRanges()) {
+            builder.excludeRange(rng.getBegin(), rng.getEnd());
+        }
+        return builder.build();
+    }
+
+    private static final class CachedIndex {
+        private final List<InetAddress> m_ipList;
+        private final PackageMembershipIndex m_index;
+
+        private CachedIndex(final List<InetAddress> ipList, final PackageMembershipIndex index) {
+            m_ipList = ipList;
+            m_index = index;
+        }
     }
 
     /**
@@ -369,9 +416,12 @@ public class CollectdConfigFactory implements org.opennms.netmgt.config.api.Coll
      *         otherwise.
      */
     public boolean interfaceInPackage(final String iface, Package pkg) {
-        boolean filterPassed = interfaceInFilter(iface, pkg);
+        if (iface == null) return false;
+        final PackageMembershipIndex index = getMembershipIndex(pkg);
+        boolean filterPassed = index != null && index.isInFilter(addr(iface));
 
         if (!filterPassed) {
+            LOG.debug("interfaceInFilter: Interface {} passed filter for package {}?: false", iface, pkg.getName());
             return false;
         }
 
@@ -382,11 +432,11 @@ public class CollectdConfigFactory implements org.opennms.netmgt.config.api.Coll
 
         byte[] addr = toIpAddrBytes(iface);
 
-        boolean has_range_include = pkg.hasIncludeRange(iface);
-        boolean has_specific = pkg.hasSpecific(addr);
+        boolean has_range_include = index.isInIncludeRange(addr);
+        boolean has_specific = index.isSpecific(addr);
 
         has_specific = pkg.hasSpecificUrl(iface, has_specific);
-        boolean has_range_exclude = pkg.hasExcludeRange(iface);
+        boolean has_range_exclude = index.isInExcludeRange(addr);
 
         boolean packagePassed = has_specific || (has_range_include && !has_range_exclude);
         if(packagePassed) {
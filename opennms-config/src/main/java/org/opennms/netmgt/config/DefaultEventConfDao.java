@@ -29,6 +29,7 @@
 package org.opennms.netmgt.config;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -39,6 +40,9 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.opennms.core.xml.JaxbUtils;
 import org.opennms.netmgt.config.api.EventConfDao;
 import org.opennms.netmgt.xml.eventconf.Event;
@@ -50,21 +54,31 @@ import org.opennms.netmgt.xml.eventconf.Events.EventCallback;
 import org.opennms.netmgt.xml.eventconf.Events.EventCriteria;
 import org.opennms.netmgt.xml.eventconf.Field;
 import org.opennms.netmgt.xml.eventconf.Partition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.Resource;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataRetrievalFailureException;
 
-public class DefaultEventConfDao implements EventConfDao, InitializingBean {
+public class DefaultEventConfDao implements EventConfDao, InitializingBean, DefaultEventConfDaoMBean {
+	private static final Logger LOG = LoggerFactory.getLogger(DefaultEventConfDao.class);
+
 	private static final String DEFAULT_PROGRAMMATIC_STORE_RELATIVE_PATH = "events/programmatic.events.xml";
 
+	private static final String OBJECT_NAME = "OpenNMS:Name=EventConf";
+
     /**
      * Relative URL for the programmatic store configuration, relative to the
      * root configuration resource (which must be resolvable to a URL).
      */
     private String m_programmaticStoreRelativePath = DEFAULT_PROGRAMMATIC_STORE_RELATIVE_PATH;
 
-	private Events m_events;
+	/**
+	 * The current root. It is never modified once published; changes are made
+	 * to a copy which then replaces it, so lookups never wait for a reload.
+	 */
+	private volatile Events m_events;
 
 	private Resource m_configResource;
 
@@ -76,6 +90,11 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
      */
     private Map<String, Long> m_lastModifiedEventFiles = new LinkedHashMap<String, Long>();
 
+    private volatile long m_reloadCount = 0;
+    private volatile long m_lastReloadDuration = 0;
+    private volatile long m_lastReloadTime = 0;
+    private volatile int m_lastReloadedEventFileCount = 0;
+
 	public String getProgrammaticStoreRelativeUrl() {
 		return m_programmaticStoreRelativePath;
 	}
@@ -174,40 +193,85 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 	}
 
 	@Override
-	public void addEvent(Event event) {
-		m_events.addEvent(event);
-		m_events.initialize(m_partition, new EventOrdering());
+	public synchronized void addEvent(Event event) {
+		Events events = copyRootEvents();
+		events.addEvent(event);
+		events.initializeChanged(m_partition, new EventOrdering());
+		m_events = events;
 	}
 
 	@Override
-	public void addEventToProgrammaticStore(Event event) {
-		Events programmaticEvents = m_events.getLoadEventsByFile(m_programmaticStoreRelativePath);
-		if (programmaticEvents == null) {
-			programmaticEvents = new Events();
-			m_events.addLoadedEventFile(m_programmaticStoreRelativePath, programmaticEvents);
-		}
-
+	public synchronized void addEventToProgrammaticStore(Event event) {
+		Events events = copyRootEvents();
+		Events programmaticEvents = copyEvents(m_events.getLoadEventsByFile(m_programmaticStoreRelativePath));
 		programmaticEvents.addEvent(event);
-		m_events.initialize(m_partition, new EventOrdering());
+		events.addLoadedEventFile(m_programmaticStoreRelativePath, programmaticEvents);
 
+		events.initializeChanged(m_partition, new EventOrdering());
+		m_events = events;
 	}
 
 	@Override
-	public boolean removeEventFromProgrammaticStore(Event event) {
-		Events programmaticEvents = m_events.getLoadEventsByFile(m_programmaticStoreRelativePath);
-		if (programmaticEvents == null) return false;
+	public synchronized boolean removeEventFromProgrammaticStore(Event event) {
+		Events currentProgrammaticEvents = m_events.getLoadEventsByFile(m_programmaticStoreRelativePath);
+		if (currentProgrammaticEvents == null) return false;
 
+		Events events = copyRootEvents();
+		Events programmaticEvents = copyEvents(currentProgrammaticEvents);
 		programmaticEvents.removeEvent(event);
 		if (programmaticEvents.getEventCount() <= 0) {
-			m_events.removeLoadedEventFile(m_programmaticStoreRelativePath);
-		} 
+			events.removeLoadedEventFile(m_programmaticStoreRelativePath);
+		} else {
+			events.addLoadedEventFile(m_programmaticStoreRelativePath, programmaticEvents);
+		}
 
-		m_events.initialize(m_partition, new EventOrdering());
+		events.initializeChanged(m_partition, new EventOrdering());
+		m_events = events;
 
 		return true;
 
 	}
 
+	@Override
+	public long getReloadCount() {
+		return m_reloadCount;
+	}
+
+	@Override
+	public long getLastReloadDuration() {
+		return m_lastReloadDuration;
+	}
+
+	@Override
+	public long getLastReloadTime() {
+		return m_lastReloadTime;
+	}
+
+	@Override
+	public int getLastReloadedEventFileCount() {
+		return m_lastReloadedEventFileCount;
+	}
+
+	@Override
+	public int getEventFileCount() {
+		final Events events = m_events;
+		return events == null ? 0 : events.getEventFileCount();
+	}
+
+	@Override
+	public int getEventCount() {
+		final Events events = m_events;
+		if (events == null) {
+			return 0;
+		}
+		return events.forEachEvent(0, new EventCallback<Integer>() {
+			@Override
+			public Integer process(Integer count, Event event) {
+				return count + 1;
+			}
+		});
+	}
+
 	@Override
 	public boolean isSecureTag(String tag) {
 		return m_events.isSecureTag(tag);
@@ -242,6 +306,16 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 	@Override
 	public void afterPropertiesSet() throws DataAccessException {
 		loadConfig();
+
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch (final Exception e) {
+			LOG.warn("Unable to register {} with JMX", OBJECT_NAME, e);
+		}
 	}
 
 	private static class EnterpriseIdPartition implements Partition {
@@ -270,7 +344,11 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 	}
 
     private synchronized void reloadConfig() throws DataAccessException {
+        final long start = System.currentTimeMillis();
         try {
+            final Events currentEvents = m_events;
+            final Map<String, Long> lastModifiedEventFiles = new LinkedHashMap<String, Long>(m_lastModifiedEventFiles);
+
             // Load the root event file
             Events events = JaxbUtils.unmarshal(Events.class, m_configResource);
 
@@ -280,27 +358,31 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 
             // Copy the loaded event files from the current root to the new root
             // if and only if they exist in the new root
-            for (String eventFile : m_events.getEventFile()) {
+            for (String eventFile : currentEvents.getEventFile()) {
                 if (!eventFiles.contains(eventFile)) {
-                    m_lastModifiedEventFiles.remove(eventFile);
+                    lastModifiedEventFiles.remove(eventFile);
                     continue;
                 }
-                events.addLoadedEventFile(eventFile, m_events.getLoadEventsByFile(eventFile));
+                events.addLoadedEventFile(eventFile, currentEvents.getLoadEventsByFile(eventFile));
             }
 
             // Load/reload the event files as necessary
-            events.loadEventFilesIfModified(m_configResource, m_lastModifiedEventFiles);
+            events.loadEventFilesIfModified(m_configResource, lastModifiedEventFiles);
 
-            // Order the events for efficient searching
-            events.initialize(m_partition, new EventOrdering());
+            // Order the events for efficient searching; the event files that
+            // were carried over keep their matchers and are not touched
+            events.initializeChanged(m_partition, new EventOrdering());
 
             m_events = events;
+            m_lastModifiedEventFiles = lastModifiedEventFiles;
+            updateReloadStatistics(currentEvents, events, start);
         } catch (Exception e) {
             throw new DataRetrievalFailureException("Unabled to load " + m_configResource, e);
         }
     }
 
 	private synchronized void loadConfig() throws DataAccessException {
+		final long start = System.currentTimeMillis();
 		try {
 			Events events = JaxbUtils.unmarshal(Events.class, m_configResource);
 			m_lastModifiedEventFiles = events.loadEventFiles(m_configResource);
@@ -309,9 +391,52 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 			events.initialize(m_partition, new EventOrdering());
 
 			m_events = events;
+			updateReloadStatistics(null, events, start);
 		} catch (Exception e) {
 			throw new DataRetrievalFailureException("Unabled to load " + m_configResource, e);
 		}
 	}
-}
 
+	private void updateReloadStatistics(Events previousEvents, Events events, long start) {
+		int reloadedEventFiles = 0;
+		for (String eventFile : events.getEventFile()) {
+			if (previousEvents == null || previousEvents.getLoadEventsByFile(eventFile) != events.getLoadEventsByFile(eventFile)) {
+				reloadedEventFiles++;
+			}
+		}
+
+		m_lastReloadTime = System.currentTimeMillis();
+		m_lastReloadDuration = m_lastReloadTime - start;
+		m_lastReloadedEventFileCount = reloadedEventFiles;
+		m_reloadCount++;
+		LOG.info("Loaded {} of {} event files from {} in {}ms", reloadedEventFiles, events.getEventFileCount(), m_configResource, m_lastReloadDuration);
+	}
+
+	/**
+	 * Returns a copy of the current root that shares its event definitions
+	 * and loaded event files, so that it can be changed without disturbing
+	 * lookups against the current root.
+	 */
+	private Events copyRootEvents() {
+		final Events events = new Events();
+		events.setGlobal(m_events.getGlobal());
+		events.setEventCollection(m_events.getEventCollection());
+		for (String eventFile : m_events.getEventFile()) {
+			final Events loadedEvents = m_events.getLoadEventsByFile(eventFile);
+			if (loadedEvents == null) {
+				events.addEventFile(eventFile);
+			} else {
+				events.addLoadedEventFile(eventFile, loadedEvents);
+			}
+		}
+		return events;
+	}
+
+	private static Events copyEvents(Events source) {
+		final Events events = new Events();
+		if (source != null) {
+			events.setEventCollection(source.getEventCollection());
+		}
+		return events;
+	}
+}
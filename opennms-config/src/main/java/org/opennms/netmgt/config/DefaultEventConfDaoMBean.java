@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+/**
+ * JMX view of the event configuration held by {@link DefaultEventConfDao}.
+ */
+public interface DefaultEventConfDaoMBean {
+    /** @return The number of times the event configuration was loaded or reloaded */
+    long getReloadCount();
+
+    /** @return The time the last load or reload took, in milliseconds */
+    long getLastReloadDuration();
+
+    /** @return When the last load or reload finished, in milliseconds since the epoch */
+    long getLastReloadTime();
+
+    /** @return The number of event files that were parsed by the last load or reload */
+    int getLastReloadedEventFileCount();
+
+    /** @return The number of event files included from the root event configuration */
+    int getEventFileCount();
+
+    /** @return The number of event definitions currently loaded */
+    int getEventCount();
+}
@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import static org.opennms.core.utils.InetAddressUtils.toIpAddrBytes;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled membership data for a single configuration package: the addresses
+ * selected by the package filter, the specific addresses and the include and
+ * exclude ranges.
+ *
+ * <p>The index is built once per configuration (re)load so that membership
+ * checks no longer scan the filter result list or re-parse the range
+ * boundaries on every call. Filter results and specifics are held in hash
+ * sets; include and exclude ranges are sorted and merged into disjoint
+ * intervals that are searched with a binary search.</p>
+ *
+ * <p>Addresses are ordered the same way as {@link org.opennms.core.utils.ByteArrayComparator}
+ * orders them, that is all IPv4 addresses sort before all IPv6 addresses.
+ * Include URLs are not part of the index since each configuration manager
+ * keeps its own URL cache.</p>
+ *
+ * <p>Instances are immutable and safe to share between threads.</p>
+ */
+public final class PackageMembershipIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(PackageMembershipIndex.class);
+
+    private final Set<InetAddress> m_filterAddresses;
+    private final Set<AddressKey> m_specifics;
+    private final boolean m_includeAll;
+    private final AddressKey[] m_includeBegins;
+    private final AddressKey[] m_includeEnds;
+    private final AddressKey[] m_excludeBegins;
+    private final AddressKey[] m_excludeEnds;
+
+    private PackageMembershipIndex(final Set<InetAddress> filterAddresses, final Set<AddressKey> specifics, final boolean includeAll, final AddressKey[][] includes, final AddressKey[][] excludes) {
+        m_filterAddresses = filterAddresses;
+        m_specifics = specifics;
+        m_includeAll = includeAll;
+        m_includeBegins = includes[0];
+        m_includeEnds = includes[1];
+        m_excludeBegins = excludes[0];
+        m_excludeEnds = excludes[1];
+    }
+
+    /**
+     * Returns a copy of this index that uses the given filter results but
+     * keeps the compiled specifics and ranges.
+     *
+     * @param filterAddresses the addresses selected by the package filter
+     * @return a new index
+     */
+    public PackageMembershipIndex withFilterAddresses(final Collection<InetAddress> filterAddresses) {
+        return new PackageMembershipIndex(toFilterSet(filterAddresses), m_specifics, m_includeAll, new AddressKey[][] { m_includeBegins, m_includeEnds }, new AddressKey[][] { m_excludeBegins, m_excludeEnds });
+    }
+
+    /**
+     * @return the number of addresses selected by the package filter
+     */
+    public int getFilterSize() {
+        return m_filterAddresses.size();
+    }
+
+    /**
+     * @param addr the address to check
+     * @return true if the address was selected by the package filter
+     */
+    public boolean isInFilter(final InetAddress addr) {
+        return addr != null && m_filterAddresses.contains(addr);
+    }
+
+    /**
+     * @param addr the address bytes to check
+     * @return true if the address is one of the package specifics
+     */
+    public boolean isSpecific(final byte[] addr) {
+        return !m_specifics.isEmpty() && m_specifics.contains(AddressKey.of(addr));
+    }
+
+    /**
+     * @param addr the address bytes to check
+     * @return true if the address falls into an include range, or if the
+     *         package includes every address because it defines no
+     *         ranges, specifics or URLs at all
+     */
+    public boolean isInIncludeRange(final byte[] addr) {
+        return m_includeAll || inRange(AddressKey.of(addr), m_includeBegins, m_includeEnds);
+    }
+
+    /**
+     * @param addr the address bytes to check
+     * @return true if the address falls into an exclude range
+     */
+    public boolean isInExcludeRange(final byte[] addr) {
+        return inRange(AddressKey.of(addr), m_excludeBegins, m_excludeEnds);
+    }
+
+    private static boolean inRange(final AddressKey key, final AddressKey[] begins, final AddressKey[] ends) {
+        if (begins.length == 0) {
+            return false;
+        }
+        // find the last interval that starts at or before the key
+        int low = 0;
+        int high = begins.length - 1;
+        int found = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (begins[mid].compareTo(key) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found >= 0 && key.compareTo(ends[found]) <= 0;
+    }
+
+    private static Set<InetAddress> toFilterSet(final Collection<InetAddress> filterAddresses) {
+        if (filterAddresses == null || filterAddresses.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new HashSet<InetAddress>(filterAddresses));
+    }
+
+    /**
+     * Collects the package definition and builds the index.
+     */
+    public static class Builder {
+        private final String m_packageName;
+        private Collection<InetAddress> m_filterAddresses = Collections.emptyList();
+        private final Set<AddressKey> m_specifics = new HashSet<AddressKey>();
+        private final List<AddressKey[]> m_includeRanges = new ArrayList<AddressKey[]>();
+        private final List<AddressKey[]> m_excludeRanges = new ArrayList<AddressKey[]>();
+        private boolean m_includeAll = false;
+
+        /**
+         * @param packageName the package name, used for logging only
+         */
+        public Builder(final String packageName) {
+            m_packageName = packageName;
+        }
+
+        public Builder filterAddresses(final Collection<InetAddress> filterAddresses) {
+            m_filterAddresses = filterAddresses == null ? Collections.<InetAddress>emptyList() : filterAddresses;
+            return this;
+        }
+
+        public Builder specific(final String specific) {
+            final byte[] addr = parse(specific);
+            if (addr != null) {
+                m_specifics.add(AddressKey.of(addr));
+            }
+            return this;
+        }
+
+        public Builder includeRange(final String begin, final String end) {
+            addRange(m_includeRanges, begin, end);
+            return this;
+        }
+
+        public Builder excludeRange(final String begin, final String end) {
+            addRange(m_excludeRanges, begin, end);
+            return this;
+        }
+
+        /**
+         * Marks the package as including every address; used when a package
+         * has no include ranges, specifics or include URLs.
+         */
+        public Builder includeAll(final boolean includeAll) {
+            m_includeAll = includeAll;
+            return this;
+        }
+
+        public PackageMembershipIndex build() {
+            final Set<AddressKey> specifics = m_specifics.isEmpty() ? Collections.<AddressKey>emptySet() : Collections.unmodifiableSet(new HashSet<AddressKey>(m_specifics));
+            return new PackageMembershipIndex(toFilterSet(m_filterAddresses), specifics, m_includeAll, merge(m_includeRanges), merge(m_excludeRanges));
+        }
+
+        private void addRange(final List<AddressKey[]> ranges, final String begin, final String end) {
+            final byte[] beginAddr = parse(begin);
+            final byte[] endAddr = parse(end);
+            if (beginAddr == null || endAddr == null) {
+                return;
+            }
+            final AddressKey beginKey = AddressKey.of(beginAddr);
+            final AddressKey endKey = AddressKey.of(endAddr);
+            if (beginKey.compareTo(endKey) > 0) {
+                // an inverted range never matched anything
+                LOG.debug("Ignoring empty range {} - {} in package {}", begin, end, m_packageName);
+                return;
+            }
+            ranges.add(new AddressKey[] { beginKey, endKey });
+        }
+
+        private byte[] parse(final String addr) {
+            try {
+                return toIpAddrBytes(addr);
+            } catch (final RuntimeException e) {
+                LOG.warn("Ignoring invalid address {} in package {}", addr, m_packageName, e);
+                return null;
+            }
+        }
+
+        private static AddressKey[][] merge(final List<AddressKey[]> ranges) {
+            if (ranges.isEmpty()) {
+                return new AddressKey[][] { new AddressKey[0], new AddressKey[0] };
+            }
+            final AddressKey[][] sorted = ranges.toArray(new AddressKey[ranges.size()][]);
+            Arrays.sort(sorted, new Comparator<AddressKey[]>() {
+                @Override
+                public int compare(final AddressKey[] a, final AddressKey[] b) {
+                    return a[0].compareTo(b[0]);
+                }
+            });
+            final List<AddressKey> begins = new ArrayList<AddressKey>(sorted.length);
+            final List<AddressKey> ends = new ArrayList<AddressKey>(sorted.length);
+            AddressKey begin = sorted[0][0];
+            AddressKey end = sorted[0][1];
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i][0].compareTo(end) <= 0) {
+                    if (sorted[i][1].compareTo(end) > 0) {
+                        end = sorted[i][1];
+                    }
+                } else {
+                    begins.add(begin);
+                    ends.add(end);
+                    begin = sorted[i][0];
+                    end = sorted[i][1];
+                }
+            }
+            begins.add(begin);
+            ends.add(end);
+            return new AddressKey[][] { begins.toArray(new AddressKey[begins.size()]), ends.toArray(new AddressKey[ends.size()]) };
+        }
+    }
+
+    /**
+     * An address packed into two longs, ordered by address length first and
+     * then by unsigned value.
+     */
+    static final class AddressKey implements Comparable<AddressKey> {
+        private final int m_length;
+        private final long m_high;
+        private final long m_low;
+
+        private AddressKey(final int length, final long high, final long low) {
+            m_length = length;
+            m_high = high;
+            m_low = low;
+        }
+
+        static AddressKey of(final byte[] addr) {
+            long high = 0;
+            long low = 0;
+            final int split = Math.max(0, addr.length - 8);
+            for (int i = 0; i < split; i++) {
+                high = (high << 8) | (addr[i] & 0xff);
+            }
+            for (int i = split; i < addr.length; i++) {
+                low = (low << 8) | (addr[i] & 0xff);
+            }
+            return new AddressKey(addr.length, high, low);
+        }
+
+        @Override
+        public int compareTo(final AddressKey other) {
+            if (m_length != other.m_length) {
+                return m_length < other.m_length ? -1 : 1;
+            }
+            if (m_high != other.m_high) {
+                return (m_high + Long.MIN_VALUE) < (other.m_high + Long.MIN_VALUE) ? -1 : 1;
+            }
+            if (m_low != other.m_low) {
+                return (m_low + Long.MIN_VALUE) < (other.m_low + Long.MIN_VALUE) ? -1 : 1;
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof AddressKey)) {
+                return false;
+            }
+            final AddressKey other = (AddressKey) obj;
+            return m_length == other.m_length && m_high == other.m_high && m_low == other.m_low;
+        }
+
+        @Override
+        public int hashCode() {
+            final long hash = m_high * 31 + m_low;
+            return (int) (hash ^ (hash >>> 32)) * 31 + m_length;
+        }
+    }
+}
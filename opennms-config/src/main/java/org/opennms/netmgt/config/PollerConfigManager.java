@@ -53,7 +53,6 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.io.IOUtils;
 import org.opennms.core.network.IpListFromUrl;
-import org.opennms.core.utils.ByteArrayComparator;
 import org.opennms.core.xml.JaxbUtils;
 import org.opennms.core.xml.MarshallingResourceFailureException;
 import org.opennms.netmgt.config.poller.CriticalService;
@@ -150,10 +149,11 @@ abstract public class PollerConfigManager implements PollerConfig {
      */
     private Map<String, List<String>> m_urlIPMap;
     /**
-     * A mapping of the configured package to a list of IPs selected via filter
-     * rules, so as to avoid repetitive database access.
+     * A mapping of the configured package to the compiled membership index
+     * (IPs selected via filter rules, specifics and ranges), so as to avoid
+     * repetitive database access and range parsing.
      */
-    private AtomicReference<Map<Package, List<InetAddress>>> m_pkgIpMap = new AtomicReference<Map<Package, List<InetAddress>>>();;
+    private AtomicReference<Map<Package, PackageMembershipIndex>> m_pkgIpMap = new AtomicReference<Map<Package, PackageMembershipIndex>>(Collections.<Package, PackageMembershipIndex>emptyMap());
     /**
      * A mapp of service names to service monitors. Constructed based on data in
      * the configuration file.
@@ -420,7 +420,7 @@ abstract public class PollerConfigManager implements PollerConfig {
         getReadLock().lock();
         
         try {
-            Map<Package, List<InetAddress>> pkgIpMap = new HashMap<Package, List<InetAddress>>();
+            Map<Package, PackageMembershipIndex> pkgIpMap = new HashMap<Package, PackageMembershipIndex>();
             
             for(final Package pkg : packages()) {
         
@@ -432,7 +432,7 @@ abstract public class PollerConfigManager implements PollerConfig {
                     LOG.debug("createPackageIpMap: package {}: ipList size = {}", pkg.getName(), ipList.size());
         
                     if (ipList.size() > 0) {
-                        pkgIpMap.put(pkg, ipList);
+                        pkgIpMap.put(pkg, createMembershipIndex(pkg, ipList));
                     }
                     
                 } catch (final Throwable t) {
@@ -448,6 +448,23 @@ abstract public class PollerConfigManager implements PollerConfig {
         }
     }
 
+    private static PackageMembershipIndex createMembershipIndex(final Package pkg, final List<InetAddress> ipList) {
+        final PackageMembershipIndex.Builder builder = new PackageMembershipIndex.Builder(pkg.getName()).filterAddresses(ipList);
+        // if there are NO include ranges then treat act as if the user include
+        // the range of all valid addresses (0.0.0.0 - 255.255.255.255, ::1 - ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff)
+        builder.includeAll(pkg.getIncludeRanges().size() == 0 && pkg.getSpecifics().size() == 0 && pkg.getIncludeUrls().size() == 0);
+        for (final IncludeRange rng : pkg.getIncludeRanges()) {
+            builder.includeRange(rng.getBegin(), rng.getEnd());
+        }
+        for (final String spec : pkg.getSpecifics()) {
+            builder.specific(spec);
+        }
+        for (final ExcludeRange rng : pkg.getExcludeRanges()) {
+            builder.excludeRange(rng.getBegin(), rng.getEnd());
+        }
+        return builder.build();
+    }
+
     /** {@inheritDoc} */
     @Override
     public List<InetAddress> getIpList(final Package pkg) {
@@ -494,14 +511,11 @@ abstract public class PollerConfigManager implements PollerConfig {
      */
     @Override
     public boolean isInterfaceInPackage(final String iface, final Package pkg) {
-        boolean filterPassed = false;
         final InetAddress ifaceAddr = addr(iface);
     
-        // get list of IPs in this package
-        final List<InetAddress> ipList = m_pkgIpMap.get().get(pkg);
-        if (ipList != null && ipList.size() > 0) {
-			filterPassed = ipList.contains(ifaceAddr);
-        }
+        // get the compiled index of this package
+        final PackageMembershipIndex index = m_pkgIpMap.get().get(pkg);
+        final boolean filterPassed = index != null && index.isInFilter(ifaceAddr);
 
         LOG.debug("interfaceInPackage: Interface {} passed filter for package {}?: {}", iface, pkg.getName(), Boolean.valueOf(filterPassed));
     
@@ -511,65 +525,33 @@ abstract public class PollerConfigManager implements PollerConfig {
         // Ensure that the interface is in the specific list or
         // that it is in the include range and is not excluded
         //
-        boolean has_specific = false;
-        boolean has_range_include = false;
-        boolean has_range_exclude = false;
- 
-        // if there are NO include ranges then treat act as if the user include
-        // the range of all valid addresses (0.0.0.0 - 255.255.255.255, ::1 - ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff)
-        has_range_include = pkg.getIncludeRanges().size() == 0 && pkg.getSpecifics().size() == 0 && pkg.getIncludeUrls().size() == 0;
-        
         final byte[] addr = toIpAddrBytes(iface);
 
-        for (final IncludeRange rng : pkg.getIncludeRanges()) {
-            int comparison = new ByteArrayComparator().compare(addr, toIpAddrBytes(rng.getBegin()));
-            if (comparison > 0) {
-                int endComparison = new ByteArrayComparator().compare(addr, toIpAddrBytes(rng.getEnd()));
-                if (endComparison <= 0) {
-                    has_range_include = true;
+        boolean has_specific = index.isSpecific(addr);
+        if (has_specific) {
+            LOG.debug("interfaceInPackage: Interface {} defined as 'specific'", iface);
+        }
+    
+        if (!has_specific) {
+            for (final String includeUrl : pkg.getIncludeUrls()) {
+                if (interfaceInUrl(iface, includeUrl)) {
+                    has_specific = true;
+                    LOG.debug("interfaceInPackage: Interface {} exist on {}", iface, includeUrl);
                     break;
                 }
-            } else if (comparison == 0) {
-                has_range_include = true;
-                break;
             }
         }
 
-        for (final String spec : pkg.getSpecifics()) {
-            if (new ByteArrayComparator().compare(addr, toIpAddrBytes(spec)) == 0) {
-                has_specific = true;
-                LOG.debug("interfaceInPackage: Interface {} defined as 'specific'", iface);
-                break;
-            }
-        }
-    
-        for (final String includeUrl : pkg.getIncludeUrls()) {
-            if (interfaceInUrl(iface, includeUrl)) {
-                has_specific = true;
-                LOG.debug("interfaceInPackage: Interface {} exist on {}", iface, includeUrl);
-                break;
-            }
+        if (has_specific) {
+            return true;
         }
 
-        if (!has_specific) {
-            for (final ExcludeRange rng : pkg.getExcludeRanges()) {
-                int comparison = new ByteArrayComparator().compare(addr, toIpAddrBytes(rng.getBegin()));
-                if (comparison > 0) {
-                    int endComparison = new ByteArrayComparator().compare(addr, toIpAddrBytes(rng.getEnd()));
-                    if (endComparison <= 0) {
-                        LOG.debug("interfaceInPackage: Interface {} matches an exclude range", iface);
-                        has_range_exclude = true;
-                        break;
-                    }
-                } else if (comparison == 0) {
-                    LOG.debug("interfaceInPackage: Interface {} matches an exclude range", iface);
-                    has_range_exclude = true;
-                    break;
-                }
-            }
+        if (index.isInExcludeRange(addr)) {
+            LOG.debug("interfaceInPackage: Interface {} matches an exclude range", iface);
+            return false;
         }
 
-        return has_specific || (has_range_include && !has_range_exclude);
+        return index.isInIncludeRange(addr);
     }
 
     /**
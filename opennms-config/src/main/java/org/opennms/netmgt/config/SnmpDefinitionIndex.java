@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.opennms.core.utils.IPLikePattern;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.config.PackageMembershipIndex.AddressKey;
+import org.opennms.netmgt.config.snmp.AddressSnmpConfigVisitor;
+import org.opennms.netmgt.config.snmp.Definition;
+import org.opennms.netmgt.config.snmp.Range;
+import org.opennms.netmgt.config.snmp.SnmpConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled form of an {@link SnmpConfig} used to find the definition for an
+ * agent address without walking every definition.
+ *
+ * <p>The lookup follows the same rules as {@link AddressSnmpConfigVisitor}: the
+ * last definition with a matching specific wins, otherwise the first
+ * definition with a matching range or IP match wins. Specifics are kept in a
+ * hash map, ranges are split into disjoint segments labeled with the first
+ * definition that covers them and IP matches are checked in definition order.
+ * The effective {@link Definition} of every configured definition is resolved
+ * once when the index is built.</p>
+ *
+ * <p>Instances are immutable; a new index has to be built whenever the
+ * configuration changes.</p>
+ */
+final class SnmpDefinitionIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(SnmpDefinitionIndex.class);
+
+    private final SnmpConfig m_config;
+    private final Definition m_defaultDefinition;
+    private final Definition[] m_definitions;
+    private final Map<InetAddress, Integer> m_specifics = new HashMap<InetAddress, Integer>();
+    /** the distinct range boundaries, in ascending order */
+    private final AddressKey[] m_points;
+    /**
+     * the definition covering each elementary segment: even entries are the
+     * boundary points themselves, odd entries the gaps between two points
+     */
+    private final int[] m_segmentDefinitions;
+    private final IPLikePattern[] m_ipMatches;
+    private final int[] m_ipMatchDefinitions;
+
+    SnmpDefinitionIndex(final SnmpConfig config) {
+        m_config = config;
+        m_defaultDefinition = AddressSnmpConfigVisitor.createDefinition(config, null);
+
+        final List<Definition> definitions = config.getDefinitions();
+        m_definitions = new Definition[definitions.size()];
+
+        final List<AddressKey[]> ranges = new ArrayList<AddressKey[]>();
+        final List<Integer> rangeDefinitions = new ArrayList<Integer>();
+        final List<IPLikePattern> ipMatches = new ArrayList<IPLikePattern>();
+        final List<Integer> ipMatchDefinitions = new ArrayList<Integer>();
+
+        for (int i = 0; i < m_definitions.length; i++) {
+            final Definition def = definitions.get(i);
+            m_definitions[i] = AddressSnmpConfigVisitor.createDefinition(config, def);
+
+            for (final String saddr : def.getSpecifics()) {
+                try {
+                    final InetAddress addr = InetAddressUtils.addr(saddr);
+                    if (addr != null) {
+                        // later definitions override earlier ones
+                        m_specifics.put(addr, Integer.valueOf(i));
+                    }
+                } catch (final IllegalArgumentException e) {
+                    LOG.info("Error while reading SNMP config <specific> tag: {}", saddr, e);
+                }
+            }
+
+            for (final Range range : def.getRanges()) {
+                try {
+                    AddressKey begin = AddressKey.of(InetAddressUtils.toIpAddrBytes(range.getBegin()));
+                    AddressKey end = AddressKey.of(InetAddressUtils.toIpAddrBytes(range.getEnd()));
+                    if (begin.compareTo(end) > 0) {
+                        LOG.warn("{} has an 'end' that is earlier than its 'beginning'!", range);
+                        final AddressKey swap = begin;
+                        begin = end;
+                        end = swap;
+                    }
+                    ranges.add(new AddressKey[] { begin, end });
+                    rangeDefinitions.add(Integer.valueOf(i));
+                } catch (final IllegalArgumentException e) {
+                    LOG.info("Error while reading SNMP config <range> tag: {}", range, e);
+                }
+            }
+
+            for (final String ipMatch : def.getIpMatches()) {
+                ipMatches.add(IPLikePattern.compile(ipMatch));
+                ipMatchDefinitions.add(Integer.valueOf(i));
+            }
+        }
+
+        final TreeSet<AddressKey> points = new TreeSet<AddressKey>();
+        for (final AddressKey[] range : ranges) {
+            points.add(range[0]);
+            points.add(range[1]);
+        }
+        m_points = points.toArray(new AddressKey[points.size()]);
+        m_segmentDefinitions = paintSegments(m_points, ranges, rangeDefinitions);
+
+        m_ipMatches = ipMatches.toArray(new IPLikePattern[ipMatches.size()]);
+        m_ipMatchDefinitions = toIntArray(ipMatchDefinitions);
+    }
+
+    /**
+     * Labels every elementary segment with the first definition whose ranges
+     * cover it. Ranges are visited in definition order and only paint the
+     * segments that are still unlabeled; the skip array lets each range jump
+     * over segments that were painted before.
+     */
+    private static int[] paintSegments(final AddressKey[] points, final List<AddressKey[]> ranges, final List<Integer> rangeDefinitions) {
+        if (points.length == 0) {
+            return new int[0];
+        }
+        final int[] segments = new int[points.length * 2 - 1];
+        Arrays.fill(segments, -1);
+        // skip[i] points at the next segment at or after i that may still be unpainted
+        final int[] skip = new int[segments.length + 1];
+        for (int i = 0; i < skip.length; i++) {
+            skip[i] = i;
+        }
+
+        for (int r = 0; r < ranges.size(); r++) {
+            final AddressKey[] range = ranges.get(r);
+            final int first = Arrays.binarySearch(points, range[0]) * 2;
+            final int last = Arrays.binarySearch(points, range[1]) * 2;
+            int segment = findNext(skip, first);
+            while (segment <= last) {
+                segments[segment] = rangeDefinitions.get(r).intValue();
+                skip[segment] = segment + 1;
+                segment = findNext(skip, segment + 1);
+            }
+        }
+        return segments;
+    }
+
+    private static int findNext(final int[] skip, final int start) {
+        int root = start;
+        while (skip[root] != root) {
+            root = skip[root];
+        }
+        // compress the path so later ranges skip straight to the root
+        int current = start;
+        while (skip[current] != root) {
+            final int next = skip[current];
+            skip[current] = root;
+            current = next;
+        }
+        return root;
+    }
+
+    private static int[] toIntArray(final List<Integer> values) {
+        final int[] ret = new int[values.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = values.get(i).intValue();
+        }
+        return ret;
+    }
+
+    /**
+     * @return the configuration this index was built from
+     */
+    SnmpConfig getConfig() {
+        return m_config;
+    }
+
+    /**
+     * Returns the effective definition for the agent. The returned object is
+     * shared and must not be modified.
+     *
+     * @param agentAddress the agent address
+     * @return the matching definition, or the configuration defaults if no
+     *         definition matches
+     */
+    Definition getDefinition(final InetAddress agentAddress) {
+        final int index = getDefinitionIndex(agentAddress);
+        return index < 0 ? m_defaultDefinition : m_definitions[index];
+    }
+
+    /**
+     * @param agentAddress the agent address
+     * @return the position of the matching definition in the configuration,
+     *         or -1 if no definition matches
+     */
+    int getDefinitionIndex(final InetAddress agentAddress) {
+        final Integer specific = m_specifics.get(agentAddress);
+        if (specific != null) {
+            return specific.intValue();
+        }
+
+        int match = rangeDefinition(AddressKey.of(agentAddress.getAddress()));
+        for (int i = 0; i < m_ipMatches.length; i++) {
+            if (match >= 0 && m_ipMatchDefinitions[i] >= match) {
+                break;
+            }
+            if (ipMatches(agentAddress, m_ipMatches[i])) {
+                match = m_ipMatchDefinitions[i];
+                break;
+            }
+        }
+        return match;
+    }
+
+    private static boolean ipMatches(final InetAddress agentAddress, final IPLikePattern ipMatch) {
+        try {
+            return ipMatch.matches(agentAddress);
+        } catch (final IllegalArgumentException e) {
+            // an IPv4 expression never matches an IPv6 address and vice versa
+            LOG.debug("Skipping IP match {} for {}: {}", ipMatch, agentAddress, e.getMessage());
+            return false;
+        }
+    }
+
+    private int rangeDefinition(final AddressKey key) {
+        if (m_points.length == 0) {
+            return -1;
+        }
+        final int pos = Arrays.binarySearch(m_points, key);
+        if (pos >= 0) {
+            return m_segmentDefinitions[pos * 2];
+        }
+        final int insertion = -pos - 1;
+        if (insertion == 0 || insertion == m_points.length) {
+            return -1;
+        }
+        return m_segmentDefinitions[insertion * 2 - 1];
+    }
+}
@@ -29,7 +29,6 @@
 package org.opennms.netmgt.config;
 
 import static org.opennms.core.utils.InetAddressUtils.addr;
-import static org.opennms.core.utils.InetAddressUtils.isInetAddressInRange;
 import static org.opennms.core.utils.InetAddressUtils.toIpAddrBytes;
 
 import java.io.IOException;
@@ -48,7 +47,6 @@ import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.Marshaller;
 import org.exolab.castor.xml.ValidationException;
 import org.opennms.core.network.IpListFromUrl;
-import org.opennms.core.utils.ByteArrayComparator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.opennms.core.xml.CastorUtils;
@@ -117,10 +115,11 @@ abstract public class SnmpInterfacePollerConfigManager implements SnmpInterfaceP
      */
     private Map<String, List<String>> m_urlIPMap;
     /**
-     * A mapping of the configured package to a list of IPs selected via filter
-     * rules, so as to avoid repetitive database access.
+     * A mapping of the configured package to the compiled membership index
+     * (IPs selected via filter rules, specifics and ranges), so as to avoid
+     * repetitive database access and range parsing.
      */
-    private Map<Package, List<InetAddress>> m_pkgIpMap;
+    private Map<Package, PackageMembershipIndex> m_pkgIpMap;
 
 
     private Map<String,Map<String,Interface>> m_pkgIntMap;
@@ -287,7 +286,7 @@ abstract public class SnmpInterfacePollerConfigManager implements SnmpInterfaceP
      * from the database.
      */
     private void createPackageIpListMap() {
-        m_pkgIpMap = new HashMap<Package, List<InetAddress>>();
+        m_pkgIpMap = new HashMap<Package, PackageMembershipIndex>();
         m_pkgIntMap = new HashMap<String, Map<String, Interface>>();
         
         for(Package pkg : packages()) {
@@ -306,7 +305,7 @@ abstract public class SnmpInterfacePollerConfigManager implements SnmpInterfaceP
     
                 if (ipList.size() > 0) {
                     LOG.debug("createPackageIpMap: package {}. IpList size is {}", ipList.size(), pkg.getName());
-                    m_pkgIpMap.put(pkg, ipList);
+                    m_pkgIpMap.put(pkg, createMembershipIndex(pkg, ipList));
                 }
             } catch (Throwable t) {
                 LOG.error("createPackageIpMap: failed to map package: {} to an IP List", pkg.getName(), t);
@@ -315,6 +314,23 @@ abstract public class SnmpInterfacePollerConfigManager implements SnmpInterfaceP
         }
     }
 
+    private static PackageMembershipIndex createMembershipIndex(final Package pkg, final List<InetAddress> ipList) {
+        final PackageMembershipIndex.Builder builder = new PackageMembershipIndex.Builder(pkg.getName()).filterAddresses(ipList);
+        // if there are NO include ranges then treat act as if the user include
+        // the range 0.0.0.0 - 255.255.255.255
+        builder.includeAll(pkg.getIncludeRangeCount() == 0 && pkg.getSpecificCount() == 0);
+        for (final IncludeRange rng : pkg.getIncludeRangeCollection()) {
+            builder.includeRange(rng.getBegin(), rng.getEnd());
+        }
+        for (final String spec : pkg.getSpecificCollection()) {
+            builder.specific(spec);
+        }
+        for (final ExcludeRange rng : pkg.getExcludeRangeCollection()) {
+            builder.excludeRange(rng.getBegin(), rng.getEnd());
+        }
+        return builder.build();
+    }
+
     /**
      * <p>getIpList</p>
      *
@@ -366,14 +382,9 @@ abstract public class SnmpInterfacePollerConfigManager implements SnmpInterfaceP
     public synchronized boolean interfaceInPackage(String iface, Package pkg) {
         final InetAddress ifaceAddr = addr(iface);
     
-        boolean filterPassed = false;
-    
-        // get list of IPs in this package
-        List<InetAddress> ipList = m_pkgIpMap.get(pkg);
-        if (ipList != null && ipList.size() > 0) {
-			filterPassed = ipList.contains(ifaceAddr);
-        }
-    
+        // get the compiled index of this package
+        final PackageMembershipIndex index = m_pkgIpMap.get(pkg);
+        final boolean filterPassed = index != null && index.isInFilter(ifaceAddr);
 
         LOG.debug("interfaceInPackage: Interface {} passed filter for package {}?: {}", filterPassed, iface, pkg.getName());
     
@@ -384,44 +395,16 @@ abstract public class SnmpInterfacePollerConfigManager implements SnmpInterfaceP
         // Ensure that the interface is in the specific list or
         // that it is in the include range and is not excluded
         //
-        boolean has_specific = false;
-        boolean has_range_include = false;
-        boolean has_range_exclude = false;
- 
-        // if there are NO include ranges then treat act as if the user include
-        // the range 0.0.0.0 - 255.255.255.255
-        has_range_include = pkg.getIncludeRangeCount() == 0 && pkg.getSpecificCount() == 0;
-        
-        for (IncludeRange rng : pkg.getIncludeRangeCollection()) {
-            if (isInetAddressInRange(iface, rng.getBegin(), rng.getEnd())) {
-                has_range_include = true;
-                break;
-            }
-        }
+        final byte[] addr = toIpAddrBytes(iface);
 
-        byte[] addr = toIpAddrBytes(iface);
-
-        for (String spec : pkg.getSpecificCollection()) {
-            byte[] speca = toIpAddrBytes(spec);
-            if (new ByteArrayComparator().compare(speca, addr) == 0) {
-                has_specific = true;
-                break;
-            }
-        }
+        boolean has_specific = index.isSpecific(addr);
 
         Enumeration<String> eurl = pkg.enumerateIncludeUrl();
         while (!has_specific && eurl.hasMoreElements()) {
             has_specific = interfaceInUrl(iface, eurl.nextElement());
         }
     
-        for (ExcludeRange rng : pkg.getExcludeRangeCollection()) {
-            if (isInetAddressInRange(iface, rng.getBegin(), rng.getEnd())) {
-                has_range_exclude = true;
-                break;
-            }
-        }
-    
-        return has_specific || (has_range_include && !has_range_exclude);
+        return has_specific || (index.isInIncludeRange(addr) && !index.isInExcludeRange(addr));
     }
 
     /**
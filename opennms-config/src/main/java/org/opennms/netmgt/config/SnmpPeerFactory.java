@@ -46,7 +46,6 @@ import org.opennms.core.utils.ConfigFileConstants;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.xml.JaxbUtils;
 import org.opennms.netmgt.config.api.SnmpAgentConfigFactory;
-import org.opennms.netmgt.config.snmp.AddressSnmpConfigVisitor;
 import org.opennms.netmgt.config.snmp.Definition;
 import org.opennms.netmgt.config.snmp.SnmpConfig;
 import org.opennms.netmgt.snmp.SnmpAgentConfig;
@@ -96,6 +95,12 @@ public class SnmpPeerFactory implements SnmpAgentConfigFactory {
     private static FileReloadContainer<SnmpConfig> m_container;
     private static FileReloadCallback<SnmpConfig> m_callback;
 
+    /**
+     * The compiled lookup index for the current configuration; rebuilt when
+     * the configuration object changes or is modified by {@link #define(SnmpEventInfo)}.
+     */
+    private volatile SnmpDefinitionIndex m_definitionIndex;
+
     /**
      * This member is set to true if the configuration file has been loaded.
      */
@@ -250,38 +255,56 @@ public class SnmpPeerFactory implements SnmpAgentConfigFactory {
     }
 
     private SnmpAgentConfig getAgentConfig(final InetAddress agentInetAddress, final int requestedSnmpVersion) {
-        SnmpPeerFactory.getReadLock().lock();
-        try {
-            if (getSnmpConfig() == null) {
-                final SnmpAgentConfig agentConfig = new SnmpAgentConfig(agentInetAddress);
-                if (requestedSnmpVersion == SnmpAgentConfig.VERSION_UNSPECIFIED) {
-                    agentConfig.setVersion(SnmpAgentConfig.DEFAULT_VERSION);
-                } else {
-                    agentConfig.setVersion(requestedSnmpVersion);
-                }
-
-                return agentConfig;
+        final SnmpDefinitionIndex index = getDefinitionIndex();
+        if (index == null) {
+            final SnmpAgentConfig agentConfig = new SnmpAgentConfig(agentInetAddress);
+            if (requestedSnmpVersion == SnmpAgentConfig.VERSION_UNSPECIFIED) {
+                agentConfig.setVersion(SnmpAgentConfig.DEFAULT_VERSION);
+            } else {
+                agentConfig.setVersion(requestedSnmpVersion);
             }
 
-            final SnmpAgentConfig agentConfig = new SnmpAgentConfig(agentInetAddress);
+            return agentConfig;
+        }
+
+        final SnmpAgentConfig agentConfig = new SnmpAgentConfig(agentInetAddress);
+        setSnmpAgentConfig(agentConfig, index.getDefinition(agentInetAddress), index.getConfig(), requestedSnmpVersion);
+        return agentConfig;
+    }
 
-            // Now set the defaults from the getSnmpConfig()
-            setSnmpAgentConfig(agentConfig, new Definition(), requestedSnmpVersion);
+    /**
+     * Returns the lookup index for the current configuration, building it if
+     * the configuration has changed since the last lookup. Lookups against an
+     * up-to-date index do not take any lock.
+     */
+    private SnmpDefinitionIndex getDefinitionIndex() {
+        final SnmpConfig config = m_container == null ? m_config : m_container.getObject();
+        if (config == null) {
+            return null;
+        }
 
-            final AddressSnmpConfigVisitor visitor = new AddressSnmpConfigVisitor(agentInetAddress);
-            getSnmpConfig().visit(visitor);
-            final Definition matchingDef = visitor.getDefinition();
-            if (matchingDef != null) {
-                setSnmpAgentConfig(agentConfig, matchingDef, requestedSnmpVersion);
+        final SnmpDefinitionIndex index = m_definitionIndex;
+        if (index != null && index.getConfig() == config) {
+            return index;
+        }
+
+        SnmpPeerFactory.getReadLock().lock();
+        try {
+            final SnmpDefinitionIndex current = m_definitionIndex;
+            if (current != null && current.getConfig() == config) {
+                return current;
             }
-            return agentConfig;
+            final SnmpDefinitionIndex rebuilt = new SnmpDefinitionIndex(config);
+            LOG.debug("getDefinitionIndex: built lookup index for {} definitions", config.getDefinitions().size());
+            m_definitionIndex = rebuilt;
+            return rebuilt;
         } finally {
             SnmpPeerFactory.getReadLock().unlock();
         }
     }
 
-    private void setSnmpAgentConfig(final SnmpAgentConfig agentConfig, final Definition def, final int requestedSnmpVersion) {
-        int version = getVersionCode(def, getSnmpConfig(), requestedSnmpVersion);
+    private void setSnmpAgentConfig(final SnmpAgentConfig agentConfig, final Definition def, final SnmpConfig config, final int requestedSnmpVersion) {
+        int version = getVersionCode(def, config, requestedSnmpVersion);
 
         setCommonAttributes(agentConfig, def, version);
         agentConfig.setSecurityLevel(def.getSecurityLevel());
@@ -364,6 +387,8 @@ public class SnmpPeerFactory implements SnmpAgentConfigFactory {
         try {
             final SnmpConfigManager mgr = new SnmpConfigManager(getSnmpConfig());
             mgr.mergeIntoConfig(info.createDef());
+            // the configuration was modified in place
+            m_definitionIndex = null;
         } finally {
             getWriteLock().unlock();
         }
@@ -32,7 +32,6 @@
 package org.opennms.netmgt.config;
 
 import static org.opennms.core.utils.InetAddressUtils.addr;
-import static org.opennms.core.utils.InetAddressUtils.isInetAddressInRange;
 import static org.opennms.core.utils.InetAddressUtils.toIpAddrBytes;
 
 import java.io.IOException;
@@ -48,7 +47,6 @@ import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.Marshaller;
 import org.exolab.castor.xml.ValidationException;
 import org.opennms.core.network.IpListFromUrl;
-import org.opennms.core.utils.ByteArrayComparator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.opennms.core.xml.CastorUtils;
@@ -78,10 +76,11 @@ public abstract class ThreshdConfigManager {
      */
     private Map<String, List<String>> m_urlIPMap;
     /**
-     * A mapping of the configured package to a list of IPs selected via filter
-     * rules, so as to avoid repetitive database access.
+     * A mapping of the configured package to the compiled membership index
+     * (IPs selected via filter rules, specifics and ranges), so as to avoid
+     * repetitive database access and range parsing.
      */
-    private Map<Package, List<InetAddress>> m_pkgIpMap;
+    private Map<Package, PackageMembershipIndex> m_pkgIpMap;
     /**
      * A boolean flag to indicate If a filter rule against the local OpenNMS
      * server has to be used.
@@ -139,7 +138,7 @@ public abstract class ThreshdConfigManager {
      */
     protected void createPackageIpListMap() {
     
-        m_pkgIpMap = new HashMap<Package, List<InetAddress>>();
+        m_pkgIpMap = new HashMap<Package, PackageMembershipIndex>();
     
         Enumeration<org.opennms.netmgt.config.threshd.Package> pkgEnum = m_config.enumeratePackage();
         while (pkgEnum.hasMoreElements()) {
@@ -166,7 +165,7 @@ public abstract class ThreshdConfigManager {
                 FilterDaoFactory.getInstance().flushActiveIpAddressListCache();
                 List<InetAddress> ipList = FilterDaoFactory.getInstance().getActiveIPAddressList(filterRules.toString());
                 if (ipList.size() > 0) {
-                    m_pkgIpMap.put(pkg, ipList);
+                    m_pkgIpMap.put(pkg, createMembershipIndex(pkg, ipList));
                 }
             } catch (Throwable t) {
                 LOG.error("createPackageIpMap: failed to map package: {} to an IP List with filter \"{}\"", pkg.getName(), pkg.getFilter().getContent(), t);
@@ -174,6 +173,23 @@ public abstract class ThreshdConfigManager {
         }
     }
 
+    private static PackageMembershipIndex createMembershipIndex(final org.opennms.netmgt.config.threshd.Package pkg, final List<InetAddress> ipList) {
+        final PackageMembershipIndex.Builder builder = new PackageMembershipIndex.Builder(pkg.getName()).filterAddresses(ipList);
+        // if there are NO include ranges then treat act as if the user include
+        // the range 0.0.0.0 - 255.255.255.255
+        builder.includeAll(pkg.getIncludeRangeCount() == 0 && pkg.getSpecificCount() == 0);
+        for (final IncludeRange rng : pkg.getIncludeRangeCollection()) {
+            builder.includeRange(rng.getBegin(), rng.getEnd());
+        }
+        for (final String spec : pkg.getSpecificCollection()) {
+            builder.specific(spec);
+        }
+        for (final ExcludeRange rng : pkg.getExcludeRangeCollection()) {
+            builder.excludeRange(rng.getBegin(), rng.getEnd());
+        }
+        return builder.build();
+    }
+
     /**
      * This nethod is used to rebuild the package agaist iplist mapping when
      * needed. When a node gained service event occurs, threshd has to determine
@@ -304,16 +320,11 @@ public abstract class ThreshdConfigManager {
      *         otherwise.
      */
     public synchronized boolean interfaceInPackage(String iface, org.opennms.netmgt.config.threshd.Package pkg) {
-    
         final InetAddress ifaceAddr = addr(iface);
-        boolean filterPassed = false;
-    
-        // get list of IPs in this package
-        java.util.List<InetAddress> ipList = m_pkgIpMap.get(pkg);
-        if (ipList != null && ipList.size() > 0) {
-			filterPassed = ipList.contains(ifaceAddr);
-        }
     
+        // get the compiled index of this package
+        final PackageMembershipIndex index = m_pkgIpMap.get(pkg);
+        final boolean filterPassed = index != null && index.isInFilter(ifaceAddr);
 
         LOG.debug("interfaceInPackage: Interface {} passed filter for package {}?: {}", filterPassed, iface, pkg.getName());
     
@@ -324,42 +335,16 @@ public abstract class ThreshdConfigManager {
         // Ensure that the interface is in the specific list or
         // that it is in the include range and is not excluded
         //
-        boolean has_specific = false;
-        boolean has_range_include = false;
-        boolean has_range_exclude = false;
-        
-        has_range_include = pkg.getIncludeRangeCount() == 0 && pkg.getSpecificCount() == 0;
-    
-        for (IncludeRange rng : pkg.getIncludeRangeCollection()) {
-            if (isInetAddressInRange(iface, rng.getBegin(), rng.getEnd())) {
-                has_range_include = true;
-                break;
-            }
-        }
+        final byte[] addr = toIpAddrBytes(iface);
 
-        byte[] addr = toIpAddrBytes(iface);
-
-        for (String spec : pkg.getSpecificCollection()) {
-            byte[] speca = toIpAddrBytes(spec);
-            if (new ByteArrayComparator().compare(speca, addr) == 0) {
-                has_specific = true;
-                break;
-            }
-        }
+        boolean has_specific = index.isSpecific(addr);
 
         Enumeration<String> eurl = pkg.enumerateIncludeUrl();
         while (!has_specific && eurl.hasMoreElements()) {
             has_specific = interfaceInUrl(iface, eurl.nextElement());
         }
     
-        for (ExcludeRange rng : pkg.getExcludeRangeCollection()) {
-            if (isInetAddressInRange(iface, rng.getBegin(), rng.getEnd())) {
-                has_range_exclude = true;
-                break;
-            }
-        }
-    
-        return has_specific || (has_range_include && !has_range_exclude);
+        return has_specific || (index.isInIncludeRange(addr) && !index.isInExcludeRange(addr));
     }
 
     /**
@@ -42,6 +42,7 @@ import org.opennms.netmgt.config.vacuumd.Action;
 import org.opennms.netmgt.config.vacuumd.ActionEvent;
 import org.opennms.netmgt.config.vacuumd.AutoEvent;
 import org.opennms.netmgt.config.vacuumd.Automation;
+import org.opennms.netmgt.config.vacuumd.EventPartitioning;
 import org.opennms.netmgt.config.vacuumd.Statement;
 import org.opennms.netmgt.config.vacuumd.Trigger;
 import org.opennms.netmgt.config.vacuumd.VacuumdConfiguration;
@@ -219,6 +220,16 @@ public final class VacuumdConfigFactory {
         return m_config.getPeriod();
     }
 
+    /**
+     * <p>getEventPartitioning</p>
+     *
+     * @return the event partition settings, or null if the events table is
+     *         not partitioned
+     */
+    public synchronized EventPartitioning getEventPartitioning() {
+        return m_config.getEventPartitioning();
+    }
+
     /**
      * Returns a Trigger with a name matching the string parameter
      *
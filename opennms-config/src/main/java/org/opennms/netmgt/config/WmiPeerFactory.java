@@ -422,7 +422,7 @@ public class WmiPeerFactory {
             // check the matching IP expressions
             //
             for (String ipMatch : def.getIpMatchCollection()) {
-                if (IPLike.matches(InetAddressUtils.str(agentInetAddress), ipMatch)) {
+                if (IPLike.matches(agentInetAddress, ipMatch)) {
                     setWmiAgentConfig(agentConfig, def);
                     break DEFLOOP;
                 }
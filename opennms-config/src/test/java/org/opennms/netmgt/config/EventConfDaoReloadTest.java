@@ -1,6 +1,8 @@
 package org.opennms.netmgt.config;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.io.File;
 import java.io.IOException;
@@ -12,6 +14,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.opennms.core.test.MockLogAppender;
+import org.opennms.netmgt.xml.eventconf.Events;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
@@ -126,6 +129,48 @@ public class EventConfDaoReloadTest {
         assertEquals(5, eventConfDao.getAllEvents().size());
     }
 
+    /**
+     * Verify that a reload only parses the event files that changed and
+     * shares the unchanged ones with the previous configuration.
+     */
+    @Test
+    public void canReloadOnlyModifiedEventFiles() throws Exception {
+        File eventconfXml = tempFolder.newFile("eventconf.xml");
+        File bgp4eventsXml = tempFolder.newFile("BGP4.events.xml");
+
+        FileUtils.copyInputStreamToFile(getResourceForRelativePath("reloaded/eventconf.xml").getInputStream(),
+                eventconfXml);
+        FileUtils.copyInputStreamToFile(getResourceForRelativePath("reloaded/BGP4.events.xml").getInputStream(),
+                bgp4eventsXml);
+
+        DefaultEventConfDao eventConfDao = new DefaultEventConfDao();
+        eventConfDao.setConfigResource(new FileSystemResource(eventconfXml));
+        eventConfDao.afterPropertiesSet();
+        assertEquals(1, eventConfDao.getReloadCount());
+        assertEquals(1, eventConfDao.getLastReloadedEventFileCount());
+        assertEquals(1, eventConfDao.getEventFileCount());
+        assertEquals(3, eventConfDao.getEventCount());
+
+        Events bgp4Events = eventConfDao.getRootEvents().getLoadEventsByFile("BGP4.events.xml");
+
+        // Nothing changed, so the included file is not parsed again
+        eventConfDao.reload();
+        assertEquals(2, eventConfDao.getReloadCount());
+        assertEquals(0, eventConfDao.getLastReloadedEventFileCount());
+        assertSame(bgp4Events, eventConfDao.getRootEvents().getLoadEventsByFile("BGP4.events.xml"));
+        assertEquals(3, eventConfDao.getAllEvents().size());
+
+        Thread.sleep(1000);
+        FileUtils.copyInputStreamToFile(getResourceForRelativePath("reloaded/BGP4.more.events.xml").getInputStream(),
+                bgp4eventsXml);
+
+        eventConfDao.reload();
+        assertEquals(3, eventConfDao.getReloadCount());
+        assertEquals(1, eventConfDao.getLastReloadedEventFileCount());
+        assertNotSame(bgp4Events, eventConfDao.getRootEvents().getLoadEventsByFile("BGP4.events.xml"));
+        assertEquals(5, eventConfDao.getEventCount());
+    }
+
     private Resource getResourceForRelativePath(String resourceSuffix) {
         return new ClassPathResource("/org/opennms/netmgt/config/eventd/" + resourceSuffix);
     }
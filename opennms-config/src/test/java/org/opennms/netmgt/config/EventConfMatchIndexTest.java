@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.ConfigurationTestUtils;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.eventconf.Events.EventCallback;
+import org.opennms.netmgt.xml.eventconf.Events.EventCriteria;
+import org.opennms.netmgt.xml.eventconf.Mask;
+import org.opennms.netmgt.xml.eventconf.Maskelement;
+import org.opennms.netmgt.xml.eventconf.Varbind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Checks that the indexed eventconf lookup finds the same definition as a
+ * linear scan over the shipped event definitions, and logs how long both
+ * take for a trap mix derived from those definitions.
+ */
+public class EventConfMatchIndexTest {
+    private static final Logger LOG = LoggerFactory.getLogger(EventConfMatchIndexTest.class);
+
+    private DefaultEventConfDao m_eventConfDao;
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging(false);
+
+        m_eventConfDao = new DefaultEventConfDao();
+        m_eventConfDao.setConfigResource(new FileSystemResource(ConfigurationTestUtils.getFileForConfigFile("eventconf.xml")));
+        m_eventConfDao.afterPropertiesSet();
+    }
+
+    @Test
+    public void testIndexedLookupMatchesLinearScan() {
+        final List<Event> events = createEventMix();
+        assertTrue(events.size() > 1000);
+
+        int matched = 0;
+        for (final Event event : events) {
+            final org.opennms.netmgt.xml.eventconf.Event expected = findLinear(event);
+            assertSame("lookup of " + describe(event), expected, m_eventConfDao.findByEvent(event));
+            if (expected != null) {
+                matched++;
+            }
+        }
+        LOG.info("{} of {} events matched a definition", matched, events.size());
+        assertTrue(matched > events.size() / 2);
+    }
+
+    @Test
+    public void testLookupTiming() {
+        final List<Event> events = createEventMix();
+
+        // warm up
+        for (final Event event : events) {
+            m_eventConfDao.findByEvent(event);
+            findLinear(event);
+        }
+
+        final int rounds = 3;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (final Event event : events) {
+                findLinear(event);
+            }
+        }
+        final long linear = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (final Event event : events) {
+                m_eventConfDao.findByEvent(event);
+            }
+        }
+        final long indexed = System.nanoTime() - start;
+
+        final int lookups = rounds * events.size();
+        LOG.info("{} lookups over {} definitions: linear scan {}us/lookup, indexed {}us/lookup",
+                 lookups, m_eventConfDao.getEventCount(), linear / 1000 / lookups, indexed / 1000 / lookups);
+    }
+
+    private org.opennms.netmgt.xml.eventconf.Event findLinear(final Event event) {
+        return m_eventConfDao.getRootEvents().findFirstMatchingEvent(new EventCriteria() {
+            @Override
+            public boolean matches(final org.opennms.netmgt.xml.eventconf.Event e) {
+                return e.matches(event);
+            }
+        });
+    }
+
+    /**
+     * Builds one event per definition that tries to satisfy its mask, plus
+     * variations with other specific types, sources and varbind values.
+     */
+    private List<Event> createEventMix() {
+        final Random random = new Random(42);
+        return m_eventConfDao.getRootEvents().forEachEvent(new ArrayList<Event>(), new EventCallback<List<Event>>() {
+            @Override
+            public List<Event> process(final List<Event> events, final org.opennms.netmgt.xml.eventconf.Event definition) {
+                events.add(createEvent(definition, null));
+                if (random.nextInt(3) == 0) {
+                    events.add(createEvent(definition, random));
+                }
+                return events;
+            }
+        });
+    }
+
+    private static Event createEvent(final org.opennms.netmgt.xml.eventconf.Event definition, final Random random) {
+        final Mask mask = definition.getMask();
+        if (mask == null || mask.getMaskelementCount() == 0) {
+            return new EventBuilder(random == null ? definition.getUei() : definition.getUei() + "/other", "EventConfMatchIndexTest").getEvent();
+        }
+
+        final String uei = sample(mask.getMaskElementValues(Maskelement.TAG_UEI), null);
+        final String source = sample(mask.getMaskElementValues(Maskelement.TAG_SOURCE), "EventConfMatchIndexTest");
+        final EventBuilder builder = new EventBuilder(uei, source);
+        final String id = sample(mask.getMaskElementValues(Maskelement.TAG_SNMP_EID), null);
+        if (id != null) {
+            builder.setSnmpVersion("v2c");
+            builder.setEnterpriseId(id);
+            builder.setGeneric(toInt(sample(mask.getMaskElementValues(Maskelement.TAG_SNMP_GENERIC), "6")));
+            int specific = toInt(sample(mask.getMaskElementValues(Maskelement.TAG_SNMP_SPECIFIC), "1"));
+            if (random != null) {
+                specific += random.nextInt(5);
+            }
+            builder.setSpecific(specific);
+        }
+        final String host = sample(mask.getMaskElementValues(Maskelement.TAG_SNMPHOST), null);
+        if (host != null) {
+            builder.setSnmpHost(host);
+        }
+
+        int last = 0;
+        for (final Varbind varbind : mask.getVarbindCollection()) {
+            if (varbind.getVbnumber() != null) {
+                last = Math.max(last, varbind.getVbnumber());
+            }
+        }
+        for (int vbnumber = 1; vbnumber <= last; vbnumber++) {
+            String value = "0";
+            for (final Varbind varbind : mask.getVarbindCollection()) {
+                if (varbind.getVbnumber() != null && varbind.getVbnumber() == vbnumber) {
+                    value = sample(varbind.getVbvalueCollection(), "0");
+                }
+            }
+            if (random != null && random.nextBoolean()) {
+                value = value + random.nextInt(10);
+            }
+            builder.addParam(".1.3.6.1.4.1.5813.99." + vbnumber, value);
+        }
+        return builder.getEvent();
+    }
+
+    private static String sample(final List<String> values, final String defaultValue) {
+        if (values == null || values.isEmpty() || values.get(0) == null) {
+            return defaultValue;
+        }
+        final String value = values.get(0);
+        if (value.startsWith("~")) {
+            return defaultValue;
+        } else if (value.endsWith("%")) {
+            return value.substring(0, value.length() - 1) + "1.2";
+        }
+        return value;
+    }
+
+    private static int toInt(final String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (final NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private static String describe(final Event event) {
+        return event.getUei() + " " + (event.getSnmp() == null ? "" : event.getSnmp().getId() + "/" + event.getSnmp().getGeneric() + "/" + event.getSnmp().getSpecific());
+    }
+}
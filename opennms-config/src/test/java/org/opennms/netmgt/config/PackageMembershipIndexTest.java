@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+import static org.opennms.core.utils.InetAddressUtils.toIpAddrBytes;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PackageMembershipIndexTest {
+    private static final Logger LOG = LoggerFactory.getLogger(PackageMembershipIndexTest.class);
+
+    @Test
+    public void testFilterAndSpecifics() {
+        final PackageMembershipIndex index = new PackageMembershipIndex.Builder("test")
+            .filterAddresses(Arrays.asList(addr("192.168.1.1"), addr("192.168.1.2"), addr("fe80::1")))
+            .specific("192.168.1.2")
+            .specific("fe80:0:0:0:0:0:0:1")
+            .build();
+
+        assertEquals(3, index.getFilterSize());
+        assertTrue(index.isInFilter(addr("192.168.1.1")));
+        assertTrue(index.isInFilter(addr("fe80::1")));
+        assertFalse(index.isInFilter(addr("192.168.1.3")));
+        assertFalse(index.isInFilter(null));
+
+        assertFalse(index.isSpecific(toIpAddrBytes("192.168.1.1")));
+        assertTrue(index.isSpecific(toIpAddrBytes("192.168.1.2")));
+        assertTrue(index.isSpecific(toIpAddrBytes("fe80::1")));
+
+        // there are specifics, so nothing is implicitly included
+        assertFalse(index.isInIncludeRange(toIpAddrBytes("192.168.1.1")));
+    }
+
+    @Test
+    public void testRanges() {
+        final PackageMembershipIndex index = new PackageMembershipIndex.Builder("test")
+            .includeRange("10.0.0.0", "10.0.0.255")
+            .includeRange("10.0.0.128", "10.0.1.10")
+            .includeRange("172.16.0.1", "172.16.0.1")
+            .includeRange("10.0.5.0", "10.0.4.0")
+            .includeRange("2001:db8::", "2001:db8::ffff")
+            .excludeRange("10.0.0.50", "10.0.0.60")
+            .build();
+
+        assertTrue(index.isInIncludeRange(toIpAddrBytes("10.0.0.0")));
+        assertTrue(index.isInIncludeRange(toIpAddrBytes("10.0.0.200")));
+        assertTrue(index.isInIncludeRange(toIpAddrBytes("10.0.1.10")));
+        assertFalse(index.isInIncludeRange(toIpAddrBytes("10.0.1.11")));
+        assertTrue(index.isInIncludeRange(toIpAddrBytes("172.16.0.1")));
+        assertFalse(index.isInIncludeRange(toIpAddrBytes("172.16.0.2")));
+        assertFalse(index.isInIncludeRange(toIpAddrBytes("9.255.255.255")));
+        // inverted ranges are ignored
+        assertFalse(index.isInIncludeRange(toIpAddrBytes("10.0.4.128")));
+        assertTrue(index.isInIncludeRange(toIpAddrBytes("2001:db8::1")));
+        assertFalse(index.isInIncludeRange(toIpAddrBytes("2001:db8::1:0")));
+
+        assertTrue(index.isInExcludeRange(toIpAddrBytes("10.0.0.55")));
+        assertFalse(index.isInExcludeRange(toIpAddrBytes("10.0.0.61")));
+        assertFalse(index.isInExcludeRange(toIpAddrBytes("2001:db8::1")));
+    }
+
+    @Test
+    public void testIncludeAllAndMixedFamilyRange() {
+        final PackageMembershipIndex all = new PackageMembershipIndex.Builder("all").includeAll(true).build();
+        assertTrue(all.isInIncludeRange(toIpAddrBytes("1.2.3.4")));
+        assertTrue(all.isInIncludeRange(toIpAddrBytes("::1")));
+
+        // IPv4 addresses sort before IPv6 addresses, as with the ByteArrayComparator
+        final PackageMembershipIndex mixed = new PackageMembershipIndex.Builder("mixed").includeRange("255.255.255.0", "::ff").build();
+        for (final String address : new String[] { "255.255.255.255", "::1", "1.1.1.1", "::1:0" }) {
+            assertEquals(address, InetAddressUtils.isInetAddressInRange(address, "255.255.255.0", "::ff"), mixed.isInIncludeRange(toIpAddrBytes(address)));
+        }
+    }
+
+    @Test
+    public void testWithFilterAddressesKeepsRanges() {
+        final PackageMembershipIndex index = new PackageMembershipIndex.Builder("test")
+            .filterAddresses(Arrays.asList(addr("10.0.0.1")))
+            .includeRange("10.0.0.0", "10.0.0.255")
+            .build();
+        final PackageMembershipIndex updated = index.withFilterAddresses(Arrays.asList(addr("10.0.0.2")));
+
+        assertFalse(updated.isInFilter(addr("10.0.0.1")));
+        assertTrue(updated.isInFilter(addr("10.0.0.2")));
+        assertTrue(updated.isInIncludeRange(toIpAddrBytes("10.0.0.2")));
+    }
+
+    /**
+     * Checks every interface of a 120k interface filter result against a
+     * package with 50 include ranges, comparing the index with a linear
+     * scan of the filter list. The timings are only logged.
+     */
+    @Test
+    public void testLargeFilterResult() throws Exception {
+        final int count = 120000;
+        final List<InetAddress> addresses = new ArrayList<InetAddress>(count);
+        for (int i = 0; i < count; i++) {
+            addresses.add(InetAddress.getByAddress(new byte[] { 10, (byte) (i >> 16), (byte) (i >> 8), (byte) i }));
+        }
+
+        final PackageMembershipIndex.Builder builder = new PackageMembershipIndex.Builder("large").filterAddresses(addresses);
+        for (int i = 0; i < 50; i++) {
+            builder.includeRange("10.0." + i + ".0", "10.0." + i + ".127");
+        }
+        builder.excludeRange("10.0.0.0", "10.0.0.15");
+
+        long start = System.nanoTime();
+        final PackageMembershipIndex index = builder.build();
+        final long buildNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int members = 0;
+        for (final InetAddress address : addresses) {
+            final byte[] bytes = address.getAddress();
+            if (index.isInFilter(address) && index.isInIncludeRange(bytes) && !index.isInExcludeRange(bytes)) {
+                members++;
+            }
+        }
+        final long indexNanos = System.nanoTime() - start;
+        assertEquals(50 * 128 - 16, members);
+
+        // the linear scan is quadratic, so only sample part of the list
+        final int sample = 2000;
+        start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < sample; i++) {
+            if (addresses.contains(addresses.get(count - 1 - i))) {
+                found++;
+            }
+        }
+        final long listNanos = System.nanoTime() - start;
+        assertEquals(sample, found);
+
+        LOG.info("{} interfaces: index built in {}ms, {} lookups in {}ms; List.contains() took {}ms for {} lookups",
+                 count, buildNanos / 1000000, count, indexNanos / 1000000, listNanos / 1000000, sample);
+    }
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.net.InetAddress;
+import java.util.Random;
+
+import org.junit.Test;
+import org.opennms.netmgt.config.snmp.Definition;
+import org.opennms.netmgt.config.snmp.Range;
+import org.opennms.netmgt.config.snmp.SnmpConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SnmpDefinitionIndexTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SnmpDefinitionIndexTest.class);
+
+    private static Definition definition(final String community) {
+        final Definition def = new Definition();
+        def.setReadCommunity(community);
+        return def;
+    }
+
+    @Test
+    public void testMatchingRules() {
+        final SnmpConfig config = new SnmpConfig();
+        config.setReadCommunity("public");
+
+        final Definition first = definition("first");
+        first.addRange(new Range("10.0.0.0", "10.0.0.255"));
+        first.addSpecific("192.168.0.1");
+        config.addDefinition(first);
+
+        final Definition second = definition("second");
+        // overlaps the first range; the first definition keeps the overlap
+        second.addRange(new Range("10.0.0.128", "10.0.1.255"));
+        // a later specific overrides an earlier one
+        second.addSpecific("192.168.0.1");
+        // a specific beats an earlier range
+        second.addSpecific("10.0.0.5");
+        config.addDefinition(second);
+
+        final Definition third = definition("third");
+        // inverted ranges are swapped
+        third.addRange(new Range("172.16.0.255", "172.16.0.0"));
+        third.addIpMatch("10.0.*.*");
+        third.addIpMatch("172.17.1-2.*");
+        config.addDefinition(third);
+
+        final SnmpDefinitionIndex index = new SnmpDefinitionIndex(config);
+
+        assertEquals(0, index.getDefinitionIndex(addr("10.0.0.1")));
+        assertEquals(0, index.getDefinitionIndex(addr("10.0.0.200")));
+        assertEquals(1, index.getDefinitionIndex(addr("10.0.1.1")));
+        assertEquals(1, index.getDefinitionIndex(addr("10.0.0.5")));
+        assertEquals(1, index.getDefinitionIndex(addr("192.168.0.1")));
+        assertEquals(2, index.getDefinitionIndex(addr("172.16.0.10")));
+        assertEquals(2, index.getDefinitionIndex(addr("10.0.2.1")));
+        assertEquals(2, index.getDefinitionIndex(addr("172.17.2.1")));
+        assertEquals(-1, index.getDefinitionIndex(addr("172.17.3.1")));
+        assertEquals(-1, index.getDefinitionIndex(addr("::1")));
+
+        assertEquals("second", index.getDefinition(addr("10.0.1.1")).getReadCommunity());
+        assertEquals("public", index.getDefinition(addr("172.17.3.1")).getReadCommunity());
+    }
+
+    /**
+     * Builds a configuration with a few thousand overlapping definitions and
+     * checks that the index finds the same definition as the visitor. The
+     * timings are only logged.
+     */
+    @Test
+    public void testMatchesVisitor() {
+        final Random random = new Random(42);
+        final SnmpConfig config = new SnmpConfig();
+        config.setReadCommunity("public");
+        for (int i = 0; i < 3000; i++) {
+            final Definition def = definition("def" + i);
+            final int kind = random.nextInt(4);
+            if (kind == 0) {
+                def.addSpecific("10." + random.nextInt(4) + "." + random.nextInt(256) + "." + random.nextInt(256));
+            } else if (kind == 3 && i % 30 == 0) {
+                def.addIpMatch("10." + random.nextInt(4) + "." + random.nextInt(256) + ".*");
+            } else {
+                final int third = random.nextInt(256);
+                final int width = random.nextInt(512);
+                def.addRange(new Range("10." + random.nextInt(4) + "." + third + ".0", "10.3." + Math.min(255, third + width / 256) + "." + (width % 256)));
+            }
+            config.addDefinition(def);
+        }
+
+        long start = System.nanoTime();
+        final SnmpDefinitionIndex index = new SnmpDefinitionIndex(config);
+        final long buildNanos = System.nanoTime() - start;
+
+        final int lookups = 2000;
+        final InetAddress[] addresses = new InetAddress[lookups];
+        for (int i = 0; i < lookups; i++) {
+            addresses[i] = addr("10." + random.nextInt(5) + "." + random.nextInt(256) + "." + random.nextInt(256));
+        }
+
+        start = System.nanoTime();
+        final Definition[] visited = new Definition[lookups];
+        for (int i = 0; i < lookups; i++) {
+            visited[i] = config.findDefinition(addresses[i]);
+        }
+        final long visitorNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        final Definition[] indexed = new Definition[lookups];
+        for (int i = 0; i < lookups; i++) {
+            indexed[i] = index.getDefinition(addresses[i]);
+        }
+        final long indexNanos = System.nanoTime() - start;
+
+        for (int i = 0; i < lookups; i++) {
+            assertEquals(addresses[i].toString(), visited[i], indexed[i]);
+        }
+
+        LOG.info("{} definitions: index built in {}ms; {} lookups took {}ms with the visitor and {}ms with the index",
+                 config.getDefinitions().size(), buildNanos / 1000000, lookups, visitorNanos / 1000000, indexNanos / 1000000);
+    }
+}
@@ -28,6 +28,7 @@
 
 package org.opennms.netmgt.correlation.drools;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -40,7 +41,8 @@ import org.opennms.netmgt.xml.event.Event;
  * @author <a href="mailto:brozow@opennms.org">Mathew Brozowski</a>
  * @version $Id: $
  */
-public class Cause {
+public class Cause implements Serializable {
+    private static final long serialVersionUID = 1L;
     
     public enum Type {
         POSSIBLE,
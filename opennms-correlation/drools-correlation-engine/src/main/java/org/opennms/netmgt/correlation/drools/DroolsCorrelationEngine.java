@@ -28,15 +28,29 @@
 
 package org.opennms.netmgt.correlation.drools;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Reader;
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 import org.drools.compiler.compiler.DroolsParserException;
@@ -64,33 +78,170 @@ import org.springframework.core.io.Resource;
 public class DroolsCorrelationEngine extends AbstractCorrelationEngine {
     private static final Logger LOG = LoggerFactory.getLogger(DroolsCorrelationEngine.class);
 
-    private WorkingMemory m_workingMemory;
+    private Partition[] m_partitions;
+    private final Map<Integer, Partition> m_timerPartitions = new ConcurrentHashMap<>();
+    private final ThreadLocal<Partition> m_currentPartition = new ThreadLocal<>();
     private List<String> m_interestingEvents;
     private List<Resource> m_rules;
     private Map<String, Object> m_globals = new HashMap<>();
     private String m_name;
     private String m_assertBehaviour;
     private String m_eventProcessingMode;
-    
+    private int m_batchSize = 1;
+    private int m_partitionCount = 1;
+    private String m_partitionBy = "nodeid";
+    private int m_partitionKeyFields = 0;
+    private File m_snapshotFile;
+    private long m_snapshotInterval = 0;
+
+    /**
+     * A stateful session holding part of the engine's working memory.  When
+     * the engine is asynchronous, each partition has its own queue and thread
+     * which inserts up to batchSize facts before firing the rules.
+     */
+    private class Partition implements Runnable {
+        private final int m_index;
+        private final WorkingMemory m_workingMemory;
+        private final BlockingQueue<Object> m_queue = new LinkedBlockingQueue<>();
+        private final AtomicInteger m_pending = new AtomicInteger(0);
+        private Thread m_thread;
+
+        public Partition(final int index, final WorkingMemory workingMemory) {
+            m_index = index;
+            m_workingMemory = workingMemory;
+        }
+
+        public void start() {
+            m_thread = new Thread(this, "DroolsCorrelationEngine-" + m_name + "-" + m_index);
+            m_thread.setDaemon(true);
+            m_thread.start();
+        }
+
+        public void stop() {
+            if (m_thread != null) {
+                m_thread.interrupt();
+                try {
+                    m_thread.join(5000);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                m_thread = null;
+            }
+        }
+
+        public void submit(final Object fact) {
+            if (m_thread == null) {
+                final List<Object> facts = new ArrayList<>(1);
+                facts.add(fact);
+                process(facts);
+            } else {
+                m_pending.incrementAndGet();
+                m_queue.offer(fact);
+            }
+        }
+
+        public synchronized void process(final List<Object> facts) {
+            m_currentPartition.set(this);
+            try {
+                for (final Object fact : facts) {
+                    m_workingMemory.insert(fact);
+                }
+                m_workingMemory.fireAllRules();
+            } finally {
+                m_currentPartition.remove();
+            }
+        }
+
+        public boolean isIdle() {
+            return m_pending.get() == 0;
+        }
+
+        @Override
+        public void run() {
+            final List<Object> batch = new ArrayList<>(m_batchSize);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    batch.add(m_queue.take());
+                    m_queue.drainTo(batch, m_batchSize - 1);
+                    LOG.debug("Begin correlation for {} facts in partition {}", batch.size(), m_index);
+                    process(batch);
+                    LOG.debug("End correlation for {} facts in partition {}", batch.size(), m_index);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final Throwable t) {
+                    LOG.error("Unable to correlate {} facts in partition {}", batch.size(), m_index, t);
+                } finally {
+                    m_pending.addAndGet(-batch.size());
+                    batch.clear();
+                }
+            }
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
-    public synchronized void correlate(final Event e) {
+    public void correlate(final Event e) {
 	LOG.debug("Begin correlation for Event {} uei: {}", e.getDbid(), e.getUei());
-        m_workingMemory.insert(e);
-        m_workingMemory.fireAllRules();
+        getPartition(e).submit(e);
 	LOG.debug("End correlation for Event {} uei: {}", e.getDbid(), e.getUei());
     }
 
     /** {@inheritDoc} */
     @Override
-    protected synchronized void timerExpired(final Integer timerId) {
+    protected void timerExpired(final Integer timerId) {
 	LOG.info("Begin correlation for Timer {}", timerId);
-        TimerExpired expiration  = new TimerExpired(timerId);
-        m_workingMemory.insert(expiration);
-        m_workingMemory.fireAllRules();
+        final Partition partition = m_timerPartitions.remove(timerId);
+        (partition == null ? m_partitions[0] : partition).submit(new TimerExpired(timerId));
 	LOG.debug("Begin correlation for Timer {}", timerId);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Integer setTimer(final long millis) {
+        final Integer timerId = super.setTimer(millis);
+        final Partition partition = m_currentPartition.get();
+        if (partition != null && m_partitions.length > 1) {
+            m_timerPartitions.put(timerId, partition);
+        }
+        return timerId;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void cancelTimer(final Integer timerId) {
+        m_timerPartitions.remove(timerId);
+        super.cancelTimer(timerId);
+    }
+
+    private Partition getPartition(final Event e) {
+        if (m_partitions.length == 1) {
+            return m_partitions[0];
+        }
+        final Object key = getPartitionKey(e);
+        return key == null ? m_partitions[0] : m_partitions[(key.hashCode() & Integer.MAX_VALUE) % m_partitions.length];
+    }
+
+    private Object getPartitionKey(final Event e) {
+        if ("reduction-key".equals(m_partitionBy)) {
+            if (e.getAlarmData() == null || e.getAlarmData().getReductionKey() == null) {
+                return e.getNodeid();
+            }
+            final String reductionKey = e.getAlarmData().getReductionKey();
+            if (m_partitionKeyFields <= 0) {
+                return reductionKey;
+            }
+            int end = -1;
+            for (int i = 0; i < m_partitionKeyFields; i++) {
+                end = reductionKey.indexOf(':', end + 1);
+                if (end < 0) {
+                    return reductionKey;
+                }
+            }
+            return reductionKey.substring(0, end);
+        }
+        return e.getNodeid();
+    }
+
     /** {@inheritDoc} */
     @Override
     public List<String> getInterestingEvents() {
@@ -124,6 +275,70 @@ public class DroolsCorrelationEngine extends AbstractCorrelationEngine {
         m_globals = globals;
     }
 
+    /**
+     * Sets the maximum number of facts inserted into a partition before the
+     * rules are fired.  Values larger than 1 make correlation asynchronous.
+     *
+     * @param batchSize a int.
+     */
+    public void setBatchSize(final int batchSize) {
+        m_batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Sets the number of sessions the working memory is split across.
+     * Values larger than 1 make correlation asynchronous.
+     *
+     * @param partitionCount a int.
+     */
+    public void setPartitions(final int partitionCount) {
+        m_partitionCount = Math.max(1, partitionCount);
+    }
+
+    /**
+     * Sets how events are assigned to partitions, either "nodeid" or
+     * "reduction-key".  Events without a key go to the first partition.
+     *
+     * @param partitionBy a {@link java.lang.String} object.
+     */
+    public void setPartitionBy(final String partitionBy) {
+        m_partitionBy = partitionBy == null ? "nodeid" : partitionBy;
+    }
+
+    /**
+     * Sets how many leading ':' separated fields of the reduction key are
+     * used as the partition key, or 0 to use the whole reduction key.
+     *
+     * @param partitionKeyFields a int.
+     */
+    public void setPartitionKeyFields(final int partitionKeyFields) {
+        m_partitionKeyFields = partitionKeyFields;
+    }
+
+    /**
+     * Sets the file the working memory is saved to on shutdown and restored
+     * from when the engine is initialized.
+     *
+     * @param snapshotFile a {@link java.io.File} object.
+     */
+    public void setSnapshotFile(final File snapshotFile) {
+        m_snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Sets how often, in milliseconds, the working memory is saved in
+     * addition to shutdown.  0 saves only on shutdown.
+     *
+     * @param snapshotInterval a long.
+     */
+    public void setSnapshotInterval(final long snapshotInterval) {
+        m_snapshotInterval = snapshotInterval;
+    }
+
+    private boolean isAsynchronous() {
+        return m_batchSize > 1 || m_partitionCount > 1;
+    }
+
     /**
      * <p>initialize</p>
      *
@@ -158,11 +373,179 @@ public class DroolsCorrelationEngine extends AbstractCorrelationEngine {
 
         ruleBase.addPackage( builder.getPackage() );
 
-        m_workingMemory = ruleBase.newStatefulSession();
-        m_workingMemory.setGlobal("engine", this);
-        
-        for (final Map.Entry<String, Object> entry : m_globals.entrySet()) {
-            m_workingMemory.setGlobal(entry.getKey(), entry.getValue());
+        m_partitions = new Partition[m_partitionCount];
+        for (int i = 0; i < m_partitions.length; i++) {
+            final WorkingMemory workingMemory = ruleBase.newStatefulSession();
+            workingMemory.setGlobal("engine", this);
+
+            for (final Map.Entry<String, Object> entry : m_globals.entrySet()) {
+                workingMemory.setGlobal(entry.getKey(), entry.getValue());
+            }
+            m_partitions[i] = new Partition(i, workingMemory);
+        }
+
+        if (m_snapshotFile != null) {
+            restoreSnapshot();
+        }
+
+        if (isAsynchronous()) {
+            LOG.info("Correlating {} in {} partitions by {} with batches of up to {} facts", m_name, m_partitions.length, m_partitionBy, m_batchSize);
+            for (final Partition partition : m_partitions) {
+                partition.start();
+            }
+        }
+
+        if (m_snapshotFile != null && m_snapshotInterval > 0) {
+            getScheduler().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        saveSnapshot();
+                    } catch (final Throwable t) {
+                        LOG.warn("Unable to save the working memory of {} to {}", m_name, m_snapshotFile, t);
+                    }
+                }
+            }, m_snapshotInterval, m_snapshotInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the partition threads, waiting for queued facts to be processed,
+     * and saves the working memory if a snapshot file is configured.
+     */
+    @Override
+    public void tearDown() {
+        if (m_partitions == null) {
+            return;
+        }
+        if (isAsynchronous()) {
+            waitForIdle(5000);
+            for (final Partition partition : m_partitions) {
+                partition.stop();
+            }
+        }
+        if (m_snapshotFile != null) {
+            try {
+                saveSnapshot();
+            } catch (final IOException e) {
+                LOG.warn("Unable to save the working memory of {} to {}", m_name, m_snapshotFile, e);
+            }
+        }
+    }
+
+    /**
+     * Waits until all queued facts have been inserted.
+     *
+     * @param timeout the maximum number of milliseconds to wait
+     * @return true if all partitions are idle
+     */
+    public boolean waitForIdle(final long timeout) {
+        final long end = System.currentTimeMillis() + timeout;
+        for (final Partition partition : m_partitions) {
+            while (!partition.isIdle()) {
+                if (System.currentTimeMillis() >= end) {
+                    return false;
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the serializable facts of every partition and the pending
+     * timers to the snapshot file.
+     *
+     * @throws java.io.IOException if any.
+     */
+    public void saveSnapshot() throws IOException {
+        final List<List<Object>> facts = new ArrayList<>(m_partitions.length);
+        int skipped = 0;
+        for (final Partition partition : m_partitions) {
+            final List<Object> partitionFacts = new ArrayList<>();
+            synchronized (partition) {
+                for (final Iterator<?> it = partition.m_workingMemory.iterateObjects(); it.hasNext(); ) {
+                    final Object fact = it.next();
+                    if (fact instanceof Serializable) {
+                        partitionFacts.add(fact);
+                    } else {
+                        skipped++;
+                    }
+                }
+            }
+            facts.add(partitionFacts);
+        }
+        if (skipped > 0) {
+            LOG.warn("Skipped {} facts that are not serializable while saving the working memory of {}", skipped, m_name);
+        }
+
+        final Map<Integer, Long> timers = getPendingTimers();
+        final Map<Integer, Integer> timerPartitions = new HashMap<>();
+        for (final Map.Entry<Integer, Partition> entry : m_timerPartitions.entrySet()) {
+            timerPartitions.put(entry.getKey(), entry.getValue().m_index);
+        }
+
+        final File tmpFile = new File(m_snapshotFile.getPath() + ".tmp");
+        if (m_snapshotFile.getParentFile() != null) {
+            m_snapshotFile.getParentFile().mkdirs();
+        }
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeObject(facts);
+            out.writeObject(new HashMap<Integer, Long>(timers));
+            out.writeObject(timerPartitions);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+        if (!tmpFile.renameTo(m_snapshotFile)) {
+            m_snapshotFile.delete();
+            if (!tmpFile.renameTo(m_snapshotFile)) {
+                throw new IOException("Unable to rename " + tmpFile + " to " + m_snapshotFile);
+            }
+        }
+        LOG.debug("Saved the working memory of {} to {}", m_name, m_snapshotFile);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void restoreSnapshot() {
+        if (!m_snapshotFile.exists()) {
+            return;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(m_snapshotFile)));
+            final List<List<Object>> facts = (List<List<Object>>)in.readObject();
+            final Map<Integer, Long> timers = (Map<Integer, Long>)in.readObject();
+            final Map<Integer, Integer> timerPartitions = (Map<Integer, Integer>)in.readObject();
+
+            if (facts.size() != m_partitions.length) {
+                LOG.warn("The working memory of {} was saved with {} partitions but {} are configured, facts may end up in different partitions", m_name, facts.size(), m_partitions.length);
+            }
+            int count = 0;
+            for (int i = 0; i < facts.size(); i++) {
+                final WorkingMemory workingMemory = m_partitions[i % m_partitions.length].m_workingMemory;
+                for (final Object fact : facts.get(i)) {
+                    workingMemory.insert(fact);
+                    count++;
+                }
+            }
+            for (final Map.Entry<Integer, Integer> entry : timerPartitions.entrySet()) {
+                m_timerPartitions.put(entry.getKey(), m_partitions[entry.getValue() % m_partitions.length]);
+            }
+            for (final Map.Entry<Integer, Long> entry : timers.entrySet()) {
+                restoreTimer(entry.getKey(), entry.getValue());
+            }
+            LOG.info("Restored {} facts and {} timers for {} from {}", count, timers.size(), m_name, m_snapshotFile);
+        } catch (final Exception e) {
+            LOG.warn("Unable to restore the working memory of {} from {}, starting empty", m_name, m_snapshotFile, e);
+        } finally {
+            IOUtils.closeQuietly(in);
         }
     }
 
@@ -187,8 +570,10 @@ public class DroolsCorrelationEngine extends AbstractCorrelationEngine {
      */
     public int getMemorySize() {
         int count = 0;
-        for(final Iterator<?> it = m_workingMemory.iterateObjects(); it.hasNext(); it.next()) {
-            count++;
+        for (final Partition partition : m_partitions) {
+            for(final Iterator<?> it = partition.m_workingMemory.iterateObjects(); it.hasNext(); it.next()) {
+                count++;
+            }
         }
     	return count;
     }
@@ -200,14 +585,20 @@ public class DroolsCorrelationEngine extends AbstractCorrelationEngine {
      */
     public List<Object> getMemoryObjects() {
     	final List<Object> objects = new LinkedList<>();
-        for(Iterator<?> it = m_workingMemory.iterateObjects(); it.hasNext(); ) {
-        	objects.add(it.next());
+        for (final Partition partition : m_partitions) {
+            for(Iterator<?> it = partition.m_workingMemory.iterateObjects(); it.hasNext(); ) {
+            	objects.add(it.next());
+            }
         }
         return objects;
     }
     
+    /**
+     * Returns the working memory of the first partition, which is the only
+     * one unless the engine is partitioned.
+     */
     public WorkingMemory getWorkingMemory() {
-    	return m_workingMemory;
+    	return m_partitions[0].m_workingMemory;
     }
 
     /**
@@ -236,7 +627,9 @@ public class DroolsCorrelationEngine extends AbstractCorrelationEngine {
      * @param value a {@link java.lang.Object} object.
      */
     public void setGlobal(final String name, final Object value) {
-        m_workingMemory.setGlobal(name, value);
+        for (final Partition partition : m_partitions) {
+            partition.m_workingMemory.setGlobal(name, value);
+        }
     }
 
     public void setAssertBehaviour(String assertBehaviour) {
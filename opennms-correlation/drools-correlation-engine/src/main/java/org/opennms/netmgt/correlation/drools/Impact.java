@@ -37,6 +37,7 @@ import org.opennms.netmgt.xml.event.Event;
  * @version $Id: $
  */
 public class Impact extends Cause {
+    private static final long serialVersionUID = 1L;
 
     /**
      * <p>Constructor for Impact.</p>
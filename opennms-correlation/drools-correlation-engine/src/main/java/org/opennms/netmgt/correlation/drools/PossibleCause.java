@@ -37,6 +37,7 @@ import org.opennms.netmgt.xml.event.Event;
  * @version $Id: $
  */
 public class PossibleCause extends Cause {
+    private static final long serialVersionUID = 1L;
     
     /**
      * <p>Constructor for PossibleCause.</p>
@@ -26,6 +26,7 @@
  */
 package org.opennms.netmgt.correlation.drools.config;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Serializable;
@@ -80,6 +81,24 @@ public class RuleSet implements Serializable {
 
     @XmlAttribute(name = "event-processing-mode")
     private String _eventProcessingMode;
+
+    @XmlAttribute(name = "batch-size")
+    private Integer _batchSize;
+
+    @XmlAttribute(name = "partitions")
+    private Integer _partitions;
+
+    @XmlAttribute(name = "partition-by")
+    private String _partitionBy;
+
+    @XmlAttribute(name = "partition-key-fields")
+    private Integer _partitionKeyFields;
+
+    @XmlAttribute(name = "snapshot-file")
+    private String _snapshotFile;
+
+    @XmlAttribute(name = "snapshot-interval")
+    private Long _snapshotInterval;
     
     @XmlElement(name = "rule-file")
     private List<String> _ruleFileList;
@@ -116,6 +135,54 @@ public class RuleSet implements Serializable {
         this._eventProcessingMode = eventProcessingMode;
     }
     
+    public int getBatchSize() {
+        return _batchSize == null ? 1 : _batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this._batchSize = batchSize;
+    }
+
+    public int getPartitions() {
+        return _partitions == null ? 1 : _partitions;
+    }
+
+    public void setPartitions(Integer partitions) {
+        this._partitions = partitions;
+    }
+
+    public String getPartitionBy() {
+        return _partitionBy == null ? "nodeid" : _partitionBy;
+    }
+
+    public void setPartitionBy(String partitionBy) {
+        this._partitionBy = partitionBy;
+    }
+
+    public int getPartitionKeyFields() {
+        return _partitionKeyFields == null ? 0 : _partitionKeyFields;
+    }
+
+    public void setPartitionKeyFields(Integer partitionKeyFields) {
+        this._partitionKeyFields = partitionKeyFields;
+    }
+
+    public String getSnapshotFile() {
+        return _snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this._snapshotFile = snapshotFile;
+    }
+
+    public long getSnapshotInterval() {
+        return _snapshotInterval == null ? 0 : _snapshotInterval;
+    }
+
+    public void setSnapshotInterval(Long snapshotInterval) {
+        this._snapshotInterval = snapshotInterval;
+    }
+
     /**
      *
      *
@@ -843,6 +910,14 @@ public class RuleSet implements Serializable {
         engine.setInterestingEvents(getInterestingEvents());
         engine.setRulesResources(getRuleResources(configContext));
         engine.setGlobals(getGlobals(configContext));
+        engine.setBatchSize(getBatchSize());
+        engine.setPartitions(getPartitions());
+        engine.setPartitionBy(getPartitionBy());
+        engine.setPartitionKeyFields(getPartitionKeyFields());
+        if (getSnapshotFile() != null) {
+            engine.setSnapshotFile(new File(PropertiesUtils.substitute(getSnapshotFile(), System.getProperties())));
+            engine.setSnapshotInterval(getSnapshotInterval());
+        }
         try {
             engine.initialize();
             return engine;
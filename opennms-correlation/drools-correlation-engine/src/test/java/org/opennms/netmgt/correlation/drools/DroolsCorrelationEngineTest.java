@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.correlation.drools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.netmgt.dao.mock.MockEventIpcManager;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.Event;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+public class DroolsCorrelationEngineTest {
+
+    @Rule
+    public TemporaryFolder m_tempFolder = new TemporaryFolder();
+
+    private DroolsCorrelationEngine m_engine;
+
+    @Before
+    public void setUp() {
+        MockLogAppender.setupLogging();
+    }
+
+    @After
+    public void tearDown() {
+        if (m_engine != null) {
+            m_engine.tearDown();
+        }
+    }
+
+    @Test
+    public void testPartitionedBatches() throws Exception {
+        m_engine = createEngine(null);
+
+        for (int nodeId = 1; nodeId <= 10; nodeId++) {
+            m_engine.correlate(createRemoteNodeLostServiceEvent(nodeId, 1));
+        }
+        assertTrue(m_engine.waitForIdle(10000));
+
+        // one affliction and one flap for each node
+        assertEquals(20, m_engine.getMemorySize());
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        final File snapshotFile = new File(m_tempFolder.getRoot(), "locationMonitorRules.ser");
+
+        m_engine = createEngine(snapshotFile);
+        m_engine.correlate(createRemoteNodeLostServiceEvent(1, 1));
+        m_engine.correlate(createRemoteNodeLostServiceEvent(2, 1));
+        m_engine.tearDown();
+        assertTrue(snapshotFile.exists());
+
+        m_engine = createEngine(snapshotFile);
+        assertEquals(4, m_engine.getMemorySize());
+
+        // the restored affliction picks up the second monitor instead of creating a new one
+        m_engine.correlate(createRemoteNodeLostServiceEvent(1, 2));
+        assertTrue(m_engine.waitForIdle(10000));
+        assertEquals(5, m_engine.getMemorySize());
+    }
+
+    private DroolsCorrelationEngine createEngine(final File snapshotFile) throws Exception {
+        final Map<String, Object> globals = new HashMap<>();
+        globals.put("WIDE_SPREAD_THRESHOLD", 3);
+        globals.put("FLAP_INTERVAL", 60000L);
+        globals.put("FLAP_COUNT", 3);
+
+        final DroolsCorrelationEngine engine = new DroolsCorrelationEngine();
+        engine.setName("locationMonitorRules");
+        engine.setAssertBehaviour("identity");
+        engine.setEventIpcManager(new MockEventIpcManager());
+        engine.setScheduler(new ScheduledThreadPoolExecutor(1));
+        engine.setInterestingEvents(Collections.singletonList(EventConstants.REMOTE_NODE_LOST_SERVICE_UEI));
+        engine.setRulesResources(Collections.<Resource>singletonList(new FileSystemResource("src/test/opennms-home/etc/drools-engine.d/locationMonitorRules/LocationMonitorRules.drl")));
+        engine.setGlobals(globals);
+        engine.setBatchSize(5);
+        engine.setPartitions(3);
+        engine.setSnapshotFile(snapshotFile);
+        engine.initialize();
+        return engine;
+    }
+
+    private static Event createRemoteNodeLostServiceEvent(final int nodeId, final int locationMonitor) {
+        return new EventBuilder(EventConstants.REMOTE_NODE_LOST_SERVICE_UEI, "test")
+            .setNodeid(nodeId).setInterface(addr("192.168.1." + nodeId))
+            .setService("HTTP")
+            .addParam(EventConstants.PARM_LOCATION_MONITOR_ID, locationMonitor)
+            .getEvent();
+    }
+}
@@ -28,6 +28,7 @@
 
 package org.opennms.netmgt.correlation;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimerTask;
@@ -96,6 +97,45 @@ public abstract class AbstractCorrelationEngine implements CorrelationEngine {
         return timerTask.getId();
     }
     
+    /**
+     * Schedules a timer with a known id, used to re-create timers that were
+     * pending when the engine state was saved.
+     *
+     * @param timerId a {@link java.lang.Integer} object.
+     * @param millis a long.
+     */
+    protected void restoreTimer(final Integer timerId, final long millis) {
+        int last = s_lastTimerId.get();
+        while (last < timerId && !s_lastTimerId.compareAndSet(last, timerId)) {
+            last = s_lastTimerId.get();
+        }
+        final RuleTimerTask timerTask = new RuleTimerTask(timerId);
+        ScheduledFuture<?> future = m_scheduler.schedule(timerTask, Math.max(0, millis), TimeUnit.MILLISECONDS);
+        m_pendingTasks.put(timerId, future);
+    }
+
+    /**
+     * Returns the timers that have not fired yet along with the number of
+     * milliseconds remaining before they do.
+     *
+     * @return a {@link java.util.Map} object.
+     */
+    protected Map<Integer, Long> getPendingTimers() {
+        final Map<Integer, Long> timers = new HashMap<Integer, Long>();
+        for (final Map.Entry<Integer, ScheduledFuture<?>> entry : m_pendingTasks.entrySet()) {
+            if (!entry.getValue().isDone()) {
+                timers.put(entry.getKey(), entry.getValue().getDelay(TimeUnit.MILLISECONDS));
+            }
+        }
+        return timers;
+    }
+
+    /**
+     * Called when the correlator is stopped.  The default does nothing.
+     */
+    public void tearDown() {
+    }
+
     /**
      * <p>cancelTimer</p>
      *
@@ -124,6 +164,15 @@ public abstract class AbstractCorrelationEngine implements CorrelationEngine {
         m_scheduler = scheduler;
     }
     
+    /**
+     * <p>getScheduler</p>
+     *
+     * @return a {@link java.util.concurrent.ScheduledExecutorService} object.
+     */
+    protected ScheduledExecutorService getScheduler() {
+        return m_scheduler;
+    }
+
     /**
      * <p>runTimer</p>
      *
@@ -141,6 +190,10 @@ public abstract class AbstractCorrelationEngine implements CorrelationEngine {
         public RuleTimerTask() {
             m_id = s_lastTimerId.incrementAndGet();
         }
+
+        public RuleTimerTask(final Integer id) {
+            m_id = id;
+        }
         
         public Integer getId() {
             return m_id;
@@ -99,6 +99,16 @@ public class Correlator extends AbstractServiceDaemon implements CorrelationEngi
 		
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	protected void onStop() {
+		for (final CorrelationEngine engine : m_engines) {
+			if (engine instanceof AbstractCorrelationEngine) {
+				((AbstractCorrelationEngine)engine).tearDown();
+			}
+		}
+	}
+
 	/**
 	 * <p>setCorrelationEngines</p>
 	 *
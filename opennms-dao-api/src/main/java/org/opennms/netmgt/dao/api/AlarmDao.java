@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.dao.api;
 
+import org.opennms.core.criteria.Criteria;
+import org.opennms.netmgt.model.AckAction;
 import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.alarm.AlarmSummary;
 import org.opennms.netmgt.model.topology.EdgeAlarmStatusSummary;
@@ -58,4 +60,50 @@ public interface AlarmDao extends LegacyOnmsDao<OnmsAlarm, Integer> {
 
 
     List<EdgeAlarmStatusSummary> getLldpEdgeAlarmSummaries(List<Integer> lldpLinkIds);
+
+    /**
+     * Walks all alarms matching the criteria with a forward-only cursor,
+     * handing each one to the callback as it is read from the database.
+     *
+     * @param criteria the criteria to match
+     * @param callback the callback invoked for every matching alarm
+     */
+    void scrollMatching(Criteria criteria, ScrollCallback<OnmsAlarm> callback);
+
+    /**
+     * Returns the planner's estimate of the number of rows in the alarms
+     * table.  This is much cheaper than {@link #countAll()} on large tables.
+     *
+     * @return the estimated number of alarms
+     */
+    int estimateCountAll();
+
+    /**
+     * Counts the alarms matching the criteria, but stops counting once
+     * <code>max</code> matches have been found.
+     *
+     * @param criteria the criteria to match
+     * @param max the maximum value to count up to
+     * @return the number of matching alarms, or <code>max</code> if there are at least that many
+     */
+    int countMatchingUpTo(Criteria criteria, int max);
+
+    /**
+     * <p>Applies an acknowledgment action to all alarms matching the
+     * criteria without loading them.  The related notifications are updated
+     * along with the alarms, and an acknowledgment record is written for
+     * every alarm that was changed, as {@link AcknowledgmentDao#processAck}
+     * would.  Unlike processing one acknowledgment per alarm, this runs as a
+     * handful of set-based statements regardless of how many alarms match.</p>
+     *
+     * <p>The limit and offset of the criteria are honored, so only the
+     * alarms that {@link #findMatching(Criteria)} would return are changed;
+     * clear them to apply the action to every match.</p>
+     *
+     * @param criteria the criteria to match
+     * @param action the action to apply
+     * @param user the user performing the action
+     * @return the number of alarms that were changed
+     */
+    int acknowledgeMatching(Criteria criteria, AckAction action, String user);
 }
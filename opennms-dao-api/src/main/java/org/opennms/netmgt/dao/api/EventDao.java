@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.dao.api;
 
+import org.opennms.core.criteria.Criteria;
+import org.opennms.netmgt.model.AckAction;
 import org.opennms.netmgt.model.OnmsEvent;
 
 import java.util.Date;
@@ -48,4 +50,48 @@ public interface EventDao extends LegacyOnmsDao<OnmsEvent, Integer> {
      */
     List<OnmsEvent> getEventsAfterDate(List<String> ueiList, Date date);
 
+    /**
+     * Walks all events matching the criteria with a forward-only cursor,
+     * handing each one to the callback as it is read from the database.
+     *
+     * @param criteria the criteria to match
+     * @param callback the callback invoked for every matching event
+     */
+    void scrollMatching(Criteria criteria, ScrollCallback<OnmsEvent> callback);
+
+    /**
+     * Returns the planner's estimate of the number of rows in the events
+     * table.  This is much cheaper than {@link #countAll()} on large tables.
+     *
+     * @return the estimated number of events
+     */
+    int estimateCountAll();
+
+    /**
+     * Counts the events matching the criteria, but stops counting once
+     * <code>max</code> matches have been found.
+     *
+     * @param criteria the criteria to match
+     * @param max the maximum value to count up to
+     * @return the number of matching events, or <code>max</code> if there are at least that many
+     */
+    int countMatchingUpTo(Criteria criteria, int max);
+
+    /**
+     * <p>Applies an acknowledgment action to all events matching the
+     * criteria without loading them.  The events are updated with a handful
+     * of set-based statements regardless of how many events match.  Only
+     * {@link AckAction#ACKNOWLEDGE} and {@link AckAction#UNACKNOWLEDGE}
+     * apply to events.</p>
+     *
+     * <p>The limit and offset of the criteria are honored, so only the
+     * events that {@link #findMatching(Criteria)} would return are changed;
+     * clear them to apply the action to every match.</p>
+     *
+     * @param criteria the criteria to match
+     * @param action the action to apply
+     * @param user the user performing the action
+     * @return the number of events that were changed
+     */
+    int acknowledgeMatching(Criteria criteria, AckAction action, String user);
 }
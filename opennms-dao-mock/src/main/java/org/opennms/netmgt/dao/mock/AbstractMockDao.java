@@ -47,6 +47,7 @@ import org.opennms.netmgt.dao.api.IpInterfaceDao;
 import org.opennms.netmgt.dao.api.LegacyOnmsDao;
 import org.opennms.netmgt.dao.api.MonitoredServiceDao;
 import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.dao.api.ScrollCallback;
 import org.opennms.netmgt.dao.api.ServiceTypeDao;
 import org.opennms.netmgt.dao.api.SnmpInterfaceDao;
 import org.opennms.netmgt.events.api.EventForwarder;
@@ -160,6 +161,21 @@ public abstract class AbstractMockDao<T, K extends Serializable> implements Lega
         return matched == null? 0 : matched.size();
     }
 
+    public void scrollMatching(final Criteria criteria, final ScrollCallback<T> callback) {
+        LOG.debug("scrollMatching({})", criteria);
+        for (final T entity : findMatching(criteria)) {
+            callback.onEntity(entity);
+        }
+    }
+
+    public int estimateCountAll() {
+        return countAll();
+    }
+
+    public int countMatchingUpTo(final Criteria criteria, final int max) {
+        return Math.min(countMatching(criteria), max);
+    }
+
     @Override
     public T get(final K id) {
         LOG.debug("get({})", id);
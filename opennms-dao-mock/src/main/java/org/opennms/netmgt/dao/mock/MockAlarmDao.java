@@ -31,7 +31,9 @@ package org.opennms.netmgt.dao.mock;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.opennms.core.criteria.Criteria;
 import org.opennms.netmgt.dao.api.AlarmDao;
+import org.opennms.netmgt.model.AckAction;
 import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.alarm.AlarmSummary;
 import org.opennms.netmgt.model.topology.EdgeAlarmStatusSummary;
@@ -87,4 +89,32 @@ public class MockAlarmDao extends AbstractMockDao<OnmsAlarm, Integer> implements
     public List<EdgeAlarmStatusSummary> getLldpEdgeAlarmSummaries(List<Integer> lldpLinkIds) {
         throw new UnsupportedOperationException("Not yet implemented");
     }
+
+    @Override
+    public int acknowledgeMatching(final Criteria criteria, final AckAction action, final String user) {
+        int count = 0;
+        for (final OnmsAlarm alarm : findMatching(criteria)) {
+            switch (action) {
+            case ACKNOWLEDGE:
+                if (alarm.getAlarmAckTime() != null) continue;
+                alarm.acknowledge(user);
+                break;
+            case UNACKNOWLEDGE:
+                if (alarm.getAlarmAckTime() == null) continue;
+                alarm.unacknowledge(user);
+                break;
+            case CLEAR:
+                alarm.clear(user);
+                break;
+            case ESCALATE:
+                alarm.escalate(user);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported acknowledgment action: " + action);
+            }
+            update(alarm);
+            count++;
+        }
+        return count;
+    }
 }
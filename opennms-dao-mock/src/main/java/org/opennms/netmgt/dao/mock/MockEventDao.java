@@ -28,9 +28,11 @@
 
 package org.opennms.netmgt.dao.mock;
 
+import org.opennms.core.criteria.Criteria;
 import org.opennms.netmgt.dao.api.CountedObject;
 import org.opennms.netmgt.dao.api.EventCountDao;
 import org.opennms.netmgt.dao.api.EventDao;
+import org.opennms.netmgt.model.AckAction;
 import org.opennms.netmgt.model.OnmsEvent;
 
 import java.util.*;
@@ -85,4 +87,23 @@ public class MockEventDao extends AbstractMockDao<OnmsEvent, Integer> implements
         return countedObjects;
     }
 
+    @Override
+    public int acknowledgeMatching(final Criteria criteria, final AckAction action, final String user) {
+        if (action != AckAction.ACKNOWLEDGE && action != AckAction.UNACKNOWLEDGE) {
+            throw new IllegalArgumentException("Unsupported acknowledgment action for events: " + action);
+        }
+        int count = 0;
+        for (final OnmsEvent event : findMatching(criteria)) {
+            if (action == AckAction.ACKNOWLEDGE) {
+                event.setEventAckUser(user);
+                event.setEventAckTime(new Date());
+            } else {
+                event.setEventAckUser(null);
+                event.setEventAckTime(null);
+            }
+            update(event);
+            count++;
+        }
+        return count;
+    }
 }
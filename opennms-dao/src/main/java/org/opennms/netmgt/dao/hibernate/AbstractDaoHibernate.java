@@ -33,10 +33,15 @@ import org.hibernate.EntityMode;
 import org.hibernate.HibernateException;
 import org.hibernate.LockMode;
 import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.criterion.Projections;
+import org.hibernate.engine.EntityKey;
 import org.hibernate.metadata.ClassMetadata;
 import org.opennms.netmgt.dao.api.OnmsDao;
+import org.opennms.netmgt.dao.api.ScrollCallback;
 import org.opennms.netmgt.model.OnmsCriteria;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,8 +52,13 @@ import org.springframework.orm.hibernate3.support.HibernateDaoSupport;
 import javax.persistence.Table;
 import java.io.Serializable;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * <p>Abstract AbstractDaoHibernate class.</p>
@@ -59,7 +69,10 @@ import java.util.List;
 public abstract class AbstractDaoHibernate<T, K extends Serializable> extends HibernateDaoSupport implements OnmsDao<T, K> {
     
     private static final Logger LOG = LoggerFactory.getLogger(AbstractDaoHibernate.class);
+    private static final int SCROLL_FETCH_SIZE = 500;
+    private static final int BULK_UPDATE_BATCH_SIZE = 1000;
     Class<T> m_entityClass;
+    private String m_tableName;
     private String m_lockName;
     private final HibernateCriteriaConverter m_criteriaConverter = new HibernateCriteriaConverter();
     
@@ -67,7 +80,8 @@ public abstract class AbstractDaoHibernate<T, K extends Serializable> extends Hi
         super();
         m_entityClass = entityClass;
         Table table = m_entityClass.getAnnotation(Table.class);
-        m_lockName = (table == null || "".equals(table.name()) ? m_entityClass.getSimpleName() : table.name()).toUpperCase() + "_ACCESS";
+        m_tableName = (table == null || "".equals(table.name()) ? m_entityClass.getSimpleName() : table.name());
+        m_lockName = m_tableName.toUpperCase() + "_ACCESS";
     }
 
     @Override
@@ -313,6 +327,172 @@ public abstract class AbstractDaoHibernate<T, K extends Serializable> extends Hi
         return retval == null ? 0 : retval.intValue();
     }
 
+    /**
+     * Walks the entities matching the criteria with a forward-only, read-only
+     * cursor.  Each entity is evicted from the session once the callback has
+     * handled it so that memory use stays constant regardless of the size of
+     * the result set.  Must be called inside a transaction so that the JDBC
+     * driver honors the fetch size instead of reading every row up front.
+     *
+     * @param criteria the criteria to match
+     * @param callback the callback to hand each entity to
+     */
+    public void scrollMatching(final org.opennms.core.criteria.Criteria criteria, final ScrollCallback<T> callback) {
+        final HibernateCallback<Void> hibernateCallback = new HibernateCallback<Void>() {
+            @Override
+            public Void doInHibernate(final Session session) throws HibernateException, SQLException {
+                LOG.debug("scrolling criteria = {}", criteria);
+                final Criteria hibernateCriteria = m_criteriaConverter.convert(criteria, session);
+                hibernateCriteria.setFetchSize(SCROLL_FETCH_SIZE);
+                hibernateCriteria.setReadOnly(true);
+                final ScrollableResults results = hibernateCriteria.scroll(ScrollMode.FORWARD_ONLY);
+                try {
+                    while (results.next()) {
+                        final T entity = m_entityClass.cast(results.get(0));
+                        callback.onEntity(entity);
+                        session.evict(entity);
+                    }
+                } finally {
+                    results.close();
+                }
+                return null;
+            }
+        };
+        getHibernateTemplate().execute(hibernateCallback);
+    }
+
+    /**
+     * Returns the PostgreSQL planner estimate of the number of rows in the
+     * entity's table.  Falls back to {@link #countAll()} when the table has
+     * not been analyzed yet.
+     *
+     * @return the estimated number of rows
+     */
+    public int estimateCountAll() {
+        final HibernateCallback<Number> callback = new HibernateCallback<Number>() {
+            @Override
+            public Number doInHibernate(final Session session) throws HibernateException, SQLException {
+                return (Number)session.createSQLQuery("SELECT reltuples FROM pg_class WHERE relname = ?")
+                        .setParameter(0, m_tableName.toLowerCase())
+                        .uniqueResult();
+            }
+        };
+        final Number estimate = getHibernateTemplate().execute(callback);
+        if (estimate == null || estimate.longValue() <= 0) {
+            return countAll();
+        }
+        return (int)Math.min(Integer.MAX_VALUE, estimate.longValue());
+    }
+
+    /**
+     * Counts the entities matching the criteria, reading at most
+     * <code>max</code> identifiers.  Unlike {@link #countMatching(org.opennms.core.criteria.Criteria)}
+     * the cost of this query is bounded by <code>max</code> rather than by
+     * the number of matching rows.
+     *
+     * @param criteria the criteria to match
+     * @param max the maximum value to count up to
+     * @return the number of matching entities, capped at <code>max</code>
+     */
+    public int countMatchingUpTo(final org.opennms.core.criteria.Criteria criteria, final int max) {
+        final HibernateCallback<Integer> callback = new HibernateCallback<Integer>() {
+            @Override
+            public Integer doInHibernate(final Session session) throws HibernateException, SQLException {
+                final Criteria hibernateCriteria = m_criteriaConverter.convertForCount(criteria, session);
+                hibernateCriteria.setProjection(Projections.id());
+                hibernateCriteria.setFirstResult(0);
+                hibernateCriteria.setMaxResults(max);
+                return hibernateCriteria.list().size();
+            }
+        };
+        Integer retval = getHibernateTemplate().execute(callback);
+        return retval == null ? 0 : retval.intValue();
+    }
+
+    /**
+     * Returns the distinct identifiers of the entities matching the
+     * criteria without loading the entities themselves.  Ordering, limit
+     * and offset are honored, so the identifiers are those of the entities
+     * {@link #findMatching(org.opennms.core.criteria.Criteria)} would return.
+     *
+     * @param criteria the criteria to match
+     * @return the matching identifiers
+     */
+    protected List<K> findMatchingIds(final org.opennms.core.criteria.Criteria criteria) {
+        final HibernateCallback<List<K>> callback = new HibernateCallback<List<K>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public List<K> doInHibernate(final Session session) throws HibernateException, SQLException {
+                final Criteria hibernateCriteria = m_criteriaConverter.convert(criteria, session);
+                hibernateCriteria.setProjection(Projections.id());
+                // joins on collections can return the same id more than once
+                return new ArrayList<K>(new LinkedHashSet<K>(hibernateCriteria.list()));
+            }
+        };
+        return getHibernateTemplate().execute(callback);
+    }
+
+    /**
+     * Executes a native SQL update for a set of identifiers, in batches so
+     * that the <code>IN</code> list stays reasonably sized.  The statement
+     * must contain an <code>:ids</code> parameter; any other named
+     * parameters are taken from the map.  Pending changes in the session
+     * are flushed first since the update bypasses it.
+     *
+     * @param sql the SQL statement to execute
+     * @param ids the identifiers to bind to <code>:ids</code>
+     * @param parameters additional named parameters, may be null
+     * @return the total number of rows affected
+     */
+    protected int bulkUpdateByIds(final String sql, final List<K> ids, final Map<String, Object> parameters) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        final HibernateCallback<Integer> callback = new HibernateCallback<Integer>() {
+            @Override
+            public Integer doInHibernate(final Session session) throws HibernateException, SQLException {
+                session.flush();
+                int count = 0;
+                for (int i = 0; i < ids.size(); i += BULK_UPDATE_BATCH_SIZE) {
+                    final SQLQuery query = session.createSQLQuery(sql);
+                    query.setParameterList("ids", ids.subList(i, Math.min(i + BULK_UPDATE_BATCH_SIZE, ids.size())));
+                    if (parameters != null) {
+                        for (final Map.Entry<String, Object> entry : parameters.entrySet()) {
+                            query.setParameter(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    count += query.executeUpdate();
+                }
+                return count;
+            }
+        };
+        Integer retval = getHibernateTemplate().execute(callback);
+        return retval == null ? 0 : retval.intValue();
+    }
+
+    /**
+     * Refreshes the entities with the given identifiers that are already
+     * loaded in the current session, so that they reflect changes made by
+     * {@link #bulkUpdateByIds(String, List, Map)}.
+     *
+     * @param ids the identifiers of the updated entities
+     */
+    protected void refreshLoaded(final Collection<K> ids) {
+        getHibernateTemplate().execute(new HibernateCallback<Object>() {
+            @Override
+            public Object doInHibernate(final Session session) throws HibernateException, SQLException {
+                final Set<K> idSet = new HashSet<K>(ids);
+                for (final Object o : new ArrayList<Object>(session.getStatistics().getEntityKeys())) {
+                    final EntityKey key = (EntityKey)o;
+                    if (m_entityClass.getName().equals(key.getEntityName()) && idSet.contains(key.getIdentifier())) {
+                        session.refresh(session.load(m_entityClass, key.getIdentifier()));
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
     /** {@inheritDoc} */
     @SuppressWarnings("unchecked")
     public List<T> findMatching(final OnmsCriteria onmsCrit) throws DataAccessException {
@@ -29,12 +29,21 @@
 package org.opennms.netmgt.dao.hibernate;
 
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.opennms.core.criteria.Criteria;
 import org.opennms.netmgt.dao.api.AlarmDao;
+import org.opennms.netmgt.model.AckAction;
+import org.opennms.netmgt.model.AckType;
 import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsSeverity;
 import org.opennms.netmgt.model.alarm.AlarmSummary;
 import org.opennms.netmgt.model.topology.EdgeAlarmStatusSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * <p>AlarmDaoHibernate class.</p>
@@ -43,6 +52,9 @@ import org.opennms.netmgt.model.topology.EdgeAlarmStatusSummary;
  * @version $Id: $
  */
 public class AlarmDaoHibernate extends AbstractDaoHibernate<OnmsAlarm, Integer> implements AlarmDao {
+    private static final Logger LOG = LoggerFactory.getLogger(AlarmDaoHibernate.class);
+
+    private static final String RELATED_NOTIFICATIONS = "eventId IN (SELECT eventId FROM events WHERE alarmId IN (:ids))";
 
 	public AlarmDaoHibernate() {
 		super(OnmsAlarm.class);
@@ -147,4 +159,67 @@ public class AlarmDaoHibernate extends AbstractDaoHibernate<OnmsAlarm, Integer>
         sql.append("ORDER BY min(alarm.lastEventTime) DESC, node.label ASC");
         return findObjects(AlarmSummary.class, sql.toString());
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public int acknowledgeMatching(final Criteria criteria, final AckAction action, final String user) {
+        final String alarmSql;
+        final String notificationSql;
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        switch (action) {
+        case ACKNOWLEDGE:
+            alarmSql = "UPDATE alarms SET alarmAckUser = :user, alarmAckTime = :now WHERE alarmId IN (:ids) AND (alarmAckUser IS NULL OR alarmAckTime IS NULL)";
+            notificationSql = "UPDATE notifications SET answeredBy = :user, respondTime = :now WHERE (answeredBy IS NULL OR respondTime IS NULL) AND " + RELATED_NOTIFICATIONS;
+            break;
+        case UNACKNOWLEDGE:
+            alarmSql = "UPDATE alarms SET alarmAckUser = NULL, alarmAckTime = NULL WHERE alarmId IN (:ids) AND (alarmAckUser IS NOT NULL OR alarmAckTime IS NOT NULL)";
+            notificationSql = "UPDATE notifications SET answeredBy = NULL, respondTime = NULL WHERE (answeredBy IS NOT NULL OR respondTime IS NOT NULL) AND " + RELATED_NOTIFICATIONS;
+            break;
+        case CLEAR:
+            alarmSql = "UPDATE alarms SET severity = :cleared WHERE alarmId IN (:ids) AND severity <> :cleared";
+            notificationSql = "UPDATE notifications SET answeredBy = :user, respondTime = :now WHERE " + RELATED_NOTIFICATIONS;
+            parameters.put("cleared", OnmsSeverity.CLEARED.getId());
+            break;
+        case ESCALATE:
+            // escalating a notification does nothing, see OnmsNotification.escalate()
+            alarmSql = "UPDATE alarms SET severity = severity + 1 WHERE alarmId IN (:ids) AND severity < :critical";
+            notificationSql = null;
+            parameters.put("critical", OnmsSeverity.CRITICAL.getId());
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported acknowledgment action: " + action);
+        }
+
+        final long start = System.currentTimeMillis();
+        final List<Integer> ids = findMatchingIds(criteria);
+        final long selected = System.currentTimeMillis();
+
+        final Date now = new Date();
+        final Map<String, Object> userParameters = new HashMap<String, Object>();
+        userParameters.put("user", user);
+        userParameters.put("now", now);
+
+        if (alarmSql.contains(":user")) {
+            parameters.putAll(userParameters);
+        }
+        final int count = bulkUpdateByIds(alarmSql, ids, parameters);
+        int notifications = 0;
+        if (notificationSql != null) {
+            notifications = bulkUpdateByIds(notificationSql, ids, notificationSql.contains(":user") ? userParameters : null);
+        }
+
+        // record the acknowledgments, as processAck() does for each alarm
+        final Map<String, Object> ackParameters = new HashMap<String, Object>(userParameters);
+        ackParameters.put("ackType", AckType.ALARM.ordinal());
+        ackParameters.put("ackAction", action.ordinal());
+        bulkUpdateByIds("INSERT INTO acks (id, ackTime, ackUser, ackType, ackAction, refId) "
+                + "SELECT nextval('opennmsNxtId'), :now, :user, :ackType, :ackAction, alarmId FROM alarms WHERE alarmId IN (:ids)", ids, ackParameters);
+
+        refreshLoaded(ids);
+
+        final long end = System.currentTimeMillis();
+        LOG.info("acknowledgeMatching: {} by {}: {} matching alarms, {} alarms and {} notifications changed in {}ms ({}ms selecting)",
+                 action, user, ids.size(), count, notifications, end - start, selected - start);
+        return count;
+    }
 }
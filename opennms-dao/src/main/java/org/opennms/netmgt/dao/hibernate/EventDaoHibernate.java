@@ -30,21 +30,141 @@ package org.opennms.netmgt.dao.hibernate;
 
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.restrictions.AllRestriction;
+import org.opennms.core.criteria.restrictions.AttributeValueRestriction;
+import org.opennms.core.criteria.restrictions.BetweenRestriction;
+import org.opennms.core.criteria.restrictions.EqRestriction;
+import org.opennms.core.criteria.restrictions.GeRestriction;
+import org.opennms.core.criteria.restrictions.GtRestriction;
+import org.opennms.core.criteria.restrictions.LeRestriction;
+import org.opennms.core.criteria.restrictions.LtRestriction;
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.SqlRestriction;
 import org.opennms.netmgt.dao.api.EventDao;
+import org.opennms.netmgt.dao.api.ScrollCallback;
+import org.opennms.netmgt.model.AckAction;
 import org.opennms.netmgt.model.OnmsEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.orm.hibernate3.HibernateCallback;
 
 import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
 
 public class EventDaoHibernate extends AbstractDaoHibernate<OnmsEvent, Integer> implements EventDao {
+    private static final Logger LOG = LoggerFactory.getLogger(EventDaoHibernate.class);
 
 	public EventDaoHibernate() {
 		super(OnmsEvent.class);
 	}
 
+    /** {@inheritDoc} */
+    @Override
+    public List<OnmsEvent> findMatching(final Criteria criteria) {
+        return super.findMatching(withPartitionBounds(criteria));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int countMatching(final Criteria criteria) throws DataAccessException {
+        return super.countMatching(withPartitionBounds(criteria));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void scrollMatching(final Criteria criteria, final ScrollCallback<OnmsEvent> callback) {
+        super.scrollMatching(withPartitionBounds(criteria), callback);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int countMatchingUpTo(final Criteria criteria, final int max) {
+        return super.countMatchingUpTo(withPartitionBounds(criteria), max);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected List<Integer> findMatchingIds(final Criteria criteria) {
+        return super.findMatchingIds(withPartitionBounds(criteria));
+    }
+
+    /**
+     * Repeats the bounds that the criteria place on <code>eventTime</code>
+     * as SQL literals.  Hibernate binds the original restrictions as
+     * parameters, and once the JDBC driver switches to a server-side
+     * prepared statement the planner may choose a generic plan that cannot
+     * exclude any event partition; constant bounds keep partition pruning
+     * working for every plan.  Only restrictions that must hold for every
+     * row (top-level or nested in "all" restrictions) are considered.
+     *
+     * @param criteria the criteria to match
+     * @return a copy of the criteria with the constant bounds added, or the
+     *   criteria itself if they do not bound <code>eventTime</code>
+     */
+    static Criteria withPartitionBounds(final Criteria criteria) {
+        final Date[] bounds = new Date[2];
+        collectEventTimeBounds(criteria.getRestrictions(), bounds);
+        if (bounds[0] == null && bounds[1] == null) {
+            return criteria;
+        }
+        final Criteria bounded = criteria.clone();
+        if (bounds[0] != null) {
+            bounded.addRestriction(new SqlRestriction("{alias}.eventTime >= " + toTimestampLiteral(bounds[0])));
+        }
+        if (bounds[1] != null) {
+            bounded.addRestriction(new SqlRestriction("{alias}.eventTime <= " + toTimestampLiteral(bounds[1])));
+        }
+        return bounded;
+    }
+
+    private static void collectEventTimeBounds(final Collection<Restriction> restrictions, final Date[] bounds) {
+        for (final Restriction restriction : restrictions) {
+            if (restriction instanceof AllRestriction) {
+                collectEventTimeBounds(((AllRestriction)restriction).getRestrictions(), bounds);
+            } else if (restriction instanceof AttributeValueRestriction && "eventTime".equals(((AttributeValueRestriction)restriction).getAttribute())) {
+                final AttributeValueRestriction attributeRestriction = (AttributeValueRestriction)restriction;
+                if (restriction instanceof BetweenRestriction) {
+                    lowerBound(bounds, ((BetweenRestriction)restriction).getBegin());
+                    upperBound(bounds, ((BetweenRestriction)restriction).getEnd());
+                } else if (restriction instanceof EqRestriction) {
+                    lowerBound(bounds, attributeRestriction.getValue());
+                    upperBound(bounds, attributeRestriction.getValue());
+                } else if (restriction instanceof GeRestriction || restriction instanceof GtRestriction) {
+                    lowerBound(bounds, attributeRestriction.getValue());
+                } else if (restriction instanceof LeRestriction || restriction instanceof LtRestriction) {
+                    upperBound(bounds, attributeRestriction.getValue());
+                }
+            }
+        }
+    }
+
+    private static void lowerBound(final Date[] bounds, final Object value) {
+        if (value instanceof Date && (bounds[0] == null || ((Date)value).after(bounds[0]))) {
+            bounds[0] = new Date(((Date)value).getTime());
+        }
+    }
+
+    private static void upperBound(final Date[] bounds, final Object value) {
+        if (value instanceof Date && (bounds[1] == null || ((Date)value).before(bounds[1]))) {
+            bounds[1] = new Date(((Date)value).getTime());
+        }
+    }
+
+    private static String toTimestampLiteral(final Date date) {
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return "timestamptz '" + format.format(date) + "+00'";
+    }
+
     /** {@inheritDoc} */
         @Override
     public int deletePreviousEventsForAlarm(Integer id, OnmsEvent e) throws DataAccessException {
@@ -68,4 +188,31 @@ public class EventDaoHibernate extends AbstractDaoHibernate<OnmsEvent, Integer>
         });
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int acknowledgeMatching(final Criteria criteria, final AckAction action, final String user) {
+        final String sql;
+        final Map<String, Object> parameters = new HashMap<String, Object>();
+        switch (action) {
+        case ACKNOWLEDGE:
+            sql = "UPDATE events SET eventAckUser = :user, eventAckTime = :now WHERE eventId IN (:ids)";
+            parameters.put("user", user);
+            parameters.put("now", new Date());
+            break;
+        case UNACKNOWLEDGE:
+            sql = "UPDATE events SET eventAckUser = NULL, eventAckTime = NULL WHERE eventId IN (:ids) AND (eventAckUser IS NOT NULL OR eventAckTime IS NOT NULL)";
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported acknowledgment action for events: " + action);
+        }
+
+        final long start = System.currentTimeMillis();
+        final List<Integer> ids = findMatchingIds(criteria);
+        final long selected = System.currentTimeMillis();
+        final int count = bulkUpdateByIds(sql, ids, parameters);
+        refreshLoaded(ids);
+        final long end = System.currentTimeMillis();
+        LOG.info("acknowledgeMatching: {} by {}: {} events changed in {}ms ({}ms selecting)", action, user, count, end - start, selected - start);
+        return count;
+    }
 }
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.dao.hibernate;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.dao.api.IpInterfaceDao;
+import org.opennms.netmgt.events.api.AbstractInterfaceToNodeCache;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.Assert;
+
+/**
+ * {@link org.opennms.netmgt.events.api.InterfaceToNodeCache} backed by the
+ * ipInterface table. The bean makes itself the shared instance and
+ * registers its statistics with JMX.
+ */
+public class InterfaceToNodeCacheDaoImpl extends AbstractInterfaceToNodeCache implements InitializingBean, InterfaceToNodeCacheDaoImplMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InterfaceToNodeCacheDaoImpl.class);
+
+    private static final String OBJECT_NAME = "OpenNMS:Name=InterfaceToNodeCache";
+
+    @Autowired
+    private IpInterfaceDao m_ipInterfaceDao;
+
+    /** {@inheritDoc} */
+    @Override
+    protected Map<InetAddress, Integer> loadInterfaces() {
+        return m_ipInterfaceDao.getInterfacesForNodes();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isPrimaryInterface(final long nodeId, final InetAddress addr) {
+        final OnmsIpInterface intf = m_ipInterfaceDao.findByNodeIdAndIpAddress(Integer.valueOf((int) nodeId), InetAddressUtils.str(addr));
+        return intf != null && intf.isPrimary();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() {
+        Assert.state(m_ipInterfaceDao != null, "property ipInterfaceDao must be set");
+        setInstance(this);
+
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (final Exception e) {
+            LOG.warn("Unable to register {} with JMX", OBJECT_NAME, e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSize() {
+        return size();
+    }
+
+    public IpInterfaceDao getIpInterfaceDao() {
+        return m_ipInterfaceDao;
+    }
+
+    public void setIpInterfaceDao(final IpInterfaceDao ipInterfaceDao) {
+        m_ipInterfaceDao = ipInterfaceDao;
+    }
+}
@@ -36,6 +36,7 @@ import java.util.Map;
 import org.opennms.netmgt.dao.api.IpInterfaceDao;
 import org.opennms.netmgt.model.OnmsIpInterface;
 import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.PrimaryType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
@@ -129,23 +130,17 @@ public class IpInterfaceDaoHibernate extends AbstractDaoHibernate<OnmsIpInterfac
     public Map<InetAddress, Integer> getInterfacesForNodes() {
         Map<InetAddress, Integer> map = new HashMap<InetAddress, Integer>();
 
-        // Add all primary addresses first
+        // Primary addresses take precedence; other flagged addresses are only added if no node has them as primary.
         @SuppressWarnings("unchecked")
-        List<Object[]> l = (List<Object[]>)getHibernateTemplate().find("select distinct ipInterface.ipAddress, ipInterface.node.id from OnmsIpInterface as ipInterface where ipInterface.isSnmpPrimary = 'P'");
+        List<Object[]> l = (List<Object[]>)getHibernateTemplate().find("select distinct ipInterface.ipAddress, ipInterface.node.id, ipInterface.isSnmpPrimary from OnmsIpInterface as ipInterface");
         for (Object[] tuple : l) {
             InetAddress ip = (InetAddress) tuple[0];
             Integer nodeId = (Integer) tuple[1];
-            map.put(ip, nodeId);
-        }
-
-        // Add all non-primary addresses only if those addresses doesn't exist on the map.
-        @SuppressWarnings("unchecked")
-        List<Object[]> s = (List<Object[]>)getHibernateTemplate().find("select distinct ipInterface.ipAddress, ipInterface.node.id from OnmsIpInterface as ipInterface where ipInterface.isSnmpPrimary != 'P'");
-        for (Object[] tuple : s) {
-            InetAddress ip = (InetAddress) tuple[0];
-            Integer nodeId = (Integer) tuple[1];
-            if (!map.containsKey(ip))
+            if (PrimaryType.PRIMARY.equals(tuple[2])) {
+                map.put(ip, nodeId);
+            } else if (tuple[2] != null && !map.containsKey(ip)) {
                 map.put(ip, nodeId);
+            }
         }
 
         return map;
@@ -64,6 +64,7 @@ import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.model.OnmsResource;
 import org.opennms.netmgt.model.OnmsResourceType;
 import org.opennms.netmgt.model.ResourceTypeUtils;
+import org.opennms.netmgt.rrd.RrdDirectoryIndex;
 import org.opennms.netmgt.rrd.RrdFileConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -566,7 +567,7 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
 
         // Get all of the non-numeric directory names in the RRD directory; these
         // are the names of the domains that have performance data
-        File[] domainDirs = snmp.listFiles(RrdFileConstants.DOMAIN_DIRECTORY_FILTER);
+        File[] domainDirs = RrdDirectoryIndex.listFiles(snmp, RrdFileConstants.DOMAIN_DIRECTORY_FILTER);
 
         if (domainDirs != null && domainDirs.length > 0) {
             for (File domainDir : domainDirs) {
@@ -651,7 +652,7 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
         Set<Integer> nodes = new TreeSet<Integer>();
         
         File directory = new File(getRrdDirectory(), ResourceTypeUtils.SNMP_DIRECTORY);
-        File[] nodeDirs = directory.listFiles(RrdFileConstants.NODE_DIRECTORY_FILTER);
+        File[] nodeDirs = RrdDirectoryIndex.listFiles(directory, RrdFileConstants.NODE_DIRECTORY_FILTER);
 
         if (nodeDirs == null || nodeDirs.length == 0) {
             return nodes;
@@ -678,10 +679,10 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
        Set<String> nodeSourceDirectories = new HashSet<String>();
        File snmpDir = new File(getRrdDirectory(), ResourceTypeUtils.SNMP_DIRECTORY);
        File forSrcDir = new File(snmpDir, ResourceTypeUtils.FOREIGN_SOURCE_DIRECTORY);
-       File[] sourceDirs = forSrcDir.listFiles(); // TODO There is no need to filter by RrdFileConstants.SOURCE_DIRECTORY_FILTER
+       File[] sourceDirs = RrdDirectoryIndex.listFiles(forSrcDir, null); // TODO There is no need to filter by RrdFileConstants.SOURCE_DIRECTORY_FILTER
        if (sourceDirs != null && sourceDirs.length > 0) {
            for (File sourceDir : sourceDirs) {
-               File [] ids = sourceDir.listFiles(RrdFileConstants.NODESOURCE_DIRECTORY_FILTER);
+               File [] ids = RrdDirectoryIndex.listFiles(sourceDir, RrdFileConstants.NODESOURCE_DIRECTORY_FILTER);
                for (File id : ids) {
                    nodeSourceDirectories.add(sourceDir.getName() + ":" + id.getName());
                }
@@ -695,7 +696,7 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
     private static Set<String> findChildrenMatchingFilter(File directory, FileFilter filter) {
         Set<String> children = new HashSet<String>();
         
-        File[] nodeDirs = directory.listFiles(filter);
+        File[] nodeDirs = RrdDirectoryIndex.listFiles(directory, filter);
 
         if (nodeDirs == null || nodeDirs.length == 0) {
             return children;
@@ -719,13 +720,13 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
     private static Set<String> findChildrenChildrenMatchingFilter(File directory, FileFilter filter) {
         Set<String> children = new HashSet<String>();
         
-        File[] locationMonitorDirs = directory.listFiles();
+        File[] locationMonitorDirs = RrdDirectoryIndex.listFiles(directory, null);
         if (locationMonitorDirs == null) {
             return children;
         }
         
         for (File locationMonitorDir : locationMonitorDirs) {
-            File[] intfDirs = locationMonitorDir.listFiles(filter);
+            File[] intfDirs = RrdDirectoryIndex.listFiles(locationMonitorDir, filter);
 
             if (intfDirs == null || intfDirs.length == 0) {
                 continue;
@@ -50,6 +50,7 @@ import org.opennms.netmgt.model.OnmsResource;
 import org.opennms.netmgt.model.OnmsResourceType;
 import org.opennms.netmgt.model.ResourceTypeUtils;
 import org.opennms.netmgt.model.StringPropertyAttribute;
+import org.opennms.netmgt.rrd.RrdDirectoryIndex;
 import org.opennms.netmgt.rrd.RrdFileConstants;
 import org.springframework.orm.ObjectRetrievalFailureException;
 
@@ -193,7 +194,7 @@ public class GenericIndexResourceType implements OnmsResourceType {
         List<String> indexes = new LinkedList<String>();
         
         File[] indexDirs =
-            nodeDir.listFiles(RrdFileConstants.INTERFACE_DIRECTORY_FILTER);
+            RrdDirectoryIndex.listFiles(nodeDir, RrdFileConstants.INTERFACE_DIRECTORY_FILTER);
 
         if (indexDirs == null) {
             return indexes;
@@ -218,7 +219,7 @@ public class GenericIndexResourceType implements OnmsResourceType {
         List<String> indexes = new LinkedList<String>();
 
         File[] indexDirs =
-            dir.listFiles(RrdFileConstants.INTERFACE_DIRECTORY_FILTER);
+            RrdDirectoryIndex.listFiles(dir, RrdFileConstants.INTERFACE_DIRECTORY_FILTER);
 
         if (indexDirs == null) {
             return indexes;
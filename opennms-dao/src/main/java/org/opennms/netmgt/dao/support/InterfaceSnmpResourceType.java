@@ -52,6 +52,7 @@ import org.opennms.netmgt.model.OnmsResource;
 import org.opennms.netmgt.model.OnmsResourceType;
 import org.opennms.netmgt.model.OnmsSnmpInterface;
 import org.opennms.netmgt.model.ResourceTypeUtils;
+import org.opennms.netmgt.rrd.RrdDirectoryIndex;
 import org.opennms.netmgt.rrd.RrdFileConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -112,7 +113,7 @@ public class InterfaceSnmpResourceType implements OnmsResourceType {
             return false;
         }
         
-        return parent.listFiles(RrdFileConstants.INTERFACE_DIRECTORY_FILTER).length > 0; 
+        return RrdDirectoryIndex.listFiles(parent, RrdFileConstants.INTERFACE_DIRECTORY_FILTER).length > 0; 
     }
     
     private File getParentResourceDirectory(String parentResource, boolean verify) {
@@ -185,7 +186,7 @@ public class InterfaceSnmpResourceType implements OnmsResourceType {
     }
 
     private List<OnmsResource> populateResourceList(File parent, File relPath, OnmsNode node, Boolean isForeign) {
-        final File[] intfDirs = parent.listFiles(RrdFileConstants.INTERFACE_DIRECTORY_FILTER);
+        final File[] intfDirs = RrdDirectoryIndex.listFiles(parent, RrdFileConstants.INTERFACE_DIRECTORY_FILTER);
         return populateResourceList(parent, relPath, intfDirs, node, isForeign);
     }
 
@@ -415,7 +416,7 @@ public class InterfaceSnmpResourceType implements OnmsResourceType {
             throw new IllegalArgumentException("No such directory: " + domainDir);
         }
 
-        File[] intfDirs = domainDir.listFiles(RrdFileConstants.DOMAIN_INTERFACE_DIRECTORY_FILTER);
+        File[] intfDirs = RrdDirectoryIndex.listFiles(domainDir, RrdFileConstants.DOMAIN_INTERFACE_DIRECTORY_FILTER);
 
         if (intfDirs != null && intfDirs.length > 0) {
             intfs.ensureCapacity(intfDirs.length);
@@ -43,6 +43,7 @@ import org.junit.runner.RunWith;
 import org.opennms.core.criteria.Alias;
 import org.opennms.core.criteria.Alias.JoinType;
 import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.core.criteria.Order;
 import org.opennms.core.criteria.restrictions.EqRestriction;
 import org.opennms.core.spring.BeanUtils;
@@ -52,6 +53,7 @@ import org.opennms.netmgt.dao.api.AlarmDao;
 import org.opennms.netmgt.dao.api.DistPollerDao;
 import org.opennms.netmgt.dao.api.EventDao;
 import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.model.AckAction;
 import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.OnmsEvent;
 import org.opennms.netmgt.model.OnmsNode;
@@ -326,4 +328,27 @@ public class AlarmDaoTest implements InitializingBean {
             }));
             m_alarmDao.findMatching(criteria);
         }
+
+    @Test
+    @Transactional
+    public void testAcknowledgeMatchingHonorsLimit() {
+        final OnmsNode node = m_nodeDao.findAll().iterator().next();
+        for (int i = 0; i < 3; i++) {
+            final OnmsAlarm alarm = new OnmsAlarm();
+            alarm.setNode(node);
+            alarm.setUei("uei://org/opennms/test/acknowledgeMatching");
+            alarm.setSeverityId(new Integer(5));
+            alarm.setCounter(1);
+            alarm.setDistPoller(m_distPollerDao.load("localhost"));
+            m_alarmDao.save(alarm);
+        }
+        m_alarmDao.flush();
+
+        final CriteriaBuilder builder = new CriteriaBuilder(OnmsAlarm.class).eq("uei", "uei://org/opennms/test/acknowledgeMatching").orderBy("id").asc();
+        assertEquals(2, m_alarmDao.acknowledgeMatching(builder.limit(2).toCriteria(), AckAction.ACKNOWLEDGE, "admin"));
+
+        // only the alarm outside of the first page is left to acknowledge
+        assertEquals(1, m_alarmDao.acknowledgeMatching(builder.limit(0).toCriteria(), AckAction.ACKNOWLEDGE, "admin"));
+        assertEquals(0, m_alarmDao.acknowledgeMatching(builder.toCriteria(), AckAction.ACKNOWLEDGE, "admin"));
+    }
 }
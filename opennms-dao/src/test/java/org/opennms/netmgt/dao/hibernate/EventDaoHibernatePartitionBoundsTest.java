@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.dao.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
+import org.opennms.core.criteria.restrictions.SqlRestriction;
+import org.opennms.netmgt.model.OnmsEvent;
+
+public class EventDaoHibernatePartitionBoundsTest {
+    // 2014-03-01 12:00:00 UTC and 2014-03-02 06:30:00.250 UTC
+    private static final Date FROM = new Date(1393675200000L);
+    private static final Date TO = new Date(1393741800250L);
+
+    @Test
+    public void testNoTimeRestriction() {
+        final Criteria criteria = new CriteriaBuilder(OnmsEvent.class).eq("eventUei", "uei.opennms.org/test").toCriteria();
+        assertSame(criteria, EventDaoHibernate.withPartitionBounds(criteria));
+    }
+
+    @Test
+    public void testRange() {
+        final Criteria criteria = new CriteriaBuilder(OnmsEvent.class).ge("eventTime", FROM).lt("eventTime", TO).toCriteria();
+        final Criteria bounded = EventDaoHibernate.withPartitionBounds(criteria);
+
+        assertEquals(2, criteria.getRestrictions().size());
+        assertEquals(4, bounded.getRestrictions().size());
+        final List<String> sql = getSql(bounded);
+        assertEquals("{alias}.eventTime >= timestamptz '2014-03-01 12:00:00.000+00'", sql.get(0));
+        assertEquals("{alias}.eventTime <= timestamptz '2014-03-02 06:30:00.250+00'", sql.get(1));
+    }
+
+    @Test
+    public void testTightestBoundsInsideAll() {
+        final Criteria criteria = new CriteriaBuilder(OnmsEvent.class)
+            .between("eventTime", new Date(FROM.getTime() - 1000), TO)
+            .and(Restrictions.gt("eventTime", FROM), Restrictions.eq("eventSeverity", 5))
+            .toCriteria();
+        final List<String> sql = getSql(EventDaoHibernate.withPartitionBounds(criteria));
+        assertEquals(2, sql.size());
+        assertEquals("{alias}.eventTime >= timestamptz '2014-03-01 12:00:00.000+00'", sql.get(0));
+        assertEquals("{alias}.eventTime <= timestamptz '2014-03-02 06:30:00.250+00'", sql.get(1));
+    }
+
+    @Test
+    public void testAnyIsIgnored() {
+        final Criteria criteria = new CriteriaBuilder(OnmsEvent.class)
+            .or(Restrictions.ge("eventTime", FROM), Restrictions.eq("eventSeverity", 5))
+            .toCriteria();
+        assertSame(criteria, EventDaoHibernate.withPartitionBounds(criteria));
+    }
+
+    private static List<String> getSql(final Criteria criteria) {
+        final List<String> sql = new ArrayList<String>();
+        for (final Restriction restriction : criteria.getRestrictions()) {
+            if (restriction instanceof SqlRestriction) {
+                sql.add(((SqlRestriction)restriction).getAttribute());
+            }
+        }
+        return sql;
+    }
+}
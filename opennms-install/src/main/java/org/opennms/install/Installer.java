@@ -117,6 +117,8 @@ public class Installer {
     String m_library_search_path = null;
     String m_fix_constraint_name = null;
     boolean m_fix_constraint_remove_rows = false;
+    String m_partition_events_interval = null;
+    int m_partition_events_ahead = 3;
 
     protected Options options = new Options();
     protected CommandLine m_commandLine;
@@ -150,7 +152,7 @@ public class Installer {
         loadProperties();
         parseArguments(argv);
 
-        final boolean doDatabase = (m_update_database || m_do_inserts || m_update_iplike || m_update_unicode || m_fix_constraint);
+        final boolean doDatabase = (m_update_database || m_do_inserts || m_update_iplike || m_update_unicode || m_fix_constraint || m_partition_events_interval != null);
 
         if (!doDatabase && m_tomcat_conf == null && !m_install_webapp && m_library_search_path == null) {
             usage(options, m_commandLine, "Nothing to do.  Use -h for help.", null);
@@ -276,6 +278,10 @@ public class Installer {
             System.out.println("WARNING: the -U option is deprecated, it does nothing now");
         }
 
+        if (m_partition_events_interval != null) {
+            m_installerDb.partitionEventsTable(m_partition_events_interval, m_partition_events_ahead);
+        }
+
         if (m_do_vacuum) {
             m_installerDb.vacuumDatabase(m_do_full_vacuum);
         }
@@ -517,6 +523,8 @@ public class Installer {
                           "drop rows that match the constraint specified in -C, instead of fixing them");
         options.addOption("e", "extended-repairs", false,
                           "enable extended repairs of old schemas");
+        options.addOption("E", "partition-events", true,
+                          "partition the events table by time (daily or weekly)");
         // tomcat-related options
         options.addOption("y", "do-webapp", false,
                           "install web application (see '-w')");
@@ -593,6 +601,7 @@ public class Installer {
         m_tomcat_conf = m_commandLine.getOptionValue("T", m_tomcat_conf);
         m_update_unicode = m_commandLine.hasOption("U");
         m_do_vacuum = m_commandLine.hasOption("v");
+        m_partition_events_interval = m_commandLine.getOptionValue("E", m_partition_events_interval);
         m_webappdir = m_commandLine.getOptionValue("w", m_webappdir);
         m_installerDb.setDebug(m_commandLine.hasOption("x"));
         if (m_commandLine.hasOption("x")) {
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cache.access.EntityRegionAccessStrategy;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.engine.ExecuteUpdateResultCheckStyle;
+import org.hibernate.engine.Mapping;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entity persister for tables whose inserts may be redirected by a
+ * <code>BEFORE INSERT</code> trigger into a child partition.  In that case
+ * PostgreSQL reports zero affected rows for the insert on the parent table,
+ * so the row count check is disabled for inserts, but only when the table
+ * actually has partitions when the session factory is built.  Updates and
+ * deletes are always checked since they operate on the whole inheritance
+ * tree.
+ */
+public class PartitionedEntityPersister extends SingleTableEntityPersister {
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedEntityPersister.class);
+
+    public PartitionedEntityPersister(final PersistentClass persistentClass, final EntityRegionAccessStrategy cacheAccessStrategy, final SessionFactoryImplementor factory, final Mapping mapping) throws HibernateException {
+        super(persistentClass, cacheAccessStrategy, factory, mapping);
+        if (isPartitioned(factory.getConnectionProvider(), getTableName())) {
+            LOG.info("Table {} is partitioned, not checking the row count of inserts", getTableName());
+            Arrays.fill(insertResultCheckStyles, ExecuteUpdateResultCheckStyle.NONE);
+        }
+    }
+
+    private static boolean isPartitioned(final ConnectionProvider connectionProvider, final String tableName) {
+        if (connectionProvider == null) {
+            return false;
+        }
+        try {
+            final Connection conn = connectionProvider.getConnection();
+            try {
+                final PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhparent WHERE c.relname = ?");
+                try {
+                    ps.setString(1, tableName.toLowerCase());
+                    final ResultSet rs = ps.executeQuery();
+                    final boolean partitioned = rs.next();
+                    rs.close();
+                    return partitioned;
+                } finally {
+                    ps.close();
+                }
+            } finally {
+                connectionProvider.closeConnection(conn);
+            }
+        } catch (final SQLException e) {
+            LOG.warn("Unable to determine whether table {} is partitioned, keeping the insert row count check", tableName, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,717 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the directories below the RRD repository, recording for each
+ * directory its sub-directories and whether it holds any RRD files.
+ *
+ * <p>The resource DAO answers its directory filter and listing questions
+ * from this index instead of crawling the repository with
+ * {@link File#listFiles()}, which gets expensive on large repositories
+ * (especially over NFS). The index is kept in memory, persisted to a local
+ * file so it survives restarts, updated by {@link RrdUtils} whenever an RRD
+ * file is created, and reconciled in the background against the file system.
+ * Reconciliation only re-lists directories whose modification time changed
+ * since the previous pass.</p>
+ *
+ * <p>The index is disabled unless the
+ * <code>org.opennms.rrd.directoryIndex</code> system property is set to
+ * <code>true</code>. Until an index has been loaded or built, callers fall back
+ * to crawling the file system.</p>
+ */
+public class RrdDirectoryIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(RrdDirectoryIndex.class);
+
+    /** System property that enables the index. */
+    public static final String ENABLED_PROPERTY = "org.opennms.rrd.directoryIndex";
+
+    /** System property with the location of the index file. */
+    public static final String FILE_PROPERTY = "org.opennms.rrd.directoryIndex.file";
+
+    /** System property with the reconciliation interval in milliseconds. */
+    public static final String INTERVAL_PROPERTY = "org.opennms.rrd.directoryIndex.reconcileInterval";
+
+    private static final long DEFAULT_INTERVAL = 15 * 60 * 1000L;
+
+    /** Modification time recorded for directories that must be re-listed on the next pass. */
+    private static final long UNKNOWN = -1L;
+
+    private static volatile boolean s_initialized = false;
+    private static RrdDirectoryIndex s_instance;
+
+    private final File m_root;
+    private final String m_rootPath;
+    private final File m_indexFile;
+    private final String m_rrdSuffix;
+    private final ConcurrentMap<String, Entry> m_entries = new ConcurrentHashMap<String, Entry>();
+    private final Object m_fileLock = new Object();
+    private volatile boolean m_ready = false;
+    private Timer m_timer;
+
+    /**
+     * A single indexed directory. The children set is copied on write so
+     * readers never need to lock.
+     */
+    private static final class Entry {
+        private long m_lastModified;
+        private boolean m_hasRrdFiles;
+        private volatile Set<String> m_children;
+        private int m_modifications = 0;
+
+        private Entry(final long lastModified, final boolean hasRrdFiles, final Set<String> children) {
+            m_lastModified = lastModified;
+            m_hasRrdFiles = hasRrdFiles;
+            m_children = children;
+        }
+
+        public synchronized long getLastModified() {
+            return m_lastModified;
+        }
+
+        public synchronized boolean hasRrdFiles() {
+            return m_hasRrdFiles;
+        }
+
+        public Set<String> getChildren() {
+            return m_children;
+        }
+
+        public synchronized int getModifications() {
+            return m_modifications;
+        }
+
+        /**
+         * @return true if the entry did not know about RRD files before
+         */
+        public synchronized boolean markRrdFiles() {
+            if (m_hasRrdFiles) {
+                return false;
+            }
+            m_hasRrdFiles = true;
+            m_lastModified = UNKNOWN;
+            m_modifications++;
+            return true;
+        }
+
+        public synchronized void addChild(final String name, final boolean invalidate) {
+            if (m_children.contains(name)) {
+                return;
+            }
+            final Set<String> children = new HashSet<String>(m_children);
+            children.add(name);
+            m_children = Collections.unmodifiableSet(children);
+            if (invalidate) {
+                m_lastModified = UNKNOWN;
+                m_modifications++;
+            }
+        }
+
+        public synchronized void removeChild(final String name) {
+            if (!m_children.contains(name)) {
+                return;
+            }
+            final Set<String> children = new HashSet<String>(m_children);
+            children.remove(name);
+            m_children = Collections.unmodifiableSet(children);
+        }
+
+        public synchronized void load(final long lastModified, final boolean hasRrdFiles) {
+            m_lastModified = lastModified;
+            m_hasRrdFiles |= hasRrdFiles;
+        }
+
+        /**
+         * Applies the result of listing the directory. If the entry was
+         * modified since the listing started, the listing is merged instead so
+         * that concurrent RRD creations are not lost.
+         */
+        public synchronized void update(final long lastModified, final boolean hasRrdFiles, final Set<String> children, final int modifications) {
+            if (m_modifications == modifications) {
+                m_lastModified = lastModified;
+                m_hasRrdFiles = hasRrdFiles;
+                m_children = Collections.unmodifiableSet(children);
+            } else {
+                m_hasRrdFiles |= hasRrdFiles;
+                children.addAll(m_children);
+                m_children = Collections.unmodifiableSet(children);
+            }
+        }
+    }
+
+    /**
+     * <p>Constructor for RrdDirectoryIndex.</p>
+     *
+     * @param root the RRD repository directory
+     * @param indexFile the file the index is persisted to
+     * @param rrdSuffix the file name suffix of RRD files
+     */
+    public RrdDirectoryIndex(final File root, final File indexFile, final String rrdSuffix) {
+        m_root = root;
+        m_rootPath = root.getAbsolutePath();
+        m_indexFile = indexFile;
+        m_rrdSuffix = rrdSuffix;
+    }
+
+    /**
+     * Returns the shared index, or <code>null</code> if the index is not
+     * enabled. The first call loads the persisted index and starts the
+     * background reconciliation.
+     *
+     * @return the shared index or <code>null</code>
+     */
+    public static RrdDirectoryIndex getInstance() {
+        if (!s_initialized) {
+            synchronized (RrdDirectoryIndex.class) {
+                if (!s_initialized) {
+                    s_instance = createInstance();
+                    s_initialized = true;
+                }
+            }
+        }
+        return s_instance;
+    }
+
+    private static RrdDirectoryIndex createInstance() {
+        if (!Boolean.getBoolean(ENABLED_PROPERTY)) {
+            return null;
+        }
+
+        final String rrdBaseDir = System.getProperty("rrd.base.dir");
+        if (rrdBaseDir == null) {
+            LOG.warn("The RRD directory index is enabled but rrd.base.dir is not set; directories will be crawled instead.");
+            return null;
+        }
+
+        try {
+            String indexFile = System.getProperty(FILE_PROPERTY);
+            if (indexFile == null) {
+                indexFile = System.getProperty("opennms.home", ".") + File.separator + "data" + File.separator + "rrd-directory.index";
+            }
+
+            final RrdDirectoryIndex index = new RrdDirectoryIndex(new File(rrdBaseDir), new File(indexFile), RrdFileConstants.getRrdSuffix());
+            index.load();
+            index.start(Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL));
+            return index;
+        } catch (final Throwable e) {
+            LOG.warn("Unable to initialize the RRD directory index; directories will be crawled instead.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the shared index if it is enabled, ready and responsible for
+     * the given directory.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @return the index or <code>null</code> if the file system has to be consulted
+     */
+    public static RrdDirectoryIndex getIndexFor(final File directory) {
+        final RrdDirectoryIndex index = getInstance();
+        if (index != null && index.covers(directory)) {
+            return index;
+        }
+        return null;
+    }
+
+    /**
+     * Lists the sub-directories of a directory that match the filter, using
+     * the shared index when possible and the file system otherwise.
+     *
+     * @param directory the directory to list
+     * @param filter the filter to apply, may be <code>null</code>
+     * @return the matching files or <code>null</code> if the directory cannot be listed
+     */
+    public static File[] listFiles(final File directory, final FileFilter filter) {
+        final RrdDirectoryIndex index = getIndexFor(directory);
+        if (index != null) {
+            return index.listDirectories(directory, filter);
+        }
+        return directory.listFiles(filter);
+    }
+
+    /**
+     * Notifies the shared index, if any, that an RRD file was created in the
+     * given directory.
+     *
+     * @param directory a {@link java.lang.String} object.
+     */
+    public static void rrdFileCreated(final String directory) {
+        final RrdDirectoryIndex index = getInstance();
+        if (index != null) {
+            index.rrdCreated(new File(directory));
+        }
+    }
+
+    /**
+     * Notifies the shared index, if any, that a directory and everything
+     * below it was deleted.
+     *
+     * @param directory a {@link java.io.File} object.
+     */
+    public static void directoryDeleted(final File directory) {
+        final RrdDirectoryIndex index = getInstance();
+        if (index != null) {
+            index.removeDirectory(directory);
+        }
+    }
+
+    /**
+     * Whether the index has been loaded or built at least once.
+     *
+     * @return a boolean.
+     */
+    public boolean isReady() {
+        return m_ready;
+    }
+
+    /**
+     * Whether the index can answer questions about the given directory.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @return a boolean.
+     */
+    public boolean covers(final File directory) {
+        return m_ready && getKey(directory) != null;
+    }
+
+    /**
+     * Whether the directory directly contains RRD files.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @return a boolean.
+     */
+    public boolean hasRrdFiles(final File directory) {
+        final Entry entry = getEntry(directory);
+        return entry != null && entry.hasRrdFiles();
+    }
+
+    /**
+     * Whether any direct sub-directory of the directory contains RRD files.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @return a boolean.
+     */
+    public boolean hasChildWithRrdFiles(final File directory) {
+        final String key = getKey(directory);
+        final Entry entry = key == null ? null : m_entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+        for (final String child : entry.getChildren()) {
+            final Entry childEntry = m_entries.get(childKey(key, child));
+            if (childEntry != null && childEntry.hasRrdFiles()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the names of the direct sub-directories of the directory that
+     * contain RRD files.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @return a {@link java.util.Set} object.
+     */
+    public Set<String> getChildrenWithRrdFiles(final File directory) {
+        final String key = getKey(directory);
+        final Entry entry = key == null ? null : m_entries.get(key);
+        if (entry == null) {
+            return Collections.emptySet();
+        }
+        final Set<String> children = new TreeSet<String>();
+        for (final String child : entry.getChildren()) {
+            final Entry childEntry = m_entries.get(childKey(key, child));
+            if (childEntry != null && childEntry.hasRrdFiles()) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Lists the indexed sub-directories of the directory that match the filter.
+     *
+     * @param directory the directory to list
+     * @param filter the filter to apply, may be <code>null</code>
+     * @return the matching directories, empty if the directory is not indexed
+     */
+    public File[] listDirectories(final File directory, final FileFilter filter) {
+        final Entry entry = getEntry(directory);
+        if (entry == null) {
+            return new File[0];
+        }
+        final List<File> files = new ArrayList<File>();
+        for (final String child : entry.getChildren()) {
+            final File file = new File(directory, child);
+            if (filter == null || filter.accept(file)) {
+                files.add(file);
+            }
+        }
+        return files.toArray(new File[files.size()]);
+    }
+
+    /**
+     * Records that an RRD file exists in the given directory. This is cheap
+     * when the directory is already known to hold RRD files, so it is safe to
+     * call on every persist.
+     *
+     * @param directory a {@link java.io.File} object.
+     */
+    public void rrdCreated(final File directory) {
+        final String key = getKey(directory);
+        if (key == null) {
+            return;
+        }
+
+        final Entry existing = m_entries.get(key);
+        if (existing != null && existing.hasRrdFiles()) {
+            return;
+        }
+
+        if (getOrCreateEntry(key).markRrdFiles()) {
+            linkAncestors(key, true);
+            append(key);
+        }
+    }
+
+    /**
+     * Drops a deleted directory and all directories below it from the index,
+     * so they are no longer listed before the next reconciliation. The index
+     * file is rewritten, otherwise a restart would bring them back.
+     *
+     * @param directory a {@link java.io.File} object.
+     */
+    public void removeDirectory(final File directory) {
+        final String key = getKey(directory);
+        if (key == null || key.length() == 0) {
+            return;
+        }
+
+        final String prefix = key + '/';
+        for (final String existing : m_entries.keySet()) {
+            if (existing.equals(key) || existing.startsWith(prefix)) {
+                m_entries.remove(existing);
+            }
+        }
+
+        final int slash = key.lastIndexOf('/');
+        final Entry parent = m_entries.get(slash < 0 ? "" : key.substring(0, slash));
+        if (parent != null) {
+            parent.removeChild(key.substring(slash + 1));
+        }
+
+        // an index that is not ready yet is written by its first reconciliation
+        if (m_ready) {
+            store();
+        }
+    }
+
+    /**
+     * Walks the repository and re-lists every directory whose modification
+     * time differs from the indexed one. Directories that no longer exist are
+     * dropped from the index, and the index file is rewritten.
+     */
+    public void reconcile() {
+        final long start = System.currentTimeMillis();
+        final Set<String> seen = new HashSet<String>();
+        final Deque<String> pending = new ArrayDeque<String>();
+        int listed = 0;
+
+        pending.push("");
+        while (!pending.isEmpty()) {
+            final String key = pending.pop();
+            final File directory = getFile(key);
+            final long lastModified = directory.lastModified();
+            if (lastModified == 0L) {
+                // gone
+                continue;
+            }
+
+            Entry entry = m_entries.get(key);
+            if (entry == null || entry.getLastModified() != lastModified) {
+                final int modifications = entry == null ? 0 : entry.getModifications();
+                final String[] names = directory.list();
+                if (names == null) {
+                    continue;
+                }
+                boolean hasRrdFiles = false;
+                final Set<String> children = new HashSet<String>();
+                for (final String name : names) {
+                    if (name.endsWith(m_rrdSuffix)) {
+                        hasRrdFiles = true;
+                    } else if (new File(directory, name).isDirectory()) {
+                        children.add(name);
+                    }
+                }
+                entry = getOrCreateEntry(key);
+                entry.update(lastModified, hasRrdFiles, children, modifications);
+                listed++;
+            }
+
+            seen.add(key);
+            for (final String child : entry.getChildren()) {
+                pending.push(childKey(key, child));
+            }
+        }
+
+        // drop directories that disappeared, but keep the ones added while we were walking
+        for (final Map.Entry<String, Entry> e : m_entries.entrySet()) {
+            if (!seen.contains(e.getKey()) && (e.getValue().getLastModified() != UNKNOWN || !getFile(e.getKey()).isDirectory())) {
+                m_entries.remove(e.getKey(), e.getValue());
+            }
+        }
+
+        m_ready = true;
+        store();
+        LOG.debug("reconcile: checked {} directories and re-listed {} of them in {}ms", seen.size(), listed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Loads the persisted index, if one exists. The index is ready after a
+     * successful load; otherwise it becomes ready after the first
+     * reconciliation.
+     */
+    public void load() {
+        if (!m_indexFile.exists()) {
+            LOG.info("RRD directory index {} does not exist yet; it will be built in the background.", m_indexFile);
+            return;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(m_indexFile), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int first = line.indexOf('\t');
+                final int second = first < 0 ? -1 : line.indexOf('\t', first + 1);
+                if (second < 0) {
+                    continue;
+                }
+                final long lastModified = Long.parseLong(line.substring(0, first));
+                final boolean hasRrdFiles = "1".equals(line.substring(first + 1, second));
+                final String key = line.substring(second + 1);
+
+                getOrCreateEntry(key).load(lastModified, hasRrdFiles);
+                linkAncestors(key, false);
+            }
+            m_ready = true;
+            LOG.info("Loaded {} directories from RRD directory index {}", m_entries.size(), m_indexFile);
+        } catch (final IOException | NumberFormatException e) {
+            LOG.warn("Unable to read RRD directory index {}; it will be rebuilt in the background.", m_indexFile, e);
+            m_entries.clear();
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Rewrites the index file from the in-memory index.
+     */
+    public void store() {
+        synchronized (m_fileLock) {
+            final File parent = m_indexFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                LOG.warn("Unable to create directory {} for the RRD directory index.", parent);
+                return;
+            }
+
+            final File temp = new File(m_indexFile.getPath() + ".tmp");
+            Writer writer = null;
+            try {
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8));
+                for (final Map.Entry<String, Entry> e : m_entries.entrySet()) {
+                    writeLine(writer, e.getValue().getLastModified(), e.getValue().hasRrdFiles(), e.getKey());
+                }
+                writer.close();
+                writer = null;
+                if (!temp.renameTo(m_indexFile)) {
+                    // Windows will not rename over an existing file
+                    if (!m_indexFile.delete() || !temp.renameTo(m_indexFile)) {
+                        LOG.warn("Unable to replace RRD directory index {}", m_indexFile);
+                    }
+                }
+            } catch (final IOException e) {
+                LOG.warn("Unable to write RRD directory index {}", m_indexFile, e);
+            } finally {
+                closeQuietly(writer);
+            }
+        }
+    }
+
+    /**
+     * Starts reconciling the index in the background.
+     *
+     * @param interval the time between reconciliation passes in milliseconds
+     */
+    public synchronized void start(final long interval) {
+        if (m_timer != null) {
+            return;
+        }
+        m_timer = new Timer("RrdDirectoryIndex-Reconciler", true);
+        m_timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    reconcile();
+                } catch (final Throwable e) {
+                    LOG.warn("Failed to reconcile the RRD directory index.", e);
+                }
+            }
+        }, 0L, interval);
+    }
+
+    /**
+     * Stops the background reconciliation.
+     */
+    public synchronized void stop() {
+        if (m_timer != null) {
+            m_timer.cancel();
+            m_timer = null;
+        }
+    }
+
+    private void append(final String key) {
+        synchronized (m_fileLock) {
+            if (!m_indexFile.exists()) {
+                // the first reconciliation will write the whole file
+                return;
+            }
+            Writer writer = null;
+            try {
+                writer = new OutputStreamWriter(new FileOutputStream(m_indexFile, true), StandardCharsets.UTF_8);
+                writeLine(writer, UNKNOWN, true, key);
+            } catch (final IOException e) {
+                LOG.warn("Unable to append to RRD directory index {}", m_indexFile, e);
+            } finally {
+                closeQuietly(writer);
+            }
+        }
+    }
+
+    private static void writeLine(final Writer writer, final long lastModified, final boolean hasRrdFiles, final String key) throws IOException {
+        writer.write(Long.toString(lastModified));
+        writer.write('\t');
+        writer.write(hasRrdFiles ? '1' : '0');
+        writer.write('\t');
+        writer.write(key);
+        writer.write('\n');
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (final IOException e) {
+                LOG.debug("Failed to close RRD directory index file.", e);
+            }
+        }
+    }
+
+    private void linkAncestors(final String key, final boolean invalidate) {
+        String child = key;
+        while (child.length() > 0) {
+            final int slash = child.lastIndexOf('/');
+            final String parent = slash < 0 ? "" : child.substring(0, slash);
+            getOrCreateEntry(parent).addChild(child.substring(slash + 1), invalidate);
+            child = parent;
+        }
+    }
+
+    private Entry getEntry(final File directory) {
+        final String key = getKey(directory);
+        return key == null ? null : m_entries.get(key);
+    }
+
+    private Entry getOrCreateEntry(final String key) {
+        Entry entry = m_entries.get(key);
+        if (entry == null) {
+            final Entry created = new Entry(UNKNOWN, false, Collections.<String>emptySet());
+            entry = m_entries.putIfAbsent(key, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        return entry;
+    }
+
+    private File getFile(final String key) {
+        return key.length() == 0 ? m_root : new File(m_root, key.replace('/', File.separatorChar));
+    }
+
+    private static String childKey(final String key, final String child) {
+        return key.length() == 0 ? child : key + '/' + child;
+    }
+
+    /**
+     * Returns the path of the directory relative to the repository, using
+     * '/' as separator, or <code>null</code> if it is outside of it.
+     */
+    private String getKey(final File directory) {
+        final String path = directory.getAbsolutePath();
+        if (path.equals(m_rootPath)) {
+            return "";
+        }
+        if (path.length() > m_rootPath.length() + 1 && path.startsWith(m_rootPath) && path.charAt(m_rootPath.length()) == File.separatorChar) {
+            final String key = path.substring(m_rootPath.length() + 1);
+            return File.separatorChar == '/' ? key : key.replace(File.separatorChar, '/');
+        }
+        return null;
+    }
+}
@@ -98,7 +98,8 @@ public class RrdFileConstants extends Object {
      * @return a boolean.
      */
     public static final boolean isValidRRDNodeDir(final File file) {
-        if (!file.isDirectory()) {
+        final RrdDirectoryIndex index = RrdDirectoryIndex.getIndexFor(file);
+        if (index == null && !file.isDirectory()) {
             return false;
         }
 
@@ -109,6 +110,10 @@ public class RrdFileConstants extends Object {
             return false;
         }
 
+        if (index != null) {
+            return index.hasRrdFiles(file) || index.hasChildWithRrdFiles(file);
+        }
+
         // if the node dir contains RRDs, then it is queryable
         final File[] nodeRRDs = file.listFiles(RRD_FILENAME_FILTER);
         if (nodeRRDs != null && nodeRRDs.length > 0) {
@@ -143,6 +148,11 @@ public class RrdFileConstants extends Object {
      * @return a boolean.
      */
      public static final boolean isValidRRDNodeSourceDir(final File file) {
+        final RrdDirectoryIndex index = RrdDirectoryIndex.getIndexFor(file);
+        if (index != null) {
+            return index.hasRrdFiles(file) || index.hasChildWithRrdFiles(file);
+        }
+
         if (!file.isDirectory()) {
             return false;
         }
@@ -211,7 +221,8 @@ public class RrdFileConstants extends Object {
      * @return a boolean.
      */
     public static final boolean isValidRRDDomainDir(final File file) {
-        if (!file.isDirectory()) {
+        final RrdDirectoryIndex index = RrdDirectoryIndex.getIndexFor(file);
+        if (index == null && !file.isDirectory()) {
             return false;
         }
 
@@ -219,7 +230,19 @@ public class RrdFileConstants extends Object {
             // if the directory name is an integer
             Integer.parseInt(file.getName());
         } catch (final Throwable e) {
-        
+
+            if (index != null) {
+                for (final String intfDir : index.getChildrenWithRrdFiles(file)) {
+                    try {
+                        // if the interface directory name is an integer (Long)
+                        Long.valueOf(intfDir);
+                    } catch (final Throwable ee) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
             // if the domain dir contains queryable interface directories, then
             // it is queryable
             final File[] intfDirs = file.listFiles(INTERFACE_DIRECTORY_FILTER);
@@ -246,6 +269,11 @@ public class RrdFileConstants extends Object {
      * @return a boolean.
      */
     public static final boolean isValidRRDInterfaceDir(final File file) {
+        final RrdDirectoryIndex index = RrdDirectoryIndex.getIndexFor(file);
+        if (index != null) {
+            return index.hasRrdFiles(file);
+        }
+
         if (!file.isDirectory()) {
             return false;
         }
@@ -260,7 +288,8 @@ public class RrdFileConstants extends Object {
     }
 
     public static final boolean isValidRRDDomainInterfaceDir(final File file) {
-        if (!file.isDirectory()) {
+        final RrdDirectoryIndex index = RrdDirectoryIndex.getIndexFor(file);
+        if (index == null && !file.isDirectory()) {
             return false;
         }
 
@@ -268,6 +297,10 @@ public class RrdFileConstants extends Object {
             // if the interface directory name is an integer (Long) its not part of a domain
             Long.valueOf(file.getName());
         } catch (final Throwable ee) {
+            if (index != null) {
+                return index.hasRrdFiles(file);
+            }
+
             final File[] intfRRDs = file.listFiles(RRD_FILENAME_FILTER);
 
             if (intfRRDs != null && intfRRDs.length > 0) {
@@ -286,6 +319,11 @@ public class RrdFileConstants extends Object {
      * @return a boolean.
      */
     public static final boolean isValidRRDLatencyDir(final File file) {
+        final RrdDirectoryIndex index = RrdDirectoryIndex.getIndexFor(file);
+        if (index != null) {
+            return index.hasRrdFiles(file);
+        }
+
         if (!file.isDirectory()) {
             return false;
         }
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RrdDirectoryIndexTest {
+    @Rule
+    public TemporaryFolder m_tempFolder = new TemporaryFolder();
+
+    private File m_root;
+    private File m_indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        m_root = m_tempFolder.newFolder("rrd");
+        m_indexFile = new File(m_tempFolder.getRoot(), "rrd-directory.index");
+
+        createRrd("snmp/1", "ifInOctets.jrb");
+        createRrd("snmp/1/eth0", "ifInOctets.jrb");
+        createRrd("snmp/2/eth1", "ifOutOctets.jrb");
+        createRrd("snmp/mydomain/eth2", "ifInOctets.jrb");
+        new File(m_root, "snmp/3/empty").mkdirs();
+        new File(m_root, "snmp/2/eth1/notes.txt").createNewFile();
+    }
+
+    @Test
+    public void testReconcile() {
+        final RrdDirectoryIndex index = new RrdDirectoryIndex(m_root, m_indexFile, ".jrb");
+        index.load();
+        assertFalse(index.isReady());
+        assertFalse(index.covers(dir("snmp")));
+
+        index.reconcile();
+        assertTrue(index.isReady());
+        assertTrue(index.covers(dir("snmp")));
+        assertFalse(index.covers(m_tempFolder.getRoot()));
+
+        assertTrue(index.hasRrdFiles(dir("snmp/1")));
+        assertTrue(index.hasRrdFiles(dir("snmp/1/eth0")));
+        assertFalse(index.hasRrdFiles(dir("snmp/2")));
+        assertTrue(index.hasChildWithRrdFiles(dir("snmp/2")));
+        assertFalse(index.hasRrdFiles(dir("snmp/3")));
+        assertFalse(index.hasChildWithRrdFiles(dir("snmp/3")));
+        assertFalse(index.hasRrdFiles(dir("snmp/4")));
+
+        assertEquals(names("1", "2", "3", "mydomain"), names(index.listDirectories(dir("snmp"), null)));
+        assertEquals(names("eth2"), index.getChildrenWithRrdFiles(dir("snmp/mydomain")));
+        assertEquals(0, index.listDirectories(dir("snmp/4"), null).length);
+        assertTrue(m_indexFile.exists());
+    }
+
+    @Test
+    public void testRrdCreatedAndReload() throws IOException {
+        final RrdDirectoryIndex index = new RrdDirectoryIndex(m_root, m_indexFile, ".jrb");
+        index.reconcile();
+
+        createRrd("snmp/fs/source/foreign1", "cpu.jrb");
+        index.rrdCreated(dir("snmp/fs/source/foreign1"));
+        assertTrue(index.hasRrdFiles(dir("snmp/fs/source/foreign1")));
+        assertTrue(index.hasChildWithRrdFiles(dir("snmp/fs/source")));
+        assertEquals(names("1", "2", "3", "fs", "mydomain"), names(index.listDirectories(dir("snmp"), null)));
+
+        // directories outside of the repository are ignored
+        index.rrdCreated(m_tempFolder.getRoot());
+
+        // the creation was appended to the index file
+        final RrdDirectoryIndex reloaded = new RrdDirectoryIndex(m_root, m_indexFile, ".jrb");
+        reloaded.load();
+        assertTrue(reloaded.isReady());
+        assertTrue(reloaded.hasRrdFiles(dir("snmp/fs/source/foreign1")));
+        assertTrue(reloaded.hasRrdFiles(dir("snmp/1/eth0")));
+        assertFalse(reloaded.hasRrdFiles(dir("snmp/3/empty")));
+        assertEquals(names("empty"), names(reloaded.listDirectories(dir("snmp/3"), null)));
+    }
+
+    @Test
+    public void testReconcileIsIncremental() throws IOException {
+        final RrdDirectoryIndex index = new RrdDirectoryIndex(m_root, m_indexFile, ".jrb");
+        index.reconcile();
+
+        // changes the persisters did not tell us about
+        for (final File file : dir("snmp/2/eth1").listFiles()) {
+            assertTrue(file.delete());
+        }
+        assertTrue(dir("snmp/2/eth1").delete());
+        createRrd("snmp/3/empty", "new.jrb");
+        // make sure the modification times differ even on coarse file systems
+        dir("snmp/2").setLastModified(dir("snmp/2").lastModified() - 10000);
+        dir("snmp/3/empty").setLastModified(dir("snmp/3/empty").lastModified() - 10000);
+
+        index.reconcile();
+        assertFalse(index.hasChildWithRrdFiles(dir("snmp/2")));
+        assertFalse(index.hasRrdFiles(dir("snmp/2/eth1")));
+        assertTrue(index.hasRrdFiles(dir("snmp/3/empty")));
+        assertTrue(index.hasChildWithRrdFiles(dir("snmp/3")));
+    }
+
+    @Test
+    public void testRemoveDirectory() throws IOException {
+        final RrdDirectoryIndex index = new RrdDirectoryIndex(m_root, m_indexFile, ".jrb");
+        index.reconcile();
+
+        // what deleting the data of node 1 does
+        for (final File file : dir("snmp/1/eth0").listFiles()) {
+            assertTrue(file.delete());
+        }
+        assertTrue(dir("snmp/1/eth0").delete());
+        for (final File file : dir("snmp/1").listFiles()) {
+            assertTrue(file.delete());
+        }
+        assertTrue(dir("snmp/1").delete());
+        index.removeDirectory(dir("snmp/1"));
+
+        // gone without a reconciliation
+        assertEquals(names("2", "3", "mydomain"), names(index.listDirectories(dir("snmp"), null)));
+        assertFalse(index.hasRrdFiles(dir("snmp/1")));
+        assertFalse(index.hasRrdFiles(dir("snmp/1/eth0")));
+        assertTrue(index.getChildrenWithRrdFiles(dir("snmp")).isEmpty());
+
+        // the repository itself and directories outside of it are ignored
+        index.removeDirectory(m_root);
+        index.removeDirectory(m_tempFolder.getRoot());
+        assertTrue(index.hasRrdFiles(dir("snmp/2/eth1")));
+
+        // and gone after a restart
+        final RrdDirectoryIndex reloaded = new RrdDirectoryIndex(m_root, m_indexFile, ".jrb");
+        reloaded.load();
+        assertEquals(names("2", "3", "mydomain"), names(reloaded.listDirectories(dir("snmp"), null)));
+        assertFalse(reloaded.hasRrdFiles(dir("snmp/1/eth0")));
+    }
+
+    private File dir(final String path) {
+        return new File(m_root, path.replace('/', File.separatorChar));
+    }
+
+    private void createRrd(final String path, final String name) throws IOException {
+        final File directory = dir(path);
+        directory.mkdirs();
+        new File(directory, name).createNewFile();
+    }
+
+    private static Set<String> names(final String... names) {
+        return new TreeSet<String>(Arrays.asList(names));
+    }
+
+    private static Set<String> names(final File[] files) {
+        final Set<String> names = new TreeSet<String>();
+        for (final File file : files) {
+            names.add(file.getName());
+        }
+        return Collections.unmodifiableSet(names);
+    }
+}
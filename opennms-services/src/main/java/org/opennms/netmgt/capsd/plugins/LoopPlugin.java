@@ -32,7 +32,6 @@ import java.net.InetAddress;
 import java.util.Map;
 
 import org.opennms.core.utils.IPLike;
-import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ParameterMap;
 import org.opennms.netmgt.capsd.Plugin;
 /**
@@ -79,7 +78,7 @@ public class LoopPlugin implements Plugin {
         }
         
         String ipMatch = getIpMatch(qualifiers);
-        if (IPLike.matches(InetAddressUtils.str(address), ipMatch)) {
+        if (IPLike.matches(address, ipMatch)) {
             return isSupported(qualifiers);
         } else {
             return false;
@@ -130,6 +130,11 @@ public abstract class JMXCollector implements ServiceCollector {
      */
     private String serviceName = null;
 
+    /**
+     * Kept across collections so pooled connections and resolved MBean names are reused.
+     */
+    private final JmxCollector jmxCollector = new DefaultJmxCollector();
+
     /**
      * <p>
      * Returns the name of the service that the plug-in collects ("JMX").
@@ -292,7 +297,6 @@ public abstract class JMXCollector implements ServiceCollector {
             config.setServiceProperties(stringMap);
             config.setJmxCollection(JMXDataCollectionConfigFactory.getInstance().getJmxCollection(collectionName));
 
-            final JmxCollector jmxCollector = new DefaultJmxCollector();
             jmxCollector.collect(config, new JmxSampleProcessor() {
 
                 private final Map<String, AttributeGroupType> groupNameAttributeGroupTypeMap = new HashMap<>();
@@ -40,9 +40,11 @@ import org.opennms.netmgt.config.datacollection.MibObject;
 import org.opennms.netmgt.model.ResourceTypeUtils;
 import org.opennms.netmgt.snmp.Collectable;
 import org.opennms.netmgt.snmp.CollectionTracker;
+import org.opennms.netmgt.snmp.ColumnTracker;
 import org.opennms.netmgt.snmp.SnmpInstId;
 import org.opennms.netmgt.snmp.SnmpObjId;
 import org.opennms.netmgt.snmp.SnmpResult;
+import org.opennms.netmgt.snmp.SnmpValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -105,6 +107,16 @@ public abstract class SnmpAttributeType extends AbstractCollectionAttributeType
         return trackers;
     }
     
+    /**
+     * Whether the attribute is collected by walking a column indexed by ifIndex, so it can
+     * be collected by a {@link org.opennms.netmgt.snmp.ColumnarTableTracker}.
+     *
+     * @return a boolean.
+     */
+    boolean isIfIndexColumn() {
+        return MibObject.INSTANCE_IFINDEX.equals(getInstance()) && m_mibObj.getResourceType() == null && getCollectionTracker() instanceof ColumnTracker;
+    }
+
     private CollectionTracker getCollectionTracker() {
         SnmpInstId[] instances = m_resourceType.getCollectionInstances();
         if (instances != null && Boolean.getBoolean("org.opennms.netmgt.collectd.SnmpCollector.limitCollectionToInstances")) {
@@ -226,17 +238,28 @@ public abstract class SnmpAttributeType extends AbstractCollectionAttributeType
      * @param res a {@link org.opennms.netmgt.snmp.SnmpResult} object.
      */
     public void storeResult(SnmpCollectionSet collectionSet, SNMPCollectorEntry entry, SnmpResult res) {
-        LOG.debug("Setting attribute: {}.[{}] = '{}'", this, res.getInstance(), res.getValue());
+        storeValue(collectionSet, res.getInstance(), res.getValue());
+    }
+
+    /**
+     * <p>storeValue</p>
+     *
+     * @param collectionSet a {@link org.opennms.netmgt.collectd.SnmpCollectionSet} object.
+     * @param inst a {@link org.opennms.netmgt.snmp.SnmpInstId} object.
+     * @param value a {@link org.opennms.netmgt.snmp.SnmpValue} object.
+     */
+    public void storeValue(SnmpCollectionSet collectionSet, SnmpInstId inst, SnmpValue value) {
+        LOG.debug("Setting attribute: {}.[{}] = '{}'", this, inst, value);
         SnmpCollectionResource resource = null;
         if(this.getAlias().equals("ifAlias")) {
-            resource = m_resourceType.findAliasedResource(res.getInstance(), res.getValue().toString());
+            resource = m_resourceType.findAliasedResource(inst, value.toString());
         } else {
-            resource = m_resourceType.findResource(res.getInstance());
+            resource = m_resourceType.findResource(inst);
         }
         if (resource == null) {
-            collectionSet.notifyIfNotFound(this, res);
+            collectionSet.notifyIfNotFound(this, inst);
         } else {
-            resource.setAttributeValue(this, res.getValue());
+            resource.setAttributeValue(this, value);
         }
     }
 
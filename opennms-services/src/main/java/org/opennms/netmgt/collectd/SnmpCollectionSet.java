@@ -47,6 +47,7 @@ import org.opennms.netmgt.snmp.AggregateTracker;
 import org.opennms.netmgt.snmp.Collectable;
 import org.opennms.netmgt.snmp.CollectionTracker;
 import org.opennms.netmgt.snmp.SnmpAgentConfig;
+import org.opennms.netmgt.snmp.SnmpInstId;
 import org.opennms.netmgt.snmp.SnmpResult;
 import org.opennms.netmgt.snmp.SnmpUtils;
 import org.opennms.netmgt.snmp.SnmpWalker;
@@ -528,9 +529,19 @@ public class SnmpCollectionSet implements Collectable, CollectionSet {
      * @param res a {@link org.opennms.netmgt.snmp.SnmpResult} object.
      */
     public void notifyIfNotFound(CollectionAttributeType attrType, SnmpResult res) {
+        notifyIfNotFound(attrType, res.getInstance());
+    }
+
+    /**
+     * <p>notifyIfNotFound</p>
+     *
+     * @param attrType a {@link org.opennms.netmgt.collection.api.CollectionAttributeType} object.
+     * @param inst a {@link org.opennms.netmgt.snmp.SnmpInstId} object.
+     */
+    public void notifyIfNotFound(CollectionAttributeType attrType, SnmpInstId inst) {
         // Don't bother sending a rescan event in this case since localhost is not going to be there anyway
         //triggerRescan();
-        LOG.info("Unable to locate resource for agent {} with instance id {} while collecting attribute {}", getCollectionAgent(), res.getInstance(), attrType);
+        LOG.info("Unable to locate resource for agent {} with instance id {} while collecting attribute {}", getCollectionAgent(), inst, attrType);
     }
 
     /* Not used anymore - done in CollectableService
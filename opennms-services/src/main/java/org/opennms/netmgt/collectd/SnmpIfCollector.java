@@ -30,15 +30,22 @@ package org.opennms.netmgt.collectd;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.collection.api.CollectionSet;
 import org.opennms.netmgt.snmp.AggregateTracker;
+import org.opennms.netmgt.snmp.Collectable;
+import org.opennms.netmgt.snmp.ColumnarTableTracker;
+import org.opennms.netmgt.snmp.SnmpColumnarTable;
 import org.opennms.netmgt.snmp.SnmpInstId;
+import org.opennms.netmgt.snmp.SnmpObjId;
 import org.opennms.netmgt.snmp.SnmpResult;
+import org.opennms.netmgt.snmp.SnmpValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,6 +64,13 @@ import org.slf4j.LoggerFactory;
 public class SnmpIfCollector extends AggregateTracker {
     
     private static final Logger LOG = LoggerFactory.getLogger(SnmpIfCollector.class);
+
+    /**
+     * System property enabling the walk of ifIndex columns into a {@link SnmpColumnarTable}
+     * that is stored into the collection set once the walk is complete, failed or timed out, instead of creating
+     * a {@link SnmpResult} and {@link SNMPCollectorEntry} entry per value.
+     */
+    static final String COLUMNAR_TABLE_WALK_PROPERTY = "org.opennms.netmgt.collectd.SnmpCollector.columnarTableWalk";
     
     private Map<SnmpInstId, SNMPCollectorEntry> m_results = new TreeMap<SnmpInstId, SNMPCollectorEntry>();
     
@@ -68,6 +82,17 @@ public class SnmpIfCollector extends AggregateTracker {
     private List<SnmpAttributeType> m_objList;
 
     private SnmpCollectionSet m_collectionSet;
+
+    /**
+     * Walks ifIndex columns into a {@link SnmpColumnarTable} when columnar table walking is enabled.
+     */
+    private ColumnarTableTracker m_columnarTracker;
+
+    private List<SnmpAttributeType>[] m_columnarAttrTypes;
+
+    private boolean[] m_ifAliasColumns;
+
+    private boolean m_columnarTableStored = false;
     
     /**
      * <p>toString</p>
@@ -107,7 +132,12 @@ public class SnmpIfCollector extends AggregateTracker {
      * @param collectionSet TODO
      */
     public SnmpIfCollector(InetAddress address, List<SnmpAttributeType> objList, SnmpCollectionSet collectionSet) {
-        super(SnmpAttributeType.getCollectionTrackers(objList));
+        this(address, objList, collectionSet, Boolean.getBoolean(COLUMNAR_TABLE_WALK_PROPERTY) ? createColumnarTracker(objList) : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SnmpIfCollector(InetAddress address, List<SnmpAttributeType> objList, SnmpCollectionSet collectionSet, ColumnarTableTracker columnarTracker) {
+        super(getCollectionTrackers(objList, columnarTracker));
         
         LOG.debug("COLLECTING on list of {} items", objList.size());
         LOG.debug("List is {}", objList);
@@ -116,11 +146,64 @@ public class SnmpIfCollector extends AggregateTracker {
         m_primaryIf = InetAddressUtils.str(address);
         m_objList = objList;
         m_collectionSet = collectionSet;
+        m_columnarTracker = columnarTracker;
+
+        if (columnarTracker != null) {
+            SnmpColumnarTable table = columnarTracker.getTable();
+            m_columnarAttrTypes = new List[table.getColumnCount()];
+            m_ifAliasColumns = new boolean[table.getColumnCount()];
+            for (int column = 0; column < table.getColumnCount(); column++) {
+                m_columnarAttrTypes[column] = new ArrayList<SnmpAttributeType>(1);
+                m_ifAliasColumns[column] = table.getColumn(column).toString().equals(SnmpCollector.IFALIAS_OID);
+            }
+            for (SnmpAttributeType attrType : objList) {
+                if (isColumnarAttribute(attrType, columnarTracker)) {
+                    m_columnarAttrTypes[table.getColumnIndex(attrType.getSnmpObjId())].add(attrType);
+                }
+            }
+            LOG.debug("Walking {} ifIndex column(s) into a columnar table", table.getColumnCount());
+        }
+    }
+
+    /**
+     * Creates a tracker walking all ifIndex columns of the attribute list into a single
+     * {@link SnmpColumnarTable}, or null if the list contains no such column.
+     */
+    private static ColumnarTableTracker createColumnarTracker(List<SnmpAttributeType> objList) {
+        Set<SnmpObjId> columns = new LinkedHashSet<SnmpObjId>();
+        for (SnmpAttributeType attrType : objList) {
+            if (attrType.isIfIndexColumn()) {
+                columns.add(attrType.getSnmpObjId());
+            }
+        }
+        return columns.isEmpty() ? null : new ColumnarTableTracker(columns.toArray(new SnmpObjId[columns.size()]));
+    }
+
+    private static boolean isColumnarAttribute(SnmpAttributeType attrType, ColumnarTableTracker columnarTracker) {
+        return columnarTracker != null && attrType.isIfIndexColumn() && columnarTracker.getTable().getColumnIndex(attrType.getSnmpObjId()) >= 0;
+    }
+
+    private static List<Collectable> getCollectionTrackers(List<SnmpAttributeType> objList, ColumnarTableTracker columnarTracker) {
+        if (columnarTracker == null) {
+            return SnmpAttributeType.getCollectionTrackers(objList);
+        }
+
+        List<SnmpAttributeType> remaining = new ArrayList<SnmpAttributeType>(objList.size());
+        for (SnmpAttributeType attrType : objList) {
+            if (!isColumnarAttribute(attrType, columnarTracker)) {
+                remaining.add(attrType);
+            }
+        }
+
+        List<Collectable> trackers = SnmpAttributeType.getCollectionTrackers(remaining);
+        trackers.add(columnarTracker);
+        return trackers;
     }
 
     /**
      * Returns the list of all entry maps that can be used to access all the
-     * information from the service polling.
+     * information from the service polling. Values walked into the columnar
+     * table are stored into the collection set directly and have no entry.
      *
      * @return a {@link java.util.List} object.
      */
@@ -163,13 +246,76 @@ public class SnmpIfCollector extends AggregateTracker {
 
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public boolean isFinished() {
+        boolean finished = super.isFinished();
+        if (finished) {
+            storeColumnarTableOnce();
+        }
+        return finished;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Stores the rows walked so far, like the values collected row by row before the failure.
+     */
+    @Override
+    public void setFailed(boolean failed) {
+        super.setFailed(failed);
+        if (failed) {
+            storeColumnarTableOnce();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Stores the rows walked so far, like the values collected row by row before the timeout.
+     */
+    @Override
+    public void setTimedOut(boolean timedOut) {
+        super.setTimedOut(timedOut);
+        if (timedOut) {
+            storeColumnarTableOnce();
+        }
+    }
+
+    private synchronized void storeColumnarTableOnce() {
+        if (m_columnarTracker != null && !m_columnarTableStored) {
+            m_columnarTableStored = true;
+            storeColumnarTable(m_columnarTracker.getTable());
+        }
+    }
+
+    private void storeColumnarTable(SnmpColumnarTable table) {
+        LOG.debug("Storing {} row(s) of the columnar table for {}", table.getRowCount(), m_primaryIf);
+        for (int row = 0; row < table.getRowCount(); row++) {
+            SnmpInstId inst = new SnmpInstId(table.getInstance(row));
+            for (int column = 0; column < table.getColumnCount(); column++) {
+                if (!table.hasValue(column, row)) {
+                    continue;
+                }
+                SnmpValue value = table.getValue(column, row);
+                if (m_ifAliasColumns[column] && (value.isNull() || value.toDisplayString() == null || value.toDisplayString().equals(""))) {
+                    LOG.debug("Skipping storeValue. Null or zero length ifAlias");
+                    continue;
+                }
+                for (SnmpAttributeType attrType : m_columnarAttrTypes[column]) {
+                    attrType.storeValue(m_collectionSet, inst, value);
+                }
+            }
+        }
+    }
+
     /**
      * <p>hasData</p>
      *
      * @return a boolean.
      */
     public boolean hasData() {
-        return !m_results.isEmpty();
+        return !m_results.isEmpty() || (m_columnarTracker != null && m_columnarTracker.getTable().getRowCount() > 0);
     }
     
     /**
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.enlinkd;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.Map.Entry;
+
+import org.opennms.netmgt.model.BridgeMacLink;
+
+/**
+ * <p>In-memory model of the saved bridge forwarding topology, grouped in
+ * broadcast domains.</p>
+ *
+ * <p>The model holds, for every bridge, the MAC addresses saved on each of
+ * its bridge ports, plus an index from MAC address to the bridges that have
+ * it saved.  Two bridges belong to the same broadcast domain when they share
+ * a MAC address, directly or through other bridges.  Bridges in different
+ * domains cannot influence each other's topology, so a reconciliation only
+ * needs the domain of the bridge being reconciled, and reconciliations of
+ * different domains can run at the same time.</p>
+ *
+ * <p>All methods are synchronized; the lock is only held while the model is
+ * read or updated, never while the topology is computed or saved.</p>
+ */
+public class BroadcastDomains {
+
+    /**
+     * Reconciliation timings of one broadcast domain.  A domain is identified
+     * by the lowest node ID in it.
+     */
+    public static class DomainStatistics {
+        private long m_count;
+        private long m_lastTime;
+        private long m_maxTime;
+        private long m_totalTime;
+        private int m_bridges;
+        private int m_macs;
+
+        public synchronized long getCount() {
+            return m_count;
+        }
+
+        public synchronized long getLastTime() {
+            return m_lastTime;
+        }
+
+        public synchronized long getMaxTime() {
+            return m_maxTime;
+        }
+
+        public synchronized long getTotalTime() {
+            return m_totalTime;
+        }
+
+        public synchronized int getBridges() {
+            return m_bridges;
+        }
+
+        public synchronized int getMacs() {
+            return m_macs;
+        }
+
+        private synchronized void record(final long time, final int bridges, final int macs) {
+            m_count++;
+            m_lastTime = time;
+            m_maxTime = Math.max(m_maxTime, time);
+            m_totalTime += time;
+            m_bridges = bridges;
+            m_macs = macs;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return m_bridges + " bridges, " + m_macs + " macs: " + m_count + " reconciliations, last " + m_lastTime + " ms, max " + m_maxTime + " ms, total " + m_totalTime + " ms";
+        }
+    }
+
+    private final Map<Integer, Map<Integer, Set<String>>> m_forwardingTables = new HashMap<Integer, Map<Integer, Set<String>>>();
+    private final Map<String, Set<Integer>> m_macToNodes = new HashMap<String, Set<Integer>>();
+    private final Set<Integer> m_locked = new HashSet<Integer>();
+    private final Map<Integer, DomainStatistics> m_statistics = new TreeMap<Integer, DomainStatistics>();
+    private boolean m_loaded = false;
+
+    public synchronized boolean isLoaded() {
+        return m_loaded;
+    }
+
+    /**
+     * Loads the model from the saved bridge MAC links.
+     *
+     * @param links all saved bridge MAC links
+     */
+    public synchronized void load(final Collection<BridgeMacLink> links) {
+        m_forwardingTables.clear();
+        m_macToNodes.clear();
+        for (final BridgeMacLink link : links) {
+            add(link.getNode().getId(), link.getBridgePort(), link.getMacAddress());
+        }
+        m_loaded = true;
+    }
+
+    private void add(final Integer nodeId, final Integer bridgePort, final String mac) {
+        Map<Integer, Set<String>> bft = m_forwardingTables.get(nodeId);
+        if (bft == null) {
+            bft = new HashMap<Integer, Set<String>>();
+            m_forwardingTables.put(nodeId, bft);
+        }
+        Set<String> macs = bft.get(bridgePort);
+        if (macs == null) {
+            macs = new HashSet<String>();
+            bft.put(bridgePort, macs);
+        }
+        macs.add(mac);
+
+        Set<Integer> nodes = m_macToNodes.get(mac);
+        if (nodes == null) {
+            nodes = new HashSet<Integer>();
+            m_macToNodes.put(mac, nodes);
+        }
+        nodes.add(nodeId);
+    }
+
+    private void remove(final Integer nodeId) {
+        final Map<Integer, Set<String>> bft = m_forwardingTables.remove(nodeId);
+        if (bft == null) {
+            return;
+        }
+        for (final Set<String> macs : bft.values()) {
+            for (final String mac : macs) {
+                final Set<Integer> nodes = m_macToNodes.get(mac);
+                if (nodes == null) {
+                    continue;
+                }
+                nodes.remove(nodeId);
+                if (nodes.isEmpty()) {
+                    m_macToNodes.remove(mac);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the broadcast domain of a bridge and locks it, waiting for any
+     * reconciliation running on a bridge of the domain to finish first.
+     *
+     * @param nodeId the bridge being reconciled
+     * @param macs the MAC addresses in the new forwarding table of the bridge
+     * @param linkedNodes bridges with a saved bridge to bridge link to this bridge
+     * @return the bridges in the domain, which must be released with {@link #unlock(Set)}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized Set<Integer> lock(final Integer nodeId, final Set<String> macs, final Set<Integer> linkedNodes) throws InterruptedException {
+        while (true) {
+            final Set<Integer> domain = getDomain(nodeId, macs, linkedNodes);
+            if (Collections.disjoint(domain, m_locked)) {
+                m_locked.addAll(domain);
+                return domain;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Releases a domain locked with {@link #lock(Integer, Set, Set)}.
+     *
+     * @param domain the bridges in the domain
+     */
+    public synchronized void unlock(final Set<Integer> domain) {
+        m_locked.removeAll(domain);
+        notifyAll();
+    }
+
+    private Set<Integer> getDomain(final Integer nodeId, final Set<String> macs, final Set<Integer> linkedNodes) {
+        final Set<Integer> domain = new HashSet<Integer>();
+        final Set<String> seen = new HashSet<String>();
+        final Deque<Integer> pending = new ArrayDeque<Integer>();
+
+        domain.add(nodeId);
+        pending.add(nodeId);
+        for (final Integer linkedNode : linkedNodes) {
+            if (domain.add(linkedNode)) {
+                pending.add(linkedNode);
+            }
+        }
+
+        final Deque<String> pendingMacs = new ArrayDeque<String>(macs);
+        while (!pending.isEmpty() || !pendingMacs.isEmpty()) {
+            if (!pending.isEmpty()) {
+                final Map<Integer, Set<String>> bft = m_forwardingTables.get(pending.poll());
+                if (bft != null) {
+                    for (final Set<String> portMacs : bft.values()) {
+                        pendingMacs.addAll(portMacs);
+                    }
+                }
+                continue;
+            }
+            final String mac = pendingMacs.poll();
+            if (!seen.add(mac)) {
+                continue;
+            }
+            final Set<Integer> nodes = m_macToNodes.get(mac);
+            if (nodes == null) {
+                continue;
+            }
+            for (final Integer node : nodes) {
+                if (domain.add(node)) {
+                    pending.add(node);
+                }
+            }
+        }
+        return domain;
+    }
+
+    /**
+     * Returns copies of the saved forwarding tables of the given bridges.
+     *
+     * @param nodeIds the bridges
+     * @return the saved bridge port to MAC addresses mappings, by bridge
+     */
+    public synchronized Map<Integer, Map<Integer, Set<String>>> getForwardingTables(final Set<Integer> nodeIds) {
+        final Map<Integer, Map<Integer, Set<String>>> tables = new HashMap<Integer, Map<Integer, Set<String>>>();
+        for (final Integer nodeId : nodeIds) {
+            final Map<Integer, Set<String>> bft = m_forwardingTables.get(nodeId);
+            if (bft == null) {
+                continue;
+            }
+            final Map<Integer, Set<String>> copy = new HashMap<Integer, Set<String>>();
+            for (final Entry<Integer, Set<String>> entry : bft.entrySet()) {
+                copy.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+            }
+            tables.put(nodeId, copy);
+        }
+        return tables;
+    }
+
+    /**
+     * Replaces the saved forwarding tables of a domain after reconciliation.
+     *
+     * @param domain the bridges in the domain
+     * @param tables the saved bridge port to MAC addresses mappings, by bridge
+     * @param time the time the reconciliation took in milliseconds
+     */
+    public synchronized void update(final Set<Integer> domain, final Map<Integer, Map<Integer, Set<String>>> tables, final long time) {
+        int macs = 0;
+        for (final Integer nodeId : domain) {
+            remove(nodeId);
+            final Map<Integer, Set<String>> bft = tables.get(nodeId);
+            if (bft == null) {
+                continue;
+            }
+            for (final Entry<Integer, Set<String>> entry : bft.entrySet()) {
+                for (final String mac : entry.getValue()) {
+                    add(nodeId, entry.getKey(), mac);
+                    macs++;
+                }
+            }
+        }
+
+        final Integer domainId = Collections.min(domain);
+        for (final Integer nodeId : domain) {
+            if (!nodeId.equals(domainId)) {
+                m_statistics.remove(nodeId);
+            }
+        }
+        DomainStatistics statistics = m_statistics.get(domainId);
+        if (statistics == null) {
+            statistics = new DomainStatistics();
+            m_statistics.put(domainId, statistics);
+        }
+        statistics.record(time, domain.size(), macs);
+    }
+
+    /**
+     * Drops a deleted bridge from the model.
+     *
+     * @param nodeId the node ID of the bridge
+     */
+    public synchronized void delete(final Integer nodeId) {
+        remove(nodeId);
+        m_statistics.remove(nodeId);
+    }
+
+    /**
+     * Returns the reconciliation timings, by domain.
+     *
+     * @return the timings, keyed by the lowest node ID in each domain
+     */
+    public synchronized Map<Integer, DomainStatistics> getStatistics() {
+        return new TreeMap<Integer, DomainStatistics>(m_statistics);
+    }
+
+    /**
+     * Returns the reconciliation timings in readable form, one line per domain.
+     *
+     * @return the timings
+     */
+    public synchronized List<String> getStatisticsAsStrings() {
+        final List<String> lines = new ArrayList<String>();
+        for (final Entry<Integer, DomainStatistics> entry : m_statistics.entrySet()) {
+            lines.add("domain " + entry.getKey() + ": " + entry.getValue());
+        }
+        return lines;
+    }
+}
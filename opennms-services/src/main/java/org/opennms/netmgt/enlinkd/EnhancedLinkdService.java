@@ -92,6 +92,13 @@ public interface EnhancedLinkdService {
 
 	void reconcileBridge(int nodeId, Date now);
 
+	/**
+	 * Returns the in-memory bridge topology used by {@link #reconcileBridge(int, Date)}.
+	 *
+	 * @return the broadcast domains
+	 */
+	BroadcastDomains getBroadcastDomains();
+
 	void store(int nodeId, LldpLink link);
 
 	void store(int nodeId, LldpElement element);
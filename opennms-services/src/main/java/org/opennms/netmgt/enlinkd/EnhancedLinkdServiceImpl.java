@@ -36,6 +36,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.opennms.core.criteria.Alias;
 import org.opennms.core.criteria.Criteria;
@@ -75,12 +76,14 @@ import org.opennms.netmgt.model.PrimaryType;
 import org.opennms.netmgt.model.topology.BridgeTopology;
 import org.opennms.netmgt.model.topology.BridgeTopology.BridgeTopologyLink;
 import org.opennms.netmgt.model.topology.LinkableSnmpNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 public class EnhancedLinkdServiceImpl implements EnhancedLinkdService {
 		
-//	private final static Logger LOG = LoggerFactory.getLogger(EnhancedLinkdServiceImpl.class);
+	private final static Logger LOG = LoggerFactory.getLogger(EnhancedLinkdServiceImpl.class);
 
     @Autowired
     private PlatformTransactionManager m_transactionManager;
@@ -113,9 +116,11 @@ public class EnhancedLinkdServiceImpl implements EnhancedLinkdService {
 	
 	private BridgeStpLinkDao m_bridgeStpLinkDao; 
 	
-	volatile Map<Integer,Map<Integer,Set<String>>> m_bftMap = new HashMap<Integer, Map<Integer,Set<String>>>();
+	volatile Map<Integer,Map<Integer,Set<String>>> m_bftMap = new ConcurrentHashMap<Integer, Map<Integer,Set<String>>>();
 
-	volatile Map<Integer,Map<Integer,Integer>> m_nodebridgeportifindex = new HashMap<Integer, Map<Integer,Integer>>();
+	volatile Map<Integer,Map<Integer,Integer>> m_nodebridgeportifindex = new ConcurrentHashMap<Integer, Map<Integer,Integer>>();
+
+	private final BroadcastDomains m_broadcastDomains = new BroadcastDomains();
 
 	private void addBridgePortIfIndexEntry(Integer nodeid,Integer bridgeport, Integer ifindex) {
 		Map<Integer,Integer>bridgeportifindex = new HashMap<Integer, Integer>();
@@ -182,6 +187,7 @@ public class EnhancedLinkdServiceImpl implements EnhancedLinkdService {
 		reconcileOspf(nodeId, now);
 		reconcileIpNetToMedia(nodeId, now);
 		reconcileBridge(nodeId, now);
+		m_broadcastDomains.delete(nodeId);
 	}
 
 	@Override
@@ -574,7 +580,7 @@ public class EnhancedLinkdServiceImpl implements EnhancedLinkdService {
 	}
 
 	@Override
-	public synchronized void reconcileBridge(int nodeId, Date now) {
+	public void reconcileBridge(int nodeId, Date now) {
 		m_bridgeElementDao.deleteByNodeIdOlderThen(nodeId, now);
 		m_bridgeElementDao.flush();
 
@@ -588,69 +594,127 @@ public class EnhancedLinkdServiceImpl implements EnhancedLinkdService {
 		Set<String> macs = new HashSet<String>();
 		for (Set<String> portmacs: bft.values()) 
 			macs.addAll(portmacs);
-		
-		Map<Integer,Map<Integer,Set<String>>> savedtopology = new HashMap<Integer, Map<Integer,Set<String>>>();
-		for (BridgeMacLink maclink: m_bridgeMacLinkDao.findAll()) {
-			if (maclink.getNode().getId().intValue() == nodeId)
-				continue;
-			Map<Integer,Set<String>> nodesavedtopology = new HashMap<Integer, Set<String>>();
-			if (savedtopology.containsKey(maclink.getNode().getId())) 
-				nodesavedtopology = savedtopology.get(maclink.getNode().getId());
-			Set<String> macsonport = new HashSet<String>();
-			if (nodesavedtopology.containsKey(maclink.getBridgePort()))
-				macsonport = nodesavedtopology.get(maclink.getBridgePort());
-			macsonport.add(maclink.getMacAddress());
-			nodesavedtopology.put(maclink.getBridgePort(), macsonport);
-			savedtopology.put(maclink.getNode().getId(), nodesavedtopology);
-		}
-		
-		BridgeTopology topology = new BridgeTopology();
-		Set<Integer> targets = new HashSet<Integer>();
-		targets.add(nodeId);
-		for (BridgeBridgeLink bblink: m_bridgeBridgeLinkDao.findByNodeId(nodeId)) {
-			Map<Integer,Set<String>> nodesavedtopology = new HashMap<Integer, Set<String>>();
-			nodesavedtopology.put(bblink.getDesignatedPort(), new HashSet<String>());
-			topology.addTopology(bblink.getDesignatedNode().getId(), nodesavedtopology, targets);
+
+		List<BridgeBridgeLink> bblinks = m_bridgeBridgeLinkDao.findByNodeId(nodeId);
+		List<BridgeBridgeLink> designatedbblinks = m_bridgeBridgeLinkDao.findByDesignatedNodeId(nodeId);
+		Set<Integer> linkednodes = new HashSet<Integer>();
+		for (BridgeBridgeLink bblink: bblinks)
+			linkednodes.add(bblink.getDesignatedNode().getId());
+		for (BridgeBridgeLink bblink: designatedbblinks)
+			linkednodes.add(bblink.getNode().getId());
+
+		synchronized (m_broadcastDomains) {
+			if (!m_broadcastDomains.isLoaded()) {
+				m_broadcastDomains.load(m_bridgeMacLinkDao.findAll());
+			}
 		}
-		for (BridgeBridgeLink bblink: m_bridgeBridgeLinkDao.findByDesignatedNodeId(nodeId)) {
-			Map<Integer,Set<String>> nodesavedtopology = new HashMap<Integer, Set<String>>();
-			nodesavedtopology.put(bblink.getBridgePort(), new HashSet<String>());
-			topology.addTopology(bblink.getNode().getId(), nodesavedtopology, targets);
+
+		final long start = System.currentTimeMillis();
+		final Set<Integer> domain;
+		try {
+			domain = m_broadcastDomains.lock(nodeId, macs, linkednodes);
+		} catch (InterruptedException e) {
+			LOG.warn("reconcileBridge: interrupted while waiting for the broadcast domain of node {}", nodeId);
+			Thread.currentThread().interrupt();
+			return;
 		}
-		for (Integer savednode: savedtopology.keySet()) {
-			topology.parseBFT(savednode, savedtopology.get(savednode));
+		try {
+			// the saved topology of the domain, the node itself is replaced by its new forwarding table
+			Map<Integer,Map<Integer,Set<String>>> savedtopology = m_broadcastDomains.getForwardingTables(domain);
+			Map<Integer,Set<String>> oldbft = savedtopology.remove(nodeId);
+
+			BridgeTopology topology = new BridgeTopology();
+			Set<Integer> targets = new HashSet<Integer>();
+			targets.add(nodeId);
+			for (BridgeBridgeLink bblink: bblinks) {
+				Map<Integer,Set<String>> nodesavedtopology = new HashMap<Integer, Set<String>>();
+				nodesavedtopology.put(bblink.getDesignatedPort(), new HashSet<String>());
+				topology.addTopology(bblink.getDesignatedNode().getId(), nodesavedtopology, targets);
+			}
+			for (BridgeBridgeLink bblink: designatedbblinks) {
+				Map<Integer,Set<String>> nodesavedtopology = new HashMap<Integer, Set<String>>();
+				nodesavedtopology.put(bblink.getBridgePort(), new HashSet<String>());
+				topology.addTopology(bblink.getNode().getId(), nodesavedtopology, targets);
+			}
+			for (Integer savednode: savedtopology.keySet()) {
+				topology.parseBFT(savednode, savedtopology.get(savednode));
+			}
+			topology.parseBFT(nodeId, bft);
+
+			// save the links of the node and the links of the other bridges
+			// that changed, then delete the links that are gone
+			Map<Integer,Map<Integer,Set<String>>> newtopology = new HashMap<Integer, Map<Integer,Set<String>>>();
+			int saved = 0;
+			for (BridgeTopologyLink btl: topology.getTopology()) {
+				saved += saveLink(btl, nodeId, bridgeportifindex, savedtopology, newtopology);
+			}
+
+			int deleted = 0;
+			for (Integer curNodeId: savedtopology.keySet()) {
+				deleted += deleteMissingLinks(curNodeId, savedtopology.get(curNodeId), newtopology.get(curNodeId));
+			}
+			m_bridgeMacLinkDao.deleteByNodeIdOlderThen(nodeId, now);
+			m_bridgeMacLinkDao.flush();
+
+			// What about bridge bridge topology
+			// The changes could only be regarding the nodeId
+			m_bridgeBridgeLinkDao.deleteByNodeIdOlderThen(nodeId, now);
+			m_bridgeBridgeLinkDao.deleteByDesignatedNodeIdOlderThen(nodeId, now);
+			m_bridgeBridgeLinkDao.flush();
+
+			final long elapsed = System.currentTimeMillis() - start;
+			m_broadcastDomains.update(domain, newtopology, elapsed);
+			LOG.info("reconcileBridge: node {}: reconciled broadcast domain of {} bridges in {} ms, {} links saved, {} links deleted, {} macs on node (was {})",
+					nodeId, domain.size(), elapsed, saved, deleted, macs.size(), countMacs(oldbft));
+		} finally {
+			m_broadcastDomains.unlock(domain);
 		}
-		topology.parseBFT(nodeId, bft);
+	}
 
-		// now check the topology with the old one
-		// delete the not found links
-		for (BridgeTopologyLink btl: topology.getTopology()) {
-			saveLink(btl, nodeId, bridgeportifindex);
+	private static int countMacs(Map<Integer,Set<String>> bft) {
+		int count = 0;
+		if (bft != null) {
+			for (Set<String> portmacs: bft.values())
+				count += portmacs.size();
 		}
-		
-		for (Integer curNodeId: savedtopology.keySet()) {
-			m_bridgeMacLinkDao.deleteByNodeIdOlderThen(curNodeId, now);
+		return count;
+	}
+
+	private int deleteMissingLinks(Integer nodeId, Map<Integer,Set<String>> oldbft, Map<Integer,Set<String>> newbft) {
+		int deleted = 0;
+		for (Map.Entry<Integer,Set<String>> entry: oldbft.entrySet()) {
+			for (String mac: entry.getValue()) {
+				if (newbft != null && newbft.containsKey(entry.getKey()) && newbft.get(entry.getKey()).contains(mac))
+					continue;
+				BridgeMacLink link = m_bridgeMacLinkDao.getByNodeIdBridgePortMac(nodeId, entry.getKey(), mac);
+				if (link != null) {
+					m_bridgeMacLinkDao.delete(link);
+					deleted++;
+				}
+			}
 		}
-		m_bridgeMacLinkDao.deleteByNodeIdOlderThen(nodeId, now);
-		m_bridgeMacLinkDao.flush();
-
-		// What about bridge bridge topology
-		// The changes could only be regarding the nodeId
-		m_bridgeBridgeLinkDao.deleteByNodeIdOlderThen(nodeId, now);
-		m_bridgeBridgeLinkDao.deleteByDesignatedNodeIdOlderThen(nodeId, now);
-		m_bridgeBridgeLinkDao.flush();
-
-	}
-	
-	protected void saveLink(final BridgeTopologyLink bridgelink, Integer nodeId, Map<Integer,Integer> bridgeportIfIndex) {
+		if (deleted > 0)
+			m_bridgeMacLinkDao.flush();
+		return deleted;
+	}
+
+	/**
+	 * Saves a link of the computed topology.  MAC links of bridges other
+	 * than the one being reconciled are only written if they are not saved
+	 * already.
+	 *
+	 * @return the number of links written
+	 */
+	protected int saveLink(final BridgeTopologyLink bridgelink, Integer nodeId, Map<Integer,Integer> bridgeportIfIndex,
+			Map<Integer,Map<Integer,Set<String>>> savedtopology, Map<Integer,Map<Integer,Set<String>>> newtopology) {
 		if (bridgelink == null)
-			return;
+			return 0;
 		if (bridgeportIfIndex == null)
-			return;
+			return 0;
 		
 		OnmsNode node = m_nodeDao.get(bridgelink.getBridgeTopologyPort().getNodeid());
 		if (node == null)
-			return;
+			return 0;
 		OnmsNode designatenode = null;
 		if (bridgelink.getDesignateBridgePort() != null) {
 			designatenode = m_nodeDao.get(bridgelink.getDesignateBridgePort().getNodeid());
@@ -668,8 +732,9 @@ public class EnhancedLinkdServiceImpl implements EnhancedLinkdService {
 				link.setDesignatedPortIfIndex(bridgeportIfIndex.get(bridgelink.getDesignateBridgePort().getBridgePort()));
 			}
 			saveBridgeBridgeLink(link);
-			return;
+			return 1;
 		} 
+		int saved = 0;
 		for (String mac: bridgelink.getMacs()) {
 			BridgeMacLink maclink1 = new BridgeMacLink();
 			maclink1.setNode(node);
@@ -678,7 +743,7 @@ public class EnhancedLinkdServiceImpl implements EnhancedLinkdService {
 				maclink1.setBridgePortIfIndex(bridgeportIfIndex.get(bridgelink.getBridgeTopologyPort().getBridgePort()));
 			}
 			maclink1.setMacAddress(mac);
-			saveBridgeMacLink(maclink1);
+			saved += saveBridgeMacLink(maclink1, nodeId, savedtopology, newtopology);
 			if (designatenode == null)
 				continue;
 			BridgeMacLink maclink2 = new BridgeMacLink();
@@ -688,8 +753,35 @@ public class EnhancedLinkdServiceImpl implements EnhancedLinkdService {
 				maclink2.setBridgePortIfIndex(bridgeportIfIndex.get(bridgelink.getDesignateBridgePort().getBridgePort()));
 			}
 			maclink2.setMacAddress(mac);
-			saveBridgeMacLink(maclink2);
+			saved += saveBridgeMacLink(maclink2, nodeId, savedtopology, newtopology);
 		}
+		return saved;
+	}
+
+	private int saveBridgeMacLink(final BridgeMacLink saveMe, Integer nodeId,
+			Map<Integer,Map<Integer,Set<String>>> savedtopology, Map<Integer,Map<Integer,Set<String>>> newtopology) {
+		Integer linknodeid = saveMe.getNode().getId();
+		Map<Integer,Set<String>> nodetopology = newtopology.get(linknodeid);
+		if (nodetopology == null) {
+			nodetopology = new HashMap<Integer, Set<String>>();
+			newtopology.put(linknodeid, nodetopology);
+		}
+		Set<String> portmacs = nodetopology.get(saveMe.getBridgePort());
+		if (portmacs == null) {
+			portmacs = new HashSet<String>();
+			nodetopology.put(saveMe.getBridgePort(), portmacs);
+		}
+		portmacs.add(saveMe.getMacAddress());
+
+		// the polled node is always saved to update its last poll time
+		if (linknodeid.intValue() != nodeId.intValue()
+				&& savedtopology.containsKey(linknodeid)
+				&& savedtopology.get(linknodeid).containsKey(saveMe.getBridgePort())
+				&& savedtopology.get(linknodeid).get(saveMe.getBridgePort()).contains(saveMe.getMacAddress())) {
+			return 0;
+		}
+		saveBridgeMacLink(saveMe);
+		return 1;
 	}
 
 	@Transactional
@@ -872,6 +964,11 @@ public class EnhancedLinkdServiceImpl implements EnhancedLinkdService {
 		m_bridgeElementDao = bridgeElementDao;
 	}
 
+	@Override
+	public BroadcastDomains getBroadcastDomains() {
+		return m_broadcastDomains;
+	}
+
 	public BridgeMacLinkDao getBridgeMacLinkDao() {
 		return m_bridgeMacLinkDao;
 	}
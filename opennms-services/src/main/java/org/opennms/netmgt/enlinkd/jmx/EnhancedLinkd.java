@@ -37,6 +37,8 @@
  */
 package org.opennms.netmgt.enlinkd.jmx;
 
+import java.util.List;
+
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
 
 public class EnhancedLinkd extends AbstractSpringContextJmxServiceDaemon<org.opennms.netmgt.enlinkd.EnhancedLinkd> implements EnhancedLinkdMBean {
@@ -53,4 +55,11 @@ public class EnhancedLinkd extends AbstractSpringContextJmxServiceDaemon<org.ope
         return "enhancedLinkdContext";
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public String[] getBridgeDomainStatistics() {
+        final List<String> statistics = getDaemon().getQueryManager().getBroadcastDomains().getStatisticsAsStrings();
+        return statistics.toArray(new String[statistics.size()]);
+    }
+
 }
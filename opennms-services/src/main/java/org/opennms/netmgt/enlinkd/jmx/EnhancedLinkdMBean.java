@@ -37,4 +37,9 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface EnhancedLinkdMBean extends BaseOnmsMBean {
+
+    /**
+     * @return the bridge reconciliation timings, one line per broadcast domain
+     */
+    String[] getBridgeDomainStatistics();
 }
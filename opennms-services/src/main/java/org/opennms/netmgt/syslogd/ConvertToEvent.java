@@ -55,6 +55,7 @@ import org.opennms.netmgt.config.syslogd.ParameterAssignment;
 import org.opennms.netmgt.config.syslogd.ProcessMatch;
 import org.opennms.netmgt.config.syslogd.UeiList;
 import org.opennms.netmgt.config.syslogd.UeiMatch;
+import org.opennms.netmgt.events.api.AbstractInterfaceToNodeCache;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.xml.event.Event;
 
@@ -210,13 +211,15 @@ final class ConvertToEvent {
 
         final String hostAddress = message.getHostAddress();
         if (hostAddress != null && hostAddress.length() > 0) {
+            final InetAddress hostInetAddress = addr(hostAddress);
+
             // Set nodeId
-            long nodeId = SyslogdIPMgrJDBCImpl.getInstance().getNodeId(hostAddress);
+            long nodeId = AbstractInterfaceToNodeCache.getInstance().getNodeId(hostInetAddress);
             if (nodeId != -1) {
                 bldr.setNodeid(nodeId);
             }
 
-            bldr.setInterface(addr(hostAddress));
+            bldr.setInterface(hostInetAddress);
         }
         
         bldr.setLogDest("logndisplay");
@@ -30,7 +30,6 @@ package org.opennms.netmgt.syslogd;
 
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
-import java.sql.SQLException;
 
 import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.ValidationException;
@@ -112,14 +111,6 @@ import org.slf4j.LoggerFactory;
             throw new UndeclaredThrowableException(e);
         }
 
-        try {
-            // clear out the known nodes
-            SyslogdIPMgrJDBCImpl.getInstance().dataSourceSync();
-        } catch (SQLException e) {
-            LOG.error("Failed to load known IP address list", e);
-            throw new UndeclaredThrowableException(e);
-        }
-
         SyslogHandler.setSyslogConfig(SyslogdConfigFactory.getInstance());
         LOG.debug("Starting SyslogProcessor");
 
@@ -133,18 +124,6 @@ import org.slf4j.LoggerFactory;
     @Override
     protected void onStart() {
         m_udpEventReceiver.start();
-
-        // // start the event reader
-        // The Node list is update with new suspects
-        // Also this enables the syslogd to act as
-        // trapd and see New suspects.
-
-        try {
-            new BroadcastEventProcessor();
-        } catch (Throwable ex) {
-            LOG.error("Failed to setup event reader", ex);
-            throw new UndeclaredThrowableException(ex);
-        }
     }
 
     /**
@@ -34,7 +34,9 @@ import java.lang.reflect.UndeclaredThrowableException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ExecutorService;
 
 import javax.sql.DataSource;
@@ -42,10 +44,12 @@ import javax.sql.DataSource;
 import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.ValidationException;
 import org.opennms.core.db.DataSourceFactory;
+import org.opennms.core.db.EventPartitionManager;
 import org.opennms.core.logging.Logging;
 import org.opennms.netmgt.config.VacuumdConfigFactory;
 import org.opennms.netmgt.config.vacuumd.Action;
 import org.opennms.netmgt.config.vacuumd.Automation;
+import org.opennms.netmgt.config.vacuumd.EventPartitioning;
 import org.opennms.netmgt.config.vacuumd.Statement;
 import org.opennms.netmgt.config.vacuumd.Trigger;
 import org.opennms.netmgt.daemon.AbstractServiceDaemon;
@@ -224,6 +228,7 @@ public class Vacuumd extends AbstractServiceDaemon implements Runnable, EventLis
      */
     protected void executeStatements() {
         if (!m_stopped) {
+            maintainEventPartitions();
             List<Statement> statements = getVacuumdConfig().getStatements();
             for (Statement statement : statements) {
 				runUpdate(statement.getContent(), statement.getTransactional());
@@ -231,6 +236,32 @@ public class Vacuumd extends AbstractServiceDaemon implements Runnable, EventLis
         }
     }
 
+    /**
+     * Creates upcoming event partitions and drops expired ones, if the
+     * events table has been partitioned.  This runs before the configured
+     * statements so that they do not have to delete rows from partitions
+     * that are about to be dropped anyway.
+     */
+    private void maintainEventPartitions() {
+        final EventPartitioning config = getVacuumdConfig().getEventPartitioning();
+        if (config == null) {
+            return;
+        }
+        try {
+            final EventPartitionManager manager = new EventPartitionManager(getDataSourceFactory(), EventPartitionManager.Interval.fromString(config.getInterval()));
+            if (!manager.isPartitioned()) {
+                LOG.warn("Vacuumd: event partitioning is configured, but the events table has not been partitioned; run the installer with -E");
+                return;
+            }
+            final int created = manager.createPartitions(config.getAhead());
+            final Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(config.getRetentionDays()));
+            final int dropped = manager.dropPartitionsBefore(cutoff);
+            LOG.info("Vacuumd: created {} and dropped {} event partitions", created, dropped);
+        } catch (SQLException e) {
+            LOG.error("Vacuumd: failed to maintain event partitions", e);
+        }
+    }
+
     /**
      * @param now
      * @param period
@@ -31,22 +31,34 @@ package org.opennms.netmgt.collectd;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
+import org.opennms.netmgt.collection.api.CollectionAttribute;
 import org.opennms.netmgt.collection.api.CollectionInitializationException;
 import org.opennms.netmgt.collection.api.CollectionResource;
 import org.opennms.netmgt.collection.api.CollectionSet;
+import org.opennms.netmgt.collection.support.AbstractCollectionSetVisitor;
 import org.opennms.netmgt.model.OnmsEntity;
 import org.opennms.netmgt.model.OnmsSnmpInterface;
+import org.opennms.netmgt.snmp.CollectionTracker;
+import org.opennms.netmgt.snmp.PduBuilder;
+import org.opennms.netmgt.snmp.ResponseProcessor;
 import org.opennms.netmgt.snmp.SnmpAgentConfig;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpUtils;
 
 @RunWith(Parameterized.class)
 public class SnmpIfCollectorTest extends SnmpCollectorTestCase {
@@ -158,14 +170,75 @@ public class SnmpIfCollectorTest extends SnmpCollectorTestCase {
     }
 
     private SnmpIfCollector createSnmpIfCollector() throws UnknownHostException, CollectionInitializationException {
-        initializeAgent();
-        
-        SnmpIfCollector collector = new SnmpIfCollector(InetAddress.getLocalHost(), getCollectionSet().getCombinedIndexedAttributes(), getCollectionSet());
+        return createSnmpIfCollector(false);
+    }
+
+    private SnmpIfCollector createSnmpIfCollector(boolean columnarTableWalk) throws UnknownHostException, CollectionInitializationException {
+        SnmpIfCollector collector = createSnmpIfCollectorWithoutWalker(columnarTableWalk);
         
         createWalker(collector);
         return collector;
     }
 
+    private SnmpIfCollector createSnmpIfCollectorWithoutWalker(boolean columnarTableWalk) throws UnknownHostException, CollectionInitializationException {
+        initializeAgent();
+
+        System.setProperty(SnmpIfCollector.COLUMNAR_TABLE_WALK_PROPERTY, Boolean.toString(columnarTableWalk));
+        try {
+            return new SnmpIfCollector(InetAddress.getLocalHost(), getCollectionSet().getCombinedIndexedAttributes(), getCollectionSet());
+        } finally {
+            System.clearProperty(SnmpIfCollector.COLUMNAR_TABLE_WALK_PROPERTY);
+        }
+    }
+
+    /**
+     * Returns the values of the collection set keyed by resource instance and attribute name.
+     */
+    private static Map<String, String> getValues(CollectionSet collectionSet) {
+        final Map<String, String> values = new TreeMap<String, String>();
+        collectionSet.visit(new AbstractCollectionSetVisitor() {
+            private String m_instance;
+
+            @Override
+            public void visitResource(CollectionResource resource) {
+                m_instance = resource.getInstance();
+            }
+
+            @Override
+            public void visitAttribute(CollectionAttribute attribute) {
+                values.put(m_instance + "/" + attribute.getName(), attribute.getStringValue());
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Answers the first request of the tracker with values for ifIndex 1, as if the agent
+     * stopped responding afterwards.
+     */
+    private static void answerFirstRequest(CollectionTracker tracker) {
+        final List<SnmpObjId> oids = new ArrayList<SnmpObjId>();
+        ResponseProcessor processor = tracker.buildNextPdu(new PduBuilder(50) {
+            @Override
+            public void addOid(SnmpObjId snmpObjId) {
+                oids.add(snmpObjId);
+            }
+
+            @Override
+            public void setNonRepeaters(int numNonRepeaters) {
+            }
+
+            @Override
+            public void setMaxRepetitions(int maxRepetitions) {
+            }
+        });
+
+        for (SnmpObjId oid : oids) {
+            processor.processResponse(SnmpObjId.get(oid, "1"), SnmpUtils.getValueFactory().getCounter32(42));
+        }
+        processor.processErrors(CollectionTracker.NO_ERR, 0);
+    }
+
     private OnmsEntity createSnmpInterface(final int ifIndex, final int ifType, final String ifName, final boolean collectionEnabled) {
         final OnmsSnmpInterface m_snmpIface = new OnmsSnmpInterface();
     	m_snmpIface.setIfIndex(ifIndex);
@@ -194,6 +267,69 @@ public class SnmpIfCollectorTest extends SnmpCollectorTestCase {
         assertInterfaceMibObjectsPresent(collector.getCollectionSet(), 3);
     }
 
+    @Test
+    public void testColumnarTableWalkMatchesRowWalk() throws Exception {
+        addIfTable();
+        addAttribute("ifAlias", SnmpCollector.IFALIAS_OID, "ifIndex", "string");
+        // empty aliases are not stored
+        m_mockAgent.updateStringValue(SnmpCollector.IFALIAS_OID + ".2", "");
+
+        createSnmpInterface(1, 24, "lo0", true);
+        createSnmpInterface(2, 55, "gif0", true);
+        createSnmpInterface(3, 57, "stf0", true);
+
+        SnmpIfCollector rowCollector = createSnmpIfCollector(false);
+        waitForSignal();
+        Map<String, String> rowValues = getValues(rowCollector.getCollectionSet());
+
+        SnmpIfCollector columnarCollector = createSnmpIfCollector(true);
+        waitForSignal();
+        Map<String, String> columnarValues = getValues(columnarCollector.getCollectionSet());
+
+        assertTrue(rowCollector.hasData());
+        assertTrue(columnarCollector.hasData());
+        assertEquals(rowValues, columnarValues);
+        assertTrue(columnarValues.containsKey("1/ifAlias"));
+        assertFalse(columnarValues.containsKey("2/ifAlias"));
+        assertTrue(columnarValues.containsKey("2/ifInOctets"));
+    }
+
+    @Test
+    public void testColumnarTableWalkKeepsPartialResults() throws Exception {
+        addIfTable();
+
+        createSnmpInterface(1, 24, "lo0", true);
+        createSnmpInterface(2, 55, "gif0", true);
+
+        SnmpIfCollector rowCollector = createSnmpIfCollectorWithoutWalker(false);
+        answerFirstRequest(rowCollector);
+        rowCollector.setTimedOut(true);
+        Map<String, String> rowValues = getValues(rowCollector.getCollectionSet());
+
+        SnmpIfCollector columnarCollector = createSnmpIfCollectorWithoutWalker(true);
+        answerFirstRequest(columnarCollector);
+        columnarCollector.setTimedOut(true);
+        Map<String, String> columnarValues = getValues(columnarCollector.getCollectionSet());
+
+        assertFalse(columnarCollector.isFinished());
+        assertTrue(columnarCollector.hasData());
+        assertFalse(columnarValues.isEmpty());
+        assertEquals(rowValues, columnarValues);
+    }
+
+    @Test
+    public void testColumnarTableWalkWithoutResponse() throws Exception {
+        addIfTable();
+
+        createSnmpInterface(1, 24, "lo", true);
+
+        SnmpIfCollector collector = createSnmpIfCollectorWithoutWalker(true);
+        collector.setFailed(true);
+
+        assertFalse(collector.hasData());
+        assertTrue(getValues(collector.getCollectionSet()).isEmpty());
+    }
+
     // TODO: add test for very large v2 request
 
     
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.enlinkd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.model.BridgeMacLink;
+import org.opennms.netmgt.model.OnmsNode;
+
+public class BroadcastDomainsTest {
+    private BroadcastDomains m_domains;
+
+    private static BridgeMacLink link(final int nodeId, final int port, final String mac) {
+        final OnmsNode node = new OnmsNode();
+        node.setId(nodeId);
+        final BridgeMacLink link = new BridgeMacLink();
+        link.setNode(node);
+        link.setBridgePort(port);
+        link.setMacAddress(mac);
+        return link;
+    }
+
+    private static Set<Integer> nodes(final Integer... ids) {
+        return new HashSet<Integer>(Arrays.asList(ids));
+    }
+
+    private static Set<String> macs(final String... macs) {
+        return new HashSet<String>(Arrays.asList(macs));
+    }
+
+    @Before
+    public void setUp() {
+        m_domains = new BroadcastDomains();
+        final List<BridgeMacLink> links = new ArrayList<BridgeMacLink>();
+        // domain 1: bridges 1, 2 and 3 chained by shared macs
+        links.add(link(1, 1, "000000000001"));
+        links.add(link(2, 1, "000000000001"));
+        links.add(link(2, 2, "000000000002"));
+        links.add(link(3, 5, "000000000002"));
+        // domain 2: bridges 10 and 11
+        links.add(link(10, 1, "0000000000aa"));
+        links.add(link(11, 1, "0000000000aa"));
+        m_domains.load(links);
+    }
+
+    @Test
+    public void testDomainIsTransitive() throws Exception {
+        final Set<Integer> domain = m_domains.lock(1, macs("000000000001"), Collections.<Integer>emptySet());
+        assertEquals(nodes(1, 2, 3), domain);
+        m_domains.unlock(domain);
+    }
+
+    @Test
+    public void testNewMacsJoinDomains() throws Exception {
+        final Set<Integer> domain = m_domains.lock(3, macs("000000000002", "0000000000aa"), Collections.<Integer>emptySet());
+        assertEquals(nodes(1, 2, 3, 10, 11), domain);
+        m_domains.unlock(domain);
+    }
+
+    @Test
+    public void testLinkedNodesJoinDomain() throws Exception {
+        final Set<Integer> domain = m_domains.lock(20, macs("0000000000ff"), nodes(10));
+        assertEquals(nodes(10, 11, 20), domain);
+        m_domains.unlock(domain);
+    }
+
+    @Test
+    public void testUpdateReplacesDomain() throws Exception {
+        final Set<Integer> domain = m_domains.lock(2, macs("000000000001"), Collections.<Integer>emptySet());
+        final Map<Integer, Map<Integer, Set<String>>> tables = new HashMap<Integer, Map<Integer, Set<String>>>();
+        final Map<Integer, Set<String>> bft = new HashMap<Integer, Set<String>>();
+        bft.put(1, macs("000000000001"));
+        tables.put(1, bft);
+        tables.put(2, bft);
+        m_domains.update(domain, tables, 5);
+        m_domains.unlock(domain);
+
+        // bridge 3 lost its only mac and left the domain
+        assertEquals(nodes(3), m_domains.lock(3, Collections.<String>emptySet(), Collections.<Integer>emptySet()));
+        assertEquals(bft, m_domains.getForwardingTables(nodes(2)).get(2));
+        assertEquals(1, m_domains.getStatistics().get(1).getCount());
+        assertEquals(5, m_domains.getStatistics().get(1).getLastTime());
+    }
+
+    @Test
+    public void testIndependentDomainsDoNotBlock() throws Exception {
+        final Set<Integer> domain1 = m_domains.lock(1, macs("000000000001"), Collections.<Integer>emptySet());
+        final Set<Integer> domain2 = m_domains.lock(10, macs("0000000000aa"), Collections.<Integer>emptySet());
+        assertEquals(nodes(10, 11), domain2);
+        m_domains.unlock(domain2);
+
+        final CountDownLatch locked = new CountDownLatch(1);
+        final AtomicBoolean waited = new AtomicBoolean(false);
+        final Thread other = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    final Set<Integer> domain = m_domains.lock(3, macs("000000000002"), Collections.<Integer>emptySet());
+                    waited.set(true);
+                    m_domains.unlock(domain);
+                    locked.countDown();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        other.start();
+        assertTrue(!locked.await(200, TimeUnit.MILLISECONDS));
+        m_domains.unlock(domain1);
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        assertTrue(waited.get());
+    }
+}
@@ -39,24 +39,33 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.core.criteria.restrictions.Restriction;
 import org.opennms.netmgt.dao.api.AcknowledgmentDao;
 import org.opennms.netmgt.dao.api.AlarmDao;
+import org.opennms.netmgt.dao.api.ScrollCallback;
+import org.opennms.netmgt.events.api.EventProxy;
 import org.opennms.netmgt.model.AckAction;
+import org.opennms.netmgt.model.AckType;
 import org.opennms.netmgt.model.OnmsAcknowledgment;
 import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.OnmsAlarmCollection;
 import org.opennms.netmgt.model.alarm.AlarmSummaryCollection;
 import org.opennms.web.api.Authentication;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.sun.jersey.spi.resource.PerRequest;
 
@@ -72,6 +81,13 @@ public class AlarmRestService extends AlarmRestServiceBase {
     @Autowired
     private AcknowledgmentDao m_ackDao;
 
+    @Autowired
+    private TransactionTemplate m_transactionTemplate;
+
+    @Autowired
+    @Qualifier("eventProxy")
+    private EventProxy m_eventProxy;
+
     @Context
     UriInfo m_uriInfo;
 
@@ -130,6 +146,17 @@ public class AlarmRestService extends AlarmRestServiceBase {
      * <p>
      * getAlarms
      * </p>
+     * <p>
+     * Alarms are returned newest first.  Pass the <code>lastEventTime</code>
+     * and <code>id</code> of the last alarm of the previous page as
+     * <code>afterTime</code> and <code>afterId</code> to page with a keyset
+     * instead of an offset; keyset pages are always sorted by
+     * <code>lastEventTime</code> and <code>id</code>, so <code>orderBy</code>,
+     * <code>order</code> and <code>offset</code> are rejected with them. Pass
+     * <code>countMode=estimate</code> or
+     * <code>countMode=none</code> to avoid an exact count of all matching
+     * alarms.
+     * </p>
      * 
      * @return a {@link org.opennms.netmgt.model.OnmsAlarmCollection} object.
      */
@@ -141,12 +168,17 @@ public class AlarmRestService extends AlarmRestServiceBase {
 
         try {
             assertUserReadCredentials();
-            final CriteriaBuilder builder = getCriteriaBuilder(m_uriInfo.getQueryParameters(), false);
+            final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final CountMode countMode = removeCountMode(params);
+            final Restriction keyset = removeKeysetRestriction(params, "lastEventTime", false);
+
+            final CriteriaBuilder builder = getCriteriaBuilder(params, false);
             builder.distinct();
-            final OnmsAlarmCollection coll = new OnmsAlarmCollection(m_alarmDao.findMatching(builder.toCriteria()));
+            final Criteria criteria = toKeysetCriteria(builder, keyset);
+            final OnmsAlarmCollection coll = new OnmsAlarmCollection(m_alarmDao.findMatching(criteria));
 
             // For getting totalCount
-            coll.setTotalCount(m_alarmDao.countMatching(builder.count().toCriteria()));
+            coll.setTotalCount(getTotalCount(countMode, builder.count().toCriteria()));
 
             return coll;
         } finally {
@@ -154,6 +186,42 @@ public class AlarmRestService extends AlarmRestServiceBase {
         }
     }
 
+    /**
+     * Writes all the alarms which match the filter/query in the query
+     * parameters as XML while they are read from the database, so that
+     * exports of any size are served in constant memory.  Unlike
+     * {@link #getAlarms()} no limit is applied unless one is given.
+     *
+     * @return the streaming XML response
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_XML)
+    @Path("stream")
+    public StreamingOutput streamAlarms() {
+        assertUserReadCredentials();
+        final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+        final Restriction keyset = removeKeysetRestriction(params, "lastEventTime", false);
+        final boolean limited = params.containsKey("limit");
+
+        final CriteriaBuilder builder = getCriteriaBuilder(params, false);
+        if (!limited) {
+            builder.limit(0);
+        }
+        final Criteria criteria = toKeysetCriteria(builder, keyset);
+
+        return new StreamingCollectionOutput<OnmsAlarm>(OnmsAlarm.class, "alarms", m_transactionTemplate) {
+            @Override
+            protected void scroll(final ScrollCallback<OnmsAlarm> callback) {
+                readLock();
+                try {
+                    m_alarmDao.scrollMatching(criteria, callback);
+                } finally {
+                    readUnlock();
+                }
+            }
+        };
+    }
+
     /**
      * <p>
      * updateAlarm
@@ -250,32 +318,31 @@ public class AlarmRestService extends AlarmRestServiceBase {
             formProperties.remove("ackUser");
             assertUserEditCredentials(ackUser);
 
-            final List<OnmsAlarm> alarms = m_alarmDao.findMatching(builder.toCriteria());
-            for (final OnmsAlarm alarm : alarms) {
-                final OnmsAcknowledgment acknowledgement = new OnmsAcknowledgment(alarm, ackUser);
-                acknowledgement.setAckAction(AckAction.UNSPECIFIED);
-                if (ackValue != null) {
-                    if (Boolean.parseBoolean(ackValue)) {
-                        acknowledgement.setAckAction(AckAction.ACKNOWLEDGE);
-                    } else {
-                        acknowledgement.setAckAction(AckAction.UNACKNOWLEDGE);
-                    }
-                } else if (escalateValue != null) {
-                    if (Boolean.parseBoolean(escalateValue)) {
-                        acknowledgement.setAckAction(AckAction.ESCALATE);
-                    }
-                } else if (clearValue != null) {
-                    if (Boolean.parseBoolean(clearValue)) {
-                        acknowledgement.setAckAction(AckAction.CLEAR);
-                    }
-                } else {
-                    throw new IllegalArgumentException("Must supply one of the 'ack', 'escalate', or 'clear' parameters, set to either 'true' or 'false'.");
-                }
-                m_ackDao.processAck(acknowledgement);
+            final AckAction action;
+            if (ackValue != null) {
+                action = Boolean.parseBoolean(ackValue) ? AckAction.ACKNOWLEDGE : AckAction.UNACKNOWLEDGE;
+            } else if (escalateValue != null) {
+                action = Boolean.parseBoolean(escalateValue) ? AckAction.ESCALATE : AckAction.UNSPECIFIED;
+            } else if (clearValue != null) {
+                action = Boolean.parseBoolean(clearValue) ? AckAction.CLEAR : AckAction.UNSPECIFIED;
+            } else {
+                throw new IllegalArgumentException("Must supply one of the 'ack', 'escalate', or 'clear' parameters, set to either 'true' or 'false'.");
+            }
+
+            final Criteria criteria = builder.toCriteria();
+            Integer singleAlarmId = null;
+            if (m_alarmDao.countMatchingUpTo(criteria, 2) == 1) {
+                singleAlarmId = m_alarmDao.findMatching(criteria).get(0).getId();
             }
 
-            if (alarms.size() == 1) {
-                return Response.seeOther(getRedirectUri(m_uriInfo, alarms.get(0).getId())).build();
+            if (action != AckAction.UNSPECIFIED) {
+                final long start = System.currentTimeMillis();
+                final int count = m_alarmDao.acknowledgeMatching(criteria, action, ackUser);
+                sendBulkAcknowledgmentEvent(m_eventProxy, AckType.ALARM.toString(), action, ackUser, count, System.currentTimeMillis() - start);
+            }
+
+            if (singleAlarmId != null) {
+                return Response.seeOther(getRedirectUri(m_uriInfo, singleAlarmId)).build();
             } else {
                 return Response.seeOther(getRedirectUri(m_uriInfo)).build();
             }
@@ -284,6 +351,33 @@ public class AlarmRestService extends AlarmRestServiceBase {
         }
     }
 
+    private static Criteria toKeysetCriteria(final CriteriaBuilder builder, final Restriction keyset) {
+        if (keyset == null) {
+            return builder.toCriteria();
+        }
+        builder.clearOrder();
+        builder.offset(0);
+        builder.orderBy("lastEventTime").desc();
+        builder.orderBy("id").desc();
+        final Criteria criteria = builder.toCriteria();
+        criteria.addRestriction(keyset);
+        return criteria;
+    }
+
+    private Integer getTotalCount(final CountMode countMode, final Criteria criteria) {
+        switch (countMode) {
+        case NONE:
+            return null;
+        case ESTIMATE:
+            if (criteria.getRestrictions().isEmpty()) {
+                return m_alarmDao.estimateCountAll();
+            }
+            return m_alarmDao.countMatchingUpTo(criteria, ESTIMATED_COUNT_LIMIT);
+        default:
+            return m_alarmDao.countMatching(criteria);
+        }
+    }
+
     private void assertUserReadCredentials() {
         final String currentUser = m_securityContext.getUserPrincipal().getName();
 
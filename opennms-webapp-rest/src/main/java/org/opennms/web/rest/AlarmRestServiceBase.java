@@ -88,6 +88,7 @@ public class AlarmRestServiceBase extends OnmsRestService {
     		cb.offset(0);
     	} else {
     	    cb.orderBy("lastEventTime").desc();
+    	    cb.orderBy("id").desc();
     	}
     	cb.distinct();
 
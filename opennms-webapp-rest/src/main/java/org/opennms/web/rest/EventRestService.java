@@ -44,19 +44,27 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 import org.opennms.core.criteria.Alias.JoinType;
+import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.core.criteria.restrictions.Restriction;
 import org.opennms.netmgt.dao.api.EventDao;
+import org.opennms.netmgt.dao.api.ScrollCallback;
+import org.opennms.netmgt.events.api.EventProxy;
+import org.opennms.netmgt.model.AckAction;
 import org.opennms.netmgt.model.OnmsEvent;
 import org.opennms.netmgt.model.OnmsEventCollection;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.sun.jersey.spi.resource.PerRequest;
 
@@ -71,6 +79,13 @@ public class EventRestService extends OnmsRestService {
     @Autowired
     private EventDao m_eventDao;
 
+    @Autowired
+    private TransactionTemplate m_transactionTemplate;
+
+    @Autowired
+    @Qualifier("eventProxy")
+    private EventProxy m_eventProxy;
+
     @Context
     UriInfo m_uriInfo;
 
@@ -123,6 +138,15 @@ public class EventRestService extends OnmsRestService {
     /**
      * Returns all the events which match the filter/query in the query
      * parameters
+     * <p>
+     * Pass the <code>eventTime</code> and <code>id</code> of the last event
+     * of the previous page as <code>afterTime</code> and <code>afterId</code>
+     * to page with a keyset instead of an offset; keyset pages are always
+     * sorted by <code>eventTime</code> and <code>id</code>, so
+     * <code>orderBy</code>, <code>order</code> and <code>offset</code> are
+     * rejected with them. Pass <code>countMode=estimate</code> or <code>countMode=none</code> to avoid
+     * an exact count of all matching events.
+     * </p>
      * 
      * @return Collection of OnmsEventCollection (ready to be XML-ified)
      * @throws java.text.ParseException
@@ -135,11 +159,25 @@ public class EventRestService extends OnmsRestService {
         readLock();
 
         try {
-            final CriteriaBuilder builder = getCriteriaBuilder(m_uriInfo.getQueryParameters());
+            final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final CountMode countMode = removeCountMode(params);
+            final Restriction keyset = removeKeysetRestriction(params, "eventTime", true);
+
+            final CriteriaBuilder builder = getCriteriaBuilder(params);
+            if (keyset != null) {
+                builder.clearOrder();
+                builder.offset(0);
+            }
             builder.orderBy("eventTime").asc();
+            builder.orderBy("id").asc();
 
-            final OnmsEventCollection coll = new OnmsEventCollection(m_eventDao.findMatching(builder.toCriteria()));
-            coll.setTotalCount(m_eventDao.countMatching(builder.count().toCriteria()));
+            final Criteria criteria = builder.toCriteria();
+            if (keyset != null) {
+                criteria.addRestriction(keyset);
+            }
+
+            final OnmsEventCollection coll = new OnmsEventCollection(m_eventDao.findMatching(criteria));
+            coll.setTotalCount(getTotalCount(countMode, builder.count().toCriteria()));
 
             return coll;
         } finally {
@@ -147,6 +185,51 @@ public class EventRestService extends OnmsRestService {
         }
     }
 
+    /**
+     * Writes all the events which match the filter/query in the query
+     * parameters as XML while they are read from the database, so that
+     * exports of any size are served in constant memory.  Unlike
+     * {@link #getEvents()} no limit is applied unless one is given.
+     *
+     * @return the streaming XML response
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_XML)
+    @Path("stream")
+    public StreamingOutput streamEvents() {
+        final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+        final Restriction keyset = removeKeysetRestriction(params, "eventTime", true);
+        final boolean limited = params.containsKey("limit");
+
+        final CriteriaBuilder builder = getCriteriaBuilder(params);
+        if (!limited) {
+            builder.limit(0);
+        }
+        if (keyset != null) {
+            builder.clearOrder();
+            builder.offset(0);
+        }
+        builder.orderBy("eventTime").asc();
+        builder.orderBy("id").asc();
+
+        final Criteria criteria = builder.toCriteria();
+        if (keyset != null) {
+            criteria.addRestriction(keyset);
+        }
+
+        return new StreamingCollectionOutput<OnmsEvent>(OnmsEvent.class, "events", m_transactionTemplate) {
+            @Override
+            protected void scroll(final ScrollCallback<OnmsEvent> callback) {
+                readLock();
+                try {
+                    m_eventDao.scrollMatching(criteria, callback);
+                } finally {
+                    readUnlock();
+                }
+            }
+        };
+    }
+
     /**
      * Returns all the events which match the filter/query in the query
      * parameters
@@ -164,6 +247,7 @@ public class EventRestService extends OnmsRestService {
 
         try {
             final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final CountMode countMode = removeCountMode(params);
 
             final String column;
             if (params.containsKey("column")) {
@@ -204,7 +288,7 @@ public class EventRestService extends OnmsRestService {
             }
 
             final OnmsEventCollection coll = new OnmsEventCollection(m_eventDao.findMatching(builder.toCriteria()));
-            coll.setTotalCount(m_eventDao.countMatching(builder.count().toCriteria()));
+            coll.setTotalCount(getTotalCount(countMode, builder.count().toCriteria()));
 
             return coll;
         } finally {
@@ -263,11 +347,14 @@ public class EventRestService extends OnmsRestService {
             }
 
             final CriteriaBuilder builder = getCriteriaBuilder(formProperties);
-            builder.orderBy("eventTime").desc();
-
-            for (final OnmsEvent event : m_eventDao.findMatching(builder.toCriteria())) {
-                processEventAck(event, ack);
-            }
+            builder.limit(0);
+            builder.offset(0);
+
+            final String user = m_securityContext.getUserPrincipal().getName();
+            final AckAction action = ack ? AckAction.ACKNOWLEDGE : AckAction.UNACKNOWLEDGE;
+            final long start = System.currentTimeMillis();
+            final int count = m_eventDao.acknowledgeMatching(builder.toCriteria(), action, user);
+            sendBulkAcknowledgmentEvent(m_eventProxy, "Event", action, user, count, System.currentTimeMillis() - start);
             return Response.seeOther(getRedirectUri(m_uriInfo)).build();
         } finally {
             writeUnlock();
@@ -285,6 +372,20 @@ public class EventRestService extends OnmsRestService {
         m_eventDao.save(event);
     }
 
+    private Integer getTotalCount(final CountMode countMode, final Criteria criteria) {
+        switch (countMode) {
+        case NONE:
+            return null;
+        case ESTIMATE:
+            if (criteria.getRestrictions().isEmpty()) {
+                return m_eventDao.estimateCountAll();
+            }
+            return m_eventDao.countMatchingUpTo(criteria, ESTIMATED_COUNT_LIMIT);
+        default:
+            return m_eventDao.countMatching(criteria);
+        }
+    }
+
     private CriteriaBuilder getCriteriaBuilder(final MultivaluedMap<String, String> params) {
         final CriteriaBuilder builder = new CriteriaBuilder(OnmsEvent.class);
         builder.alias("node", "node", JoinType.LEFT_JOIN);
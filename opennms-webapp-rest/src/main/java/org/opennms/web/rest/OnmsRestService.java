@@ -33,6 +33,7 @@ import java.beans.IntrospectionException;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Date;
 import java.util.concurrent.locks.Lock;
 
 import javax.ws.rs.WebApplicationException;
@@ -46,6 +47,12 @@ import javax.xml.datatype.XMLGregorianCalendar;
 
 import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventProxy;
+import org.opennms.netmgt.events.api.EventProxyException;
+import org.opennms.netmgt.model.AckAction;
 import org.opennms.netmgt.model.OnmsArpInterface.StatusType;
 import org.opennms.netmgt.model.InetAddressTypeEditor;
 import org.opennms.netmgt.model.OnmsSeverity;
@@ -53,6 +60,7 @@ import org.opennms.netmgt.model.OnmsSeverityEditor;
 import org.opennms.netmgt.model.PrimaryType;
 import org.opennms.netmgt.model.PrimaryTypeEditor;
 import org.opennms.netmgt.model.StatusTypeEditor;
+import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.provision.persist.StringXmlCalendarPropertyEditor;
 import org.opennms.web.api.ISO8601DateEditor;
 import org.opennms.web.api.RestUtils;
@@ -82,8 +90,25 @@ public class OnmsRestService {
 
 	protected static final int DEFAULT_LIMIT = 10;
 
+	/**
+	 * The maximum number of rows counted when <code>countMode=estimate</code>
+	 * is requested for a filtered query.
+	 */
+	protected static final int ESTIMATED_COUNT_LIMIT = 10000;
+
 	protected enum ComparisonOperation { EQ, NE, ILIKE, LIKE, IPLIKE, GT, LT, GE, LE, CONTAINS }
 
+	/**
+	 * How the <code>totalCount</code> of a collection should be computed.
+	 * <ul>
+	 * <li><code>exact</code>: run a full count query (the default)</li>
+	 * <li><code>estimate</code>: use the table statistics for unfiltered
+	 * queries, or count at most {@link #ESTIMATED_COUNT_LIMIT} rows</li>
+	 * <li><code>none</code>: skip the count query entirely</li>
+	 * </ul>
+	 */
+	protected enum CountMode { EXACT, ESTIMATE, NONE }
+
 	/**
 	 * <p>Constructor for OnmsRestService.</p>
 	 */
@@ -213,6 +238,103 @@ public class OnmsRestService {
 		}
     }
 
+	/**
+	 * Removes the <code>countMode</code> parameter from the query parameters.
+	 *
+	 * @param params the query parameters
+	 * @return the requested {@link CountMode}, {@link CountMode#EXACT} if none was given
+	 */
+	protected CountMode removeCountMode(final MultivaluedMap<String,String> params) {
+		final String countMode = removeParameter(params, "countMode");
+		if (countMode == null) {
+			return CountMode.EXACT;
+		}
+		try {
+			return CountMode.valueOf(countMode.toUpperCase());
+		} catch (final IllegalArgumentException e) {
+			throw getException(Status.BAD_REQUEST, "countMode must be one of 'exact', 'estimate' or 'none', not '{}'.", countMode);
+		}
+	}
+
+	/**
+	 * <p>Removes the <code>afterTime</code> and <code>afterId</code> keyset
+	 * pagination parameters from the query parameters and turns them into a
+	 * restriction that selects the rows that sort after that key.</p>
+	 *
+	 * <p>Unlike <code>offset</code>, which makes the database read and
+	 * discard every preceding row, seeking on an indexed (time, id) key
+	 * costs the same no matter how deep into the result set the page is.
+	 * Clients pass the time and id of the last row of the previous page to
+	 * get the next one.</p>
+	 *
+	 * <p>Keyset pages are always sorted on the time attribute and then the
+	 * id, so <code>orderBy</code>, <code>order</code> and <code>offset</code>
+	 * cannot be combined with a keyset and are rejected.</p>
+	 *
+	 * @param params the query parameters
+	 * @param timeAttribute the time attribute the results are sorted on
+	 * @param ascending whether the results are sorted in ascending order
+	 * @return the keyset restriction, or null if no keyset was requested
+	 */
+	protected Restriction removeKeysetRestriction(final MultivaluedMap<String,String> params, final String timeAttribute, final boolean ascending) {
+		final String afterTime = removeParameter(params, "afterTime");
+		final String afterId = removeParameter(params, "afterId");
+		if (afterTime == null && afterId == null) {
+			return null;
+		}
+		if (afterTime == null || afterId == null) {
+			throw getException(Status.BAD_REQUEST, "Keyset pagination requires both the 'afterTime' and 'afterId' parameters.");
+		}
+		for (final String param : new String[] { "orderBy", "order", "offset" }) {
+			if (params.containsKey(param)) {
+				throw getException(Status.BAD_REQUEST, "The '{}' parameter cannot be used with keyset pagination, which always sorts by {} and id.", param, timeAttribute);
+			}
+		}
+
+		final Date time;
+		try {
+			final ISO8601DateEditor editor = new ISO8601DateEditor();
+			editor.setAsText(afterTime);
+			time = (Date)editor.getValue();
+		} catch (final IllegalArgumentException e) {
+			throw getException(Status.BAD_REQUEST, "afterTime must be an ISO 8601 date or milliseconds since the epoch, not '{}'.", afterTime);
+		}
+		final Integer id;
+		try {
+			id = Integer.valueOf(afterId);
+		} catch (final NumberFormatException e) {
+			throw getException(Status.BAD_REQUEST, "afterId must be an integer, not '{}'.", afterId);
+		}
+
+		// the redundant range on the time attribute lets the planner skip
+		// partitions of a time-partitioned table, which it cannot infer
+		// from the disjunction alone
+		if (ascending) {
+			return Restrictions.all(Restrictions.ge(timeAttribute, time), Restrictions.any(Restrictions.gt(timeAttribute, time), Restrictions.all(Restrictions.eq(timeAttribute, time), Restrictions.gt("id", id))));
+		} else {
+			return Restrictions.all(Restrictions.le(timeAttribute, time), Restrictions.any(Restrictions.lt(timeAttribute, time), Restrictions.all(Restrictions.eq(timeAttribute, time), Restrictions.lt("id", id))));
+		}
+	}
+
+	/**
+	 * Sends a single event summarizing an acknowledgment action applied to
+	 * many alarms or events, instead of one event per row.  Failing to send
+	 * the summary does not fail the update.
+	 */
+	protected void sendBulkAcknowledgmentEvent(final EventProxy eventProxy, final String type, final AckAction action, final String user, final int count, final long elapsed) {
+		final EventBuilder bldr = new EventBuilder(EventConstants.BULK_ACKNOWLEDGED_UEI, getClass().getName());
+		bldr.addParam("ackType", type);
+		bldr.addParam("ackAction", action.toString());
+		bldr.addParam("ackUser", user);
+		bldr.addParam("count", count);
+		bldr.addParam("elapsed", elapsed);
+		try {
+			eventProxy.send(bldr.getEvent());
+		} catch (final EventProxyException e) {
+			LOG.warn("Unable to send bulk acknowledgment event", e);
+		}
+	}
+
 	protected BeanWrapper getBeanWrapperForClass(final Class<?> criteriaClass) {
 		final BeanWrapper wrapper = new BeanWrapperImpl(criteriaClass);
 		wrapper.registerCustomEditor(XMLGregorianCalendar.class, new StringXmlCalendarPropertyEditor());
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.opennms.core.xml.JaxbUtils;
+import org.opennms.netmgt.dao.api.ScrollCallback;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * <p>Writes a collection of JAXB entities to the response as they are read
+ * from the database, rather than building the whole collection in memory
+ * before marshalling it.  The output has the same shape as the matching
+ * {@link org.opennms.core.config.api.JaxbListWrapper} subclass, minus the
+ * <code>count</code> and <code>totalCount</code> attributes which cannot be
+ * known up front.</p>
+ *
+ * <p>The database cursor is opened inside its own transaction when the
+ * container asks for the entity to be written, since that happens after the
+ * resource method (and its transaction) has already returned.</p>
+ *
+ * @param <T> the type of entity being streamed
+ */
+public abstract class StreamingCollectionOutput<T> implements StreamingOutput {
+    private final Class<T> m_entityClass;
+    private final String m_rootElement;
+    private final TransactionOperations m_transactionOperations;
+
+    public StreamingCollectionOutput(final Class<T> entityClass, final String rootElement, final TransactionOperations transactionOperations) {
+        m_entityClass = entityClass;
+        m_rootElement = rootElement;
+        m_transactionOperations = transactionOperations;
+    }
+
+    /**
+     * Hand every entity to be written to the callback, in order.
+     *
+     * @param callback the callback that marshals each entity
+     */
+    protected abstract void scroll(ScrollCallback<T> callback);
+
+    @Override
+    public void write(final OutputStream output) throws IOException, WebApplicationException {
+        try {
+            final Marshaller marshaller = JaxbUtils.getContextFor(m_entityClass).createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+
+            final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement(m_rootElement);
+
+            m_transactionOperations.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                    scroll(new ScrollCallback<T>() {
+                        @Override
+                        public void onEntity(final T entity) {
+                            try {
+                                marshaller.marshal(entity, writer);
+                            } catch (final JAXBException e) {
+                                throw new WebApplicationException(e);
+                            }
+                        }
+                    });
+                }
+            });
+
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+        } catch (final JAXBException e) {
+            throw new WebApplicationException(e);
+        } catch (final XMLStreamException e) {
+            throw new WebApplicationException(e);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.web.rest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventIpcManager;
+import org.opennms.netmgt.events.api.EventIpcManagerFactory;
+import org.opennms.netmgt.events.api.EventListener;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Parm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * <p>Shared cache for the outage timelines rendered by
+ * {@link TimelineRestService}.</p>
+ *
+ * <p>A node page requests one timeline per service, so the outages of a node
+ * are loaded once per time window and shared by all of its services, and the
+ * rendered images are kept keyed by service, time window and the outage
+ * version of the node.  The version is bumped whenever eventd broadcasts an
+ * outage related event for the node, which makes older entries unreachable.
+ * If the event subsystem is not available in this JVM the version falls back
+ * to the current minute, so timelines are at most a minute old.</p>
+ *
+ * <p>The cache size is bounded by the
+ * <code>org.opennms.web.timeline.cache.maxSize</code> system property
+ * (default 5000 entries) and entries expire after
+ * <code>org.opennms.web.timeline.cache.expireMinutes</code> minutes (default
+ * 10).</p>
+ */
+@Component
+public class TimelineCache implements EventListener {
+    private static final Logger LOG = LoggerFactory.getLogger(TimelineCache.class);
+
+    private static final long FALLBACK_VERSION_MILLIS = 60000;
+
+    /**
+     * Events that create, resolve or move outages of the node in the event.
+     */
+    private static final List<String> OUTAGE_UEIS = Arrays.asList(
+        EventConstants.NODE_LOST_SERVICE_EVENT_UEI,
+        EventConstants.NODE_REGAINED_SERVICE_EVENT_UEI,
+        EventConstants.INTERFACE_DOWN_EVENT_UEI,
+        EventConstants.INTERFACE_UP_EVENT_UEI,
+        EventConstants.NODE_DOWN_EVENT_UEI,
+        EventConstants.NODE_UP_EVENT_UEI,
+        EventConstants.NODE_DELETED_EVENT_UEI,
+        EventConstants.INTERFACE_DELETED_EVENT_UEI,
+        EventConstants.INTERFACE_REPARENTED_EVENT_UEI,
+        EventConstants.SERVICE_DELETED_EVENT_UEI
+    );
+
+    /**
+     * An outage as drawn on a timeline.
+     */
+    public static class Outage {
+        private final Integer m_id;
+        private final Date m_ifLostService;
+        private final Date m_ifRegainedService;
+
+        public Outage(final Integer id, final Date ifLostService, final Date ifRegainedService) {
+            m_id = id;
+            m_ifLostService = ifLostService;
+            m_ifRegainedService = ifRegainedService;
+        }
+
+        public Integer getId() {
+            return m_id;
+        }
+
+        public Date getIfLostService() {
+            return m_ifLostService;
+        }
+
+        public Date getIfRegainedService() {
+            return m_ifRegainedService;
+        }
+    }
+
+    private final ConcurrentMap<Integer, Long> m_versions = new ConcurrentHashMap<Integer, Long>();
+    private final AtomicLong m_sequence = new AtomicLong(0);
+    private final Cache<List<Object>, Map<String, List<Outage>>> m_outages;
+    private final Cache<List<Object>, byte[]> m_images;
+
+    private volatile boolean m_subscribed = false;
+
+    public TimelineCache() {
+        this(Long.getLong("org.opennms.web.timeline.cache.maxSize", 5000), Long.getLong("org.opennms.web.timeline.cache.expireMinutes", 10));
+    }
+
+    public TimelineCache(final long maxSize, final long expireMinutes) {
+        m_outages = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .<List<Object>, Map<String, List<Outage>>>build();
+        m_images = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .<List<Object>, byte[]>build();
+    }
+
+    /**
+     * Subscribes to outage events.  If the event subsystem is not running in
+     * this JVM, versions fall back to the current minute.
+     */
+    @PostConstruct
+    public void start() {
+        final EventIpcManager ipcManager;
+        try {
+            ipcManager = EventIpcManagerFactory.getIpcManager();
+        } catch (final IllegalStateException e) {
+            LOG.info("Event subsystem is not available, timelines will be cached for at most a minute.");
+            return;
+        }
+        ipcManager.addEventListener(this, OUTAGE_UEIS);
+        m_subscribed = true;
+    }
+
+    /**
+     * Unsubscribes from outage events and drops everything cached.
+     */
+    @PreDestroy
+    public void stop() {
+        if (m_subscribed) {
+            m_subscribed = false;
+            EventIpcManagerFactory.getIpcManager().removeEventListener(this);
+        }
+        m_outages.invalidateAll();
+        m_images.invalidateAll();
+    }
+
+    /**
+     * Returns the current outage version of a node.  Cache keys include this
+     * version, so anything cached before the last outage change of the node
+     * is no longer used.
+     *
+     * @param nodeId the node ID
+     * @return the outage version
+     */
+    public long getVersion(final int nodeId) {
+        if (!m_subscribed) {
+            return -(System.currentTimeMillis() / FALLBACK_VERSION_MILLIS);
+        }
+        final Long version = m_versions.get(nodeId);
+        return version == null ? 0 : version.longValue();
+    }
+
+    /**
+     * Returns the outages of one service in a time window, loading the
+     * outages of all services on the node at once if they are not cached.
+     *
+     * @param nodeId the node ID
+     * @param ipAddress the IP address of the interface
+     * @param serviceName the service name
+     * @param start the start of the window in seconds
+     * @param end the end of the window in seconds
+     * @param loader loads the outages of the node in the window, keyed by {@link #serviceKey(String, String)}
+     * @return the outages, never null
+     */
+    public List<Outage> getOutages(final int nodeId, final String ipAddress, final String serviceName, final long start, final long end, final Callable<Map<String, List<Outage>>> loader) {
+        final List<Object> key = Arrays.<Object>asList(nodeId, start, end, getVersion(nodeId));
+        final List<Outage> outages = get(m_outages, key, loader).get(serviceKey(ipAddress, serviceName));
+        return outages == null ? Collections.<Outage>emptyList() : outages;
+    }
+
+    /**
+     * Returns a rendered image, rendering it if it is not cached.
+     *
+     * @param key the parts identifying the image, including the outage version if it shows outages
+     * @param renderer renders the image
+     * @return the image data
+     */
+    public byte[] getImage(final List<Object> key, final Callable<byte[]> renderer) {
+        return get(m_images, key, renderer);
+    }
+
+    /**
+     * Returns the key used to group the outages of a node by service.
+     *
+     * @param ipAddress the IP address of the interface
+     * @param serviceName the service name
+     * @return the key
+     */
+    public static String serviceKey(final String ipAddress, final String serviceName) {
+        return InetAddressUtils.str(InetAddressUtils.addr(ipAddress)) + "/" + serviceName;
+    }
+
+    private static <V> V get(final Cache<List<Object>, V> cache, final List<Object> key, final Callable<V> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (final ExecutionException e) {
+            throw propagate(e.getCause());
+        } catch (final UncheckedExecutionException e) {
+            throw propagate(e.getCause());
+        }
+    }
+
+    private static RuntimeException propagate(final Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException)t;
+        } else if (t instanceof Error) {
+            throw (Error)t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    /**
+     * Marks the outages of a node as changed.
+     *
+     * @param nodeId the node ID
+     */
+    public void invalidateNode(final int nodeId) {
+        m_versions.put(nodeId, m_sequence.incrementAndGet());
+    }
+
+    public long getOutageLoadCount() {
+        return m_outages.stats().loadCount();
+    }
+
+    public long getImageRenderCount() {
+        return m_images.stats().loadCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return "WebUI:TimelineCache";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onEvent(final Event e) {
+        if (!e.hasNodeid()) {
+            return;
+        }
+
+        LOG.debug("Invalidating cached timelines for node {} after {}", e.getNodeid(), e.getUei());
+        invalidateNode(e.getNodeid().intValue());
+
+        if (EventConstants.INTERFACE_REPARENTED_EVENT_UEI.equals(e.getUei())) {
+            // the outages of the interface moved away from the old node
+            for (final Parm parm : e.getParmCollection()) {
+                if (EventConstants.PARM_OLD_NODEID.equals(parm.getParmName()) && parm.getValue() != null) {
+                    try {
+                        invalidateNode(Integer.parseInt(parm.getValue().getContent()));
+                    } catch (final NumberFormatException ex) {
+                        LOG.warn("Invalid old node ID {} in {}", parm.getValue().getContent(), e.getUei());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -34,7 +34,6 @@ import org.opennms.core.criteria.restrictions.Restrictions;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.dao.api.OutageDao;
 import org.opennms.netmgt.model.OnmsOutage;
-import org.opennms.netmgt.model.OnmsOutageCollection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
@@ -56,9 +55,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 @Component
 @PerRequest
@@ -220,7 +224,7 @@ public class TimelineRestService extends OnmsRestService {
          * @param onmsOutage the outage to be drawn
          * @return true, if no resolved yet
          */
-        public boolean drawEvent(Graphics2D graphics2D, long delta, long start, int width, OnmsOutage onmsOutage) throws IOException {
+        public boolean drawEvent(Graphics2D graphics2D, long delta, long start, int width, TimelineCache.Outage onmsOutage) throws IOException {
             long p1 = onmsOutage.getIfLostService().getTime() / 1000;
             long p2 = start + delta;
 
@@ -273,7 +277,7 @@ public class TimelineRestService extends OnmsRestService {
          * @param onmsOutage the outage to be used
          * @return the HTML map entry
          */
-        public String getMapEntry(Graphics2D graphics2D, long delta, long start, int width, OnmsOutage onmsOutage) {
+        public String getMapEntry(Graphics2D graphics2D, long delta, long start, int width, TimelineCache.Outage onmsOutage) {
             long p1 = onmsOutage.getIfLostService().getTime() / 1000;
             long p2 = start + delta;
 
@@ -334,6 +338,9 @@ public class TimelineRestService extends OnmsRestService {
     @Autowired
     private OutageDao m_outageDao;
 
+    @Autowired
+    private TimelineCache m_timelineCache;
+
     @Context
     UriInfo m_uriInfo;
 
@@ -343,9 +350,36 @@ public class TimelineRestService extends OnmsRestService {
     @Context
     ServletContext m_servletContext;
 
-    private OnmsOutageCollection queryOutages(final int nodeId, final String ipAddress, final String serviceName, final long start, final long end) {
-        OnmsOutageCollection onmsOutageCollection;
+    /**
+     * Returns the outages of a service in the given time window.  Unless the
+     * request carries additional query filters, the outages of all services
+     * on the node are loaded with a single query and shared through the
+     * {@link TimelineCache} by the requests for the other services.
+     */
+    private List<TimelineCache.Outage> queryOutages(final int nodeId, final String ipAddress, final String serviceName, final long start, final long end) {
+        if (!isCacheable()) {
+            return toTimelineOutages(findOutages(nodeId, ipAddress, serviceName, start, end));
+        }
+
+        return m_timelineCache.getOutages(nodeId, ipAddress, serviceName, start, end, new Callable<Map<String, List<TimelineCache.Outage>>>() {
+            @Override
+            public Map<String, List<TimelineCache.Outage>> call() {
+                final Map<String, List<TimelineCache.Outage>> outagesByService = new HashMap<String, List<TimelineCache.Outage>>();
+                for (final OnmsOutage onmsOutage : findOutages(nodeId, null, null, start, end)) {
+                    final String key = TimelineCache.serviceKey(onmsOutage.getIpAddressAsString(), onmsOutage.getMonitoredService().getServiceName());
+                    List<TimelineCache.Outage> outages = outagesByService.get(key);
+                    if (outages == null) {
+                        outages = new ArrayList<TimelineCache.Outage>();
+                        outagesByService.put(key, outages);
+                    }
+                    outages.add(toTimelineOutage(onmsOutage));
+                }
+                return outagesByService;
+            }
+        });
+    }
 
+    private List<OnmsOutage> findOutages(final int nodeId, final String ipAddress, final String serviceName, final long start, final long end) {
         readLock();
         try {
             final CriteriaBuilder builder = new CriteriaBuilder(OnmsOutage.class);
@@ -361,8 +395,12 @@ public class TimelineRestService extends OnmsRestService {
 
             builder.le("ifLostService", endDate);
 
-            builder.eq("serviceType.name", serviceName);
-            builder.eq("ipInterface.ipAddress", InetAddressUtils.addr(ipAddress));
+            if (serviceName != null) {
+                builder.eq("serviceType.name", serviceName);
+            }
+            if (ipAddress != null) {
+                builder.eq("ipInterface.ipAddress", InetAddressUtils.addr(ipAddress));
+            }
 
             builder.alias("monitoredService", "monitoredService");
             builder.alias("monitoredService.ipInterface", "ipInterface");
@@ -373,12 +411,36 @@ public class TimelineRestService extends OnmsRestService {
 
             builder.orderBy("id").desc();
 
-            onmsOutageCollection = new OnmsOutageCollection(m_outageDao.findMatching(builder.toCriteria()));
+            return m_outageDao.findMatching(builder.toCriteria());
         } finally {
             readUnlock();
         }
+    }
 
-        return onmsOutageCollection;
+    private static TimelineCache.Outage toTimelineOutage(final OnmsOutage onmsOutage) {
+        return new TimelineCache.Outage(onmsOutage.getId(), onmsOutage.getIfLostService(), onmsOutage.getIfRegainedService());
+    }
+
+    private static List<TimelineCache.Outage> toTimelineOutages(final List<OnmsOutage> onmsOutages) {
+        final List<TimelineCache.Outage> outages = new ArrayList<TimelineCache.Outage>(onmsOutages.size());
+        for (final OnmsOutage onmsOutage : onmsOutages) {
+            outages.add(toTimelineOutage(onmsOutage));
+        }
+        return outages;
+    }
+
+    /**
+     * Query filters narrow down the outages, so results are only shared
+     * between requests without them.
+     */
+    private boolean isCacheable() {
+        return m_uriInfo.getQueryParameters().isEmpty();
+    }
+
+    private static byte[] toPng(final BufferedImage bufferedImage) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(bufferedImage, "png", baos);
+        return baos.toByteArray();
     }
 
     @GET
@@ -386,6 +448,17 @@ public class TimelineRestService extends OnmsRestService {
     @Transactional
     @Path("header/{start}/{end}/{width}")
     public Response header(@PathParam("start") final long start, @PathParam("end") final long end, @PathParam("width") final int width) throws IOException {
+        byte[] imageData = m_timelineCache.getImage(Arrays.<Object>asList("header", start, end, width), new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return renderHeader(start, end, width);
+            }
+        });
+
+        return Response.ok(imageData).build();
+    }
+
+    private byte[] renderHeader(final long start, final long end, final int width) throws IOException {
         long delta = end - start;
 
         BufferedImage bufferedImage = new BufferedImage(width, 20, BufferedImage.TYPE_INT_ARGB);
@@ -404,11 +477,7 @@ public class TimelineRestService extends OnmsRestService {
             }
         }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(bufferedImage, "png", baos);
-        byte[] imageData = baos.toByteArray();
-
-        return Response.ok(imageData).build();
+        return toPng(bufferedImage);
     }
 
     @GET
@@ -418,9 +487,10 @@ public class TimelineRestService extends OnmsRestService {
     public Response html(@PathParam("nodeId") final int nodeId, @PathParam("ipAddress") final String ipAddress, @PathParam("serviceName") final String serviceName, @PathParam("start") final long start, @PathParam("end") final long end, @PathParam("width") final int width) throws IOException {
         long delta = end - start;
 
-        OnmsOutageCollection onmsOutageCollection = queryOutages(nodeId, ipAddress, serviceName, start, end);
+        List<TimelineCache.Outage> outages = queryOutages(nodeId, ipAddress, serviceName, start, end);
 
-        BufferedImage bufferedImage = new BufferedImage(width, 20, BufferedImage.TYPE_INT_ARGB);
+        // only the font metrics are needed here, the image itself is rendered by image()
+        BufferedImage bufferedImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
 
         Graphics2D graphics2D = (Graphics2D) bufferedImage.getGraphics();
 
@@ -459,8 +529,8 @@ public class TimelineRestService extends OnmsRestService {
 
         for (TimescaleDescriptor desc : TIMESCALE_DESCRIPTORS) {
             if (desc.match(delta, numLabels)) {
-                for (OnmsOutage onmsOutage : onmsOutageCollection) {
-                    htmlBuffer.append(desc.getMapEntry(graphics2D, delta, start, width, onmsOutage));
+                for (TimelineCache.Outage outage : outages) {
+                    htmlBuffer.append(desc.getMapEntry(graphics2D, delta, start, width, outage));
                 }
                 break;
             }
@@ -476,9 +546,27 @@ public class TimelineRestService extends OnmsRestService {
     @Transactional
     @Path("image/{nodeId}/{ipAddress}/{serviceName}/{start}/{end}/{width}")
     public Response image(@PathParam("nodeId") final int nodeId, @PathParam("ipAddress") final String ipAddress, @PathParam("serviceName") final String serviceName, @PathParam("start") final long start, @PathParam("end") final long end, @PathParam("width") final int width) throws IOException {
+        final byte[] imageData;
+
+        if (isCacheable()) {
+            final List<Object> key = Arrays.<Object>asList("image", nodeId, TimelineCache.serviceKey(ipAddress, serviceName), start, end, width, m_timelineCache.getVersion(nodeId));
+            imageData = m_timelineCache.getImage(key, new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    return renderImage(nodeId, ipAddress, serviceName, start, end, width);
+                }
+            });
+        } else {
+            imageData = renderImage(nodeId, ipAddress, serviceName, start, end, width);
+        }
+
+        return Response.ok(imageData).build();
+    }
+
+    private byte[] renderImage(final int nodeId, final String ipAddress, final String serviceName, final long start, final long end, final int width) throws IOException {
         long delta = end - start;
 
-        OnmsOutageCollection onmsOutageCollection = queryOutages(nodeId, ipAddress, serviceName, start, end);
+        List<TimelineCache.Outage> outages = queryOutages(nodeId, ipAddress, serviceName, start, end);
 
         BufferedImage bufferedImage = new BufferedImage(width, 20, BufferedImage.TYPE_INT_ARGB);
 
@@ -493,8 +581,8 @@ public class TimelineRestService extends OnmsRestService {
             if (desc.match(delta, numLabels)) {
                 desc.drawGreen(graphics2D, width);
 
-                for (OnmsOutage onmsOutage : onmsOutageCollection) {
-                    desc.drawEvent(graphics2D, delta, start, width, onmsOutage);
+                for (TimelineCache.Outage outage : outages) {
+                    desc.drawEvent(graphics2D, delta, start, width, outage);
                 }
 
                 desc.drawLine(graphics2D, delta, start, width);
@@ -503,11 +591,7 @@ public class TimelineRestService extends OnmsRestService {
             }
         }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(bufferedImage, "png", baos);
-        byte[] imageData = baos.toByteArray();
-
-        return Response.ok(imageData).build();
+        return toPng(bufferedImage);
     }
 
     @GET
@@ -515,6 +599,17 @@ public class TimelineRestService extends OnmsRestService {
     @Transactional
     @Path("empty/{start}/{end}/{width}")
     public Response empty(@PathParam("start") final long start, @PathParam("end") final long end, @PathParam("width") final int width) throws IOException {
+        byte[] imageData = m_timelineCache.getImage(Arrays.<Object>asList("empty", start, end, width), new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return renderEmpty(start, end, width);
+            }
+        });
+
+        return Response.ok(imageData).build();
+    }
+
+    private byte[] renderEmpty(final long start, final long end, final int width) throws IOException {
         int delta = (int) end - (int) start;
 
         BufferedImage bufferedImage = new BufferedImage(width, 20, BufferedImage.TYPE_INT_ARGB);
@@ -534,11 +629,6 @@ public class TimelineRestService extends OnmsRestService {
             }
         }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(bufferedImage, "png", baos);
-        byte[] imageData = baos.toByteArray();
-
-        return Response.ok(imageData).build();
+        return toPng(bufferedImage);
     }
 }
-
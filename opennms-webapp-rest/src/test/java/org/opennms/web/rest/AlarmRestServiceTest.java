@@ -31,6 +31,7 @@ package org.opennms.web.rest;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.opennms.core.test.xml.XmlTest.assertXpathDoesNotMatch;
 import static org.opennms.core.test.xml.XmlTest.assertXpathMatches;
@@ -115,6 +116,24 @@ public class AlarmRestServiceTest extends AbstractSpringJerseyRestTestCase {
         assertTrue(xml.contains("<nodeLabel>node1</nodeLabel>"));
     }
 
+    @Test
+    @JUnitTemporaryDatabase
+    public void testKeysetPaginationRejectsOrder() throws Exception {
+        String xml = sendRequest(GET, "/alarms", parseParamData("afterTime=2100-01-01T00:00:00.000Z&afterId=0&countMode=none"), 200);
+        assertTrue(xml.contains("This is a test alarm"));
+        sendRequest(GET, "/alarms", parseParamData("afterTime=2100-01-01T00:00:00.000Z&afterId=0&orderBy=severity"), 400);
+        sendRequest(GET, "/alarms", parseParamData("afterTime=2100-01-01T00:00:00.000Z&afterId=0&order=asc"), 400);
+        sendRequest(GET, "/alarms/stream", parseParamData("afterTime=2100-01-01T00:00:00.000Z&afterId=0&offset=10"), 400);
+    }
+
+    @Test
+    @JUnitTemporaryDatabase
+    public void testInvalidPaginationParameters() throws Exception {
+        sendRequest(GET, "/alarms", parseParamData("countMode=sometimes"), 400);
+        sendRequest(GET, "/alarms", parseParamData("afterId=0"), 400);
+        sendRequest(GET, "/alarms/stream", parseParamData("afterTime=2100-01-01T00:00:00.000Z&afterId=abc"), 400);
+    }
+
     @Test
     @JUnitTemporaryDatabase
     public void testAlarmQueryByNode() throws Exception {
@@ -206,6 +225,29 @@ public class AlarmRestServiceTest extends AbstractSpringJerseyRestTestCase {
         sendPut("/alarms/" + alarmId, "ack=true&ackUser=bar", 403, null);
     }
 
+    @Test
+    @Transactional
+    @JUnitTemporaryDatabase
+    public void testBulkAlarmUpdates() throws Exception {
+        final OnmsAlarm major = createAlarm(OnmsSeverity.MAJOR);
+        final OnmsAlarm minor = createAlarm(OnmsSeverity.MINOR);
+
+        sendPut("/alarms", "ack=false&comparator=ge&severity=MINOR", 303, "/alarms");
+        assertNull(getAlarmDao().get(major.getId()).getAlarmAckUser());
+        assertNull(getAlarmDao().get(minor.getId()).getAlarmAckTime());
+
+        sendPut("/alarms", "ack=true&comparator=ge&severity=MINOR", 303, "/alarms");
+        assertEquals("admin", getAlarmDao().get(major.getId()).getAlarmAckUser());
+        assertNotNull(getAlarmDao().get(minor.getId()).getAlarmAckTime());
+
+        sendPut("/alarms", "escalate=true&severity=MINOR", 303, "/alarms/" + minor.getId());
+        assertEquals(OnmsSeverity.MAJOR, getAlarmDao().get(minor.getId()).getSeverity());
+
+        sendPut("/alarms", "clear=true&severity=MAJOR", 303, "/alarms");
+        assertEquals(OnmsSeverity.CLEARED, getAlarmDao().get(major.getId()).getSeverity());
+        assertEquals(OnmsSeverity.CLEARED, getAlarmDao().get(minor.getId()).getSeverity());
+    }
+
     private OnmsAlarm getLastAlarm() {
         final NavigableSet<OnmsAlarm> alarms = new TreeSet<OnmsAlarm>(new Comparator<OnmsAlarm>() {
             @Override
@@ -28,6 +28,7 @@
 
 package org.opennms.web.rest;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -82,4 +83,33 @@ public class EventRestServiceTest extends AbstractSpringJerseyRestTestCase {
         xml = sendRequest(GET, "/events/between", parseParamData("end=2010-01-01T01:00:00Z"), 200);
         assertTrue(xml.contains("totalCount=\"0\""));
     }
+
+    @Test
+    public void testKeysetPagination() throws Exception {
+        String xml;
+        xml = sendRequest(GET, "/events", parseParamData("afterTime=0&afterId=0&countMode=estimate"), 200);
+        assertTrue(xml.contains("<createTime>"));
+        assertTrue(xml.contains("totalCount="));
+        xml = sendRequest(GET, "/events", parseParamData("afterTime=2100-01-01T00:00:00.000Z&afterId=0&countMode=none"), 200);
+        assertFalse(xml.contains("<createTime>"));
+        sendRequest(GET, "/events", parseParamData("afterTime=0&afterId=0&orderBy=severity"), 400);
+        sendRequest(GET, "/events/stream", parseParamData("afterTime=0&afterId=0&order=desc"), 400);
+    }
+
+    @Test
+    public void testInvalidPaginationParameters() throws Exception {
+        sendRequest(GET, "/events", parseParamData("countMode=sometimes"), 400);
+        sendRequest(GET, "/events", parseParamData("afterTime=0"), 400);
+        sendRequest(GET, "/events", parseParamData("afterId=0"), 400);
+        sendRequest(GET, "/events", parseParamData("afterTime=0&afterId=abc"), 400);
+        sendRequest(GET, "/events/stream", parseParamData("afterTime=yesterday&afterId=0"), 400);
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        final String xml = sendRequest(GET, "/events/stream", 200);
+        assertTrue(xml.contains("<events>"));
+        assertTrue(xml.contains("<createTime>"));
+        assertFalse(xml.contains("totalCount="));
+    }
 }
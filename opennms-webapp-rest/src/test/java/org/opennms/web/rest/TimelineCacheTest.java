@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.web.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.dao.mock.MockEventIpcManager;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventIpcManagerFactory;
+import org.opennms.netmgt.model.events.EventBuilder;
+
+public class TimelineCacheTest {
+    private MockEventIpcManager m_eventIpcManager;
+    private TimelineCache m_cache;
+
+    private final AtomicInteger m_queries = new AtomicInteger(0);
+
+    private final Callable<Map<String, List<TimelineCache.Outage>>> m_loader = new Callable<Map<String, List<TimelineCache.Outage>>>() {
+        @Override
+        public Map<String, List<TimelineCache.Outage>> call() {
+            m_queries.incrementAndGet();
+            final Map<String, List<TimelineCache.Outage>> outages = new HashMap<String, List<TimelineCache.Outage>>();
+            outages.put(TimelineCache.serviceKey("192.168.1.1", "ICMP"), Collections.singletonList(new TimelineCache.Outage(1, new Date(1000000), null)));
+            outages.put(TimelineCache.serviceKey("192.168.1.1", "SNMP"), Collections.singletonList(new TimelineCache.Outage(2, new Date(1000000), new Date(2000000))));
+            return outages;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        m_eventIpcManager = new MockEventIpcManager();
+        EventIpcManagerFactory.setIpcManager(m_eventIpcManager);
+        m_cache = new TimelineCache(100, 10);
+        m_cache.start();
+    }
+
+    @After
+    public void tearDown() {
+        m_cache.stop();
+        EventIpcManagerFactory.reset();
+    }
+
+    @Test
+    public void testOneQueryPerNode() {
+        assertEquals(1, m_cache.getOutages(1, "192.168.1.1", "ICMP", 0, 3600, m_loader).get(0).getId().intValue());
+        assertEquals(2, m_cache.getOutages(1, "192.168.1.1", "SNMP", 0, 3600, m_loader).get(0).getId().intValue());
+        assertTrue(m_cache.getOutages(1, "192.168.1.1", "HTTP", 0, 3600, m_loader).isEmpty());
+        assertEquals(1, m_queries.get());
+
+        // a different window is a different query
+        m_cache.getOutages(1, "192.168.1.1", "ICMP", 60, 3660, m_loader);
+        assertEquals(2, m_queries.get());
+    }
+
+    @Test
+    public void testOutageEventInvalidatesNode() {
+        final long version = m_cache.getVersion(1);
+        m_cache.getOutages(1, "192.168.1.1", "ICMP", 0, 3600, m_loader);
+        m_cache.getOutages(2, "192.168.1.1", "ICMP", 0, 3600, m_loader);
+
+        final EventBuilder bldr = new EventBuilder(EventConstants.NODE_LOST_SERVICE_EVENT_UEI, "test");
+        bldr.setNodeid(1);
+        m_eventIpcManager.broadcastNow(bldr.getEvent());
+
+        assertTrue(version != m_cache.getVersion(1));
+        m_cache.getOutages(1, "192.168.1.1", "ICMP", 0, 3600, m_loader);
+        m_cache.getOutages(2, "192.168.1.1", "ICMP", 0, 3600, m_loader);
+        assertEquals(3, m_queries.get());
+    }
+
+    @Test
+    public void testReparentInvalidatesBothNodes() {
+        final long version = m_cache.getVersion(1);
+
+        final EventBuilder bldr = new EventBuilder(EventConstants.INTERFACE_REPARENTED_EVENT_UEI, "test");
+        bldr.setNodeid(2);
+        bldr.addParam(EventConstants.PARM_OLD_NODEID, "1");
+        m_eventIpcManager.broadcastNow(bldr.getEvent());
+
+        assertTrue(version != m_cache.getVersion(1));
+    }
+
+    @Test
+    public void testImagesAreRenderedOnce() {
+        final AtomicInteger renders = new AtomicInteger(0);
+        final Callable<byte[]> renderer = new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                renders.incrementAndGet();
+                return new byte[] { 1 };
+            }
+        };
+
+        final List<Object> key = Arrays.<Object>asList("image", 1, TimelineCache.serviceKey("192.168.1.1", "ICMP"), 0L, 3600L, 300, m_cache.getVersion(1));
+        m_cache.getImage(key, renderer);
+        m_cache.getImage(Arrays.<Object>asList("image", 1, TimelineCache.serviceKey("192.168.1.1", "ICMP"), 0L, 3600L, 300, m_cache.getVersion(1)), renderer);
+        assertEquals(1, renders.get());
+        assertEquals(1, m_cache.getImageRenderCount());
+    }
+}
@@ -49,6 +49,7 @@ import org.opennms.core.utils.WebSecurityUtils;
 import org.opennms.netmgt.events.api.EventConstants;
 import org.opennms.netmgt.model.ResourceTypeUtils;
 import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.rrd.RrdDirectoryIndex;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.web.api.Util;
 import org.opennms.web.svclayer.api.ResourceService;
@@ -103,6 +104,7 @@ public class DeleteNodesServlet extends HttpServlet {
                 LOG.debug("Attempting to delete node data directory: {}", nodeDir.getAbsolutePath());
                 if (deleteDir(nodeDir)) {
                     LOG.info("Node SNMP data directory deleted successfully: {}", nodeDir.getAbsolutePath());
+                    RrdDirectoryIndex.directoryDeleted(nodeDir);
                 } else {
                     LOG.warn("Node SNMP data directory *not* deleted successfully: {}", nodeDir.getAbsolutePath());
                 }
@@ -116,6 +118,7 @@ public class DeleteNodesServlet extends HttpServlet {
                     LOG.debug("Attempting to delete node response time data directory: {}", intfDir.getAbsolutePath());
                     if (deleteDir(intfDir)) {
                         LOG.info("Node response time data directory deleted successfully: {}", intfDir.getAbsolutePath());
+                        RrdDirectoryIndex.directoryDeleted(intfDir);
                     } else {
                         LOG.warn("Node response time data directory *not* deleted successfully: {}", intfDir.getAbsolutePath());
                     }
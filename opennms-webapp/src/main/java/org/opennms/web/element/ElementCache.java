@@ -0,0 +1,372 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.element;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventIpcManager;
+import org.opennms.netmgt.events.api.EventIpcManagerFactory;
+import org.opennms.netmgt.events.api.EventListener;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Parm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * <p>Read-through cache for the node, interface and service views handed out
+ * by {@link NetworkElementFactory}.</p>
+ *
+ * <p>Entries are keyed by node and are invalidated when eventd broadcasts a
+ * provisioning or node change event for that node, so pages that refresh
+ * constantly no longer query the database for data that has not changed.
+ * If the event subsystem is not available (for example when the web UI runs
+ * in a separate JVM) the cache stays disabled, since it would have no way of
+ * learning about changes.</p>
+ *
+ * <p>The cache size is bounded by the
+ * <code>org.opennms.web.element.cache.maxSize</code> system property
+ * (default 10000 entries per view) and entries expire after
+ * <code>org.opennms.web.element.cache.expireMinutes</code> minutes (default
+ * 10) as a safety net against missed events.</p>
+ */
+public class ElementCache implements EventListener, ElementCacheMBean {
+    private static final Logger LOG = LoggerFactory.getLogger(ElementCache.class);
+
+    private static final String OBJECT_NAME = "OpenNMS:Name=WebElementCache";
+
+    /**
+     * Events that change what is cached for the node in the event.
+     */
+    private static final List<String> NODE_UEIS = Arrays.asList(
+        EventConstants.NODE_ADDED_EVENT_UEI,
+        EventConstants.NODE_UPDATED_EVENT_UEI,
+        EventConstants.NODE_DELETED_EVENT_UEI,
+        EventConstants.DUP_NODE_DELETED_EVENT_UEI,
+        EventConstants.NODE_LABEL_CHANGED_EVENT_UEI,
+        EventConstants.NODE_INFO_CHANGED_EVENT_UEI,
+        EventConstants.NODE_CATEGORY_MEMBERSHIP_CHANGED_EVENT_UEI,
+        EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI,
+        EventConstants.NODE_GAINED_SERVICE_EVENT_UEI,
+        EventConstants.INTERFACE_DELETED_EVENT_UEI,
+        EventConstants.INTERFACE_REPARENTED_EVENT_UEI,
+        EventConstants.INTERFACE_INDEX_CHANGED_EVENT_UEI,
+        EventConstants.PRIMARY_SNMP_INTERFACE_CHANGED_EVENT_UEI,
+        EventConstants.SERVICE_DELETED_EVENT_UEI,
+        EventConstants.SERVICE_UNMANAGED_EVENT_UEI,
+        EventConstants.SUSPEND_POLLING_SERVICE_EVENT_UEI,
+        EventConstants.RESUME_POLLING_SERVICE_EVENT_UEI
+    );
+
+    /**
+     * Events after which everything cached may be stale.
+     */
+    private static final List<String> GLOBAL_UEIS = Arrays.asList(
+        EventConstants.IMPORT_SUCCESSFUL_UEI,
+        // sent by the manage/unmanage pages after they update ipinterface and ifservices
+        "uei.opennms.org/internal/restartSCM"
+    );
+
+    private final Cache<Integer, Optional<String>> m_nodeLabels;
+    private final Cache<Integer, Optional<String>> m_primaryAddresses;
+    private final Cache<Integer, Interface[]> m_interfacesOnNode;
+    private final Cache<Integer, Service[]> m_servicesOnNode;
+    private final Cache<Integer, Optional<String>> m_serviceNames;
+    /**
+     * Bumped on every invalidation; also the lock that makes storing a
+     * freshly loaded value atomic with respect to invalidations.
+     */
+    private final AtomicLong m_invalidations = new AtomicLong(0);
+
+    private volatile boolean m_enabled = false;
+
+    public ElementCache() {
+        this(Long.getLong("org.opennms.web.element.cache.maxSize", 10000), Long.getLong("org.opennms.web.element.cache.expireMinutes", 10));
+    }
+
+    public ElementCache(final long maxSize, final long expireMinutes) {
+        m_nodeLabels = newCache(maxSize, expireMinutes);
+        m_primaryAddresses = newCache(maxSize, expireMinutes);
+        m_interfacesOnNode = newCache(maxSize, expireMinutes);
+        m_servicesOnNode = newCache(maxSize, expireMinutes);
+        m_serviceNames = newCache(maxSize, expireMinutes);
+    }
+
+    private static <K,V> Cache<K,V> newCache(final long maxSize, final long expireMinutes) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .<K,V>build();
+    }
+
+    /**
+     * Subscribes to node change events and enables the cache.  If the event
+     * subsystem is not running in this JVM, the cache stays disabled and
+     * every lookup goes to the database.
+     */
+    public void start() {
+        final EventIpcManager ipcManager;
+        try {
+            ipcManager = EventIpcManagerFactory.getIpcManager();
+        } catch (final IllegalStateException e) {
+            LOG.info("Event subsystem is not available, element caching is disabled.");
+            return;
+        }
+        ipcManager.addEventListener(this, NODE_UEIS);
+        ipcManager.addEventListener(this, GLOBAL_UEIS);
+        m_enabled = true;
+
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (final Exception e) {
+            LOG.warn("Unable to register {} with JMX", OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Unsubscribes from events and disables the cache.
+     */
+    public void stop() {
+        if (!m_enabled) {
+            return;
+        }
+        m_enabled = false;
+        EventIpcManagerFactory.getIpcManager().removeEventListener(this);
+        invalidateAll();
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (final Exception e) {
+            LOG.warn("Unable to unregister {} from JMX", OBJECT_NAME, e);
+        }
+    }
+
+    public String getNodeLabel(final int nodeId, final Callable<String> loader) {
+        return getOptional(m_nodeLabels, nodeId, loader);
+    }
+
+    public String getIpPrimaryAddress(final int nodeId, final Callable<String> loader) {
+        return getOptional(m_primaryAddresses, nodeId, loader);
+    }
+
+    public String getServiceName(final int serviceId, final Callable<String> loader) {
+        return getOptional(m_serviceNames, serviceId, loader);
+    }
+
+    public Interface[] getAllInterfacesOnNode(final int nodeId, final Callable<Interface[]> loader) {
+        // hand out copies so callers can sort them without affecting the cache
+        return get(m_interfacesOnNode, nodeId, loader).clone();
+    }
+
+    public Service[] getServicesOnNode(final int nodeId, final Callable<Service[]> loader) {
+        return get(m_servicesOnNode, nodeId, loader).clone();
+    }
+
+    private <K> String getOptional(final Cache<K, Optional<String>> cache, final K key, final Callable<String> loader) {
+        return get(cache, key, new Callable<Optional<String>>() {
+            @Override
+            public Optional<String> call() throws Exception {
+                return Optional.fromNullable(loader.call());
+            }
+        }).orNull();
+    }
+
+    private <K,V> V get(final Cache<K,V> cache, final K key, final Callable<V> loader) {
+        try {
+            if (!m_enabled) {
+                return loader.call();
+            }
+            final V cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return cached;
+            }
+
+            final long generation = m_invalidations.get();
+            final V value = loader.call();
+            if (value != null) {
+                synchronized (m_invalidations) {
+                    // if an invalidation came in while we were loading, what we
+                    // read may predate the change, so hand it out but don't keep it
+                    if (m_invalidations.get() == generation) {
+                        cache.put(key, value);
+                    }
+                }
+            }
+            return value;
+        } catch (final Exception e) {
+            throw propagate(e);
+        }
+    }
+
+    private static RuntimeException propagate(final Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException)t;
+        } else if (t instanceof Error) {
+            throw (Error)t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    /**
+     * Drops everything cached for a node.
+     *
+     * @param nodeId the node ID
+     */
+    public void invalidateNode(final int nodeId) {
+        synchronized (m_invalidations) {
+            m_invalidations.incrementAndGet();
+            m_nodeLabels.invalidate(nodeId);
+            m_primaryAddresses.invalidate(nodeId);
+            m_interfacesOnNode.invalidate(nodeId);
+            m_servicesOnNode.invalidate(nodeId);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void invalidateAll() {
+        synchronized (m_invalidations) {
+            m_invalidations.incrementAndGet();
+            m_nodeLabels.invalidateAll();
+            m_primaryAddresses.invalidateAll();
+            m_interfacesOnNode.invalidateAll();
+            m_servicesOnNode.invalidateAll();
+            m_serviceNames.invalidateAll();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return "WebUI:ElementCache";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onEvent(final Event e) {
+        if (GLOBAL_UEIS.contains(e.getUei()) || !e.hasNodeid()) {
+            LOG.debug("Invalidating all cached elements after {}", e.getUei());
+            invalidateAll();
+            return;
+        }
+
+        LOG.debug("Invalidating cached elements for node {} after {}", e.getNodeid(), e.getUei());
+        invalidateNode(e.getNodeid().intValue());
+
+        if (EventConstants.INTERFACE_REPARENTED_EVENT_UEI.equals(e.getUei())) {
+            // the interface also moved away from the old node
+            for (final Parm parm : e.getParmCollection()) {
+                if (EventConstants.PARM_OLD_NODEID.equals(parm.getParmName()) && parm.getValue() != null) {
+                    try {
+                        invalidateNode(Integer.parseInt(parm.getValue().getContent()));
+                    } catch (final NumberFormatException ex) {
+                        invalidateAll();
+                    }
+                }
+            }
+        } else if (EventConstants.NODE_GAINED_SERVICE_EVENT_UEI.equals(e.getUei())) {
+            // a new service type may have been created
+            synchronized (m_invalidations) {
+                m_invalidations.incrementAndGet();
+                m_serviceNames.invalidateAll();
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isEnabled() {
+        return m_enabled;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSize() {
+        return m_nodeLabels.size() + m_primaryAddresses.size() + m_interfacesOnNode.size() + m_servicesOnNode.size() + m_serviceNames.size();
+    }
+
+    private CacheStats getStats() {
+        return m_nodeLabels.stats()
+                .plus(m_primaryAddresses.stats())
+                .plus(m_interfacesOnNode.stats())
+                .plus(m_servicesOnNode.stats())
+                .plus(m_serviceNames.stats());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getHitCount() {
+        return getStats().hitCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getMissCount() {
+        return getStats().missCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getHitRate() {
+        return getStats().hitRate();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getEvictionCount() {
+        return getStats().evictionCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getInvalidationCount() {
+        return m_invalidations.get();
+    }
+}
@@ -1,7 +1,7 @@
 /*******************************************************************************
  * This file is part of OpenNMS(R).
  *
- * Copyright (C) 2003-2014 The OpenNMS Group, Inc.
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
  * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
  *
  * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
@@ -26,19 +26,26 @@
  *     http://www.opennms.com/
  *******************************************************************************/
 
-package org.opennms.netmgt.syslogd;
+package org.opennms.web.element;
 
-import java.sql.SQLException;
+/**
+ * JMX view of the {@link ElementCache} statistics.
+ */
+public interface ElementCacheMBean {
 
-public abstract interface SyslogdIPMgr {
+    boolean isEnabled();
 
-	void dataSourceSync() throws SQLException;
-	
-	long getNodeId(String ipAddr);
-	
-	long setNodeId(String ipAddr, long nodeId);
-	
-	long removeNodeId(String ipAddr);
-	
-	long longValue(Long result);
+    long getSize();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRate();
+
+    long getEvictionCount();
+
+    long getInvalidationCount();
+
+    void invalidateAll();
 }
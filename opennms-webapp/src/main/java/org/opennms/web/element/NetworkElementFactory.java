@@ -41,6 +41,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 import javax.servlet.ServletContext;
 
@@ -85,6 +86,7 @@ import org.opennms.netmgt.model.OnmsStpNode;
 import org.opennms.netmgt.model.OnmsVlan;
 import org.opennms.netmgt.model.PrimaryType;
 import org.opennms.web.svclayer.model.AggregateStatus;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
@@ -101,7 +103,7 @@ import org.springframework.web.context.support.WebApplicationContextUtils;
  * @author <A HREF="http://www.opennms.org/">OpenNMS </A>
  */
 @Transactional(readOnly=true)
-public class NetworkElementFactory implements InitializingBean, NetworkElementFactoryInterface {
+public class NetworkElementFactory implements InitializingBean, DisposableBean, NetworkElementFactoryInterface {
     
     @Autowired
     private NodeDao m_nodeDao;
@@ -139,9 +141,30 @@ public class NetworkElementFactory implements InitializingBean, NetworkElementFa
 	@Autowired
 	private PlatformTransactionManager m_transactionManager;
 
+    private final ElementCache m_cache = new ElementCache();
+
+    private boolean m_cacheEnabled = false;
+
+    /**
+     * Enables caching of node, interface and service lookups.  The cache
+     * is invalidated by node change events, so it should only be enabled
+     * when eventd runs in the same JVM.
+     */
+    public void setCacheEnabled(final boolean cacheEnabled) {
+        m_cacheEnabled = cacheEnabled;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
         BeanUtils.assertAutowiring(this);
+        if (m_cacheEnabled) {
+            m_cache.start();
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        m_cache.stop();
     }
 
     public static NetworkElementFactoryInterface getInstance(ServletContext servletContext) {
@@ -177,7 +200,16 @@ public class NetworkElementFactory implements InitializingBean, NetworkElementFa
 	 * @see org.opennms.web.element.NetworkElementFactoryInterface#getNodeLabel(int)
 	 */
     @Override
-    public String getNodeLabel(int nodeId) {
+    public String getNodeLabel(final int nodeId) {
+        return m_cache.getNodeLabel(nodeId, new Callable<String>() {
+            @Override
+            public String call() {
+                return lookupNodeLabel(nodeId);
+            }
+        });
+    }
+
+    private String lookupNodeLabel(int nodeId) {
         final CriteriaBuilder cb = new CriteriaBuilder(OnmsNode.class);
         cb.eq("id", nodeId);
         final List<OnmsNode> nodes = m_nodeDao.findMatching(cb.toCriteria());
@@ -194,7 +226,16 @@ public class NetworkElementFactory implements InitializingBean, NetworkElementFa
 	 * @see org.opennms.web.element.NetworkElementFactoryInterface#getIpPrimaryAddress(int)
 	 */
     @Override
-    public String getIpPrimaryAddress(int nodeId) {
+    public String getIpPrimaryAddress(final int nodeId) {
+        return m_cache.getIpPrimaryAddress(nodeId, new Callable<String>() {
+            @Override
+            public String call() {
+                return lookupIpPrimaryAddress(nodeId);
+            }
+        });
+    }
+
+    private String lookupIpPrimaryAddress(int nodeId) {
         final CriteriaBuilder cb = new CriteriaBuilder(OnmsIpInterface.class);
         cb.and(new EqRestriction("node.id", nodeId), new EqRestriction("isSnmpPrimary", PrimaryType.PRIMARY));
         
@@ -489,7 +530,16 @@ public class NetworkElementFactory implements InitializingBean, NetworkElementFa
 	 * @see org.opennms.web.element.NetworkElementFactoryInterface#getAllInterfacesOnNode(int)
 	 */
     @Override
-    public Interface[] getAllInterfacesOnNode(int nodeId) {
+    public Interface[] getAllInterfacesOnNode(final int nodeId) {
+        return m_cache.getAllInterfacesOnNode(nodeId, new Callable<Interface[]>() {
+            @Override
+            public Interface[] call() {
+                return lookupAllInterfacesOnNode(nodeId);
+            }
+        });
+    }
+
+    private Interface[] lookupAllInterfacesOnNode(int nodeId) {
         OnmsCriteria criteria = new OnmsCriteria(OnmsIpInterface.class);
         criteria.createAlias("node", "node");
         criteria.createAlias("snmpInterface", "snmpIface");
@@ -675,7 +725,16 @@ public class NetworkElementFactory implements InitializingBean, NetworkElementFa
 	 * @see org.opennms.web.element.NetworkElementFactoryInterface#getServicesOnNode(int)
 	 */
     @Override
-    public Service[] getServicesOnNode(int nodeId) {
+    public Service[] getServicesOnNode(final int nodeId) {
+        return m_cache.getServicesOnNode(nodeId, new Callable<Service[]>() {
+            @Override
+            public Service[] call() {
+                return lookupServicesOnNode(nodeId);
+            }
+        });
+    }
+
+    private Service[] lookupServicesOnNode(int nodeId) {
         OnmsCriteria criteria = new OnmsCriteria(OnmsMonitoredService.class);
         criteria.createAlias("ipInterface", "ipInterface");
         criteria.createAlias("ipInterface.snmpInterface", "snmpIface", OnmsCriteria.LEFT_JOIN);
@@ -718,9 +777,14 @@ public class NetworkElementFactory implements InitializingBean, NetworkElementFa
 	 * @see org.opennms.web.element.NetworkElementFactoryInterface#getServiceNameFromId(int)
 	 */
     @Override
-    public String getServiceNameFromId(int serviceId) {
-        OnmsServiceType type = m_serviceTypeDao.get(serviceId);
-        return type == null ? null : type.getName();
+    public String getServiceNameFromId(final int serviceId) {
+        return m_cache.getServiceName(serviceId, new Callable<String>() {
+            @Override
+            public String call() {
+                OnmsServiceType type = m_serviceTypeDao.get(serviceId);
+                return type == null ? null : type.getName();
+            }
+        });
     }
 
     /* (non-Javadoc)
@@ -101,7 +101,8 @@
      	overallStatusString = CategoryUtil.formatValue(overallRtcValue) + "%";
  	}
 
-    long timelineEnd = new Date().getTime() / 1000;
+    // align the window to the minute so the timeline images can be cached
+    long timelineEnd = (new Date().getTime() / 60000 + 1) * 60;
     long timelineStart = timelineEnd - 3600 * 24;
     String timelineHeaderUrl = "/opennms/rest/timeline/header/" + timelineStart + "/" + timelineEnd + "/";
     String timelineEmptyUrl = "/opennms/rest/timeline/empty/" + timelineStart + "/" + timelineEnd + "/";
@@ -86,7 +86,8 @@
     String availClass;
     String availValue;
 
-    long timelineEnd = new Date().getTime() / 1000;
+    // align the window to the minute so the timeline images can be cached
+    long timelineEnd = (new Date().getTime() / 60000 + 1) * 60;
     long timelineStart = timelineEnd - 3600 * 24;
 
     String timelineHeaderUrl = "/opennms/rest/timeline/header/" + timelineStart + "/" + timelineEnd + "/";
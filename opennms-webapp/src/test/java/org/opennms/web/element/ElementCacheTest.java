@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.dao.mock.MockEventIpcManager;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventIpcManagerFactory;
+import org.opennms.netmgt.model.events.EventBuilder;
+
+public class ElementCacheTest {
+    private MockEventIpcManager m_eventIpcManager;
+    private ElementCache m_cache;
+
+    private final AtomicInteger m_loads = new AtomicInteger(0);
+
+    private final Callable<String> m_loader = new Callable<String>() {
+        @Override
+        public String call() {
+            return "node" + m_loads.incrementAndGet();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        m_eventIpcManager = new MockEventIpcManager();
+        EventIpcManagerFactory.setIpcManager(m_eventIpcManager);
+        m_cache = new ElementCache(100, 10);
+        m_cache.start();
+    }
+
+    @After
+    public void tearDown() {
+        m_cache.stop();
+        EventIpcManagerFactory.reset();
+    }
+
+    @Test
+    public void testReadThrough() {
+        assertTrue(m_cache.isEnabled());
+        assertEquals("node1", m_cache.getNodeLabel(1, m_loader));
+        assertEquals("node1", m_cache.getNodeLabel(1, m_loader));
+        assertEquals("node2", m_cache.getNodeLabel(2, m_loader));
+
+        assertEquals(2, m_loads.get());
+        assertEquals(1, m_cache.getHitCount());
+        assertEquals(2, m_cache.getMissCount());
+    }
+
+    @Test
+    public void testNullValues() {
+        final Callable<String> nullLoader = new Callable<String>() {
+            @Override
+            public String call() {
+                m_loads.incrementAndGet();
+                return null;
+            }
+        };
+        assertNull(m_cache.getNodeLabel(1, nullLoader));
+        assertNull(m_cache.getNodeLabel(1, nullLoader));
+        assertEquals(1, m_loads.get());
+    }
+
+    @Test
+    public void testNodeEventInvalidatesNode() {
+        m_cache.getNodeLabel(1, m_loader);
+        m_cache.getNodeLabel(2, m_loader);
+
+        final EventBuilder bldr = new EventBuilder(EventConstants.NODE_LABEL_CHANGED_EVENT_UEI, "test");
+        bldr.setNodeid(1);
+        m_eventIpcManager.broadcastNow(bldr.getEvent());
+
+        assertEquals("node3", m_cache.getNodeLabel(1, m_loader));
+        assertEquals("node2", m_cache.getNodeLabel(2, m_loader));
+        assertEquals(1, m_cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testReparentInvalidatesBothNodes() {
+        m_cache.getNodeLabel(1, m_loader);
+        m_cache.getNodeLabel(2, m_loader);
+
+        final EventBuilder bldr = new EventBuilder(EventConstants.INTERFACE_REPARENTED_EVENT_UEI, "test");
+        bldr.setNodeid(2);
+        bldr.addParam(EventConstants.PARM_OLD_NODEID, "1");
+        m_eventIpcManager.broadcastNow(bldr.getEvent());
+
+        assertEquals("node3", m_cache.getNodeLabel(1, m_loader));
+        assertEquals("node4", m_cache.getNodeLabel(2, m_loader));
+    }
+
+    @Test
+    public void testImportInvalidatesEverything() {
+        m_cache.getNodeLabel(1, m_loader);
+        m_cache.getNodeLabel(2, m_loader);
+
+        m_eventIpcManager.broadcastNow(new EventBuilder(EventConstants.IMPORT_SUCCESSFUL_UEI, "test").getEvent());
+
+        assertEquals(0, m_cache.getSize());
+        assertEquals("node3", m_cache.getNodeLabel(1, m_loader));
+    }
+
+    @Test
+    public void testManageNodesInvalidatesInterfacesAndServices() {
+        final AtomicInteger interfaceLoads = new AtomicInteger(0);
+        final Callable<Interface[]> interfaceLoader = new Callable<Interface[]>() {
+            @Override
+            public Interface[] call() {
+                interfaceLoads.incrementAndGet();
+                return new Interface[0];
+            }
+        };
+        final AtomicInteger serviceLoads = new AtomicInteger(0);
+        final Callable<Service[]> serviceLoader = new Callable<Service[]>() {
+            @Override
+            public Service[] call() {
+                serviceLoads.incrementAndGet();
+                return new Service[0];
+            }
+        };
+
+        m_cache.getAllInterfacesOnNode(1, interfaceLoader);
+        m_cache.getServicesOnNode(1, serviceLoader);
+        m_cache.getAllInterfacesOnNode(1, interfaceLoader);
+        m_cache.getServicesOnNode(1, serviceLoader);
+        assertEquals(1, interfaceLoads.get());
+        assertEquals(1, serviceLoads.get());
+
+        // what ManageNodesServlet sends after (un)managing interfaces and services
+        m_eventIpcManager.broadcastNow(new EventBuilder("uei.opennms.org/internal/restartSCM", "web ui").getEvent());
+
+        m_cache.getAllInterfacesOnNode(1, interfaceLoader);
+        m_cache.getServicesOnNode(1, serviceLoader);
+        assertEquals(2, interfaceLoads.get());
+        assertEquals(2, serviceLoads.get());
+    }
+
+    @Test
+    public void testInvalidationDuringLoad() {
+        final Callable<String> racingLoader = new Callable<String>() {
+            @Override
+            public String call() {
+                // the node changes while we are reading it
+                final EventBuilder bldr = new EventBuilder(EventConstants.NODE_LABEL_CHANGED_EVENT_UEI, "test");
+                bldr.setNodeid(1);
+                m_eventIpcManager.broadcastNow(bldr.getEvent());
+                return "node" + m_loads.incrementAndGet();
+            }
+        };
+
+        assertEquals("node1", m_cache.getNodeLabel(1, racingLoader));
+        // the possibly stale value was not kept
+        assertEquals("node2", m_cache.getNodeLabel(1, m_loader));
+        assertEquals("node2", m_cache.getNodeLabel(1, m_loader));
+    }
+
+    @Test
+    public void testDisabledWithoutEvents() {
+        m_cache.stop();
+        EventIpcManagerFactory.reset();
+
+        final ElementCache cache = new ElementCache(100, 10);
+        cache.start();
+        assertFalse(cache.isEnabled());
+        assertEquals("node1", cache.getNodeLabel(1, m_loader));
+        assertEquals("node2", cache.getNodeLabel(1, m_loader));
+    }
+}
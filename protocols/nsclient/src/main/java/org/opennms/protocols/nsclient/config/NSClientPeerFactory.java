@@ -285,7 +285,7 @@ public final class NSClientPeerFactory {
 
                 // check the matching IP expressions
                 for (final String ipMatch : def.getIpMatchCollection()) {
-                    if (IPLike.matches(InetAddressUtils.str(agentInetAddress), ipMatch)) {
+                    if (IPLike.matches(agentInetAddress, ipMatch)) {
                         setNSClientAgentConfig(agentConfig, def);
                         break DEFLOOP;
                     }
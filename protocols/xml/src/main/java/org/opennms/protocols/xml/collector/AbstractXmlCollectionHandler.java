@@ -34,7 +34,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLConnection;
@@ -48,6 +47,7 @@ import java.util.Map;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
@@ -55,8 +55,8 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -116,6 +116,25 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
     /** The Node Level Resource (temporary variable). It is initialized on each collection attempt. */
     private XmlSingleInstanceCollectionResource m_nodeResource;
 
+    /** The compiled XPath expressions. */
+    private final XPathExpressionCache m_xpathCache = new XPathExpressionCache();
+
+    /** The namespace aware document builder of each thread. */
+    private static final ThreadLocal<DocumentBuilder> s_namespaceAwareBuilder = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            return newDocumentBuilder(true);
+        }
+    };
+
+    /** The document builder of each thread that is not namespace aware. */
+    private static final ThreadLocal<DocumentBuilder> s_builder = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            return newDocumentBuilder(false);
+        }
+    };
+
     /* (non-Javadoc)
      * @see org.opennms.protocols.xml.collector.XmlCollectionHandler#setServiceName(java.lang.String)
      */
@@ -216,21 +235,25 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
     protected void fillCollectionSet(CollectionAgent agent, XmlCollectionSet collectionSet, XmlSource source, Document doc) throws XPathExpressionException, ParseException {
         m_nodeResource = null; // Be sure that the temporary resource for node level data is clean before processing a new document.
         NamespaceContext nc = new DocumentNamespaceResolver(doc);
-        XPath xpath = XPathFactory.newInstance().newXPath();
-        xpath.setNamespaceContext(nc);
+        XPath xpath = m_xpathCache.getXPath(nc);
         for (XmlGroup group : source.getXmlGroups()) {
             LOG.debug("fillCollectionSet: getting resources for XML group {} using XPATH {}", group.getName(), group.getResourceXpath());
             Date timestamp = getTimeStamp(doc, xpath, group);
-            NodeList resourceList = (NodeList) xpath.evaluate(group.getResourceXpath(), doc, XPathConstants.NODESET);
+            NodeList resourceList = (NodeList) m_xpathCache.compile(group.getResourceXpath(), nc).evaluate(doc, XPathConstants.NODESET);
+            List<XmlObject> objects = group.getXmlObjects();
+            XPathExpression[] objectExpressions = new XPathExpression[objects.size()];
+            for (int i = 0; i < objectExpressions.length; i++) {
+                objectExpressions[i] = m_xpathCache.compile(objects.get(i).getXpath(), nc);
+            }
             for (int j = 0; j < resourceList.getLength(); j++) {
                 Node resource = resourceList.item(j);
-                String resourceName = getResourceName(xpath, group, resource);
+                String resourceName = getResourceName(nc, group, resource);
                 LOG.debug("fillCollectionSet: processing XML resource {}", resourceName);
                 XmlCollectionResource collectionResource = getCollectionResource(agent, resourceName, group.getResourceType(), timestamp);
                 AttributeGroupType attribGroupType = new AttributeGroupType(group.getName(), group.getIfType());
-                for (XmlObject object : group.getXmlObjects()) {
-                    String value = (String) xpath.evaluate(object.getXpath(), resource, XPathConstants.STRING);
-                    XmlCollectionAttributeType attribType = new XmlCollectionAttributeType(object, attribGroupType);
+                for (int i = 0; i < objectExpressions.length; i++) {
+                    String value = (String) objectExpressions[i].evaluate(resource, XPathConstants.STRING);
+                    XmlCollectionAttributeType attribType = new XmlCollectionAttributeType(objects.get(i), attribGroupType);
                     collectionResource.setAttributeValue(attribType, value);
                 }
                 processXmlResource(collectionResource, attribGroupType);
@@ -242,19 +265,19 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
     /**
      * Gets the resource name.
      *
-     * @param xpath the Xpath
+     * @param nc the namespace context
      * @param group the group
      * @param resource the resource
      * @return the resource name
      * @throws XPathExpressionException the x path expression exception
      */
-    private String getResourceName(XPath xpath, XmlGroup group, Node resource) throws XPathExpressionException {
+    private String getResourceName(NamespaceContext nc, XmlGroup group, Node resource) throws XPathExpressionException {
         // Processing multiple-key resource name.
         if (group.hasMultipleResourceKey()) {
             List<String> keys = new ArrayList<String>();
             for (String key : group.getXmlResourceKey().getKeyXpathList()) {
                 LOG.debug("getResourceName: getting key for resource's name using {}", key);
-                Node keyNode = (Node) xpath.evaluate(key, resource, XPathConstants.NODE);
+                Node keyNode = (Node) m_xpathCache.compile(key, nc).evaluate(resource, XPathConstants.NODE);
                 keys.add(keyNode.getNodeValue() == null ? keyNode.getTextContent() : keyNode.getNodeValue());
             }
             return StringUtils.join(keys, "_");
@@ -265,7 +288,7 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
         }
         // Processing single-key resource name.
         LOG.debug("getResourceName: getting key for resource's name using {}", group.getKeyXpath());
-        Node keyNode = (Node) xpath.evaluate(group.getKeyXpath(), resource, XPathConstants.NODE);
+        Node keyNode = (Node) m_xpathCache.compile(group.getKeyXpath(), nc).evaluate(resource, XPathConstants.NODE);
         return keyNode.getNodeValue() == null ? keyNode.getTextContent() : keyNode.getNodeValue();
     }
 
@@ -332,7 +355,7 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
         }
         String pattern = group.getTimestampFormat() == null ? "yyyy-MM-dd HH:mm:ss" : group.getTimestampFormat();
         LOG.debug("getTimeStamp: retrieving custom timestamp to be used when updating RRDs using XPATH {} and pattern {}", group.getTimestampXpath(), pattern);
-        Node tsNode = (Node) xpath.evaluate(group.getTimestampXpath(), doc, XPathConstants.NODE);
+        Node tsNode = (Node) m_xpathCache.compile(group.getTimestampXpath(), xpath.getNamespaceContext()).evaluate(doc, XPathConstants.NODE);
         if (tsNode == null) {
             LOG.warn("getTimeStamp: can't find the custom timestamp using XPATH {}",  group.getTimestampXpath());
             return null;
@@ -475,6 +498,73 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
         }
     }
 
+    /**
+     * Gets the XML document for a source.
+     * <p>When the request parameter <b>stream-xml</b> is true and the XPaths of the source allow it, the document is
+     * built while streaming and only contains the elements needed by the groups of the source.</p>
+     *
+     * @param urlString the URL string
+     * @param request the request
+     * @param source the XML source
+     * @return the XML document
+     * @throws Exception the exception
+     */
+    protected Document getXmlDocument(String urlString, Request request, XmlSource source) throws Exception {
+        if (!isStreaming(request, source)) {
+            return getXmlDocument(urlString, request);
+        }
+        InputStream is = null;
+        URLConnection c = null;
+        try {
+            URL url = UrlFactory.getUrl(urlString, request);
+            c = url.openConnection();
+            is = c.getInputStream();
+            return getXmlDocument(is, request, source);
+        } finally {
+            IOUtils.closeQuietly(is);
+            UrlFactory.disconnect(c);
+        }
+    }
+
+    /**
+     * Gets the XML document for a source.
+     *
+     * @param is the input stream
+     * @param request the request
+     * @param source the XML source
+     * @return the XML document
+     * @throws Exception the exception
+     * @see #getXmlDocument(String, Request, XmlSource)
+     */
+    protected Document getXmlDocument(InputStream is, Request request, XmlSource source) throws Exception {
+        if (!isStreaming(request, source)) {
+            return getXmlDocument(is, request);
+        }
+        is = preProcessHtml(request, is);
+        is = applyXsltTransformation(request, is);
+        DocumentBuilder builder = s_namespaceAwareBuilder.get();
+        builder.reset();
+        return XmlStreamingParser.parse(is, source, builder);
+    }
+
+    /**
+     * Checks if the document of a source should be built while streaming.
+     *
+     * @param request the request
+     * @param source the XML source
+     * @return true, if streaming should be used
+     */
+    protected boolean isStreaming(Request request, XmlSource source) {
+        if (request == null || source == null || !Boolean.parseBoolean(request.getParameter("stream-xml"))) {
+            return false;
+        }
+        if (!XmlStreamingParser.isSupported(source)) {
+            LOG.warn("isStreaming: the XPaths of source {} require the whole document, streaming will not be used.", source.getUrl());
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Gets the XML document.
      *
@@ -486,24 +576,37 @@ public abstract class AbstractXmlCollectionHandler implements XmlCollectionHandl
     protected Document getXmlDocument(InputStream is, Request request) throws Exception {
         is = preProcessHtml(request, is);
         is = applyXsltTransformation(request, is);
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setIgnoringComments(true);
-        factory.setNamespaceAware(true);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        StringWriter writer = new StringWriter();
-        IOUtils.copy(is, writer, "UTF-8");
-        String contents = writer.toString();
-        Document doc = builder.parse(IOUtils.toInputStream(contents, "UTF-8"));
+        DocumentBuilder builder = s_namespaceAwareBuilder.get();
+        builder.reset();
+        byte[] contents = IOUtils.toByteArray(is);
+        Document doc = builder.parse(new ByteArrayInputStream(contents));
         // Ugly hack to deal with DOM & XPath 1.0's battle royale 
         // over handling namespaces without a prefix. 
         if(doc.getNamespaceURI() != null && doc.getPrefix() == null){
-            factory.setNamespaceAware(false);
-            builder = factory.newDocumentBuilder();
-            doc = builder.parse(IOUtils.toInputStream(contents, "UTF-8"));
+            builder = s_builder.get();
+            builder.reset();
+            doc = builder.parse(new ByteArrayInputStream(contents));
         }
         return doc;
     }
 
+    /**
+     * Creates a new document builder.
+     *
+     * @param namespaceAware whether the builder is namespace aware
+     * @return the document builder
+     */
+    private static DocumentBuilder newDocumentBuilder(boolean namespaceAware) {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setIgnoringComments(true);
+        factory.setNamespaceAware(namespaceAware);
+        try {
+            return factory.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Can't create a document builder: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Apply XSLT transformation.
      *
@@ -58,7 +58,7 @@ public class DefaultXmlCollectionHandler extends AbstractXmlCollectionHandler {
      */
     @Override
     protected void fillCollectionSet(String urlString, Request request, CollectionAgent agent, XmlCollectionSet collectionSet, XmlSource source) throws Exception {
-        final Document doc = getXmlDocument(urlString, request);
+        final Document doc = getXmlDocument(urlString, request, source);
         LOG.debug("collect: parsed document for source url '{}' collection", source.getUrl());
         fillCollectionSet(agent, collectionSet, source, doc);
     }
@@ -91,7 +91,7 @@ public class Sftp3gppXmlCollectionHandler extends AbstractXmlCollectionHandler {
                 if (lastFile == null) {
                     lastFile = connection.get3gppFileName();
                     LOG.debug("collect(single): retrieving file from {}{}{} from {}", url.getPath(), File.separatorChar, lastFile, agent.getHostAddress());
-                    Document doc = getXmlDocument(urlStr, request);
+                    Document doc = getXmlDocument(urlStr, request, source);
                     fillCollectionSet(agent, collectionSet, source, doc);
                     Sftp3gppUtils.setLastFilename(getServiceName(), resourceDir, url.getPath(), lastFile);
                     Sftp3gppUtils.deleteFile(connection, lastFile);
@@ -105,7 +105,7 @@ public class Sftp3gppXmlCollectionHandler extends AbstractXmlCollectionHandler {
                             LOG.debug("collect(multiple): retrieving file {} from {}", fileName, agent.getHostAddress());
                             InputStream is = connection.getFile(fileName);
                             try {
-                                Document doc = getXmlDocument(is, request);
+                                Document doc = getXmlDocument(is, request, source);
                                 IOUtils.closeQuietly(is);
                                 fillCollectionSet(agent, collectionSet, source, doc);
                             } finally {
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.protocols.xml.collector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+/**
+ * A cache of compiled XPath expressions.
+ * <p>Namespace prefixes are resolved when an expression is compiled, so the cache key includes the namespace URI
+ * bound to each prefix used by the expression. Neither {@link XPath} nor {@link XPathExpression} is thread safe,
+ * so each thread keeps its own instances.</p>
+ */
+public class XPathExpressionCache {
+
+    /** The pattern used to find namespace prefixes in an expression. */
+    private static final Pattern PREFIX_PATTERN = Pattern.compile("(?<![:\\w.@$-])([A-Za-z_][\\w.-]*):(?![:])");
+
+    /** The namespace prefixes used by each expression. */
+    private static final Map<String, String[]> s_prefixes = new ConcurrentHashMap<String, String[]>();
+
+    /** The XPath object of the current thread. */
+    private final ThreadLocal<XPath> m_xpath = new ThreadLocal<XPath>() {
+        @Override
+        protected XPath initialValue() {
+            return XPathFactory.newInstance().newXPath();
+        }
+    };
+
+    /** The compiled expressions of the current thread. */
+    private final ThreadLocal<Map<String, XPathExpression>> m_expressions = new ThreadLocal<Map<String, XPathExpression>>() {
+        @Override
+        protected Map<String, XPathExpression> initialValue() {
+            return new HashMap<String, XPathExpression>();
+        }
+    };
+
+    /**
+     * Gets the XPath object of the current thread, configured with the given namespace context.
+     *
+     * @param nc the namespace context
+     * @return the XPath object
+     */
+    public XPath getXPath(NamespaceContext nc) {
+        XPath xpath = m_xpath.get();
+        xpath.setNamespaceContext(nc);
+        return xpath;
+    }
+
+    /**
+     * Gets the compiled version of an expression.
+     *
+     * @param expression the XPath expression
+     * @param nc the namespace context used to resolve prefixes
+     * @return the compiled expression
+     * @throws XPathExpressionException the XPath expression exception
+     */
+    public XPathExpression compile(String expression, NamespaceContext nc) throws XPathExpressionException {
+        String key = getKey(expression, nc);
+        Map<String, XPathExpression> expressions = m_expressions.get();
+        XPathExpression compiled = expressions.get(key);
+        if (compiled == null) {
+            compiled = getXPath(nc).compile(expression);
+            expressions.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Gets the cache key for an expression.
+     *
+     * @param expression the XPath expression
+     * @param nc the namespace context
+     * @return the key
+     */
+    private static String getKey(String expression, NamespaceContext nc) {
+        String[] prefixes = s_prefixes.get(expression);
+        if (prefixes == null) {
+            List<String> found = new ArrayList<String>();
+            Matcher m = PREFIX_PATTERN.matcher(expression);
+            while (m.find()) {
+                if (!found.contains(m.group(1))) {
+                    found.add(m.group(1));
+                }
+            }
+            prefixes = found.toArray(new String[found.size()]);
+            s_prefixes.put(expression, prefixes);
+        }
+        if (prefixes.length == 0 || nc == null) {
+            return expression;
+        }
+        StringBuilder key = new StringBuilder(expression);
+        for (String prefix : prefixes) {
+            key.append('|').append(prefix).append('=').append(nc.getNamespaceURI(prefix));
+        }
+        return key.toString();
+    }
+
+}
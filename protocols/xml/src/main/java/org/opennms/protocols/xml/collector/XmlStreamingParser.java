@@ -0,0 +1,394 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.protocols.xml.collector;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.opennms.protocols.xml.config.XmlGroup;
+import org.opennms.protocols.xml.config.XmlObject;
+import org.opennms.protocols.xml.config.XmlSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Builds a pruned DOM from a stream of XML.
+ * <p>Only the elements matched by the resource and timestamp XPaths of the groups of a source are kept, with their
+ * whole content, along with the chain of their ancestors (which keep their attributes but lose all other children).
+ * The regular XPath evaluation can then be applied to the pruned document, without holding the whole document in
+ * memory.</p>
+ * <p>This only works when the resource and timestamp XPaths are simple location paths (element names, optionally
+ * using '//' and '*', with attribute predicates on the intermediate steps), and the key and object XPaths don't
+ * leave the resource element. Use {@link #isSupported(XmlSource)} to verify that.</p>
+ */
+public class XmlStreamingParser {
+
+    /** The Constant LOG. */
+    private static final Logger LOG = LoggerFactory.getLogger(XmlStreamingParser.class);
+
+    /** The pattern for a step name. */
+    private static final Pattern NAME = Pattern.compile("\\*|[\\w.-]+(:[\\w.-]+|:\\*)?");
+
+    /** The pattern for predicates allowed on intermediate steps. */
+    private static final Pattern ATTRIBUTE_PREDICATE = Pattern.compile("\\[\\s*@[\\w.:-]+\\s*(!?=\\s*('[^']*'|\"[^\"]*\"))?\\s*\\]");
+
+    /** The pattern for relative XPaths that may reference nodes outside of the context node. */
+    private static final Pattern OUTSIDE_CONTEXT = Pattern.compile("^\\s*/|\\.\\.|ancestor|preceding|following|parent::|\\bid\\s*\\(|\\$");
+
+    /** The StAX factory (thread safe once configured). */
+    private static final XMLInputFactory s_inputFactory = XMLInputFactory.newInstance();
+
+    static {
+        s_inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        s_inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    }
+
+    /**
+     * A step of a location path.
+     */
+    private static class Step {
+
+        /** The local name, or null for any element. */
+        private final String m_localName;
+
+        /** Whether the step can skip any number of elements ('//'). */
+        private final boolean m_descendant;
+
+        public Step(String name, boolean descendant) {
+            int idx = name.indexOf(':');
+            String localName = idx < 0 ? name : name.substring(idx + 1);
+            m_localName = "*".equals(localName) ? null : localName;
+            m_descendant = descendant;
+        }
+
+        public boolean matches(String localName) {
+            return m_localName == null || m_localName.equals(localName);
+        }
+    }
+
+    /**
+     * Private constructor.
+     */
+    private XmlStreamingParser() {}
+
+    /**
+     * Checks if the groups of a source can be collected from a pruned document.
+     *
+     * @param source the XML source
+     * @return true, if the source is supported
+     */
+    public static boolean isSupported(XmlSource source) {
+        return getPaths(source) != null;
+    }
+
+    /**
+     * Parses the stream into a pruned document.
+     *
+     * @param is the input stream
+     * @param source the XML source
+     * @param builder the document builder used to create the document
+     * @return the pruned document
+     * @throws XMLStreamException the XML stream exception
+     */
+    public static Document parse(InputStream is, XmlSource source, DocumentBuilder builder) throws XMLStreamException {
+        List<Step[]> paths = getPaths(source);
+        if (paths == null) {
+            throw new IllegalArgumentException("The XPaths of source " + source.getUrl() + " can't be evaluated on a stream.");
+        }
+        Document doc = builder.newDocument();
+        XMLStreamReader reader = s_inputFactory.createXMLStreamReader(is);
+        try {
+            List<String> names = new ArrayList<String>();
+            List<Element> elements = new ArrayList<Element>(); // the DOM element of each level, or null if not kept yet
+            List<Element> pending = new ArrayList<Element>(); // the element of each level, created but maybe not attached
+            Node current = doc;
+            int captureDepth = 0;
+            int kept = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (captureDepth > 0) {
+                        Element e = createElement(doc, reader);
+                        current.appendChild(e);
+                        current = e;
+                        captureDepth++;
+                        break;
+                    }
+                    names.add(reader.getLocalName());
+                    pending.add(createElement(doc, reader));
+                    elements.add(null);
+                    if (matches(paths, names)) {
+                        // attach the chain of ancestors that hasn't been added yet
+                        Node parent = doc;
+                        for (int i = 0; i < elements.size(); i++) {
+                            if (elements.get(i) == null) {
+                                parent.appendChild(pending.get(i));
+                                elements.set(i, pending.get(i));
+                            }
+                            parent = elements.get(i);
+                        }
+                        current = parent;
+                        captureDepth = 1;
+                        kept++;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (captureDepth > 1) {
+                        current = current.getParentNode();
+                        captureDepth--;
+                        break;
+                    }
+                    captureDepth = 0;
+                    names.remove(names.size() - 1);
+                    pending.remove(pending.size() - 1);
+                    elements.remove(elements.size() - 1);
+                    current = elements.isEmpty() ? doc : elements.get(elements.size() - 1);
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (captureDepth > 0) {
+                        current.appendChild(doc.createTextNode(reader.getText()));
+                    }
+                    break;
+                default:
+                    break;
+                }
+            }
+            LOG.debug("parse: kept {} elements of source {}", kept, source.getUrl());
+            return doc;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Creates a DOM element for the current start element.
+     *
+     * @param doc the document
+     * @param reader the reader
+     * @return the element
+     */
+    private static Element createElement(Document doc, XMLStreamReader reader) {
+        Element e = doc.createElementNS(emptyToNull(reader.getNamespaceURI()), qualifiedName(reader.getPrefix(), reader.getLocalName()));
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            e.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, prefix == null || prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix, reader.getNamespaceURI(i));
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            e.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)), qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+        }
+        return e;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Checks if the current element path matches one of the location paths.
+     *
+     * @param paths the location paths
+     * @param names the local names of the current element and its ancestors
+     * @return true, if successful
+     */
+    private static boolean matches(List<Step[]> paths, List<String> names) {
+        for (Step[] path : paths) {
+            if (matches(path, 0, names, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(Step[] steps, int s, List<String> names, int n) {
+        if (s == steps.length) {
+            return n == names.size();
+        }
+        if (n == names.size()) {
+            return false;
+        }
+        if (steps[s].matches(names.get(n)) && matches(steps, s + 1, names, n + 1)) {
+            return true;
+        }
+        return steps[s].m_descendant && matches(steps, s, names, n + 1);
+    }
+
+    /**
+     * Gets the location paths of the elements that must be kept for a source.
+     *
+     * @param source the XML source
+     * @return the paths, or null if the source is not supported
+     */
+    private static List<Step[]> getPaths(XmlSource source) {
+        List<Step[]> paths = new ArrayList<Step[]>();
+        for (XmlGroup group : source.getXmlGroups()) {
+            Step[] resourcePath = parsePath(group.getResourceXpath());
+            if (resourcePath == null) {
+                LOG.debug("getPaths: the resource XPath {} of group {} is not a simple path", group.getResourceXpath(), group.getName());
+                return null;
+            }
+            paths.add(resourcePath);
+            if (group.getTimestampXpath() != null) {
+                Step[] timestampPath = parsePath(group.getTimestampXpath());
+                if (timestampPath == null) {
+                    LOG.debug("getPaths: the timestamp XPath {} of group {} is not a simple path", group.getTimestampXpath(), group.getName());
+                    return null;
+                }
+                paths.add(timestampPath);
+            }
+            List<String> relativePaths = new ArrayList<String>();
+            if (group.getKeyXpath() != null) {
+                relativePaths.add(group.getKeyXpath());
+            }
+            if (group.getXmlResourceKey() != null) {
+                relativePaths.addAll(group.getXmlResourceKey().getKeyXpathList());
+            }
+            for (XmlObject object : group.getXmlObjects()) {
+                relativePaths.add(object.getXpath());
+            }
+            for (String relativePath : relativePaths) {
+                if (OUTSIDE_CONTEXT.matcher(relativePath).find()) {
+                    LOG.debug("getPaths: the XPath {} of group {} may reference nodes outside of the resource", relativePath, group.getName());
+                    return null;
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Parses an absolute location path into steps.
+     * <p>A trailing attribute or text() step is dropped, as the element that holds it is kept with all its content.</p>
+     *
+     * @param xpath the XPath
+     * @return the steps, or null if the XPath is not a simple location path
+     */
+    private static Step[] parsePath(String xpath) {
+        if (xpath == null || !xpath.startsWith("/")) {
+            return null;
+        }
+        List<String> tokens = split(xpath.trim());
+        if (tokens == null) {
+            return null;
+        }
+        List<Step> steps = new ArrayList<Step>();
+        boolean descendant = false;
+        for (int i = 1; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            boolean last = i == tokens.size() - 1;
+            if (token.isEmpty()) {
+                if (descendant) {
+                    return null;
+                }
+                descendant = true;
+                continue;
+            }
+            if (last && !steps.isEmpty() && (token.startsWith("@") || token.equals("text()"))) {
+                break;
+            }
+            int idx = token.indexOf('[');
+            String name = idx < 0 ? token : token.substring(0, idx);
+            String predicates = idx < 0 ? "" : token.substring(idx);
+            if (name.startsWith("child::")) {
+                name = name.substring("child::".length());
+            }
+            if (!NAME.matcher(name).matches()) {
+                return null;
+            }
+            // predicates on the last step can use the element content, which is kept
+            if (!last && !predicates.isEmpty() && !isAttributePredicates(predicates)) {
+                return null;
+            }
+            steps.add(new Step(name, descendant));
+            descendant = false;
+        }
+        return steps.isEmpty() || descendant ? null : steps.toArray(new Step[steps.size()]);
+    }
+
+    private static boolean isAttributePredicates(String predicates) {
+        return ATTRIBUTE_PREDICATE.matcher(predicates).replaceAll("").isEmpty();
+    }
+
+    /**
+     * Splits a location path on the '/' that are not part of a predicate.
+     *
+     * @param xpath the XPath
+     * @return the tokens, or null if the XPath is a union or is not balanced
+     */
+    private static List<String> split(String xpath) {
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder token = new StringBuilder();
+        int depth = 0;
+        char quote = 0;
+        for (char c : xpath.toCharArray()) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            } else if (depth == 0 && (c == '|' || c == '(' && !token.toString().equals("text"))) {
+                return null;
+            } else if (depth == 0 && c == '/') {
+                tokens.add(token.toString());
+                token.setLength(0);
+                continue;
+            }
+            token.append(c);
+        }
+        if (depth != 0 || quote != 0) {
+            return null;
+        }
+        tokens.add(token.toString());
+        return tokens;
+    }
+
+}
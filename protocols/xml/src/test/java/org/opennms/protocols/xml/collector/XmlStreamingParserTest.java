@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.protocols.xml.collector;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opennms.protocols.xml.config.XmlDataCollection;
+import org.opennms.protocols.xml.config.XmlGroup;
+import org.opennms.protocols.xml.config.XmlObject;
+import org.opennms.protocols.xml.config.XmlSource;
+import org.opennms.protocols.xml.dao.jaxb.XmlDataCollectionConfigDaoJaxb;
+import org.springframework.core.io.FileSystemResource;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+/**
+ * The Class XmlStreamingParserTest.
+ * <p>Verifies that the pruned documents built while streaming give the same values as the whole documents.</p>
+ */
+public class XmlStreamingParserTest {
+
+    /**
+     * Test the 3GPP sample.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void test3gpp() throws Exception {
+        verify("src/test/resources/3gpp-xml-datacollection-config.xml", "src/test/resources/A20111025.0030-0500-0045-0500_MME00001.xml");
+    }
+
+    /**
+     * Test the Solaris zones sample.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testSolarisZones() throws Exception {
+        verify("src/test/resources/solaris-zones-datacollection-config.xml", "src/test/resources/solaris-zones.xml");
+    }
+
+    /**
+     * Test a sample that uses namespaces.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testNamespace() throws Exception {
+        verify("src/test/resources/namespace-datacollection-config.xml", "src/test/resources/namespace.xml");
+    }
+
+    /**
+     * Test a sample with multiple resource keys.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testRpcReply() throws Exception {
+        verify("src/test/resources/rpc-reply-datacollection-config.xml", "src/test/resources/rpc-reply.xml");
+    }
+
+    /**
+     * Test that sources whose XPaths need the whole document are detected.
+     */
+    @Test
+    public void testUnsupported() {
+        XmlSource source = new XmlSource();
+        XmlGroup group = new XmlGroup();
+        group.setName("test");
+        group.setResourceXpath("/zones/zone");
+        XmlObject object = new XmlObject();
+        object.setName("test");
+        object.setXpath("parameter[@key='nproc']/@value");
+        group.addXmlObject(object);
+        source.addXmlGroup(group);
+        Assert.assertTrue(XmlStreamingParser.isSupported(source));
+
+        object.setXpath("../parameter/@value");
+        Assert.assertFalse(XmlStreamingParser.isSupported(source));
+
+        object.setXpath("parameter/@value");
+        group.setResourceXpath("/zones/zone[2]/parameter");
+        Assert.assertFalse(XmlStreamingParser.isSupported(source));
+
+        group.setResourceXpath("/zones/zone | /zones/other");
+        Assert.assertFalse(XmlStreamingParser.isSupported(source));
+
+        group.setResourceXpath("//zone[parameter/@key='nproc']");
+        Assert.assertTrue(XmlStreamingParser.isSupported(source));
+    }
+
+    /**
+     * Verifies a configuration against a sample file.
+     *
+     * @param configFileName the configuration file name
+     * @param sampleFileName the sample file name
+     * @throws Exception the exception
+     */
+    private void verify(String configFileName, String sampleFileName) throws Exception {
+        XmlDataCollectionConfigDaoJaxb dao = new XmlDataCollectionConfigDaoJaxb();
+        dao.setConfigResource(new FileSystemResource(configFileName));
+        dao.afterPropertiesSet();
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setIgnoringComments(true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        Document fullDoc = builder.parse(sampleFileName);
+
+        int sources = 0;
+        for (XmlDataCollection collection : dao.getConfig().getXmlDataCollections()) {
+            for (XmlSource source : collection.getXmlSources()) {
+                Assert.assertTrue(XmlStreamingParser.isSupported(source));
+                InputStream is = new FileInputStream(sampleFileName);
+                Document prunedDoc;
+                try {
+                    prunedDoc = XmlStreamingParser.parse(is, source, builder);
+                } finally {
+                    IOUtils.closeQuietly(is);
+                }
+                Assert.assertEquals(getValues(fullDoc, source), getValues(prunedDoc, source));
+                sources++;
+            }
+        }
+        Assert.assertTrue(sources > 0);
+    }
+
+    /**
+     * Gets the values that would be collected from a document.
+     *
+     * @param doc the document
+     * @param source the XML source
+     * @return the values
+     * @throws Exception the exception
+     */
+    private List<String> getValues(Document doc, XmlSource source) throws Exception {
+        XPathExpressionCache cache = new XPathExpressionCache();
+        NamespaceContext nc = new DocumentNamespaceResolver(doc);
+        List<String> values = new ArrayList<String>();
+        for (XmlGroup group : source.getXmlGroups()) {
+            if (group.getTimestampXpath() != null) {
+                values.add((String) cache.compile(group.getTimestampXpath(), nc).evaluate(doc, XPathConstants.STRING));
+            }
+            NodeList resources = (NodeList) cache.compile(group.getResourceXpath(), nc).evaluate(doc, XPathConstants.NODESET);
+            values.add(group.getName() + ": " + resources.getLength());
+            for (int i = 0; i < resources.getLength(); i++) {
+                if (group.getKeyXpath() != null) {
+                    values.add((String) cache.compile(group.getKeyXpath(), nc).evaluate(resources.item(i), XPathConstants.STRING));
+                }
+                if (group.getXmlResourceKey() != null) {
+                    for (String key : group.getXmlResourceKey().getKeyXpathList()) {
+                        values.add((String) cache.compile(key, nc).evaluate(resources.item(i), XPathConstants.STRING));
+                    }
+                }
+                for (XmlObject object : group.getXmlObjects()) {
+                    values.add(object.getName() + "=" + cache.compile(object.getXpath(), nc).evaluate(resources.item(i), XPathConstants.STRING));
+                }
+            }
+        }
+        return values;
+    }
+
+}